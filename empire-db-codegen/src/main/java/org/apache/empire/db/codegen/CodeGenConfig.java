@@ -91,6 +91,11 @@ public class CodeGenConfig extends XMLConfiguration {
 	 * name of the view target package
 	 */
 	private String viewPackageName;
+	
+	/**
+	 * name of the bean and row mapper target package
+	 */
+	private String beanPackageName;
 
 	/**
 	 * Target name of the generated database class. This class extends
@@ -210,6 +215,19 @@ public class CodeGenConfig extends XMLConfiguration {
 	 */
 	private boolean createRecordProperties;
 	
+	/**
+	 * if TRUE record classes contain a field index constant for each column and
+	 * the getters and setters access the record fields by index instead of looking up the column.<br/>
+	 * Only applies if createRecordProperties is TRUE.
+	 */
+	private boolean createRecordFieldIndexes = false;
+	
+	/**
+	 * if TRUE a bean class and a row mapper class is created for each table.<br/>
+	 * The row mapper fills the bean from a DBReader or DBRecord without reflection.
+	 */
+	private boolean createRowMappers = false;
+	
 	/**
 	 * true if names of tables and views should not be camel-cased
 	 */
@@ -220,6 +238,31 @@ public class CodeGenConfig extends XMLConfiguration {
 	 */
 	private boolean preserveRelationNames = false; 
 
+	/**
+	 * if TRUE the database metadata is read with a single query per schema for columns, 
+	 * primary keys and foreign keys instead of querying it table by table.<br/>
+	 * If the driver does not support reading keys without a table name, keys are read table by table.
+	 */
+	private boolean bulkMetadataQueries = false;
+
+	/**
+	 * number of connections used to read the database metadata concurrently.<br/>
+	 * A value of 1 reads all metadata sequentially on a single connection.
+	 */
+	private int metadataThreads = 1;
+
+	/**
+	 * if TRUE the indexes of all tables are read and added to the database model.<br/>
+	 * Required if the model is used to generate a migration script for an existing database.
+	 */
+	private boolean readIndexes = false;
+
+	/**
+	 * if TRUE only those files are generated whose table or view metadata or template has changed since the last run.<br/>
+	 * The fingerprints of the generated files are stored in the target folder.
+	 */
+	private boolean incrementalGeneration = false;
+
 	/**
 	 * Initialize the configuration.
 	 * 
@@ -374,6 +417,14 @@ public class CodeGenConfig extends XMLConfiguration {
 		this.viewPackageName = viewPackageName;
 	}
 
+	public String getBeanPackageName() {
+		return fallback(beanPackageName, "beans");
+	}
+
+	public void setBeanPackageName(String beanPackageName) {
+		this.beanPackageName = beanPackageName;
+	}
+
 	public String getDbClassName() {
 		return dbClassName;
 	}
@@ -486,6 +537,22 @@ public class CodeGenConfig extends XMLConfiguration {
 		this.createRecordProperties = createRecordProperties;
 	}
 	
+	public boolean isCreateRecordFieldIndexes() {
+		return createRecordFieldIndexes;
+	}
+
+	public void setCreateRecordFieldIndexes(boolean createRecordFieldIndexes) {
+		this.createRecordFieldIndexes = createRecordFieldIndexes;
+	}
+
+	public boolean isCreateRowMappers() {
+		return createRowMappers;
+	}
+
+	public void setCreateRowMappers(boolean createRowMappers) {
+		this.createRowMappers = createRowMappers;
+	}
+	
 	public boolean isPreserverCharacterCase() {
 		return preserverCharacterCase;
 	}
@@ -502,6 +569,38 @@ public class CodeGenConfig extends XMLConfiguration {
 		this.preserveRelationNames = preserveRelationNames;
 	}
 	
+	public boolean isBulkMetadataQueries() {
+		return bulkMetadataQueries;
+	}
+
+	public void setBulkMetadataQueries(boolean bulkMetadataQueries) {
+		this.bulkMetadataQueries = bulkMetadataQueries;
+	}
+
+	public int getMetadataThreads() {
+		return metadataThreads;
+	}
+
+	public void setMetadataThreads(int metadataThreads) {
+		this.metadataThreads = metadataThreads;
+	}
+
+	public boolean isReadIndexes() {
+		return readIndexes;
+	}
+
+	public void setReadIndexes(boolean readIndexes) {
+		this.readIndexes = readIndexes;
+	}
+	
+	public boolean isIncrementalGeneration() {
+		return incrementalGeneration;
+	}
+
+	public void setIncrementalGeneration(boolean incrementalGeneration) {
+		this.incrementalGeneration = incrementalGeneration;
+	}
+	
 	private String fallback(String packageName, String defaultSubpackage){
 		String pkg = packageName;
 		if( pkg == null && this.packageName != null){
@@ -26,13 +26,25 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCommandExpr;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBIndex;
 import org.apache.empire.db.DBRelation;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
@@ -73,6 +85,80 @@ public class CodeGenParser {
 		}
 	}
 
+	/**
+	 * Column information as read from DatabaseMetaData.getColumns()
+	 */
+	private static class ColumnInfo {
+		String  name;
+		int     sqlType;
+		int     size;
+		int     decimalDigits;
+		String  defaultValue;
+		boolean required;
+		boolean autoInc;
+	}
+
+	/**
+	 * Foreign key information as read from DatabaseMetaData.getImportedKeys()
+	 */
+	private static class ForeignKeyInfo {
+		String fkTableName;
+		String pkTableName;
+		String fkColName;
+		String pkColName;
+		String fkName;
+	}
+
+	/**
+	 * Index information as read from DatabaseMetaData.getIndexInfo()
+	 */
+	private static class IndexInfo {
+		final String name;
+		final boolean unique;
+		final List<String> columns = new ArrayList<String>();
+
+		IndexInfo(String name, boolean unique) {
+			this.name = name;
+			this.unique = unique;
+		}
+	}
+
+	/**
+	 * Metadata of a table or view.<br/>
+	 * The metadata is read before the model is built in order to allow bulk and parallel reading.
+	 */
+	private static class TableInfo {
+		final String name;
+		final boolean view;
+		final List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+		final List<ForeignKeyInfo> foreignKeys = new ArrayList<ForeignKeyInfo>();
+		List<String> pkCols;
+		List<IndexInfo> indexes;
+
+		TableInfo(String name, boolean view) {
+			this.name = name;
+			this.view = view;
+		}
+	}
+
+	/**
+	 * A metadata reading task which is executed on its own connection
+	 */
+	private abstract class MetadataTask implements Callable<Object> {
+
+		public abstract void run(DatabaseMetaData meta) throws SQLException;
+
+		public Object call() throws SQLException {
+			Connection taskCon = openJDBCConnection(config);
+			try {
+				run(taskCon.getMetaData());
+			} finally {
+				DBUtil.close(taskCon, log);
+			}
+			return null;
+		}
+	}
+
 	private static final Logger log = LoggerFactory.getLogger(CodeGenParser.class);
 	
 	private DatabaseMetaData dbMeta;
@@ -111,7 +197,7 @@ public class CodeGenParser {
      * JDBC url, user and password for the connection are obained from the SampleConfig bean
      * Please use the config.xml file to change connection params.
      */
-    private Connection openJDBCConnection(CodeGenConfig config) throws SQLException{
+    protected Connection openJDBCConnection(CodeGenConfig config) throws SQLException{
         log.info("Connecting to Database'" + config.getJdbcURL() + "' / User=" + config.getJdbcUser());
         Connection conn = null;
         try {
@@ -127,115 +213,378 @@ public class CodeGenParser {
 	/**
 	 * Queries the metadata of the database for tables and vies and populates the
 	 * database with those
-	 * @throws SQLException 
+	 * @throws SQLException
 	 */
 	private void populateDatabase(DBDatabase db) throws SQLException {
-		ResultSet tables = null;
-		ArrayList<String> populatedTables=new ArrayList<String>();
-		try{
-            this.dbMeta = con.getMetaData();
-            String[] tablePatterns = {null}; // Could be null, so start that way.
-			if(config.getDbTablePattern() != null)
-				tablePatterns = config.getDbTablePattern().split(","); // Support a comma separated list of table patterns (i.e. specify a list of table names in the config file).
-            
-            int tableCount = 0; // Moved to be outside table pattern loop.
-            int viewCount = 0;
-            for(String pattern : tablePatterns){
-            
-			    // Get table metadata
-	            tables = dbMeta.getTables(
-			            config.getDbCatalog(), 
-			            config.getDbSchema(), 
-			            pattern == null ? pattern: pattern.trim(),
-						new String[] { "TABLE", "VIEW" });
-	            
-	            // Add all tables and views 
-				while (tables.next()) {
-					String tableName = tables.getString("TABLE_NAME");
-					String tableType = tables.getString("TABLE_TYPE");
-					// Ignore system tables containing a '$' symbol (required for Oracle!)
-					if (tableName.indexOf('$') >= 0) {
-						log.info("Ignoring system table " + tableName);
-						continue;
-					}
-					log.info(tableType + ": " + tableName);
-					if(tableType.equalsIgnoreCase("VIEW")){
-						InMemoryView view = new InMemoryView(tableName, db);
-						populateView(view);
-						viewCount++;
-					} else {
-						DBTable table = new DBTable(tableName, db);
-						populateTable(table);
-						populatedTables.add(tableName);
-						tableCount++;
-					}
-				}
-			}
-			// Add all relations
-			gatherRelations(db, dbMeta, populatedTables);
-
-			if (tableCount==0 && viewCount==0) {
-			    // getTables returned no result
-			    String info = "catalog="+config.getDbCatalog(); 
-                info += "/ schema="+config.getDbSchema(); 
-                info += "/ pattern="+config.getDbTablePattern(); 
-			    log.warn("DatabaseMetaData.getTables() returned no tables or views! Please check parameters: "+info);
-				log.info("Available catalogs: " + getCatalogs(dbMeta));
-				log.info("Available schemata: " + getSchemata(dbMeta));
-			}
-		} finally {
-			DBUtil.close(tables, log);
+        this.dbMeta = con.getMetaData();
+
+        // Phase 1: read the names of all tables and views
+        long phaseStart = System.currentTimeMillis();
+        List<TableInfo> tableInfos = readTables();
+        logPhase("tables", phaseStart);
+
+        int tableCount = 0;
+        int viewCount = 0;
+        if (!tableInfos.isEmpty())
+        {   // Phase 2: read columns, primary keys and foreign keys
+            phaseStart = System.currentTimeMillis();
+            if (config.isBulkMetadataQueries())
+                readMetadataBulk(tableInfos);
+            else if (config.getMetadataThreads()>1)
+                readMetadataParallel(tableInfos);
+            else
+            {   // read table by table
+                for (TableInfo ti : tableInfos)
+                    readTableMetadata(dbMeta, ti);
+            }
+            logPhase("metadata", phaseStart);
+
+            // Phase 3: build the model
+            phaseStart = System.currentTimeMillis();
+            for (TableInfo ti : tableInfos)
+            {
+                log.info((ti.view ? "VIEW" : "TABLE") + ": " + ti.name);
+                if (ti.view) {
+                    InMemoryView view = new InMemoryView(ti.name, db);
+                    populateView(view, ti);
+                    viewCount++;
+                } else {
+                    DBTable table = new DBTable(ti.name, db);
+                    populateTable(table, ti);
+                    tableCount++;
+                }
+            }
+            logPhase("model", phaseStart);
+
+            // Phase 4: Add all relations
+            phaseStart = System.currentTimeMillis();
+            gatherRelations(db, tableInfos);
+            logPhase("relations", phaseStart);
+        }
+
+		if (tableCount==0 && viewCount==0) {
+		    // getTables returned no result
+		    String info = "catalog="+config.getDbCatalog();
+            info += "/ schema="+config.getDbSchema();
+            info += "/ pattern="+config.getDbTablePattern();
+		    log.warn("DatabaseMetaData.getTables() returned no tables or views! Please check parameters: "+info);
+			log.info("Available catalogs: " + getCatalogs(dbMeta));
+			log.info("Available schemata: " + getSchemata(dbMeta));
 		}
 	}
-	
-	private void gatherRelations(DBDatabase db, DatabaseMetaData dbMeta, ArrayList<String> tables) throws SQLException{
-		ResultSet relations = null;
-		String fkTableName, pkTableName, fkColName, pkColName, relName;
+
+	/**
+	 * Returns the table patterns given by the configuration.
+	 * The configuration may contain a comma separated list of table patterns (i.e. specify a list of table names in the config file).
+	 */
+	private String[] getTablePatterns() {
+        String[] tablePatterns = {null}; // Could be null, so start that way.
+		if(config.getDbTablePattern() != null)
+			tablePatterns = config.getDbTablePattern().split(",");
+		for (int i=0; i<tablePatterns.length; i++)
+		    if (tablePatterns[i]!=null)
+		        tablePatterns[i] = tablePatterns[i].trim();
+		return tablePatterns;
+	}
+
+	/**
+	 * Reads the names of all tables and views matching the configured table patterns.
+	 * @throws SQLException
+	 */
+	private List<TableInfo> readTables() throws SQLException {
+        List<TableInfo> tableInfos = new ArrayList<TableInfo>();
+        for(String pattern : getTablePatterns()){
+            ResultSet tables = null;
+            try {
+    		    // Get table metadata
+                tables = dbMeta.getTables(
+    		            config.getDbCatalog(),
+    		            config.getDbSchema(),
+    		            pattern,
+    					new String[] { "TABLE", "VIEW" });
+
+                // Add all tables and views
+    			while (tables.next()) {
+    				String tableName = tables.getString("TABLE_NAME");
+    				String tableType = tables.getString("TABLE_TYPE");
+    				// Ignore system tables containing a '$' symbol (required for Oracle!)
+    				if (tableName.indexOf('$') >= 0) {
+    					log.info("Ignoring system table " + tableName);
+    					continue;
+    				}
+    				tableInfos.add(new TableInfo(tableName, tableType.equalsIgnoreCase("VIEW")));
+    			}
+            } finally {
+                DBUtil.close(tables, log);
+            }
+		}
+        return tableInfos;
+	}
+
+	/**
+	 * Reads columns, primary key and foreign keys of a single table or view
+	 * @throws SQLException
+	 */
+	private void readTableMetadata(DatabaseMetaData meta, TableInfo ti) throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = meta.getColumns(config.getDbCatalog(), config.getDbSchema(), ti.name, null);
+            readColumns(rs, ti, null);
+        } finally {
+            DBUtil.close(rs, log);
+        }
+        if (ti.view)
+            return; // no keys for views
+        // primary key
+        ti.pkCols = findPkColumns(meta, ti.name);
+        // foreign keys
+        try {
+            rs = meta.getImportedKeys(config.getDbCatalog(), config.getDbSchema(), ti.name);
+            readForeignKeys(rs, ti, null);
+        } finally {
+            DBUtil.close(rs, log);
+        }
+        // indexes
+        if (config.isReadIndexes())
+            ti.indexes = findIndexes(meta, ti.name);
+	}
+
+	/**
+	 * Reads the metadata of all tables and views using one query per table pattern
+	 * for the columns and one query for all primary keys and foreign keys respectively.<br/>
+	 * If more than one metadata thread is configured, the three queries are executed concurrently.
+	 * @throws SQLException
+	 */
+	private void readMetadataBulk(final List<TableInfo> tableInfos) throws SQLException {
+        final Map<String, TableInfo> tableMap = new HashMap<String, TableInfo>(tableInfos.size()*2);
+        for (TableInfo ti : tableInfos)
+            tableMap.put(ti.name, ti);
+        // Create tasks
+        List<MetadataTask> tasks = new ArrayList<MetadataTask>(3);
+        tasks.add(new MetadataTask() {
+            @Override
+            public void run(DatabaseMetaData meta) throws SQLException {
+                readColumnsBulk(meta, tableMap);
+            }
+        });
+        tasks.add(new MetadataTask() {
+            @Override
+            public void run(DatabaseMetaData meta) throws SQLException {
+                readPrimaryKeysBulk(meta, tableInfos, tableMap);
+            }
+        });
+        tasks.add(new MetadataTask() {
+            @Override
+            public void run(DatabaseMetaData meta) throws SQLException {
+                readForeignKeysBulk(meta, tableInfos, tableMap);
+            }
+        });
+        if (config.isReadIndexes())
+        {   // getIndexInfo() always requires a table name
+            tasks.add(new MetadataTask() {
+                @Override
+                public void run(DatabaseMetaData meta) throws SQLException {
+                    for (TableInfo ti : tableInfos)
+                        if (!ti.view)
+                            ti.indexes = findIndexes(meta, ti.name);
+                }
+            });
+        }
+        // run
+        if (config.getMetadataThreads()>1)
+            runTasks(tasks);
+        else
+        {   // run on the current connection
+            for (MetadataTask task : tasks)
+                task.run(dbMeta);
+        }
+	}
+
+	/**
+	 * Reads the columns of all tables using one getColumns() call per table pattern.
+	 * @throws SQLException
+	 */
+	private void readColumnsBulk(DatabaseMetaData meta, Map<String, TableInfo> tableMap) throws SQLException {
+        for(String pattern : getTablePatterns()){
+            ResultSet rs = null;
+            try {
+                rs = meta.getColumns(config.getDbCatalog(), config.getDbSchema(), pattern, null);
+                readColumns(rs, null, tableMap);
+            } finally {
+                DBUtil.close(rs, log);
+            }
+        }
+	}
+
+	/**
+	 * Reads the primary keys of all tables using a single getPrimaryKeys() call.
+	 * If the driver does not support this or returns no keys at all (some drivers return an empty result
+	 * if no table name is given), the primary keys are read table by table.
+	 * @throws SQLException
+	 */
+	private void readPrimaryKeysBulk(DatabaseMetaData meta, List<TableInfo> tableInfos, Map<String, TableInfo> tableMap) throws SQLException {
+        for (TableInfo ti : tableInfos)
+            if (!ti.view)
+                ti.pkCols = new ArrayList<String>();
+        int count = 0;
+        ResultSet rs = null;
+        try {
+            rs = meta.getPrimaryKeys(config.getDbCatalog(), config.getDbSchema(), null);
+            while (rs.next()) {
+                TableInfo ti = tableMap.get(rs.getString("TABLE_NAME"));
+                if (ti!=null && ti.pkCols!=null) {
+                    ti.pkCols.add(rs.getString("COLUMN_NAME"));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            // Driver requires a table name
+            log.warn("Driver does not support reading all primary keys at once ({}).", e.getMessage());
+            count = 0;
+        } finally {
+            DBUtil.close(rs, log);
+        }
+        if (count==0) {
+            log.info("No primary keys found at once. Reading keys table by table.");
+            for (TableInfo ti : tableInfos)
+                if (!ti.view)
+                    ti.pkCols = findPkColumns(meta, ti.name);
+        }
+	}
+
+	/**
+	 * Reads the foreign keys of all tables using a single getImportedKeys() call.
+	 * If the driver does not support this or returns no keys at all (some drivers return an empty result
+	 * if no table name is given), the foreign keys are read table by table.
+	 * @throws SQLException
+	 */
+	private void readForeignKeysBulk(DatabaseMetaData meta, List<TableInfo> tableInfos, Map<String, TableInfo> tableMap) throws SQLException {
+        int count = 0;
+        ResultSet rs = null;
+        try {
+            rs = meta.getImportedKeys(config.getDbCatalog(), config.getDbSchema(), null);
+            count = readForeignKeys(rs, null, tableMap);
+        } catch (SQLException e) {
+            // Driver requires a table name
+            log.warn("Driver does not support reading all foreign keys at once ({}).", e.getMessage());
+            count = 0;
+        } finally {
+            DBUtil.close(rs, log);
+        }
+        if (count==0) {
+            log.info("No foreign keys found at once. Reading keys table by table.");
+            for (TableInfo ti : tableInfos)
+            {   // clear and read again
+                ti.foreignKeys.clear();
+                if (ti.view)
+                    continue;
+                ResultSet tableKeys = null;
+                try {
+                    tableKeys = meta.getImportedKeys(config.getDbCatalog(), config.getDbSchema(), ti.name);
+                    readForeignKeys(tableKeys, ti, null);
+                } finally {
+                    DBUtil.close(tableKeys, log);
+                }
+            }
+        }
+	}
+
+	/**
+	 * Reads the metadata table by table using several connections concurrently.
+	 * @throws SQLException
+	 */
+	private void readMetadataParallel(List<TableInfo> tableInfos) throws SQLException {
+        final Queue<TableInfo> queue = new ConcurrentLinkedQueue<TableInfo>(tableInfos);
+        int threads = Math.min(config.getMetadataThreads(), tableInfos.size());
+        List<MetadataTask> tasks = new ArrayList<MetadataTask>(threads);
+        for (int i=0; i<threads; i++)
+        {
+            tasks.add(new MetadataTask() {
+                @Override
+                public void run(DatabaseMetaData meta) throws SQLException {
+                    TableInfo ti;
+                    while ((ti = queue.poll())!=null)
+                        readTableMetadata(meta, ti);
+                }
+            });
+        }
+        runTasks(tasks);
+	}
+
+	/**
+	 * Runs the given tasks concurrently, each with its own connection.
+	 * @throws SQLException
+	 */
+	private void runTasks(List<MetadataTask> tasks) throws SQLException {
+        log.info("Reading database metadata using {} connections", tasks.size());
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<Object>> futures = executor.invokeAll(tasks);
+            for (Future<Object> f : futures)
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading database metadata", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            throw new RuntimeException("Unable to read database metadata: " + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+	}
+
+	/**
+	 * Logs the time taken by a phase of the metadata import
+	 */
+	private void logPhase(String phase, long start) {
+        log.info("Phase \"{}\" completed in {} ms", phase, String.valueOf(System.currentTimeMillis()-start));
+	}
+
+	private void gatherRelations(DBDatabase db, List<TableInfo> tableInfos) {
 		DBTableColumn fkCol, pkCol;
 		DBTable fkTable, pkTable;
 		DBColumn col;
-		
+		String relName;
+
 		// Add all Relations
-		for (String tableName :tables) {
-			
+		for (TableInfo ti : tableInfos) {
+
 			// check for foreign-keys
-			relations = dbMeta.getImportedKeys(config.getDbCatalog(), config .getDbSchema(), tableName);
-			while (relations.next()) {
+			for (ForeignKeyInfo fk : ti.foreignKeys) {
 				pkCol=fkCol=null;
-				
-				fkTableName=relations.getString("FKTABLE_NAME");
-				pkTableName=relations.getString("PKTABLE_NAME");
-				fkColName=relations.getString("FKCOLUMN_NAME");
-				pkColName=relations.getString("PKCOLUMN_NAME");
 
 				// Detect relation name
-				relName=relations.getString("FK_NAME");
+				relName=fk.fkName;
 				if (StringUtils.isEmpty(relName))
-					relName=fkTableName+"."+fkColName+"-"+pkTableName+"."+pkColName;
-				
-				pkTable = db.getTable(pkTableName);
-				fkTable = db.getTable(fkTableName);
-				
+					relName=fk.fkTableName+"."+fk.fkColName+"-"+fk.pkTableName+"."+fk.pkColName;
+
+				pkTable = db.getTable(fk.pkTableName);
+				fkTable = db.getTable(fk.fkTableName);
+
 				// check if both tables really exist in the model
 				if(pkTable==null || fkTable==null){
 					log.error("Unable to add the relation \""+relName+"\"! One of the tables could not be found.");
 					continue;
 				}
-				
-				col=pkTable.getColumn(pkColName);
+
+				col=pkTable.getColumn(fk.pkColName);
 				if(col instanceof DBTableColumn)
 					pkCol = (DBTableColumn) col;
-	
-				col=fkTable.getColumn(fkColName);
+
+				col=fkTable.getColumn(fk.fkColName);
 				if(col instanceof DBTableColumn)
 					fkCol = (DBTableColumn) col;
-				
+
 				// check if both columns really exist in the model
 				if(fkCol==null || pkCol==null){
 					log.error("Unable to add the relation \""+relName+"\"! One of the columns could not be found.");
 					continue;
 				}
-				
+
 				// add the relation
 				DBRelation.DBReference reference = fkCol.referenceOn(pkCol);
 				DBRelation.DBReference[] refs = null;
@@ -267,7 +616,7 @@ public class CodeGenParser {
 		}
 		if(retVal.length()>2)
 			retVal=retVal.substring(0,retVal.length()-2);
-		
+
 		return retVal;
 	}
 
@@ -283,70 +632,76 @@ public class CodeGenParser {
 	}
 
 	/**
-	 * queries the metadata for columns of a specific table and populates the
-	 * table with that information
-	 * @throws SQLException 
+	 * populates the table with the column information previously read from the metadata
 	 */
-	private void populateTable(DBTable t) throws SQLException {
-		List<String> pkCols = this.findPkColumns(t.getName());
+	private void populateTable(DBTable t, TableInfo ti) {
+		List<String> pkCols = (ti.pkCols!=null ? ti.pkCols : new ArrayList<String>());
 		String lockColName = config.getTimestampColumn();
 		DBColumn[] keys = new DBColumn[pkCols.size()];
-		ResultSet rs = null;
-		try {
-			rs = dbMeta.getColumns(config.getDbCatalog(), config.getDbSchema(),
-					t.getName(), null);
-	        int i=0;
-			while (rs.next()) {
-				DBTableColumn c = addColumn(t, rs);
-				// check if it is a KeyColumn
-				if (pkCols.contains(c.getName()))
-					keys[i++] = c;
-				
-				// check if it is the Timestamp/Locking Column
-				if (lockColName!=null && c.getName().equalsIgnoreCase(lockColName))
-					t.setTimestampColumn(c);
-			}
-	        // Check whether all key columns have been set
-	        for (i=0; i<keys.length; i++)
-	            if (keys[i]==null){
-	            	throw new ItemNotFoundException(pkCols.get(i));
-	            }
-	        if(keys.length > 0){
-	        	t.setPrimaryKey(keys);
-	        }
-		} finally {
-			DBUtil.close(rs, log);
+        int i=0;
+		for (ColumnInfo ci : ti.columns) {
+			DBTableColumn c = addColumn(t, ci);
+			// check if it is a KeyColumn
+			if (pkCols.contains(c.getName()))
+				keys[i++] = c;
+
+			// check if it is the Timestamp/Locking Column
+			if (lockColName!=null && c.getName().equalsIgnoreCase(lockColName))
+				t.setTimestampColumn(c);
 		}
+        // Check whether all key columns have been set
+        for (i=0; i<keys.length; i++)
+            if (keys[i]==null){
+            	throw new ItemNotFoundException(pkCols.get(i));
+            }
+        if(keys.length > 0){
+        	t.setPrimaryKey(keys);
+        }
+        // Indexes
+        if (ti.indexes!=null)
+        	populateIndexes(t, ti.indexes);
 	}
-	
+
 	/**
-	 * queries the metadata for columns of a specific table and populates the
-	 * table with that information
-	 * @throws SQLException 
+	 * adds the indexes previously read from the metadata to the table.
+	 * The index of the primary key and indexes on unknown columns are ignored.
 	 */
-	private void populateView(InMemoryView v) throws SQLException {
-		ResultSet rs = null;
-		try {
-			rs = dbMeta.getColumns(config.getDbCatalog(), config.getDbSchema(),
-					v.getName(), null);
-			while (rs.next()) {
-				addColumn(v, rs);
+	private void populateIndexes(DBTable t, List<IndexInfo> indexes) {
+		DBIndex pk = t.getPrimaryKey();
+		for (IndexInfo ii : indexes) {
+			DBColumn[] cols = new DBColumn[ii.columns.size()];
+			for (int i=0; i<cols.length; i++)
+				cols[i] = t.getColumn(ii.columns.get(i));
+			if (Arrays.asList(cols).contains(null)) {
+				log.warn("Ignoring index " + ii.name + " of table " + t.getName() + ": unknown column.");
+				continue;
 			}
-		} finally {
-			DBUtil.close(rs, log);
+			if (pk!=null && (pk.getName().equalsIgnoreCase(ii.name) || Arrays.equals(pk.getColumns(), cols)))
+				continue; // primary key index
+			log.info("\tINDEX:\t" + ii.name + (ii.unique ? " (unique)" : ""));
+			t.addIndex(ii.name, ii.unique, cols);
+		}
+	}
+
+	/**
+	 * populates the view with the column information previously read from the metadata
+	 */
+	private void populateView(InMemoryView v, TableInfo ti) {
+		for (ColumnInfo ci : ti.columns) {
+			addColumn(v, ci);
 		}
 	}
 
 	/**
 	 * Returns a list of column names that define the primarykey of the given
 	 * table.
-	 * @throws SQLException 
+	 * @throws SQLException
 	 */
-	private List<String> findPkColumns(String tableName) throws SQLException {
+	private List<String> findPkColumns(DatabaseMetaData meta, String tableName) throws SQLException {
 		List<String> cols = new ArrayList<String>();
 		ResultSet rs = null;
 		try {
-			rs = dbMeta.getPrimaryKeys(config.getDbCatalog(), config
+			rs = meta.getPrimaryKeys(config.getDbCatalog(), config
 					.getDbSchema(), tableName);
 			while (rs.next()) {
 				cols.add(rs.getString("COLUMN_NAME"));
@@ -357,52 +712,130 @@ public class CodeGenParser {
 		return cols;
 	}
 
+	/**
+	 * Returns the indexes of the given table.
+	 * @throws SQLException
+	 */
+	private List<IndexInfo> findIndexes(DatabaseMetaData meta, String tableName) throws SQLException {
+		Map<String, IndexInfo> indexes = new LinkedHashMap<String, IndexInfo>();
+		ResultSet rs = null;
+		try {
+			rs = meta.getIndexInfo(config.getDbCatalog(), config.getDbSchema(), tableName, false, true);
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME");
+				String column = rs.getString("COLUMN_NAME");
+				if (name==null || column==null || rs.getShort("TYPE")==DatabaseMetaData.tableIndexStatistic)
+					continue;
+				IndexInfo ii = indexes.get(name);
+				if (ii==null) {
+					ii = new IndexInfo(name, !rs.getBoolean("NON_UNIQUE"));
+					indexes.put(name, ii);
+				}
+				ii.columns.add(column);
+			}
+		} finally {
+			DBUtil.close(rs, log);
+		}
+		return new ArrayList<IndexInfo>(indexes.values());
+	}
+
+	/**
+	 * Reads the column information from a getColumns() ResultSet.
+	 * The columns are either added to the given table info or - if null - to the table info found in the table map.
+	 * @throws SQLException
+	 */
+	private void readColumns(ResultSet rs, TableInfo target, Map<String, TableInfo> tableMap) throws SQLException {
+		// AUTOINC indicator is not in java.sql.Types but rather meta data from DatabaseMetaData.getColumns()
+		// MySQL matches on IS_AUTOINCREMENT column.
+		// SQL Server matches on TYPE_NAME column with identity somewhere in the string value.
+		int autoIncIndex  = 0;
+		int typeNameIndex = 0;
+		ResultSetMetaData metaData = rs.getMetaData();
+		int colCount = metaData.getColumnCount();
+		for (int i = 1; i <= colCount; i++) {
+			String colName = metaData.getColumnName(i);
+			if (colName.equalsIgnoreCase("IS_AUTOINCREMENT"))
+			    autoIncIndex = i;
+			else if (colName.equals("TYPE_NAME"))
+			    typeNameIndex = i;
+		}
+		// read all columns
+		while (rs.next()) {
+		    TableInfo ti = target;
+		    if (ti==null)
+		    {   // find table
+		        ti = tableMap.get(rs.getString("TABLE_NAME"));
+		        if (ti==null)
+		            continue; // not a table of interest
+		    }
+		    ColumnInfo ci = new ColumnInfo();
+		    ci.name = rs.getString("COLUMN_NAME");
+		    ci.sqlType = rs.getInt("DATA_TYPE");
+		    ci.size = rs.getInt("COLUMN_SIZE");
+		    ci.decimalDigits = rs.getInt("DECIMAL_DIGITS");
+		    ci.defaultValue = rs.getString("COLUMN_DEF");
+		    ci.required = rs.getString("IS_NULLABLE").equalsIgnoreCase("NO");
+		    ci.autoInc = (autoIncIndex>0 && "YES".equalsIgnoreCase(rs.getString(autoIncIndex)))
+		              || (typeNameIndex>0 && rs.getString(typeNameIndex)!=null && rs.getString(typeNameIndex).matches(".*(?i:identity).*"));
+		    ti.columns.add(ci);
+		}
+	}
+
+	/**
+	 * Reads the foreign key information from a getImportedKeys() ResultSet.
+	 * The keys are either added to the given table info or - if null - to the table info found in the table map.
+	 * @return the number of keys added
+	 * @throws SQLException
+	 */
+	private int readForeignKeys(ResultSet rs, TableInfo target, Map<String, TableInfo> tableMap) throws SQLException {
+		int count = 0;
+		while (rs.next()) {
+		    ForeignKeyInfo fk = new ForeignKeyInfo();
+			fk.fkTableName=rs.getString("FKTABLE_NAME");
+			fk.pkTableName=rs.getString("PKTABLE_NAME");
+			fk.fkColName=rs.getString("FKCOLUMN_NAME");
+			fk.pkColName=rs.getString("PKCOLUMN_NAME");
+			fk.fkName=rs.getString("FK_NAME");
+		    TableInfo ti = (target!=null ? target : tableMap.get(fk.fkTableName));
+		    if (ti!=null) {
+		        ti.foreignKeys.add(fk);
+		        count++;
+		    }
+		}
+		return count;
+	}
+
 	/**
 	 * Adds DBColumn object to the given DBTable. The DBColumn is created from
-	 * the given ResultSet
+	 * the given column info
 	 */
-	private DBTableColumn addColumn(DBTable t, ResultSet rs)
-			throws SQLException {
-		String name = rs.getString("COLUMN_NAME");
-		DataType empireType = getEmpireDataType(rs.getInt("DATA_TYPE"));
-		double colSize = Double.parseDouble(""+rs.getInt("COLUMN_SIZE") + '.' +rs.getInt("DECIMAL_DIGITS"));
-		boolean required = false;
-		String defaultValue = rs.getString("COLUMN_DEF");
-		if (rs.getString("IS_NULLABLE").equalsIgnoreCase("NO"))
-			required = true;
-		
+	private DBTableColumn addColumn(DBTable t, ColumnInfo ci) {
+		String name = ci.name;
+		DataType empireType = getEmpireDataType(ci.sqlType);
+		double colSize = Double.parseDouble(""+ci.size + '.' +ci.decimalDigits);
+		boolean required = ci.required;
+		String defaultValue = ci.defaultValue;
+
 		// The following is a hack for MySQL which currently gets sent a string "CURRENT_TIMESTAMP" from the Empire-db driver for MySQL.
 		// This will avoid the driver problem because CURRENT_TIMESTAMP in the db will just do the current datetime.
 		// Essentially, Empire-db needs the concept of default values of one type that get mapped to another.
 		// In this case, MySQL "CURRENT_TIMESTAMP" for Types.TIMESTAMP needs to emit from the Empire-db driver the null value and not "CURRENT_TIMESTAMP".
-		if(rs.getInt("DATA_TYPE") == Types.TIMESTAMP && defaultValue != null && defaultValue.equals("CURRENT_TIMESTAMP")){
+		if(ci.sqlType == Types.TIMESTAMP && defaultValue != null && defaultValue.equals("CURRENT_TIMESTAMP")){
 			required = false; // It is in fact not required even though MySQL schema is required because it has a default value. Generally, should Empire-db emit (required && defaultValue != null) to truly determine if a column is required?
 			defaultValue = null; // If null (and required per schema?) MySQL will apply internal default value.
 		}
-		
-		// AUTOINC indicator is not in java.sql.Types but rather meta data from DatabaseMetaData.getColumns()
+
 		// getEmpireDataType() above is not enough to support AUTOINC as it will only return DataType.INTEGER
 		DataType originalType = empireType;
-		ResultSetMetaData metaData = rs.getMetaData();
-		int colCount = metaData.getColumnCount();
-		String colName;
-		for (int i = 1; i <= colCount; i++) {
-			colName = metaData.getColumnName(i);
-			// MySQL matches on IS_AUTOINCREMENT column.
-			// SQL Server matches on TYPE_NAME column with identity somewhere in the string value.
-			if ((colName.equalsIgnoreCase("IS_AUTOINCREMENT") && rs.getString(i).equalsIgnoreCase("YES")) ||
-					(colName.equals("TYPE_NAME") && rs.getString(i).matches(".*(?i:identity).*"))){
-				empireType = DataType.AUTOINC;
-				
-			}
-		}
-		
+		if (ci.autoInc)
+			empireType = DataType.AUTOINC;
+
 		// Move from the return statement below so we can add
 		// some AUTOINC meta data to the column to be used by
 		// the ParserUtil and ultimately the template.
 		log.info("\tCOLUMN:\t" + name + " ("+empireType+")");
 		DBTableColumn col = t.addColumn(name, empireType, colSize, required, defaultValue);
-		
+
 		// We still need to know the base data type for this AUTOINC
 		// because the Record g/setters need to know this, right?
 		// So, let's add it as meta data every time the column is AUTOINC
@@ -410,18 +843,17 @@ public class CodeGenParser {
 		if(empireType.equals(DataType.AUTOINC))
 			col.setAttribute("AutoIncDataType", originalType);
 		return col;
-		
+
 	}
-	
+
 	/**
-	 * Adds DBColumn object to the given DBTable. The DBColumn is created from
-	 * the given ResultSet
+	 * Adds DBColumn object to the given DBView. The DBColumn is created from
+	 * the given column info
 	 */
-	private DBViewColumn addColumn(InMemoryView v, ResultSet rs)
-			throws SQLException {
-		String name = rs.getString("COLUMN_NAME");
-		DataType empireType = getEmpireDataType(rs.getInt("DATA_TYPE"));
-		
+	private DBViewColumn addColumn(InMemoryView v, ColumnInfo ci) {
+		String name = ci.name;
+		DataType empireType = getEmpireDataType(ci.sqlType);
+
 		log.info("\tCOLUMN:\t" + name + " ("+empireType+")");
 		return v.addCol(name, empireType);
 	}
@@ -18,15 +18,31 @@
  */
 package org.apache.empire.db.codegen;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBRelation;
+import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.DBTable;
+import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.DBView;
 import org.apache.empire.db.codegen.util.FileUtils;
 import org.apache.velocity.Template;
@@ -74,6 +90,11 @@ public class CodeGenWriter {
 	public static final String VIEW_TEMPLATE = "View.vm";
 	public static final String BASE_RECORD_TEMPLATE = "BaseRecord.vm";
 	public static final String RECORD_TEMPLATE = "Record.vm";
+	public static final String BEAN_TEMPLATE = "Bean.vm";
+	public static final String ROW_MAPPER_TEMPLATE = "RowMapper.vm";
+
+	// Name of the file that stores the fingerprints for incremental generation
+	public static final String FINGERPRINT_FILE = "codegen.fingerprints";
 
 	// Services
 	private final WriterService writerService;
@@ -81,10 +102,19 @@ public class CodeGenWriter {
 	
 	// Properties
 	private final CodeGenConfig config;
+	private final String templateFolder;
+	private final boolean useClasspathTemplates;
 	private File baseDir;
 	private File tableDir;
 	private File recordDir;
 	private File viewDir;
+	private File beanDir;
+	
+	// Incremental generation
+	private File targetDir;
+	private Properties fingerprints;
+	private Properties newFingerprints;
+	private final Map<String, String> templateSources = new HashMap<String, String>();
 
 	/**
 	 * Constructor
@@ -97,13 +127,15 @@ public class CodeGenWriter {
 		// http://velocity.apache.org/engine/releases/velocity-1.5/developer-guide.html#simpleexampleofacustomlogger
 		engine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM,
 				new CommonsLogLogChute());
-		if(config.getTemplateFolder() == null){
+		this.useClasspathTemplates = (config.getTemplateFolder() == null);
+		if(useClasspathTemplates){
 			engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
 			engine.setProperty("classpath." + RuntimeConstants.RESOURCE_LOADER + ".class", ClasspathResourceLoader.class.getName());
-			config.setTemplateFolder("templates");
+			this.templateFolder = "templates";
 		}else{
-			File templateFolder = new File(config.getTemplateFolder());
-			if(!templateFolder.canRead()){
+			this.templateFolder = config.getTemplateFolder();
+			File folder = new File(templateFolder);
+			if(!folder.canRead()){
 				throw new RuntimeException("Provided template folder missing or not readable: " + config.getTemplateFolder());
 			}
 		}
@@ -146,6 +178,11 @@ public class CodeGenWriter {
 				generatedFiles.add(this.createTableClass(db, table));
 			}
 			generatedFiles.add(this.createRecordClass(db, table));
+			if (config.isCreateRowMappers()) {
+				// create bean and row mapper classes
+				generatedFiles.add(this.createBeanClass(db, table));
+				generatedFiles.add(this.createRowMapperClass(db, table));
+			}
 		}
 		
 		// Create view classes
@@ -155,13 +192,19 @@ public class CodeGenWriter {
 				generatedFiles.add(this.createViewClass(db, view));
 			}
 		}
+		
+		// Remove obsolete files and store fingerprints
+		if (config.isIncrementalGeneration()) {
+			this.removeObsoleteFiles();
+			this.storeFingerprints();
+		}
 		return generatedFiles;
 	}
 
 	
 	private void initDirectories(CodeGenConfig config) {
 		// Create the directory structure for the generated source code.
-		File targetDir = new File(config.getTargetFolder());
+		this.targetDir = new File(config.getTargetFolder());
 		if (!targetDir.exists()) {
 			targetDir.mkdirs();
 		}
@@ -169,8 +212,15 @@ public class CodeGenWriter {
 		// Create the base package directory
 		this.baseDir = FileUtils.getFileFromPackage(targetDir, config.getPackageName());
 
+		// Load the fingerprints of the previous run
+		this.fingerprints = new Properties();
+		this.newFingerprints = new Properties();
+		boolean hasFingerprints = (config.isIncrementalGeneration() && loadFingerprints());
+		
 		// Clean out the directory so old code is wiped out.
-		FileUtils.cleanDirectory(this.baseDir);
+		// In incremental mode the files of the previous run are kept.
+		if (!hasFingerprints)
+			FileUtils.cleanDirectory(this.baseDir);
 
 		// Create the table package directory
 		this.tableDir = FileUtils.getFileFromPackage(targetDir, config.getTablePackageName());
@@ -180,6 +230,10 @@ public class CodeGenWriter {
 		
 		// Create the record package directory
 		this.viewDir = FileUtils.getFileFromPackage(targetDir, config.getViewPackageName());
+		
+		// Create the bean package directory
+		if (config.isCreateRowMappers())
+			this.beanDir = FileUtils.getFileFromPackage(targetDir, config.getBeanPackageName());
 	}
 
 	private File createDatabaseClass(DBDatabase db) {
@@ -196,7 +250,7 @@ public class CodeGenWriter {
 		context.put("nestTables", config.isNestTables());
 		context.put("baseTableClassName", config.getTableBaseName());
 		context.put("nestViews", config.isNestViews());
-		context.put("templateFolder", config.getTemplateFolder());
+		context.put("templateFolder", templateFolder);
 		context.put("baseViewClassName", config.getViewBaseName());
 		context.put("preserveRelationNames", config.isPreserveRelationNames());
 
@@ -280,21 +334,62 @@ public class CodeGenWriter {
 		context
 				.put("createRecordProperties", config
 						.isCreateRecordProperties());
+		context.put("createRecordFieldIndexes", config.isCreateRecordFieldIndexes());
 
 		context.put("table", table);
 		writeFile(file, RECORD_TEMPLATE, context);
 		return file;
 	}
 
+	private File createBeanClass(DBDatabase db, DBTable table) {
+		File file = new File(beanDir, writerService.getBeanClassName(table.getName()) + ".java");
+		VelocityContext context = new VelocityContext();
+		context.put("parser", writerService);
+		context.put("beanPackageName", config.getBeanPackageName());
+		context.put("table", table);
+		writeFile(file, BEAN_TEMPLATE, context);
+		return file;
+	}
+
+	private File createRowMapperClass(DBDatabase db, DBTable table) {
+		File file = new File(beanDir, writerService.getRowMapperClassName(table.getName()) + ".java");
+		VelocityContext context = new VelocityContext();
+		context.put("parser", writerService);
+		context.put("basePackageName", config.getPackageName());
+		// If the tables shall be nested within the database classe, their include path needs to be changed
+		if (config.isNestTables())
+			context.put("tablePackageName", config.getPackageName() + "." + config.getDbClassName());
+		else
+			context.put("tablePackageName", config.getTablePackageName());
+		context.put("beanPackageName", config.getBeanPackageName());
+		context.put("dbClassName", config.getDbClassName());
+		context.put("table", table);
+		writeFile(file, ROW_MAPPER_TEMPLATE, context);
+		return file;
+	}
+
 	private void writeFile(File file, String template,
 			VelocityContext context) {
-		String templatePath = config.getTemplateFolder()+ System.getProperty("file.separator") +template;
+		String templatePath = templateFolder+ System.getProperty("file.separator") +template;
+		String fingerprintKey = null;
+		if (config.isIncrementalGeneration()) {
+			// Skip the file if neither the model nor the template has changed
+			fingerprintKey = getFingerprintKey(file);
+			String fingerprint = createFingerprint(template, context);
+			newFingerprints.setProperty(fingerprintKey, fingerprint);
+			if (file.exists() && fingerprint.equals(fingerprints.getProperty(fingerprintKey))) {
+				log.info("Unchanged " + file);
+				return;
+			}
+		}
 		Writer writer = null;
+		boolean success = false;
 		try {
 			log.info("Writing " + file);
 			Template velocityTemplate = engine.getTemplate(templatePath);
 			writer = new FileWriter(file);
 			velocityTemplate.merge(context, writer);
+			success = true;
 		} catch (IOException e) {
 			log.error(e.getMessage(), e);
 		} catch (ResourceNotFoundException e) {
@@ -305,8 +400,191 @@ public class CodeGenWriter {
 			log.error(e.getMessage(), e);
 		} finally {
 			FileUtils.close(writer);
+			// make sure the file is generated again next time
+			if (!success && fingerprintKey != null)
+				newFingerprints.remove(fingerprintKey);
+		}
+
+	}
+
+	/**
+	 * Loads the fingerprints of the previous run from the target folder
+	 * @return true if the fingerprints have been loaded or false otherwise
+	 */
+	private boolean loadFingerprints() {
+		File file = new File(targetDir, FINGERPRINT_FILE);
+		if (!file.exists())
+			return false;
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			fingerprints.load(in);
+			return true;
+		} catch (IOException e) {
+			log.warn("Unable to read fingerprints from " + file + ". All files will be generated.", e);
+			fingerprints.clear();
+			return false;
+		} finally {
+			FileUtils.close(in);
+		}
+	}
+
+	/**
+	 * Stores the fingerprints of the current run in the target folder
+	 */
+	private void storeFingerprints() {
+		File file = new File(targetDir, FINGERPRINT_FILE);
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			newFingerprints.store(out, "Empire-db code generator fingerprints");
+		} catch (IOException e) {
+			log.error("Unable to write fingerprints to " + file, e);
+		} finally {
+			FileUtils.close(out);
+		}
+	}
+
+	/**
+	 * Removes all files of the previous run which have not been generated by the current run
+	 */
+	private void removeObsoleteFiles() {
+		for (Object key : fingerprints.keySet()) {
+			if (newFingerprints.containsKey(key))
+				continue;
+			File file = new File(targetDir, key.toString());
+			if (file.exists()) {
+				log.info("Removing obsolete " + file);
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the path of the file relative to the target folder
+	 */
+	private String getFingerprintKey(File file) {
+		String path = file.getAbsolutePath();
+		String base = targetDir.getAbsolutePath();
+		if (path.startsWith(base))
+			path = path.substring(base.length() + 1);
+		return path.replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Creates the fingerprint for a file from the template source and the context values
+	 */
+	private String createFingerprint(String template, VelocityContext context) {
+		StringBuilder b = new StringBuilder();
+		b.append(getTemplateSource(template));
+		if (DATABASE_TEMPLATE.equals(template)) {
+			// may include nested tables and views
+			b.append(getTemplateSource(TABLE_TEMPLATE));
+			b.append(getTemplateSource(VIEW_TEMPLATE));
+		}
+		// context values
+		Object[] keys = context.getKeys();
+		String[] names = new String[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			names[i] = String.valueOf(keys[i]);
+		Arrays.sort(names);
+		for (String name : names) {
+			b.append('\n').append(name).append('=');
+			appendFingerprintValue(b, context.get(name));
 		}
+		// create hash
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] hash = md.digest(b.toString().getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (int i = 0; i < hash.length; i++) {
+				hex.append(Character.forDigit((hash[i] >> 4) & 0x0F, 16));
+				hex.append(Character.forDigit(hash[i] & 0x0F, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void appendFingerprintValue(StringBuilder b, Object value) {
+		if (value instanceof DBDatabase) {
+			DBDatabase db = (DBDatabase) value;
+			for (DBTable table : db.getTables())
+				appendFingerprintValue(b, table);
+			for (DBView view : db.getViews())
+				appendFingerprintValue(b, view);
+			for (DBRelation relation : db.getRelations()) {
+				b.append("\nrelation ").append(relation.getName());
+				for (DBRelation.DBReference ref : relation.getReferences())
+					b.append(' ').append(ref.getSourceColumn().getFullName()).append("->").append(ref.getTargetColumn().getFullName());
+			}
+		} else if (value instanceof DBRowSet) {
+			DBRowSet rowset = (DBRowSet) value;
+			b.append("\n").append(rowset.getClass().getName()).append(' ').append(rowset.getName());
+			for (DBColumn col : rowset.getColumns()) {
+				b.append("\n\t").append(col.getName());
+				b.append(' ').append(col.getDataType());
+				b.append(' ').append(col.getSize());
+				b.append(' ').append(col.isRequired());
+				b.append(' ').append(col.isReadOnly());
+				b.append(' ').append(col.getAttribute("AutoIncDataType"));
+				if (col instanceof DBTableColumn)
+					b.append(' ').append(((DBTableColumn) col).getDefaultValue());
+			}
+			if (rowset.getKeyColumns() != null) {
+				b.append("\n\tkey");
+				for (DBColumn col : rowset.getKeyColumns())
+					b.append(' ').append(col.getName());
+			}
+			if (rowset.getTimestampColumn() != null)
+				b.append("\n\ttimestamp ").append(rowset.getTimestampColumn().getName());
+		} else if (value instanceof WriterService) {
+			// naming options used by the writer service
+			b.append(config.getTableNamePrefix()).append('|');
+			b.append(config.getViewNamePrefix()).append('|');
+			b.append(config.getColumnNamePrefix()).append('|');
+			b.append(config.getTableClassPrefix()).append('|');
+			b.append(config.getTableClassSuffix()).append('|');
+			b.append(config.getViewClassPrefix()).append('|');
+			b.append(config.getViewClassSuffix()).append('|');
+			b.append(config.isPreserverCharacterCase());
+		} else {
+			b.append(value);
+		}
+	}
 
+	/**
+	 * Returns the source of a template in order to detect template changes
+	 */
+	private String getTemplateSource(String template) {
+		String source = templateSources.get(template);
+		if (source != null)
+			return source;
+		StringBuilder b = new StringBuilder();
+		BufferedReader reader = null;
+		try {
+			InputStream in;
+			if (useClasspathTemplates)
+				in = getClass().getClassLoader().getResourceAsStream(templateFolder + "/" + template);
+			else
+				in = new FileInputStream(new File(templateFolder, template));
+			if (in != null) {
+				reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+				String line;
+				while ((line = reader.readLine()) != null)
+					b.append(line).append('\n');
+			}
+		} catch (IOException e) {
+			log.warn("Unable to read template " + template, e);
+		} finally {
+			FileUtils.close(reader);
+		}
+		source = b.toString();
+		templateSources.put(template, source);
+		return source;
 	}
 
 }
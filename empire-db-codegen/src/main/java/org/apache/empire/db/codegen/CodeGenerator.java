@@ -100,6 +100,12 @@ public class CodeGenerator {
 		log.info("NestTable=" + config.isNestTables());
 		log.info("NestViews=" + config.isNestViews());
 		log.info("CreateRecordProperties=" + config.isCreateRecordProperties());
+		log.info("CreateRecordFieldIndexes=" + config.isCreateRecordFieldIndexes());
+		log.info("CreateRowMappers=" + config.isCreateRowMappers());
+		log.info("BulkMetadataQueries=" + config.isBulkMetadataQueries());
+		log.info("MetadataThreads=" + config.getMetadataThreads());
+		log.info("ReadIndexes=" + config.isReadIndexes());
+		log.info("IncrementalGeneration=" + config.isIncrementalGeneration());
 	}
 
 }
@@ -21,6 +21,7 @@ package org.apache.empire.db.codegen;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -45,6 +46,14 @@ public class WriterService {
 	private final CodeGenConfig config;
 	private final Set<String> dbrecMethodNames;
 	
+	// Java keywords that might be derived from column names
+	private static final Set<String> javaKeywords = new HashSet<String>(Arrays.asList(new String[] {
+		"abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+		"continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+		"for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+		"new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+		"switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while" }));
+	
 	public WriterService(CodeGenConfig config)
 	{
 		this.dbrecMethodNames = loadDBRecordMethodNames();
@@ -131,6 +140,77 @@ public class WriterService {
 		return deriveClassName(tableName) + "Record";
 	}
 
+	/**
+	 * Returns the java bean class name for a given table name.
+	 * 
+	 * @param tableName the table name
+	 */
+	public String getBeanClassName(String tableName)
+	{
+		return deriveClassName(tableName) + "Bean";
+	}
+
+	/**
+	 * Returns the java row mapper class name for a given table name.
+	 * 
+	 * @param tableName the table name
+	 */
+	public String getRowMapperClassName(String tableName)
+	{
+		return deriveClassName(tableName) + "RowMapper";
+	}
+
+	/**
+	 * Returns the name of the field index constant for a given DBColumn.
+	 * @param column the column
+	 */
+	public String getFieldIndexName(DBColumn column)
+	{
+		return "IDX_" + deriveAttributeName(column.getName()).toUpperCase();
+	}
+
+	/**
+	 * Returns the bean field name for a given DBColumn.
+	 * @param column the column
+	 */
+	public String getBeanFieldName(DBColumn column)
+	{
+		// derive from accessor name
+		String name = deriveRecordMethodName(column.getName(), String.class, true).substring(3);
+		name = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+		if (javaKeywords.contains(name))
+			name += "Value";
+		return name;
+	}
+
+	/**
+	 * Returns a java expression that reads the value of a column from a DBRecordData object
+	 * and converts it to the java type of the column.
+	 * 
+	 * @param column the column
+	 * @param data the name of the DBRecordData variable
+	 * @param index the name of the field index variable
+	 */
+	public String getRecordDataValue(DBColumn column, String data, String index)
+	{
+		Class<?> type = getJavaType(column);
+		if (type == String.class)
+			return data + ".getString(" + index + ")";
+		String nullCheck = "(" + data + ".isNull(" + index + ") ? null : ";
+		if (type == Long.class)
+			return nullCheck + "Long.valueOf(" + data + ".getLong(" + index + ")))";
+		if (type == Double.class)
+			return nullCheck + "Double.valueOf(" + data + ".getDouble(" + index + ")))";
+		if (type == Boolean.class)
+			return nullCheck + "Boolean.valueOf(" + data + ".getBoolean(" + index + ")))";
+		if (type == BigDecimal.class)
+			return nullCheck + data + ".getDecimal(" + index + "))";
+		if (type == Date.class)
+			return nullCheck + data + ".getDateTime(" + index + "))";
+		// no conversion
+		return "(" + type.getName() + ")" + data + ".getValue(" + index + ")";
+	}
+
 	/**
 	 * Returns the "getter" name for a given DBColumn.
 	 * @param column the column
@@ -24,6 +24,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.empire.db.DBColumn;
@@ -37,10 +44,11 @@ import org.junit.Test;
 
 public class CodeGenParserTest {
     private transient CodeGenParser parser;
+    private transient CodeGenConfig config;
 
     @Before
     public void setUp() throws Exception {
-        final CodeGenConfig config = new CodeGenConfig();
+        config = new CodeGenConfig();
         config.init("src/test/resources/testconfig.xml");
         config.setDbSchema("PUBLIC");
         config.setDbTablePattern("DEPARTMENTS,EMPLOYEES,ORGANIZATIONS");
@@ -49,7 +57,75 @@ public class CodeGenParserTest {
 
     @Test
     public void testLoadDbModel() {
-        final DBDatabase db = parser.loadDbModel();
+        checkDbModel(parser.loadDbModel());
+    }
+
+    @Test
+    public void testLoadDbModelBulk() {
+        config.setBulkMetadataQueries(true);
+        checkDbModel(parser.loadDbModel());
+    }
+
+    @Test
+    public void testLoadDbModelBulkEmptyResult() {
+        // some drivers return no keys instead of failing if no table name is given
+        config.setBulkMetadataQueries(true);
+        parser = new CodeGenParser(config) {
+            @Override
+            protected Connection openJDBCConnection(CodeGenConfig config) throws SQLException {
+                return wrapMetaData(super.openJDBCConnection(config));
+            }
+        };
+        checkDbModel(parser.loadDbModel());
+    }
+
+    @Test
+    public void testLoadDbModelParallel() {
+        config.setMetadataThreads(3);
+        checkDbModel(parser.loadDbModel());
+        // bulk queries on several connections
+        config.setBulkMetadataQueries(true);
+        checkDbModel(parser.loadDbModel());
+    }
+
+    /**
+     * Returns a connection whose metadata returns no primary and foreign keys if no table name is given
+     */
+    private static Connection wrapMetaData(final Connection conn) {
+        final DatabaseMetaData meta;
+        try {
+            meta = conn.getMetaData();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        final DatabaseMetaData metaProxy = (DatabaseMetaData) Proxy.newProxyInstance(CodeGenParserTest.class.getClassLoader(),
+            new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    String name = method.getName();
+                    if ((name.equals("getPrimaryKeys") || name.equals("getImportedKeys")) && args[2]==null)
+                        args[2] = "NO_SUCH_TABLE";
+                    return invokeTarget(meta, method, args);
+                }
+            });
+        return (Connection) Proxy.newProxyInstance(CodeGenParserTest.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("getMetaData"))
+                        return metaProxy;
+                    return invokeTarget(conn, method, args);
+                }
+            });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void checkDbModel(final DBDatabase db) {
 
         final DBTable departments = db.getTable("DEPARTMENTS");
         final DBTable employees = db.getTable("EMPLOYEES");
@@ -74,5 +150,7 @@ public class CodeGenParserTest {
 
         assertThat(salary.getDataType(), is(DECIMAL));
         assertThat(salary.getSize(), is(121.212));
+        
+        assertEquals("Expected primary key on EMPLOYEES.", 1, employees.getKeyColumns().length);
     }
 }
@@ -19,11 +19,14 @@
 package org.apache.empire.db.codegen;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.List;
 
+import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBTable;
 import org.apache.empire.db.codegen.util.FileUtils;
 import org.junit.After;
 import org.junit.Test;
@@ -98,4 +101,42 @@ public class CodeGenTest
         
     }
 
+    @Test
+    @SuppressWarnings("serial")
+    public void testIncrementalCodeGen()
+    {
+        CodeGenConfig config = new CodeGenConfig();
+        config.init("testconfig.xml", true);
+        config.setIncrementalGeneration(true);
+        
+        DBDatabase db = new DBDatabase() {
+        };
+        DBTable table = new DBTable("ITEMS", db);
+        table.addColumn("ID", DataType.INTEGER, 0, true);
+        
+        List<File> files = new CodeGenWriter(config).generateCodeFiles(db);
+        assertTrue(new File(config.getTargetFolder(), CodeGenWriter.FINGERPRINT_FILE).exists());
+        
+        // mark all files
+        for(File file:files){
+        	assertTrue(file.setLastModified(1000L));
+        }
+        
+        // nothing has changed
+        files = new CodeGenWriter(config).generateCodeFiles(db);
+        for(File file:files){
+        	assertEquals(file.toString(), 1000L, file.lastModified());
+        }
+        
+        // add a column: only the table, record and database classes must be written
+        table.addColumn("NAME", DataType.TEXT, 40, false);
+        files = new CodeGenWriter(config).generateCodeFiles(db);
+        int written = 0;
+        for(File file:files){
+        	if (file.lastModified()!=1000L)
+        		written++;
+        }
+        assertEquals(config.isNestTables() ? 2 : 3, written);
+    }
+
 }
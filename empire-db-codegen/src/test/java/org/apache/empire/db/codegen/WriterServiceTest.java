@@ -66,4 +66,35 @@ public class WriterServiceTest {
 		assertEquals("setName", service.getMutatorName(col));		
 	}
 
+	@Test
+	public void testGetBeanFieldName(){
+		CodeGenConfig config = new CodeGenConfig();
+		WriterService service = new WriterService(config);
+		
+		DBTableColumn col = Mockito.mock(DBTableColumn.class);
+		Mockito.when(col.getDataType()).thenReturn(DataType.TEXT);
+		Mockito.when(col.getName()).thenReturn("FIRST_NAME");
+		assertEquals("firstName", service.getBeanFieldName(col));
+		assertEquals("IDX_FIRST_NAME", service.getFieldIndexName(col));
+		
+		DBTableColumn col2 = Mockito.mock(DBTableColumn.class);
+		Mockito.when(col2.getDataType()).thenReturn(DataType.TEXT);
+		Mockito.when(col2.getName()).thenReturn("CASE");
+		assertEquals("caseValue", service.getBeanFieldName(col2));
+	}
+	
+	@Test
+	public void testGetRecordDataValue(){
+		CodeGenConfig config = new CodeGenConfig();
+		WriterService service = new WriterService(config);
+		
+		DBTableColumn col = Mockito.mock(DBTableColumn.class);
+		Mockito.when(col.getDataType()).thenReturn(DataType.TEXT);
+		assertEquals("data.getString(i)", service.getRecordDataValue(col, "data", "i"));
+		
+		DBTableColumn col2 = Mockito.mock(DBTableColumn.class);
+		Mockito.when(col2.getDataType()).thenReturn(DataType.INTEGER);
+		assertEquals("(data.isNull(i) ? null : Long.valueOf(data.getLong(i)))", service.getRecordDataValue(col2, "data", "i"));
+	}
+
 }
@@ -66,6 +66,9 @@ public class AppStartupListener implements SystemEventListener
         else if (event instanceof PreDestroyApplicationEvent)
         {
             log.info("Processing PreDestroyApplicationEvent");
+            Application app = ((PreDestroyApplicationEvent) event).getApplication();
+            if (app instanceof FacesApplication)
+                ((FacesApplication)app).shutdownAsyncExecutor();
         }
 
     }
@@ -33,12 +33,17 @@ import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.exceptions.NotSupportedException;
+import org.apache.empire.jsf2.utils.ResolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DBELResolver extends ELResolver
 {
     private static final Logger log = LoggerFactory.getLogger(DBELResolver.class);
+
+    // Caches for resolved columns and rowsets
+    private static final ResolverCache<DBColumnExpr> columnCache = new ResolverCache<DBColumnExpr>();
+    private static final ResolverCache<DBRowSet>     rowsetCache = new ResolverCache<DBRowSet>();
     
     @Override
     public Class<?> getCommonPropertyType(ELContext context, Object base)
@@ -72,9 +77,15 @@ public class DBELResolver extends ELResolver
         if (base instanceof DBRowSet)
         {   // Find matching column
             String   name = StringUtils.toString(property);
-            DBColumnExpr column = ((DBRowSet)base).getColumn(name);
+            DBColumnExpr column = columnCache.get(base, name);
             if (column==null)
-                column = findExpressionField(base, name); 
+            {   // Not yet resolved
+                column = ((DBRowSet)base).getColumn(name);
+                if (column==null)
+                    column = findExpressionField(base, name); 
+                if (column!=null)
+                    columnCache.put(base, name, column);
+            }
             if (column!=null)
                 context.setPropertyResolved(true); 
             else
@@ -85,7 +96,13 @@ public class DBELResolver extends ELResolver
         else if (base instanceof DBDatabase)
         {   // Lookup RowSet
             String   name = StringUtils.toString(property);
-            DBRowSet rset = ((DBDatabase)base).getRowSet(name);
+            DBRowSet rset = rowsetCache.get(base, name);
+            if (rset==null)
+            {   // Not yet resolved
+                rset = ((DBDatabase)base).getRowSet(name);
+                if (rset!=null)
+                    rowsetCache.put(base, name, rset);
+            }
             if (rset!=null)
                 context.setPropertyResolved(true);
             else
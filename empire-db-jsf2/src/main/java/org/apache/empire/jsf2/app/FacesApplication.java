@@ -20,11 +20,15 @@ package org.apache.empire.jsf2.app;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
-import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.faces.application.FacesMessage;
 import javax.faces.application.FacesMessage.Severity;
@@ -38,6 +42,8 @@ import javax.sql.DataSource;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBConnectionProvider;
+import org.apache.empire.db.DBConnectionScope;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.InvalidArgumentException;
@@ -61,9 +67,18 @@ public abstract class FacesApplication extends ApplicationImpl
 
     private String              webRoot               = null;
 
+    protected int               asyncThreadCount      = 4;
+
+    protected int               asyncQueueSize        = 100;
+
+    private volatile ExecutorService asyncExecutor    = null;
+
+    private volatile DBConnectionProvider connectionProvider = null;
+
     protected FacesApplication(AppStartupListener startupListener)
     { // subscribe
         subscribeToEvent(javax.faces.event.PostConstructApplicationEvent.class, startupListener);
+        subscribeToEvent(javax.faces.event.PreDestroyApplicationEvent.class, startupListener);
     }
 
     protected FacesApplication()
@@ -316,6 +331,79 @@ public abstract class FacesApplication extends ApplicationImpl
         return null;
     }
 
+    /**
+     * Returns the connection provider used to obtain and release connections.
+     * 
+     * @return the connection provider
+     */
+    public DBConnectionProvider getConnectionProvider()
+    {
+        DBConnectionProvider provider = connectionProvider;
+        if (provider == null)
+        {   // create once
+            synchronized (this)
+            {
+                provider = connectionProvider;
+                if (provider == null)
+                    connectionProvider = provider = createConnectionProvider();
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * Creates the connection provider.
+     * By default connections are obtained by getConnection(DBDatabase) and released by releaseConnection(DBDatabase, Connection, boolean).
+     * For read-only requests connections are obtained from getAppReadOnlyDataSource() if it returns a data source.
+     * Override this to plug in a different connection provider.
+     * 
+     * @return the connection provider
+     */
+    protected DBConnectionProvider createConnectionProvider()
+    {
+        return new DBConnectionProvider() {
+            @Override
+            public Connection getConnection(DBDatabase db, boolean readOnly)
+            {
+                DataSource ds = (readOnly ? getAppReadOnlyDataSource(db) : null);
+                if (ds != null)
+                    return openConnection(ds, true);
+                return FacesApplication.this.getConnection(db);
+            }
+
+            @Override
+            public void releaseConnection(DBDatabase db, Connection conn, boolean commit)
+            {
+                FacesApplication.this.releaseConnection(db, conn, commit);
+            }
+        };
+    }
+
+    /**
+     * Returns the data source for read-only connections, e.g. a replica of the database.
+     * By default this returns null, in which case read-only requests use connections obtained by getConnection(DBDatabase).
+     * 
+     * @param db the database
+     * @return the read-only data source or null
+     */
+    protected DataSource getAppReadOnlyDataSource(DBDatabase db)
+    {
+        return null;
+    }
+
+    /**
+     * Returns whether the current request will only execute queries.
+     * If true, connections for the request are obtained as read-only connections.
+     * By default all requests are treated as read-write requests.
+     * 
+     * @param fc the FacesContext
+     * @return true if the request is read-only
+     */
+    protected boolean isReadOnlyRequest(FacesContext fc)
+    {
+        return false;
+    }
+
     /**
      * returns a connection from the connection pool
      * 
@@ -323,18 +411,7 @@ public abstract class FacesApplication extends ApplicationImpl
      */
     protected Connection getConnection(DBDatabase db)
     {
-        // Get From Pool
-        try
-        { // Obtain a connection
-            Connection conn = getAppDataSource(db).getConnection();
-            conn.setAutoCommit(false);
-            return conn;
-        }
-        catch (SQLException e)
-        {
-            log.error("Failed to get connection from pool.", e);
-            throw new InternalException(e);
-        }
+        return openConnection(getAppDataSource(db), false);
     }
 
     /**
@@ -342,39 +419,68 @@ public abstract class FacesApplication extends ApplicationImpl
      */
     protected void releaseConnection(DBDatabase db, Connection conn, boolean commit)
     {
+        if (conn == null)
+            return;
         try
-        { // release connection
-            if (conn == null)
-            {
-                return;
-            }
-            // Commit or rollback connection depending on the exit code
+        {   // Commit or rollback connection depending on the exit code
             if (commit)
-            { // success: commit all changes
                 db.commit(conn);
-                log.debug("REQUEST {}: commited.");
-            }
             else
-            { // failure: rollback all changes
                 db.rollback(conn);
-                log.debug("REQUEST {}: rolled back.");
+        }
+        finally
+        {   // Release Connection
+            try
+            {   // reset before returning to pool
+                if (conn.isReadOnly())
+                    conn.setReadOnly(false);
+                conn.close();
+            }
+            catch (SQLException e)
+            {
+                log.error("Error releasing connection", e);
             }
-            // Release Connection
-            conn.close();
-            // done
-            if (log.isDebugEnabled())
-                log.debug("REQUEST {}: returned connection to pool.");
+        }
+    }
+
+    private Connection openConnection(DataSource ds, boolean readOnly)
+    {
+        try
+        {   // Obtain a connection
+            Connection conn = ds.getConnection();
+            conn.setAutoCommit(false);
+            if (readOnly)
+                conn.setReadOnly(true);
+            return conn;
         }
         catch (SQLException e)
         {
-            log.error("Error releasing connection", e);
-            e.printStackTrace();
+            log.error("Failed to get connection from pool.", e);
+            throw new InternalException(e);
         }
     }
 
+    /**
+     * Returns the connection scope of the current request
+     * 
+     * @param fc the FacesContext
+     * @param create true if the scope should be created if it does not exist
+     * @return the connection scope or null
+     */
+    protected DBConnectionScope getConnectionScope(FacesContext fc, boolean create)
+    {
+        DBConnectionScope scope = (DBConnectionScope) FacesUtils.getRequestAttribute(fc, CONNECTION_ATTRIBUTE);
+        if (scope == null && create)
+        {   // Connections are acquired on first use
+            scope = new DBConnectionScope(getConnectionProvider(), isReadOnlyRequest(fc));
+            FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, scope);
+        }
+        return scope;
+    }
+
     /**
      * Returns a connection for the current Request
-     * Method should only be called by BeforeRestoreViewListener once per request!
+     * The connection is obtained on first access and released by releaseAllConnections() at the end of the request
      */
     public Connection getConnectionForRequest(FacesContext fc, DBDatabase db)
     {
@@ -382,23 +488,7 @@ public abstract class FacesApplication extends ApplicationImpl
             throw new InvalidArgumentException("FacesContext", fc);
         if (db == null)
             throw new InvalidArgumentException("DBDatabase", db);
-        // Get Conneciton map
-        @SuppressWarnings("unchecked")
-        Map<DBDatabase, Connection> connMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, CONNECTION_ATTRIBUTE);
-        if (connMap != null && connMap.containsKey(db))
-            return connMap.get(db);
-        // Pooled Connection
-        Connection conn = getConnection(db);
-        if (conn == null)
-            return null;
-        // Add to map
-        if (connMap == null)
-        {
-            connMap = new HashMap<DBDatabase, Connection>();
-            FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, connMap);
-        }
-        connMap.put(db, conn);
-        return conn;
+        return getConnectionScope(fc, true).getConnection(db);
     }
 
     /**
@@ -409,16 +499,15 @@ public abstract class FacesApplication extends ApplicationImpl
      */
     public void releaseAllConnections(final FacesContext fc, boolean commit)
     {
-        @SuppressWarnings("unchecked")
-        Map<DBDatabase, Connection> connMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, CONNECTION_ATTRIBUTE);
-        if (connMap != null)
-        { // Walk the connection map
-            for (Map.Entry<DBDatabase, Connection> e : connMap.entrySet())
-            {
-                releaseConnection(e.getKey(), e.getValue(), commit);
+        DBConnectionScope scope = getConnectionScope(fc, false);
+        if (scope != null)
+        { // Release all connections
+            try {
+                scope.releaseAll(commit);
+            } finally {
+                // remove from request map
+                FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, null);
             }
-            // remove from request map
-            FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, null);
         }
     }
 
@@ -429,15 +518,9 @@ public abstract class FacesApplication extends ApplicationImpl
 
     public void releaseConnection(final FacesContext fc, DBDatabase db, boolean commit)
     {
-        @SuppressWarnings("unchecked")
-        Map<DBDatabase, Connection> connMap = (Map<DBDatabase, Connection>) FacesUtils.getRequestAttribute(fc, CONNECTION_ATTRIBUTE);
-        if (connMap != null && connMap.containsKey(db))
-        { // Walk the connection map
-            releaseConnection(db, connMap.get(db), commit);
-            connMap.remove(db);
-            if (connMap.size() == 0)
-                FacesUtils.setRequestAttribute(fc, CONNECTION_ATTRIBUTE, null);
-        }
+        DBConnectionScope scope = getConnectionScope(fc, false);
+        if (scope != null)
+            scope.release(db, commit);
     }
 
     public void releaseConnection(final FacesContext fc, DBDatabase db)
@@ -445,4 +528,89 @@ public abstract class FacesApplication extends ApplicationImpl
         releaseConnection(fc, db, !hasError(fc));
     }
 
+    /**
+     * Returns a separate read-only connection for asynchronous loading of page data.
+     * The connection must be released by calling releaseAsyncConnection()
+     * 
+     * @param db the database for which to obtain a connection
+     * @return the connection
+     */
+    public Connection getAsyncConnection(DBDatabase db)
+    {
+        return getConnectionProvider().getConnection(db, true);
+    }
+
+    /**
+     * Releases a connection obtained by getAsyncConnection()
+     * 
+     * @param db the database
+     * @param conn the connection
+     */
+    public void releaseAsyncConnection(DBDatabase db, Connection conn)
+    {
+        if (conn == null)
+            return;
+        getConnectionProvider().releaseConnection(db, conn, false);
+    }
+
+    /**
+     * Returns the executor used for asynchronous loading of page data.
+     * 
+     * @return the executor
+     */
+    public ExecutorService getAsyncExecutor()
+    {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null)
+        {   // create once
+            synchronized (this)
+            {
+                executor = asyncExecutor;
+                if (executor == null)
+                    asyncExecutor = executor = createAsyncExecutor();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Creates the executor used for asynchronous loading of page data.
+     * By default a pool of asyncThreadCount daemon threads with a queue of asyncQueueSize tasks is created. 
+     * If the queue is full tasks are executed by the requesting thread.
+     * Such tasks are not bounded by the asynchronous load timeout of the page, as the requesting thread cannot stop waiting for them.
+     * 
+     * @return the executor
+     */
+    protected ExecutorService createAsyncExecutor()
+    {
+        log.info("Creating async executor with {} threads.", asyncThreadCount);
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "empire-async-" + threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        return new ThreadPoolExecutor(asyncThreadCount, asyncThreadCount, 60L, TimeUnit.SECONDS,
+                                      new ArrayBlockingQueue<Runnable>(asyncQueueSize), threadFactory,
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Shuts down the executor used for asynchronous loading of page data.
+     * This is called when the application is destroyed.
+     */
+    public synchronized void shutdownAsyncExecutor()
+    {
+        if (asyncExecutor != null)
+        {   asyncExecutor.shutdownNow();
+            asyncExecutor = null;
+        }
+    }
+
 }
@@ -36,7 +36,6 @@ import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.jsf2.controls.InputControl;
-import org.apache.empire.jsf2.utils.StringResponseWriter;
 import org.apache.empire.jsf2.utils.TagEncodingHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -153,17 +152,8 @@ public class LinkTag extends UIOutput implements NamingContainer
         {
             InputControl control = helper.getInputControl();
             InputControl.ValueInfo vi = helper.getValueInfo(FacesContext.getCurrentInstance());
-            // render value
-            StringResponseWriter srw = new StringResponseWriter();
-            try
-            {
-                control.renderValue(vi, srw);
-            }
-            catch (IOException e)
-            {   // Error rendering value
-                log.error("Failed to render value for "+vi.getColumn().getName()+" error is:"+e.getMessage(), e);
-            }
-            return srw.toString();
+            // plain text (escaped by the link renderer)
+            return control.getValueText(vi);
         }
         else
         {   // An ordinary link
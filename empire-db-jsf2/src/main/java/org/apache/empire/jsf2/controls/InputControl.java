@@ -29,6 +29,7 @@ import javax.faces.component.UIInput;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
 
+import org.apache.empire.commons.HtmlUtils;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.Options;
 import org.apache.empire.commons.StringUtils;
@@ -235,6 +236,17 @@ public abstract class InputControl
         writer.append((StringUtils.isEmpty(text) ? "&nbsp;" : text));
     }
 
+    /**
+     * Returns the value formated as plain text without html escaping.<br/>
+     * Use this if the text is passed to a component whose renderer escapes it. 
+     * @param vi the value info
+     * @return the formated value
+     */
+    public String getValueText(ValueInfo vi)
+    {
+        return formatValue(vi.getValue(true), vi, false);
+    }
+
     /* Input */
     public void renderInput(UIComponent comp, InputInfo ii, FacesContext context, boolean encode)
         throws IOException
@@ -488,6 +500,19 @@ public abstract class InputControl
      * @return the formatted value 
      */
     protected String formatValue(Object value, ValueInfo vi)
+    {
+        return formatValue(value, vi, true);
+    }
+
+    /**
+     * Returns the value formated as a string
+     * @param value the value to be formatted
+     * @param vi Meta-information about the value
+     * @param escape true if text should be escaped for html or false if the text is escaped by the renderer
+     *
+     * @return the formatted value 
+     */
+    protected String formatValue(Object value, ValueInfo vi, boolean escape)
     {
         // Lookup and Print value
         Options options = vi.getOptions();
@@ -504,7 +529,7 @@ public abstract class InputControl
             value = getFormatOption(vi, FORMAT_NULL, FORMAT_NULL_ATTRIBUTE);
         // Convert to String
         String s = StringUtils.valueOf(value);
-        if (hasFormatOption(vi, "noencode"))
+        if (!escape || hasFormatOption(vi, "noencode"))
             return s;
         // Encode Html
         return escapeHTML(s);
@@ -528,8 +553,7 @@ public abstract class InputControl
      */
     protected String escapeHTML(String text)
     {
-        // TODO
-        return text;
+        return HtmlUtils.escapeHtml(text);
     }
     
     /**
@@ -136,13 +136,13 @@ public class SelectInputControl extends InputControl
     }
 
     @Override
-    protected String formatValue(Object value, ValueInfo vi)
+    protected String formatValue(Object value, ValueInfo vi, boolean escape)
     {
         // Lookup and Print value
         if (vi.getOptions()==null)
         {
             log.warn("Select field {} has no Option list attached!", vi.getColumn().getName());
-            return super.formatValue(value, vi);
+            return super.formatValue(value, vi, escape);
         }
         // Check for Abbreviation
         if (hasFormatOption(vi, "short"))
@@ -161,7 +161,7 @@ public class SelectInputControl extends InputControl
                 }
             }
         }
-        return super.formatValue(value, vi);
+        return super.formatValue(value, vi, escape);
     }
     
     /*
@@ -25,8 +25,10 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.Currency;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.faces.component.UIComponent;
 import javax.faces.component.html.HtmlInputText;
@@ -55,6 +57,9 @@ public class TextInputControl extends InputControl
     public static final String DATE_FORMAT = "date-format:";
     public static final String DATE_FORMAT_ATTRIBUTE = "format:date";
     
+    // Integer formats by locale (NumberFormat is not thread-safe)
+    private static final ThreadLocal<Map<Locale, NumberFormat>> integerFormats = new ThreadLocal<Map<Locale, NumberFormat>>();
+    
     private Class<? extends javax.faces.component.html.HtmlInputText> inputComponentClass;
     
     public TextInputControl(String name, Class<? extends HtmlInputText> inputComponentClass)
@@ -188,7 +193,7 @@ public class TextInputControl extends InputControl
     // ------- formatting -------
 
     @Override
-    protected String formatValue(Object value, ValueInfo vi)
+    protected String formatValue(Object value, ValueInfo vi, boolean escape)
     {
         // Lookup and Print value
         Options options = vi.getOptions();
@@ -205,7 +210,7 @@ public class TextInputControl extends InputControl
         {   // Try to use default value
             Object nullValue = getFormatOption(vi, FORMAT_NULL, FORMAT_NULL_ATTRIBUTE);
             if (nullValue!=null)
-                return formatValue(nullValue, vi);
+                return formatValue(nullValue, vi, escape);
             // Empty String
             return "";
         }
@@ -215,15 +220,14 @@ public class TextInputControl extends InputControl
         if (dataType == DataType.TEXT || dataType == DataType.UNKNOWN)
         { // String
             String s = String.valueOf(value);
-            if (hasFormatOption(vi, "noencode"))
+            if (!escape || hasFormatOption(vi, "noencode"))
                 return s;
             // Encoded text
             return escapeHTML(s);
         }
         if (dataType == DataType.INTEGER || dataType == DataType.AUTOINC)
         { // Integer
-            NumberFormat nf = NumberFormat.getIntegerInstance(vi.getLocale());
-            nf.setGroupingUsed(false);
+            NumberFormat nf = getIntegerFormat(vi.getLocale());
             return nf.format(value);
         }
         if (dataType == DataType.DECIMAL || dataType == DataType.FLOAT)
@@ -244,7 +248,8 @@ public class TextInputControl extends InputControl
          *  }
          */
         // Convert to String
-        return escapeHTML(String.valueOf(value));
+        String s = String.valueOf(value);
+        return (escape ? escapeHTML(s) : s);
     }
 
     /*
@@ -272,12 +277,25 @@ public class TextInputControl extends InputControl
         Options options = ii.getOptions();
         if (options != null && !options.isEmpty())
             return value;
-        // Format
-        return formatValue(value, ii);
+        // Format (the input value is escaped by the renderer)
+        return formatValue(value, ii, false);
     }
     
     // ------- render -------
     
+    @Override
+    public String getValueText(ValueInfo vi)
+    {
+        String text = super.getValueText(vi);
+        if (StringUtils.isEmpty(text))
+            return text;
+        // unit?
+        String unit = getUnitString(vi);
+        if (StringUtils.isNotEmpty(unit))
+            text += " " + unit;
+        return text;
+    }
+    
     @Override
     public void renderValue(ValueInfo vi, ResponseWriter writer)
         throws IOException
@@ -415,6 +433,28 @@ public class TextInputControl extends InputControl
         return DataType.UNKNOWN;
     }
     
+    /**
+     * Returns the format for integer values without grouping.<br/>
+     * The format is created once per thread and locale.
+     * @param locale the locale
+     * @return the integer format
+     */
+    protected NumberFormat getIntegerFormat(Locale locale)
+    {
+        Map<Locale, NumberFormat> formats = integerFormats.get();
+        if (formats == null)
+        {   formats = new HashMap<Locale, NumberFormat>();
+            integerFormats.set(formats);
+        }
+        NumberFormat nf = formats.get(locale);
+        if (nf == null)
+        {   nf = NumberFormat.getIntegerInstance(locale);
+            nf.setGroupingUsed(false);
+            formats.put(locale, nf);
+        }
+        return nf;
+    }
+    
     protected NumberFormat getNumberFormat(DataType dataType, Locale locale, Column column)
     {
         if (column==null)
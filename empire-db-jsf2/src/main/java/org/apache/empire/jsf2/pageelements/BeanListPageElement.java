@@ -18,8 +18,14 @@
  */
 package org.apache.empire.jsf2.pageelements;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.faces.event.ValueChangeEvent;
@@ -28,14 +34,18 @@ import org.apache.commons.beanutils.BeanUtils;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
+import org.apache.empire.data.ColumnExpr;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBReader;
 import org.apache.empire.db.DBRecordData;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.expr.order.DBOrderByExpr;
+import org.apache.empire.exceptions.BeanInstantiationException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.NotSupportedException;
 import org.apache.empire.exceptions.ObjectNotValidException;
@@ -57,6 +67,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     public static final String  IDPARAM_PROPERTY     = "idParam";
     
     public static final String  NO_RESULT_ATTRIBUTE  = "noQueryResult";
+    
+    public static final String  TOTAL_COUNT_ALIAS    = "TOTAL_ITEM_COUNT";
 
     private ListTableInfo       listTableInfo        = null;
 
@@ -67,6 +79,27 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     protected boolean           defaultSortAscending = true;
 
     protected DBOrderByExpr     secondarySortOrder   = null;
+
+    protected boolean           singleQueryPaging    = false;
+
+    protected long              itemCountCacheTime   = 0;
+    
+    /**
+     * A cached item count
+     */
+    private static class CachedItemCount implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int  count;
+        private final long time;
+
+        public CachedItemCount(int count)
+        {
+            this.count = count;
+            this.time = System.currentTimeMillis();
+        }
+    }
     
     /**
      * Extended ListTableInfo
@@ -74,8 +107,12 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     public static class BeanListTableInfo extends ListTableInfo
     {
         private static final long serialVersionUID = 1L;
+        
+        private static final int  MAX_CACHED_COUNTS = 10;
 
         private DBCommand         queryCmd         = null;
+        
+        private Map<String, CachedItemCount> itemCountCache = null;
 
         public DBCommand getQueryCmd()
         {
@@ -86,6 +123,49 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         {
             this.queryCmd = queryCmd;
         }
+        
+        /**
+         * Returns the cached item count for a query
+         * @param key the key identifying the query (without sort order)
+         * @param maxAge the maximum age of the cached value in milliseconds 
+         * @return the item count or -1 if no count is available
+         */
+        public int getCachedItemCount(String key, long maxAge)
+        {
+            CachedItemCount cached = (itemCountCache!=null ? itemCountCache.get(key) : null);
+            if (cached==null || System.currentTimeMillis() - cached.time > maxAge)
+                return -1;
+            return cached.count;
+        }
+        
+        /**
+         * Stores the item count of a query
+         * @param key the key identifying the query (without sort order)
+         * @param count the item count
+         */
+        public void setCachedItemCount(String key, int count)
+        {
+            if (itemCountCache==null)
+            {   // keep only the most recently used counts
+                itemCountCache = new LinkedHashMap<String, CachedItemCount>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CachedItemCount> eldest)
+                    {
+                        return size() > MAX_CACHED_COUNTS;
+                    }
+                };
+            }
+            itemCountCache.put(key, new CachedItemCount(count));
+        }
+        
+        /**
+         * Removes all cached item counts
+         */
+        public void clearCachedItemCounts()
+        {
+            itemCountCache = null;
+        }
     }
 
     public BeanListPageElement(Page page, Class<T> beanClass, DBColumn defaultSortColumn, String propertyName)
@@ -129,6 +209,36 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         }
     }
 
+    @Override
+    protected Runnable prepareAsyncLoad(boolean init)
+    {
+        ListTableInfo lti = getTableInfo();
+        boolean load = (init ? (lti.isValid() && items == null) : (lti.isValid() && lti.isModified()));
+        if (!load)
+            return null;
+        // read items on worker thread
+        return new Runnable() {
+            @Override
+            public void run()
+            {
+                readItems();
+            }
+        };
+    }
+
+    @Override
+    protected void completeAsyncLoad(boolean init)
+    {
+        try
+        {
+            prepareItems();
+        }
+        finally
+        {
+            updatePagination(init);
+        }
+    }
+
     @Override
     public int getItemCount()
     {
@@ -160,6 +270,40 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         this.secondarySortOrder = secondarySortOrder;
     }
 
+    public boolean isSingleQueryPaging()
+    {
+        return singleQueryPaging;
+    }
+
+    /**
+     * Enables or disables single query paging.<br/>
+     * If enabled, a page is loaded with a single statement that limits the rows on the database
+     * and - if the database supports window functions - also returns the total item count (using COUNT(*) OVER()).<br/>
+     * For databases that don't support window functions and for distinct queries the item count is determined by a separate count query.
+     * Beans are created using their default constructor.
+     * @param singleQueryPaging true to enable single query paging
+     */
+    public void setSingleQueryPaging(boolean singleQueryPaging)
+    {
+        this.singleQueryPaging = singleQueryPaging;
+    }
+
+    public long getItemCountCacheTime()
+    {
+        return itemCountCacheTime;
+    }
+
+    /**
+     * Sets the time for which item counts are cached.<br/>
+     * If greater than 0 the item count is not determined again when the list is initialized
+     * with the same query conditions within the given time.  
+     * @param itemCountCacheTime the cache time in milliseconds or 0 to disable caching
+     */
+    public void setItemCountCacheTime(long itemCountCacheTime)
+    {
+        this.itemCountCacheTime = itemCountCacheTime;
+    }
+
     /** session scoped properties **/
     @Override
     public ListTableInfo getTableInfo()
@@ -198,15 +342,24 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
      */
     public void initItems(DBCommand queryCmd, DBCommand countCmd, int pageSize)
     {
+        // Keep cached item counts
+        BeanListTableInfo prev = (BeanListTableInfo) getTableInfo();
         clearItems();
         // Init List Table Info
         BeanListTableInfo lti = (BeanListTableInfo) getTableInfo();
+        lti.itemCountCache = prev.itemCountCache;
         lti.setQueryCmd(queryCmd);
         if (pageSize > 0)
         { // Negative count means: loadItems should load all items.
-            countCmd.clearSelect();
-            countCmd.select(rowset.count());
-            int count = rowset.getDatabase().querySingleInt(countCmd.getSelect(), countCmd.getParamValues(), 0, getConnection(rowset));
+            int count;
+            if (singleQueryPaging && isTotalCountSelectable(queryCmd))
+            {   // The count is determined when the first page is loaded 
+                count = Math.max(lti.getCachedItemCount(getItemCountKey(queryCmd), itemCountCacheTime), 0);
+            }
+            else
+            {   // Count now
+                count = queryItemCount(countCmd);
+            }
             lti.init(count, pageSize);
         }
         else
@@ -256,6 +409,23 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     }
 
     private void loadItems(boolean initScrollbar)
+    {
+        try
+        {
+            readItems();
+            prepareItems();
+        }
+        finally
+        {
+            updatePagination(initScrollbar);
+        }
+    }
+
+    /**
+     * Reads the items from the database.<br/>
+     * Must not access the FacesContext as it may be called on a worker thread.
+     */
+    private void readItems()
     {
         // DBReader
         BeanListTableInfo lti = (BeanListTableInfo) getTableInfo();
@@ -275,9 +445,6 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 lti.setSortOrderChanged(false);
             }
 
-            // DBReader.open immer nur innerhalb eines try {} finally {} blocks!
-            r.open(queryCmd, getConnection(queryCmd));
-
             // get position from the session
             int position = 0;
             int maxItems = 1000;
@@ -292,22 +459,41 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 { // position > count of entries is not possible, set to max
                     position = lti.getItemCount() - lti.getPageSize();
                 }
-                if (position > 0)
-                { // we are not at position 0, "skipping" entries
-                    r.skipRows(position);
-                }
-                else
+                if (position < 0)
                     position = 0;
                 // maxItems
                 maxItems = lti.getPageSize();
             }
 
-            // Read all Items
-            items = r.getBeanList(beanClass, maxItems);
+            if (loadPageFromPosition && singleQueryPaging && isSupported(DBDriverFeature.QUERY_LIMIT_ROWS))
+            {   // Load the page with a single query
+                int totalCount = loadPage(r, queryCmd, position, maxItems);
+                if (totalCount < 0 && items.size() < maxItems && (position == 0 || !items.isEmpty()))
+                {   // All remaining items have been loaded
+                    totalCount = position + items.size();
+                }
+                else if (totalCount < 0 && items.isEmpty() && position > 0)
+                {   // Page is empty: count again
+                    totalCount = queryItemCount(queryCmd.clone());
+                }
+                if (totalCount >= 0 && totalCount != lti.getItemCount())
+                {   // Item count has changed
+                    lti.init(totalCount, lti.getPageSize());
+                    lti.setCachedItemCount(getItemCountKey(queryCmd), totalCount);
+                }
+            }
+            else
+            {   // DBReader.open immer nur innerhalb eines try {} finally {} blocks!
+                r.open(queryCmd, getConnection(queryCmd));
+                if (position > 0)
+                { // we are not at position 0, "skipping" entries
+                    r.skipRows(position);
+                }
+                // Read all Items
+                items = r.getBeanList(beanClass, maxItems);
+            }
             if (items == null)
                 throw new UnexpectedReturnValueException(items, "DBReader.getBeanList");
-            generateIdParams(rowset, items);
-            assignSelectionMap(items);
 
             // set position at session object
             if (loadPageFromPosition)
@@ -334,15 +520,159 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         finally
         {
             r.close();
-            // Pagination
-            if (lti.isAllowPagination())
-            { // Scrollbar   
-                if (initScrollbar)
-                    initScrollbar();
-                else
-                    updateScrollbar();
+        }
+    }
+
+    /**
+     * Generates the id params and assigns the selection map to the items read 
+     */
+    private void prepareItems()
+    {
+        try
+        {
+            generateIdParams(rowset, items);
+            assignSelectionMap(items);
+        }
+        catch (RuntimeException e)
+        {
+            getTableInfo().setValid(false);
+            throw e;
+        }
+    }
+
+    private void updatePagination(boolean initScrollbar)
+    {
+        // Pagination
+        if (getTableInfo().isAllowPagination())
+        { // Scrollbar   
+            if (initScrollbar)
+                initScrollbar();
+            else
+                updateScrollbar();
+        }
+    }
+
+    /**
+     * Loads a page of items with a single query.<br/>
+     * The rows are limited on the database and - if supported by the database - 
+     * the total item count is selected with the page using a window function.
+     * 
+     * @param r the reader
+     * @param queryCmd the query command
+     * @param position the position of the first item
+     * @param pageSize the number of items to load
+     * @return the total item count or -1 if the count is not available
+     */
+    protected int loadPage(DBReader r, DBCommand queryCmd, int position, int pageSize)
+    {
+        DBCommand pageCmd = queryCmd.clone();
+        // Total count
+        DBColumnExpr countExpr = null;
+        if (isTotalCountSelectable(queryCmd))
+        {   countExpr = getTotalCountExpr();
+            pageCmd.select(countExpr);
+        }
+        // Limit rows
+        int skip = 0;
+        if (position > 0 && isSupported(DBDriverFeature.QUERY_SKIP_ROWS))
+            pageCmd.skipRows(position);
+        else
+            skip = position;
+        pageCmd.limitRows(skip + pageSize);
+        // Open
+        r.open(pageCmd, getConnection(pageCmd));
+        if (skip > 0)
+            r.skipRows(skip);
+        // Read items
+        List<ColumnExpr> ignore = (countExpr!=null ? Collections.<ColumnExpr>singletonList(countExpr) : null);
+        List<T> list = new ArrayList<T>(pageSize);
+        int totalCount = -1;
+        try
+        {
+            while (list.size() < pageSize && r.moveNext())
+            {
+                if (countExpr != null && totalCount < 0)
+                    totalCount = r.getInt(countExpr);
+                T bean = beanClass.newInstance();
+                r.getBeanProperties(bean, ignore);
+                list.add(bean);
             }
         }
+        catch (InstantiationException e)
+        {
+            throw new BeanInstantiationException(beanClass, e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new BeanInstantiationException(beanClass, e);
+        }
+        items = list;
+        return totalCount;
+    }
+
+    /**
+     * Returns the expression used for selecting the total item count with a page
+     * @return the count expression
+     */
+    protected DBColumnExpr getTotalCountExpr()
+    {
+        // Window function: the count is added to every row of the page
+        DBColumnExpr expr = rowset.getDatabase().getValueExpr("count(*) over()", DataType.UNKNOWN);
+        return expr.as(TOTAL_COUNT_ALIAS);
+    }
+
+    /**
+     * Returns the number of items for a query.
+     * The count may be taken from the item count cache.
+     * 
+     * @param countCmd the query command
+     * @return the number of items
+     */
+    protected int queryItemCount(DBCommand countCmd)
+    {
+        countCmd.clearSelect();
+        countCmd.clearOrderBy();
+        countCmd.select(rowset.count());
+        // Check cache
+        BeanListTableInfo lti = (BeanListTableInfo) getTableInfo();
+        String key = getItemCountKey(countCmd);
+        int count = (itemCountCacheTime > 0 ? lti.getCachedItemCount(key, itemCountCacheTime) : -1); 
+        if (count < 0)
+        {   // Query count
+            count = rowset.getDatabase().querySingleInt(countCmd.getSelect(), countCmd.getParamValues(), 0, getConnection(rowset));
+            lti.setCachedItemCount(key, count);
+        }
+        return count;
+    }
+    
+    /**
+     * Returns a key identifying the items of a query independent of the selected columns and the sort order
+     * @param cmd the query command
+     * @return the key
+     */
+    protected String getItemCountKey(DBCommand cmd)
+    {
+        DBCommand keyCmd = cmd.clone();
+        keyCmd.clearSelect();
+        keyCmd.clearOrderBy();
+        keyCmd.select(rowset.count());
+        Object[] params = keyCmd.getParamValues();
+        return keyCmd.getSelect() + (params != null ? Arrays.asList(params).toString() : "");
+    }
+
+    /**
+     * Returns whether the total item count can be selected with a page using a window function.
+     * This is not the case for distinct queries, as the window function would be evaluated before the duplicates are removed.
+     */
+    private boolean isTotalCountSelectable(DBCommand queryCmd)
+    {
+        return isSupported(DBDriverFeature.QUERY_WINDOW_FUNCTIONS) && !queryCmd.isSelectDistinct();
+    }
+
+    private boolean isSupported(DBDriverFeature feature)
+    {
+        DBDatabaseDriver driver = rowset.getDatabase().getDriver();
+        return (driver != null && driver.isSupported(feature));
     }
 
     /**
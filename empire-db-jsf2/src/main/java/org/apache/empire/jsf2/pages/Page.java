@@ -22,8 +22,14 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.faces.application.FacesMessage;
 import javax.faces.application.NavigationHandler;
@@ -33,6 +39,7 @@ import javax.faces.context.FacesContext;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBRowSet;
+import org.apache.empire.exceptions.InternalException;
 import org.apache.empire.exceptions.ItemNotFoundException;
 import org.apache.empire.jsf2.app.FacesApplication;
 import org.apache.empire.jsf2.app.FacesUtils;
@@ -55,6 +62,73 @@ public abstract class Page implements Serializable
     private boolean             initialized      = false;
     private PageDefinition      pageDefinition   = null;
     private List<PageElement>   pageElements     = null;
+    private boolean             asyncLoading     = false;
+    private long                asyncLoadTimeout = 30000;
+
+    /**
+     * Holds the connections of a thread executing an asynchronous load
+     */
+    private static final ThreadLocal<AsyncLoadContext> asyncLoadContext = new ThreadLocal<AsyncLoadContext>();
+
+    private static class AsyncLoadContext
+    {
+        private final FacesApplication app;
+        private final Map<DBDatabase, Connection> connections = new HashMap<DBDatabase, Connection>(); 
+
+        public AsyncLoadContext(FacesApplication app)
+        {
+            this.app = app;
+        }
+
+        public Connection getConnection(DBDatabase db)
+        {
+            Connection conn = connections.get(db);
+            if (conn == null)
+            {   conn = app.getAsyncConnection(db);
+                connections.put(db, conn);
+            }
+            return conn;
+        }
+
+        public void releaseConnections()
+        {
+            for (Map.Entry<DBDatabase, Connection> e : connections.entrySet())
+                app.releaseAsyncConnection(e.getKey(), e.getValue());
+            connections.clear();
+        }
+    }
+
+    /**
+     * Executes the loader of a page element on a worker thread
+     */
+    private static class AsyncLoadTask implements Callable<Object>
+    {
+        private final FacesApplication app;
+        private final Runnable loader;
+
+        public AsyncLoadTask(FacesApplication app, Runnable loader)
+        {
+            this.app = app;
+            this.loader = loader;
+        }
+
+        @Override
+        public Object call()
+        {
+            AsyncLoadContext context = new AsyncLoadContext(app);
+            asyncLoadContext.set(context);
+            try
+            {   // load
+                loader.run();
+                return null;
+            }
+            finally
+            {   // cleanup
+                asyncLoadContext.remove();
+                context.releaseConnections();
+            }
+        }
+    }
 
     protected Page()
     {
@@ -113,6 +187,39 @@ public abstract class Page implements Serializable
             throw new ItemNotFoundException(actionParam); 
     }
 
+    public boolean isAsyncLoading()
+    {
+        return asyncLoading;
+    }
+
+    /**
+     * Enables or disables asynchronous loading of page elements.<br/>
+     * If enabled, the data of all page elements supporting asynchronous loading (see PageElement.prepareAsyncLoad()) 
+     * is loaded concurrently using the executor of the FacesApplication and separate read-only connections.<br/>
+     * All loads are finished before the page is rendered. 
+     * 
+     * @param asyncLoading true to enable asynchronous loading
+     */
+    public void setAsyncLoading(boolean asyncLoading)
+    {
+        this.asyncLoading = asyncLoading;
+    }
+
+    public long getAsyncLoadTimeout()
+    {
+        return asyncLoadTimeout;
+    }
+
+    /**
+     * Sets the maximum time to wait for asynchronous loads to finish.
+     * Loads executed by the requesting thread because the executor queue is full are not bounded by this timeout.
+     * @param asyncLoadTimeout the timeout in milliseconds
+     */
+    public void setAsyncLoadTimeout(long asyncLoadTimeout)
+    {
+        this.asyncLoadTimeout = asyncLoadTimeout;
+    }
+
     public PageDefinition getPageDefinition()
     {
         return pageDefinition;
@@ -352,6 +459,11 @@ public abstract class Page implements Serializable
      */
     public Connection getConnection(DBDatabase db)
     {       
+        AsyncLoadContext context = asyncLoadContext.get();
+        if (context != null)
+        {   // asynchronous load
+            return context.getConnection(db);
+        }
         FacesApplication app = FacesUtils.getFacesApplication();
         return app.getConnectionForRequest(FacesUtils.getContext(), db);
     }
@@ -383,7 +495,11 @@ public abstract class Page implements Serializable
     /* Default Init Method */
     public void doInit()
     {
-        if (pageElements != null)
+        if (pageElements != null && asyncLoading)
+        {   // Load Page Elements
+            loadElementsAsync(true);
+        }
+        else if (pageElements != null)
         {   // Init Page Elements
             for (PageElement pe : pageElements)
                 doInitElement(pe);
@@ -392,7 +508,11 @@ public abstract class Page implements Serializable
 
     public void doRefresh()
     {
-        if (pageElements != null)
+        if (pageElements != null && asyncLoading)
+        {   // Load Page Elements
+            loadElementsAsync(false);
+        }
+        else if (pageElements != null)
         {   // Refresh Page Elements
             for (PageElement pe : pageElements)
                 doRefreshElement(pe);
@@ -417,6 +537,86 @@ public abstract class Page implements Serializable
         pe.onRefreshPage();
     }
     
+    /**
+     * Loads the data of all page elements concurrently and waits for all loads to finish.
+     * Elements that do not support asynchronous loading are initialized or refreshed synchronously.
+     * @param init true if the page is initialized or false if the page is refreshed
+     */
+    protected void loadElementsAsync(boolean init)
+    {
+        List<PageElement> asyncElements = new ArrayList<PageElement>(pageElements.size());
+        List<Runnable> loaders = new ArrayList<Runnable>(pageElements.size());
+        for (PageElement pe : pageElements)
+        {
+            Runnable loader = pe.prepareAsyncLoad(init);
+            if (loader == null)
+            {   // synchronous
+                if (init)
+                    doInitElement(pe);
+                else
+                    doRefreshElement(pe);
+                continue;
+            }
+            asyncElements.add(pe);
+            loaders.add(loader);
+        }
+        // Anything to load?
+        if (loaders.isEmpty())
+            return;
+        if (loaders.size() == 1)
+        {   // No need for another thread
+            loaders.get(0).run();
+            asyncElements.get(0).completeAsyncLoad(init);
+            return;
+        }
+        // Run all loaders
+        FacesApplication app = FacesUtils.getFacesApplication();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(loaders.size());
+        for (Runnable loader : loaders)
+            tasks.add(new AsyncLoadTask(app, loader));
+        List<Future<Object>> results;
+        try
+        {   long start = System.currentTimeMillis();
+            results = app.getAsyncExecutor().invokeAll(tasks, asyncLoadTimeout, TimeUnit.MILLISECONDS);
+            if (log.isDebugEnabled())
+                log.debug("Asynchronous loading of {} page elements on {} took {}ms.", new Object[] { tasks.size(), getPageName(), System.currentTimeMillis() - start });
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        // Check results
+        for (int i = 0; i < results.size(); i++)
+        {
+            PageElement pe = asyncElements.get(i);
+            Future<Object> result = results.get(i);
+            if (result.isCancelled())
+            {   // timeout
+                String msg = "Asynchronous loading of " + pe.getPropertyName() + " on " + getPageName() + " timed out after " + asyncLoadTimeout + "ms.";
+                throw new InternalException(new TimeoutException(msg));
+            }
+            try
+            {
+                result.get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new InternalException(cause);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+            // Finish on request thread
+            pe.completeAsyncLoad(init);
+        }
+    }
+    
     /* Helpers */
     
     protected final TextResolver getTextResolver()
@@ -71,6 +71,31 @@ public class PageElement implements Serializable
         // Chance to init the page
     }
 
+    /**
+     * Prepares asynchronous loading of the element's data.<br/>
+     * This is only called if asynchronous loading is enabled on the page. 
+     * If a loader is returned, it is called instead of onInitPage() or onRefreshPage().<br/>
+     * The loader is executed on a worker thread and must not access the FacesContext.
+     * Connections obtained by getConnection() on the worker thread are separate read-only connections.
+     * 
+     * @param init true if the page is initialized or false if the page is refreshed
+     * @return the data loader or null if the element should be initialized or refreshed synchronously
+     */
+    protected Runnable prepareAsyncLoad(boolean init)
+    {
+        return null;
+    }
+
+    /**
+     * Called on the request thread after the loader returned by prepareAsyncLoad() has finished.
+     * 
+     * @param init true if the page is initialized or false if the page is refreshed
+     */
+    protected void completeAsyncLoad(boolean init)
+    {
+        // Chance to finish loading
+    }
+
     /**
      * Session Object handling
      * 
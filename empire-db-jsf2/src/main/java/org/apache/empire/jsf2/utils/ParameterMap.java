@@ -22,19 +22,25 @@ import java.io.Serializable;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.empire.commons.DateUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.exceptions.InvalidArgumentException;
-import org.apache.empire.exceptions.UnexpectedReturnValueException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class manages request parameters in a way that they cannot be analyzed and modified by the user 
+ * This class manages request parameters in a way that they cannot be analyzed and modified by the user.<br/>
+ * Codes are generated with a salted hash. Each thread uses its own MessageDigest, hence no locking is required for encoding.<br/>
+ * The number of ids stored per type is limited. If the limit is exceeded, the least recently used ids are removed. 
  * @author doebele
  *
  */
@@ -44,30 +50,146 @@ public class ParameterMap implements Serializable
 
     private static final Logger           log              = LoggerFactory.getLogger(ParameterMap.class);
 
-    private static final SimpleDateFormat dateFormat       = new SimpleDateFormat("yyyy.MM.dd hh:mm:ss", Locale.GERMAN);
+    private static final String           dateFormatPattern = "yyyy.MM.dd hh:mm:ss";
     
-    static private MessageDigest          md5              = null;
+    private static final char[]           HEX_DIGITS       = "0123456789abcdef".toCharArray();
+    
+    /**
+     * Default maximum number of ids stored per type
+     */
+    public static final int               DEFAULT_MAX_ITEMS = 5000;
+    
+    private static final ThreadLocal<MessageDigest> md5 = new ThreadLocal<MessageDigest>()
+    {
+        @Override
+        protected MessageDigest initialValue()
+        {
+            try
+            {
+                return MessageDigest.getInstance("MD5");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                ParameterMap.log.error("MessageDigest NoSuchAlgorithmException.", e);
+                throw new RuntimeException(e);
+            }
+        }
+    };
+    
+    /**
+     * A map that removes the least recently used entries if it exceeds its maximum size
+     */
+    private static class LRUMap<K, V> extends LinkedHashMap<K, V>
+    {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+        private final AtomicLong evictionCount;
+        
+        public LRUMap(int maxSize, AtomicLong evictionCount)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictionCount = evictionCount;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+        {
+            if (size()<=maxSize)
+                return false;
+            evictionCount.incrementAndGet();
+            return true;
+        }
+    }
+    
+    /**
+     * A least recently used map guarded by a lock.<br/>
+     * A lock is used instead of synchronized blocks in order to avoid pinning virtual threads.
+     */
+    private static class LRUCache<K, V> implements Serializable
     {
-        try
+        private static final long serialVersionUID = 1L;
+        private final LRUMap<K, V> map;
+        private final ReentrantLock lock = new ReentrantLock();
+        
+        public LRUCache(int maxSize, AtomicLong evictionCount)
+        {
+            this.map = new LRUMap<K, V>(maxSize, evictionCount);
+        }
+        
+        public V get(K key)
+        {
+            lock.lock();
+            try {
+                return map.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        public void put(K key, V value)
+        {
+            lock.lock();
+            try {
+                map.put(key, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        public void clear()
         {
-            ParameterMap.md5 = MessageDigest.getInstance("MD5");
+            lock.lock();
+            try {
+                map.clear();
+            } finally {
+                lock.unlock();
+            }
         }
-        catch (NoSuchAlgorithmException e)
+        
+        public int size()
         {
-            ParameterMap.log.error("MessageDigest NoSuchAlgorithmException.", e);
-            throw new RuntimeException(e);
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
         }
     }
     
     private final byte[] salt;
     
+    private final int maxItems;
+    
+    // Metrics
+    private final AtomicLong encodeCount   = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong lookupCount   = new AtomicLong();
+    private final AtomicLong lookupMissCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    /**
+     * Creates a parameter map which stores up to maxItems ids per type.
+     * @param maxItems the maximum number of ids per type
+     */
+    public ParameterMap(int maxItems)
+    {
+        if (maxItems<1)
+            throw new InvalidArgumentException("maxItems", maxItems);
+        // Salt
+        String dateTime = new SimpleDateFormat(dateFormatPattern, Locale.GERMAN).format(DateUtils.getTimeNow());
+        this.salt = dateTime.getBytes();
+        this.maxItems = maxItems;
+        this.codeMap = new LRUCache<String, String>(maxItems, evictionCount);
+    }
+    
     public ParameterMap()
     {
-        String dateTime = dateFormat.format(DateUtils.getTimeNow());
-        salt = dateTime.getBytes();
+        this(DEFAULT_MAX_ITEMS);
     }
     
-    public synchronized String encodeString(String valueAsString)
+    public String encodeString(String valueAsString)
     {
         if (valueAsString==null)
             throw new InvalidArgumentException("valueAsString", valueAsString);
@@ -75,30 +197,23 @@ public class ParameterMap implements Serializable
         if (log.isTraceEnabled())
             log.trace("Generating code for value {}.", valueAsString);
         // generate code
-        md5.reset();
+        encodeCount.incrementAndGet();
+        MessageDigest digest = md5.get();
+        digest.reset();
         if (salt!=null)
-            md5.update(salt);
-        md5.update(valueAsString.getBytes());
-        byte s[] = ParameterMap.md5.digest();
-        StringBuilder hash = new StringBuilder(32);
+            digest.update(salt);
+        digest.update(valueAsString.getBytes());
+        byte s[] = digest.digest();
+        char[] hash = new char[s.length * 2];
         for (int i = 0; i < s.length; i++)
         {   // add the hash part
-            // String check = Integer.toHexString((0x000000ff & s[i]) | 0xffffff00).substring(6);;
-            String part = Integer.toHexString(0x000000ff & s[i]);
-            switch(part.length())
-            {
-                case 1: hash.append('0');
-                case 2: hash.append(part);
-                        break;
-                default:
-                        throw new UnexpectedReturnValueException(part, "Integer.toHexString");
-                        // hash.append(part.substring(2));
-            }
+            hash[i * 2]     = HEX_DIGITS[(s[i] >> 4) & 0x0f];
+            hash[i * 2 + 1] = HEX_DIGITS[s[i] & 0x0f];
         }
-        return hash.toString();
+        return new String(hash);
     }
 
-    private Hashtable<String, String> codeMap = new Hashtable<String, String>();
+    private final LRUCache<String, String> codeMap;
 
     public String encodeStringWithCache(String valueAsString)
     {
@@ -108,29 +223,41 @@ public class ParameterMap implements Serializable
             code = encodeString(valueAsString);
             codeMap.put(valueAsString, code);
         }
-        /*
         else
-        {   // Trace
-            if (log.isTraceEnabled())
-                log.trace("Using already generated code {} for value {}.", code, valueAsString);
+        {   // Cache hit
+            cacheHitCount.incrementAndGet();
         }
-        */
         return code;
     }
     
-    private final Hashtable<String, Hashtable<String, Object>> typeMap = new Hashtable<String, Hashtable<String, Object>>();
+    private final ConcurrentMap<String, LRUCache<String, Object>> typeMap = new ConcurrentHashMap<String, LRUCache<String, Object>>();
     
     private void putValue(String typeName, String key, Object value)
     {
-        Hashtable<String, Object> map = typeMap.get(typeName);
+        LRUCache<String, Object> map = typeMap.get(typeName);
         if (map==null)
-        {   map = new Hashtable<String, Object>(1);
-            typeMap.put(typeName, map);
+        {   map = new LRUCache<String, Object>(maxItems, evictionCount);
+            LRUCache<String, Object> prev = typeMap.putIfAbsent(typeName, map);
+            if (prev!=null)
+                map = prev;
         }
         if (key==null || value==null)
+        {   // Not allowed
             log.warn("Key or value is null.");
+            return;
+        }
         map.put(key, value);
     }
+    
+    private Object getValue(String typeName, String key)
+    {
+        lookupCount.incrementAndGet();
+        LRUCache<String, Object> map = typeMap.get(typeName);
+        Object value = (map!=null && key!=null ? map.get(key) : null);
+        if (value==null)
+            lookupMissCount.incrementAndGet();
+        return value;
+    }
 
     public String put(String type, String key, boolean useCache)
     {
@@ -162,28 +289,25 @@ public class ParameterMap implements Serializable
 
     public Object get(String type, String id)
     {
-        Hashtable<String, Object> map = typeMap.get(type);
-        return (map!=null ? map.get(id) : null);
+        return getValue(type, id);
     }
 
     public Object[] get(Class<? extends Object> c, String id)
     {
         String type = c.getSimpleName();
-        Hashtable<String, Object> map = typeMap.get(type);
-        return (map!=null ? ((Object[])map.get(id)) : null);
+        return (Object[])getValue(type, id);
     }
 
     public Object[] get(DBRowSet rowset, String id)
     {
         String type = rowset.getClass().getSimpleName();
-        Hashtable<String, Object> map = typeMap.get(type);
-        return (map!=null ? ((Object[])map.get(id)) : null);
+        return (Object[])getValue(type, id);
     }
 
     public void clear(Class<? extends Object> c)
     {
         String type = c.getSimpleName();
-        Hashtable<String, Object> map = typeMap.get(type);
+        LRUCache<String, Object> map = typeMap.get(type);
         if (map!=null)
             map.clear();
     }
@@ -191,9 +315,85 @@ public class ParameterMap implements Serializable
     public void clear(DBRowSet rowset)
     {
         String type = rowset.getClass().getSimpleName();
-        Hashtable<String, Object> map = typeMap.get(type);
+        LRUCache<String, Object> map = typeMap.get(type);
         if (map!=null)
             map.clear();
     }
+    
+    /* Metrics */
+
+    /**
+     * Returns the maximum number of ids stored per type 
+     * @return the maximum number of ids per type
+     */
+    public int getMaxItems()
+    {
+        return maxItems;
+    }
+
+    /**
+     * Returns the total number of ids currently stored
+     * @return the number of ids
+     */
+    public int getSize()
+    {
+        int size = 0;
+        for (LRUCache<String, Object> map : typeMap.values())
+            size += map.size();
+        return size;
+    }
+
+    /**
+     * Returns the number of codes that have been generated 
+     * @return the number of generated codes
+     */
+    public long getEncodeCount()
+    {
+        return encodeCount.get();
+    }
+
+    /**
+     * Returns the number of codes that have been taken from the code cache
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount()
+    {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Returns the number of id lookups
+     * @return the number of lookups
+     */
+    public long getLookupCount()
+    {
+        return lookupCount.get();
+    }
+
+    /**
+     * Returns the number of id lookups for which no value was found.<br/>
+     * A high number compared to the lookup count may indicate that the maximum number of items is too low.
+     * @return the number of failed lookups
+     */
+    public long getLookupMissCount()
+    {
+        return lookupMissCount.get();
+    }
+
+    /**
+     * Returns the number of ids and codes that have been removed because the maximum size was exceeded
+     * @return the number of evicted entries
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "ParameterMap[size=" + getSize() + ", encoded=" + getEncodeCount() + ", cacheHits=" + getCacheHitCount()
+             + ", lookups=" + getLookupCount() + ", lookupMisses=" + getLookupMissCount() + ", evicted=" + getEvictionCount() + "]";
+    }
 
 }
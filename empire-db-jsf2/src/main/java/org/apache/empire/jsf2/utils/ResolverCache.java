@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.jsf2.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches objects resolved by name for an owner object, e.g. the columns of a table or the tables of a database.<br/>
+ * Owners and resolved objects are weakly referenced, hence entries are dropped once the owner is no longer in use.<br/>
+ * Owners are compared by identity. Lookups do not lock.
+ * 
+ * @param <T> the type of the resolved objects
+ */
+public class ResolverCache<T>
+{
+    /**
+     * Weak reference to an owner used as a map key
+     */
+    private static final class OwnerKey extends WeakReference<Object>
+    {
+        private final int hash;
+
+        public OwnerKey(Object owner, ReferenceQueue<Object> queue)
+        {
+            super(owner, queue);
+            this.hash = System.identityHashCode(owner);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other == this)
+                return true;
+            if (!(other instanceof OwnerKey))
+                return false;
+            Object owner = get();
+            return (owner != null && owner == ((OwnerKey) other).get());
+        }
+    }
+
+    private final ConcurrentMap<OwnerKey, ConcurrentMap<String, WeakReference<T>>> cache = new ConcurrentHashMap<OwnerKey, ConcurrentMap<String, WeakReference<T>>>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * Returns a cached object
+     * @param owner the owner of the object
+     * @param name the name of the object
+     * @return the cached object or null if not cached
+     */
+    public T get(Object owner, String name)
+    {
+        ConcurrentMap<String, WeakReference<T>> map = cache.get(new OwnerKey(owner, null));
+        if (map == null)
+            return null;
+        WeakReference<T> ref = map.get(name);
+        return (ref != null ? ref.get() : null);
+    }
+
+    /**
+     * Adds an object to the cache
+     * @param owner the owner of the object
+     * @param name the name of the object
+     * @param value the object
+     */
+    public void put(Object owner, String name, T value)
+    {
+        expungeStaleOwners();
+        ConcurrentMap<String, WeakReference<T>> map = cache.get(new OwnerKey(owner, null));
+        if (map == null)
+        {   map = new ConcurrentHashMap<String, WeakReference<T>>();
+            ConcurrentMap<String, WeakReference<T>> prev = cache.putIfAbsent(new OwnerKey(owner, queue), map);
+            if (prev != null)
+                map = prev;
+        }
+        map.put(name, new WeakReference<T>(value));
+    }
+
+    /**
+     * Removes all cached objects
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Removes the entries of owners that have been garbage collected
+     */
+    private void expungeStaleOwners()
+    {
+        for (Reference<?> ref = queue.poll(); ref != null; ref = queue.poll())
+            cache.remove(ref);
+    }
+}
@@ -318,6 +318,9 @@ public class TagEncodingHelper implements NamingContainer
     // Logger
     private static final Logger log          = LoggerFactory.getLogger(TagEncodingHelper.class);
 
+    // Cache for columns resolved by name
+    private static final ResolverCache<Column> columnCache = new ResolverCache<Column>();
+
     public static final String COLATTR_ABBR_TITLE     = "ABBR_TITLE";       // Column title for abbreviations
     
     private final UIOutput      tag;
@@ -327,6 +330,7 @@ public class TagEncodingHelper implements NamingContainer
     private RecordTag           recordTag    = null;
     private Boolean             tagRequired  = null;
     private Boolean             hasValueExpr = null;
+    private ValueExpression     valueExpr    = null;
     private InputControl        control      = null;
     private TextResolver        textResolver = null;
     private Object              mostRecentValue = null;
@@ -539,7 +543,7 @@ public class TagEncodingHelper implements NamingContainer
                 if (value!=null && (tag instanceof UIInput) && !((UIInput)tag).isLocalValueSet())
                     value= null; /* should never come here! */
                 if (value==null)
-                    value = findValueExpression("value", false);
+                    value = getValueExpression();
                 
                 // value = tag.getValue();
                 return value;
@@ -699,6 +703,10 @@ public class TagEncodingHelper implements NamingContainer
                 log.error("Database '{}' not found!", name.substring(0,dbix));
                 return null; // not found
             }
+            // already resolved?
+            Column column = columnCache.get(db, name);
+            if (column != null)
+                return column;
             int co = name.lastIndexOf('.');
             int to = name.lastIndexOf('.', co - 1);
             String cn = name.substring(co + 1);
@@ -709,13 +717,14 @@ public class TagEncodingHelper implements NamingContainer
                 log.error("Table/View '{}' not found in database!", tn);
                 return null; // not found
             }
-            Column column = rs.getColumn(cn);
+            column = rs.getColumn(cn);
             if (column == null)
             {
                 log.error("Column '{}' not found in table/view '{}'!", cn, tn);
                 return null; // not found
             }
             // done
+            columnCache.put(db, name, column);
             return column;
         }
         // When null, try value
@@ -793,10 +802,21 @@ public class TagEncodingHelper implements NamingContainer
             log.debug(tag.getClass().getSimpleName()+" for "+getColumn().getName()+" has no value expression!");
         */
         // merken
+        valueExpr = ve;
         hasValueExpr = Boolean.valueOf(ve != null);
         return hasValueExpr.booleanValue();
     }
     
+    private ValueExpression getValueExpression()
+    {
+        // Find expression only once
+        if (hasValueExpr == null)
+        {   valueExpr = findValueExpression("value", false);
+            hasValueExpr = Boolean.valueOf(valueExpr != null);
+        }
+        return valueExpr;
+    }
+    
     private static final String CC_ATTR_EXPR = "#{cc.attrs.";
 
     protected ValueExpression findValueExpression(String attribute, boolean allowLiteral)
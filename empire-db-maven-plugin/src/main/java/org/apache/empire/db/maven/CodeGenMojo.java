@@ -110,6 +110,51 @@ public class CodeGenMojo extends AbstractMojo {
 	 * @parameter expression="${empiredb.packageName}"
 	 */
 	private String packageName;
+	
+	/**
+	 * Read the database metadata using one query per schema instead of 
+	 * querying it table by table
+	 * 
+	 * @parameter expression="${empiredb.bulkMetadataQueries}" default-value="false"
+	 */
+	private boolean bulkMetadataQueries;
+	
+	/**
+	 * Number of connections used to read the database metadata concurrently
+	 * 
+	 * @parameter expression="${empiredb.metadataThreads}" default-value="1"
+	 */
+	private int metadataThreads;
+	
+	/**
+	 * Read the table indexes into the database model
+	 * 
+	 * @parameter expression="${empiredb.readIndexes}" default-value="false"
+	 */
+	private boolean readIndexes;
+	
+	/**
+	 * Only regenerate classes whose table or view metadata or template 
+	 * has changed since the last run
+	 * 
+	 * @parameter expression="${empiredb.incrementalGeneration}" default-value="false"
+	 */
+	private boolean incrementalGeneration;
+	
+	/**
+	 * Create field index constants in record classes and access
+	 * the record fields by index
+	 * 
+	 * @parameter expression="${empiredb.createRecordFieldIndexes}" default-value="false"
+	 */
+	private boolean createRecordFieldIndexes;
+	
+	/**
+	 * Create a bean and a row mapper class for each table
+	 * 
+	 * @parameter expression="${empiredb.createRowMappers}" default-value="false"
+	 */
+	private boolean createRowMappers;
 
 	public void execute() throws MojoExecutionException 
 	{
@@ -131,6 +176,12 @@ public class CodeGenMojo extends AbstractMojo {
 			config.setTargetFolder(targetDirectory.getAbsolutePath());
 			config.setTemplateFolder(templateDirectory);
 			config.setPackageName(packageName);
+			config.setBulkMetadataQueries(bulkMetadataQueries);
+			config.setMetadataThreads(metadataThreads);
+			config.setReadIndexes(readIndexes);
+			config.setIncrementalGeneration(incrementalGeneration);
+			config.setCreateRecordFieldIndexes(createRecordFieldIndexes);
+			config.setCreateRowMappers(createRowMappers);
 		}
 		
 		//config.setExceptionsEnabled(true);
@@ -29,10 +29,12 @@ import org.apache.empire.commons.ErrorType;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
+import org.apache.empire.db.DBDatabase;
 import org.apache.empire.struts2.actionsupport.ActionBase;
 import org.apache.empire.struts2.actionsupport.ActionError;
 import org.apache.empire.struts2.actionsupport.ActionPropertySupport;
 import org.apache.empire.struts2.actionsupport.TextProviderActionSupport;
+import org.apache.empire.struts2.web.DefaultWebRequest;
 import org.apache.empire.struts2.web.EmpireThreadManager;
 import org.apache.empire.struts2.web.UrlHelperEx;
 import org.apache.empire.struts2.web.FieldErrors;
@@ -375,10 +377,35 @@ public abstract class WebAction extends ActionBase
         return -1; // Infinite List Size
     }
     
+    /**
+     * Returns the database used by this action.
+     * If a database is returned, getConnection() obtains the connection for the current request from the DefaultWebRequest.
+     * @return the database or null by default
+     */
+    protected DBDatabase getDatabase()
+    {
+        return null;
+    }
+    
+    /**
+     * Returns the connection for the current request.
+     * By default the connection is obtained by DefaultWebRequest.getConnection(DBDatabase) if getDatabase() returns a database.
+     * The connection is released by the request when it ends.
+     * @return the connection or null if not available
+     */
     @Override
     protected Connection getConnection() 
     {
-        return null; 
+        DBDatabase db = getDatabase();
+        if (db==null)
+            return null;
+        Object request = EmpireThreadManager.getCurrentRequest();
+        if ((request instanceof DefaultWebRequest)==false)
+        {
+            log.error("cannot obtain connection. Request object is not a DefaultWebRequest");
+            return null;
+        }
+        return ((DefaultWebRequest)request).getConnection(db); 
     }
 
     // ------- ActionItem Property -------
@@ -18,6 +18,8 @@
  */
 package org.apache.empire.struts2.actionsupport;
 
+import java.util.List;
+
 import org.apache.empire.data.ColumnExpr;
 import org.apache.empire.struts2.action.ListPagingInfo;
 import org.apache.empire.struts2.action.ListSortingInfo;
@@ -58,6 +60,11 @@ public abstract class ListActionSupport
     {
         public int firstItemIndex = 0;
         public int itemCount = 0;
+        // optional page window prefetched by a single query
+        public String windowKey = null;
+        public int windowFirstIndex = 0;
+        public long windowTimestamp = 0;
+        public List<Object[]> windowRows = null;
     }
 
     private ListPageInfo lpi = null;
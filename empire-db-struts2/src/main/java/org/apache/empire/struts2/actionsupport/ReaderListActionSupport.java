@@ -18,16 +18,41 @@
  */
 package org.apache.empire.struts2.actionsupport;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.db.DBColumn;
+import org.apache.empire.db.DBColumnExpr;
+import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBCommandExpr;
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecordData;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.apache.empire.xml.XMLUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 
 /**
  * ReaderListActionSupport
  * <p>
  * This class provides functions for handling list output from a database query through a DBReader object.
+ * </p>
+ * <p>
+ * By default the query is executed in full and the reader is moved to the first item of the current page.<br>
+ * If native paging is enabled (see {@link #setNativePaging(boolean)}) and the driver supports it, 
+ * the query is limited to the rows of the current page using the driver's limit and offset syntax.<br>
+ * Additionally a page window may be set (see {@link #setWindowPages(int)}) in which case a number of pages 
+ * is fetched with a single query and kept on the ListPageInfo for a short time.
+ * The items of the current page are then provided by {@link #getPageItems()} instead of the reader.
  * </p> 
  * @author Rainer
  */
@@ -37,6 +62,14 @@ public class ReaderListActionSupport extends ListActionSupport
     protected static Logger log = LoggerFactory.getLogger(RecordActionSupport.class);
     
     protected DBReader  reader;
+    
+    protected List<DBRecordData> pageItems;
+    
+    protected boolean nativePaging = false;
+    
+    protected int windowPages = 0;
+    
+    protected long windowTimeout = 60000; // 1 Minute
 
     public ReaderListActionSupport(ActionBase action, String propertyName)
     {
@@ -48,11 +81,88 @@ public class ReaderListActionSupport extends ListActionSupport
         return reader;
     }
     
+    /**
+     * Returns the items of the current page if a page window is used.
+     * @return the list of page items or null if the page has been loaded through a reader
+     */
+    public List<DBRecordData> getPageItems()
+    {
+        return pageItems;
+    }
+
+    public boolean isNativePaging()
+    {
+        return nativePaging;
+    }
+
+    /**
+     * Sets whether the rows of a page should be limited by the query instead of skipping them on the reader.
+     * This requires a DBCommand and a driver supporting DBDriverFeature.QUERY_LIMIT_ROWS.
+     * Otherwise the full query is executed as before.
+     * @param nativePaging true to limit the query to the current page
+     */
+    public void setNativePaging(boolean nativePaging)
+    {
+        this.nativePaging = nativePaging;
+    }
+
+    public int getWindowPages()
+    {
+        return windowPages;
+    }
+
+    /**
+     * Sets the number of pages that are fetched with a single query when native paging is used.
+     * A value of 0 disables the page window.
+     * @param windowPages the number of pages per window
+     */
+    public void setWindowPages(int windowPages)
+    {
+        if (windowPages<0)
+            throw new InvalidArgumentException("windowPages", windowPages);
+        this.windowPages = windowPages;
+    }
+
+    public long getWindowTimeout()
+    {
+        return windowTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a cached page window is discarded.
+     * @param windowTimeout the timeout in milliseconds
+     */
+    public void setWindowTimeout(long windowTimeout)
+    {
+        this.windowTimeout = windowTimeout;
+    }
+
+    /**
+     * Discards a cached page window, e.g. after the underlying data has been modified.
+     */
+    public void clearPageWindow()
+    {
+        ListPageInfo lpi = getListPageInfo();
+        lpi.windowKey = null;
+        lpi.windowRows = null;
+    }
+    
     public void initReader(DBCommandExpr cmd, boolean scrollable)
     {
         // Make sure previous reader is closed
         if (reader!=null)
             reader.close();
+        reader = null;
+        pageItems = null;
+        // Limit query to page?
+        if (nativePaging && isNativePagingSupported(cmd))
+        {   // Use page window or limited reader
+            if (windowPages>0)
+                initPageWindow((DBCommand)cmd);
+            else
+                initPageReader((DBCommand)cmd, scrollable);
+            return;
+        }
         // Create a new reader
         reader = new DBReader();
         reader.open(cmd, scrollable, action.getConnection() );
@@ -71,4 +181,252 @@ public class ReaderListActionSupport extends ListActionSupport
         initReader(cmd, false);
     }
 
+    /**
+     * Returns whether the rows of a command can be limited by the database driver.
+     * @param cmd the command
+     * @return true if native paging is supported for this command
+     */
+    protected boolean isNativePagingSupported(DBCommandExpr cmd)
+    {
+        if (!(cmd instanceof DBCommand))
+            return false;
+        DBDatabaseDriver driver = cmd.getDatabase().getDriver();
+        return (driver!=null && driver.isSupported(DBDriverFeature.QUERY_LIMIT_ROWS));
+    }
+    
+    /**
+     * Opens a reader for a limited number of rows starting at the given position.
+     * The command itself is not modified.
+     * @return the reader positioned before the first row
+     */
+    protected DBReader openLimited(DBCommand cmd, int first, int count, boolean scrollable)
+    {
+        DBCommand limited = cmd.clone();
+        boolean skip = (first>0 && cmd.getDatabase().getDriver().isSupported(DBDriverFeature.QUERY_SKIP_ROWS));
+        if (skip)
+        {   // skip on the database
+            limited.skipRows(first);
+            limited.limitRows(count);
+        }
+        else
+        {   // skip on the reader
+            limited.limitRows(first + count);
+        }
+        DBReader r = new DBReader();
+        r.open(limited, scrollable, action.getConnection());
+        if (first>0 && !skip && !r.skipRows(first))
+        {   // no rows left
+            r.close();
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * Opens a reader limited to the rows of the current page.
+     */
+    protected void initPageReader(DBCommand cmd, boolean scrollable)
+    {
+        int first = getFirstItemIndex();
+        int count = getPageSize();
+        if (first>0)
+        {   // Include the row before the page in order to detect an invalid page
+            reader = openLimited(cmd, first-1, count+1, scrollable);
+            if (reader!=null && reader.skipRows(1))
+                return;
+            // Page is not valid. Try again from beginning
+            if (reader!=null)
+                reader.close();
+            setFirstItem(0);
+        }
+        reader = openLimited(cmd, 0, count, scrollable);
+    }
+
+    /**
+     * Loads the items of the current page from a page window.
+     * The window is reused as long as the query is unchanged and the window has not timed out.
+     */
+    protected void initPageWindow(DBCommand cmd)
+    {
+        ListPageInfo lpi = getListPageInfo();
+        int first = getFirstItemIndex();
+        int size  = getPageSize() * windowPages;
+        int windowFirst = (first / size) * size;
+        // Check cached window
+        String key = cmd.getSelect() + Arrays.toString(cmd.getParamValues());
+        long now = System.currentTimeMillis();
+        if (lpi.windowRows==null || lpi.windowFirstIndex!=windowFirst || !key.equals(lpi.windowKey)
+            || (now - lpi.windowTimestamp) > windowTimeout)
+        {   // Load window
+            List<Object[]> rows = loadRows(cmd, windowFirst, size);
+            lpi.windowKey = key;
+            lpi.windowFirstIndex = windowFirst;
+            lpi.windowTimestamp = now;
+            lpi.windowRows = rows;
+            if (log.isDebugEnabled())
+                log.debug("Page window loaded at " + windowFirst + " with " + rows.size() + " rows.");
+        }
+        List<Object[]> rows = lpi.windowRows;
+        if (first>0 && !isValidPage(cmd, first, windowFirst, rows))
+        {   // Page is not valid. Try again from beginning
+            clearPageWindow();
+            setFirstItem(0);
+            initPageWindow(cmd);
+            return;
+        }
+        // Collect page items
+        DBColumnExpr[] columns = cmd.getSelectExprList();
+        int from = Math.min(first - windowFirst, rows.size());
+        int to = Math.min(from + getPageSize(), rows.size());
+        pageItems = new ArrayList<DBRecordData>(to - from);
+        for (int i=from; i<to; i++)
+            pageItems.add(new PageItem(cmd.getDatabase(), columns, rows.get(i)));
+    }
+    
+    /**
+     * Checks whether the row before the page exists (as initPageReader does).
+     * If the window starts with the page, the window does not contain that row and it must be read separately.
+     */
+    private boolean isValidPage(DBCommand cmd, int first, int windowFirst, List<Object[]> rows)
+    {
+        if (first>windowFirst)
+            return (first-windowFirst <= rows.size());
+        // Page starts the window
+        return (rows.size()>0 || loadRows(cmd, first-1, 1).size()>0);
+    }
+    
+    /**
+     * Reads a range of rows into memory
+     */
+    protected List<Object[]> loadRows(DBCommand cmd, int first, int count)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>(count);
+        DBReader r = openLimited(cmd, first, count, false);
+        if (r==null)
+            return rows;
+        try
+        {   // read all rows
+            int fieldCount = r.getFieldCount();
+            while (rows.size()<count && r.moveNext())
+            {
+                Object[] values = new Object[fieldCount];
+                for (int i=0; i<fieldCount; i++)
+                    values[i] = r.getValue(i);
+                rows.add(values);
+            }
+            return rows;
+        } finally {
+            r.close();
+        }
+    }
+    
+    /**
+     * A detached row of a page window
+     */
+    public static final class PageItem extends DBRecordData
+    {
+        private final static long serialVersionUID = 1L;
+        
+        private final DBDatabase db;
+        private final DBColumnExpr[] columns;
+        private final Object[] values;
+        
+        public PageItem(DBDatabase db, DBColumnExpr[] columns, Object[] values)
+        {
+            this.db = db;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Override
+        public DBDatabase getDatabase()
+        {
+            return db;
+        }
+
+        @Override
+        public int getFieldCount()
+        {
+            return columns.length;
+        }
+
+        @Override
+        public int getFieldIndex(ColumnExpr column)
+        {
+            for (int i = 0; i < columns.length; i++)
+            {
+                if (columns[i].equals(column))
+                    return i;
+            }
+            if (column instanceof DBColumn)
+            {   // Try Update Column
+                for (int i = 0; i < columns.length; i++)
+                {
+                    DBColumn updColumn = columns[i].getUpdateColumn();
+                    if (updColumn!=null && updColumn.equals(column))
+                        return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getFieldIndex(String column)
+        {
+            for (int i = 0; i < columns.length; i++)
+                if (columns[i].getName().equalsIgnoreCase(column))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public DBColumnExpr getColumnExpr(int i)
+        {
+            if (i < 0 || i >= columns.length)
+                return null;
+            return columns[i];
+        }
+
+        @Override
+        public Object getValue(int index)
+        {
+            if (index < 0 || index >= values.length)
+                throw new InvalidArgumentException("index", index);
+            return values[index];
+        }
+
+        @Override
+        public int addColumnDesc(Element parent)
+        {
+            for (int i = 0; i < columns.length; i++)
+                columns[i].addXml(parent, 0);
+            return columns.length;
+        }
+
+        @Override
+        public int addRowValues(Element parent)
+        {
+            for (int i = 0; i < columns.length; i++)
+            {
+                String value = getString(i);
+                Element elem = XMLUtil.addElement(parent, columns[i].getName(), value);
+                if (value == null)
+                    elem.setAttribute("null", "yes"); // Null-Value
+            }
+            return columns.length;
+        }
+
+        @Override
+        public Document getXmlDocument()
+        {
+            throw new NotSupportedException(this, "getXmlDocument");
+        }
+
+        @Override
+        public void close()
+        {
+            // Nothing to do
+        }
+    }
+
 }
@@ -20,11 +20,12 @@ package org.apache.empire.struts2.html;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.empire.commons.HtmlUtils;
 import org.apache.empire.commons.StringUtils;
-import org.apache.commons.lang.xwork.StringEscapeUtils;
 
 
 public class HtmlWriter
@@ -32,6 +33,9 @@ public class HtmlWriter
     // Logger
     protected static Logger log = LoggerFactory.getLogger(HtmlWriter.class);
     
+    // Precomputed boolean attributes (e.g. ' disabled="disabled"')
+    private static final ConcurrentHashMap<String, String> booleanAttributes = new ConcurrentHashMap<String, String>();
+    
     public static class HtmlTag
     {
         private HtmlWriter w;
@@ -50,8 +54,7 @@ public class HtmlWriter
             // write start
             if (name!=null)
             {
-                w.print("<");
-                w.print(name);
+                w.append('<').append(name);
             }
         }
         
@@ -64,8 +67,7 @@ public class HtmlWriter
         {
             if (name==null || attributes==null)
                 return; // Ignore Attributes with null values
-            w.print(" ");
-            w.print(attributes);
+            w.append(' ').append(attributes);
         }
         
         public void addAttributeNoCheck(String attrib, Object value, boolean escapeHtml)
@@ -74,14 +76,8 @@ public class HtmlWriter
                 return;
             // Get String value
             String strValue = StringUtils.valueOf(value);
-            if (escapeHtml)
-                strValue = StringEscapeUtils.escapeHtml(strValue);
             // Add Attribute
-            w.print(" ");
-            w.print(attrib);
-            w.print("=\"");
-            w.print(strValue);
-            w.print("\"");
+            appendAttribute(attrib, strValue, escapeHtml);
         }
         
         public void addAttribute(String attrib, Object value, boolean escapeHtml)
@@ -91,13 +87,17 @@ public class HtmlWriter
             String strValue = value.toString();
             if (strValue==null || strValue.length()==0)
                 return; // Ingore Emtpy Strings
+            appendAttribute(attrib, strValue, escapeHtml);
+        }
+        
+        private void appendAttribute(String attrib, String value, boolean escapeHtml)
+        {
+            StringBuilder buf = w.append(' ').append(attrib).append("=\"");
             if (escapeHtml)
-                strValue = StringEscapeUtils.escapeHtml(strValue);
-            w.print(" ");
-            w.print(attrib);
-            w.print("=\"");
-            w.print(strValue);
-            w.print("\"");
+                HtmlUtils.appendHtml(buf, value);
+            else
+                buf.append(value);
+            buf.append('"');
         }
 
         public void addAttribute(String attrib, Object value)
@@ -107,22 +107,35 @@ public class HtmlWriter
         
         public void addAttribute(String attrib)
         {
-            addAttribute(attrib, attrib, false);
+            if (name==null || attrib==null || attrib.length()==0)
+                return;
+            // Use precomputed attribute
+            String attr = booleanAttributes.get(attrib);
+            if (attr==null)
+            {   attr = " " + attrib + "=\"" + attrib + "\"";
+                booleanAttributes.putIfAbsent(attrib, attr);
+            }
+            w.append(attr);
         }
 
         public void addAttribute(String attrib, boolean present)
         {
             if (present)
-                addAttribute(attrib, attrib, false);
+                addAttribute(attrib);
         }
 
         public void beginBody(String body, boolean newLine)
         {
             if (name!=null)
-                w.print(">", newLine);
+            {   w.append('>');
+                if (newLine)
+                    w.append('\n');
+            }
             if (body!=null)
-                w.print(body);
+                w.append(body);
             hasBody = true;
+            // write tag
+            w.flush();
         }
         
         public void beginBody(String body)
@@ -147,7 +160,7 @@ public class HtmlWriter
             {
                 if (hasBody==false)
                     beginBody(body, false);
-                else w.print(body);
+                else w.append(body);
             }
             // End of Tag
             if (name!=null)
@@ -155,16 +168,17 @@ public class HtmlWriter
                 // Check Body
                 if (hasBody)
                 {
-                    w.print("</");
-                    w.print(name);
-                    w.print(">", newLine);
+                    w.append("</").append(name).append('>');
                 }
                 else
                 {   
-                    w.print(" />", newLine);
+                    w.append(" />");
                 }
+                if (newLine)
+                    w.append('\n');
             }
             // done
+            w.flush();
             w = null;
         }
 
@@ -186,11 +200,50 @@ public class HtmlWriter
     
     private Writer writer;
     
+    // Buffer for the tag currently written
+    private StringBuilder buffer = null;
+    
     public HtmlWriter(Writer writer)
     {
         this.writer = writer;
     }
 
+    /**
+     * Appends text of a tag to the buffer
+     * @param text the text to append
+     * @return the buffer
+     */
+    private StringBuilder append(String text)
+    {
+        if (buffer==null)
+            buffer = HtmlUtils.getBuffer();
+        return buffer.append(text);
+    }
+
+    private StringBuilder append(char c)
+    {
+        if (buffer==null)
+            buffer = HtmlUtils.getBuffer();
+        return buffer.append(c);
+    }
+
+    /**
+     * Writes the buffered text
+     */
+    private void flush()
+    {
+        if (buffer==null)
+            return;
+        try {
+            writer.append(buffer);
+        } catch(IOException e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            HtmlUtils.releaseBuffer(buffer);
+            buffer = null;
+        }
+    }
+
     private void print(String text, boolean endOfLine)
     {
         try {
@@ -200,6 +253,8 @@ public class HtmlWriter
                 log.warn("cannot print text value of null!");
                 return; // nothing do do
             }
+            // Write buffered text first
+            flush();
             // Print now
             writer.write(text);
             if (endOfLine)
@@ -226,6 +281,8 @@ public class HtmlWriter
     
     public HtmlTag startTag(String name)
     {
+        // Write buffered text first
+        flush();
         HtmlTag tag = new HtmlTag(this, name, false);
         tag.startTag();
         return tag;
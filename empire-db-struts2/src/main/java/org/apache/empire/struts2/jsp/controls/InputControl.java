@@ -20,8 +20,8 @@ package org.apache.empire.struts2.jsp.controls;
 
 import java.util.Locale;
 
-import org.apache.commons.lang.xwork.StringEscapeUtils;
 import org.apache.empire.commons.ErrorType;
+import org.apache.empire.commons.HtmlUtils;
 import org.apache.empire.commons.Options;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
@@ -312,7 +312,7 @@ public abstract class InputControl
         if (hasFormatOption(vi, "noencode"))
             return s;
         // Encode Html
-        return StringEscapeUtils.escapeHtml(s);
+        return HtmlUtils.escapeHtml(s);
     }
 
     /**
@@ -20,12 +20,12 @@ package org.apache.empire.struts2.jsp.controls;
 
 import java.util.Locale;
 
+import org.apache.empire.commons.HtmlUtils;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
 import org.apache.empire.struts2.html.HtmlTagDictionary;
 import org.apache.empire.struts2.html.HtmlWriter;
 import org.apache.empire.struts2.html.HtmlWriter.HtmlTag;
-import org.apache.commons.lang.xwork.StringEscapeUtils;
 
 
 public class TextAreaInputControl extends InputControl
@@ -127,7 +127,7 @@ public class TextAreaInputControl extends InputControl
         input.addAttribute("onblur",    ci.getOnblur());
         // Body
         String value = StringUtils.toString(ci.getValue());
-        value = StringEscapeUtils.escapeHtml(value);
+        value = HtmlUtils.escapeHtml(value);
         input.beginBody(value);
         // End
         input.endTag();
@@ -25,6 +25,7 @@ import java.util.Currency;
 import java.util.Date;
 import java.util.Locale;
 
+import org.apache.empire.commons.HtmlUtils;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.Options;
 import org.apache.empire.commons.StringUtils;
@@ -33,7 +34,6 @@ import org.apache.empire.data.DataType;
 import org.apache.empire.struts2.html.HtmlWriter;
 import org.apache.empire.struts2.html.HtmlWriter.HtmlTag;
 import org.apache.empire.struts2.web.FieldErrors;
-import org.apache.commons.lang.xwork.StringEscapeUtils;
 
 
 public class TextInputControl extends InputControl
@@ -122,7 +122,7 @@ public class TextInputControl extends InputControl
             if (hasFormatOption(vi, "noencode"))
                 return s;
             // Encoded text
-            return StringEscapeUtils.escapeHtml(s);
+            return HtmlUtils.escapeHtml(s);
         }
         if (dataType == DataType.INTEGER || dataType == DataType.AUTOINC)
         { // Integer
@@ -148,7 +148,7 @@ public class TextInputControl extends InputControl
          *  }
          */
         // Convert to String
-        return StringEscapeUtils.escapeHtml(String.valueOf(value));
+        return HtmlUtils.escapeHtml(String.valueOf(value));
     }
 
     protected String formatValue(ValueInfo vi, boolean appendUnit)
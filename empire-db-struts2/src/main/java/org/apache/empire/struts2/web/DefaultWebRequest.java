@@ -18,11 +18,19 @@
  */
 package org.apache.empire.struts2.web;
 
+import java.sql.Connection;
+
+import org.apache.empire.db.DBConnectionProvider;
+import org.apache.empire.db.DBConnectionScope;
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.exceptions.NotSupportedException;
+
 
 public class DefaultWebRequest implements WebRequest
 {    
     private RequestContext  request;
     private ResponseContext response; 
+    private DBConnectionScope connections = null;
     
     public boolean init(RequestContext request, ResponseContext response, Object session)
     {
@@ -48,10 +56,58 @@ public class DefaultWebRequest implements WebRequest
     }
     
     /**
+     * Returns the connection provider for this request.
+     * By default the application object is used if it implements the DBConnectionProvider interface.
+     * @return the connection provider or null if connections are not managed by the request
+     */
+    protected DBConnectionProvider getConnectionProvider()
+    {
+        Object app = request.getSessionContext().getAppContext().getAttribute(WebApplication.APPLICATION_NAME);
+        return (app instanceof DBConnectionProvider) ? (DBConnectionProvider)app : null;
+    }
+    
+    /**
+     * Returns whether this request will only execute queries.
+     * If true, connections are obtained from the provider as read-only connections.
+     * @return false by default
+     */
+    protected boolean isReadOnlyRequest()
+    {
+        return false;
+    }
+    
+    /**
+     * Returns a connection for this request.
+     * The connection is obtained from the connection provider on first access and released when the request ends.
+     * @param db the database
+     * @return the connection
+     */
+    public Connection getConnection(DBDatabase db)
+    {
+        if (connections==null)
+        {   // Create the connection scope
+            DBConnectionProvider provider = getConnectionProvider();
+            if (provider==null)
+                throw new NotSupportedException(this, "getConnection");
+            connections = new DBConnectionScope(provider, isReadOnlyRequest());
+        }
+        return connections.getConnection(db);
+    }
+    
+    /**
+     * Releases all connections of this request.
+     * A positive exit code commits all changes, a negative exit code rolls them back.
      * @see WebRequest#exit(int)
      */
     public void exit(int exitCode)
     {
-        // nothing to do
+        if (connections!=null)
+        {   // 0 or positive exitCode indicates success
+            try {
+                connections.releaseAll(exitCode>=0);
+            } finally {
+                connections = null;
+            }
+        }
     }
 }
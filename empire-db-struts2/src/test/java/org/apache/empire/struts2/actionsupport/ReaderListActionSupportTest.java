@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.struts2.actionsupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.empire.data.Column;
+import org.apache.empire.data.DataMode;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBDriverFeature;
+import org.apache.empire.db.DBRecordData;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBTable;
+import org.apache.empire.db.DBTableColumn;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.apache.empire.db.mysql.DBDatabaseDriverMySQL.DBCommandMySQL;
+import org.apache.empire.struts2.action.ErrorInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReaderListActionSupportTest
+{
+    private static final int PAGE_SIZE = 5;
+    private static final int ROW_COUNT = 12;
+
+    private Connection conn;
+    private TestDB db;
+    private TestAction action;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Class.forName("org.hsqldb.jdbcDriver");
+        conn = DriverManager.getConnection("jdbc:hsqldb:mem:struts2paging", "sa", "");
+        PagingDriver driver = new PagingDriver();
+        db = new TestDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(driver, script);
+        script.run(driver, conn);
+        for (int i=0; i<ROW_COUNT; i++)
+            db.executeSQL("INSERT INTO ITEMS (ID, NAME) VALUES (" + i + ", 'Item" + i + "')", null, conn);
+        action = new TestAction(conn);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        db.executeSQL("DROP SCHEMA PUBLIC CASCADE", null, conn);
+        conn.close();
+    }
+
+    @Test
+    public void testPageReader()
+    {
+        ReaderListActionSupport list = createListSupport(0);
+        list.setFirstItem(10);
+        assertEquals("[Item10, Item11]", readPage(list).toString());
+        // the page after the last row is empty but valid
+        list.setFirstItem(12);
+        assertEquals("[]", readPage(list).toString());
+        assertEquals(12, list.getFirstItemIndex());
+        // invalid page
+        list.setFirstItem(15);
+        assertEquals("[Item0, Item1, Item2, Item3, Item4]", readPage(list).toString());
+        assertEquals(0, list.getFirstItemIndex());
+    }
+
+    @Test
+    public void testPageWindow()
+    {
+        ReaderListActionSupport list = createListSupport(2);
+        list.setFirstItem(10);
+        assertEquals("[Item10, Item11]", readPage(list).toString());
+        // invalid page within a window
+        list.setFirstItem(15);
+        assertEquals("[Item0, Item1, Item2, Item3, Item4]", readPage(list).toString());
+        assertEquals(0, list.getFirstItemIndex());
+        // invalid page at the start of an empty window
+        list.setFirstItem(20);
+        assertEquals("[Item0, Item1, Item2, Item3, Item4]", readPage(list).toString());
+        assertEquals(0, list.getFirstItemIndex());
+    }
+
+    @Test
+    public void testPageWindowAfterLastRow()
+    {
+        // the page after the last row starts a window
+        db.executeSQL("DELETE FROM ITEMS WHERE ID>=10", null, conn);
+        ReaderListActionSupport list = createListSupport(2);
+        list.setFirstItem(10);
+        assertEquals("[]", readPage(list).toString());
+        assertEquals(10, list.getFirstItemIndex());
+    }
+
+    private ReaderListActionSupport createListSupport(int windowPages)
+    {
+        ReaderListActionSupport list = new ReaderListActionSupport(action, "items");
+        list.setNativePaging(true);
+        list.setWindowPages(windowPages);
+        return list;
+    }
+
+    private List<String> readPage(ReaderListActionSupport list)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.ITEMS.NAME);
+        cmd.orderBy(db.ITEMS.ID);
+        list.initReader(cmd);
+        List<String> names = new ArrayList<String>();
+        if (list.getPageItems()!=null)
+        {   // page window
+            for (DBRecordData item : list.getPageItems())
+                names.add(item.getString(db.ITEMS.NAME));
+            return names;
+        }
+        try
+        {   // page reader
+            assertTrue(list.getReader().isOpen());
+            while (names.size()<PAGE_SIZE && list.getReader().moveNext())
+                names.add(list.getReader().getString(db.ITEMS.NAME));
+            return names;
+        } finally {
+            list.getReader().close();
+        }
+    }
+
+    /**
+     * HSQLDB driver with LIMIT and OFFSET support
+     */
+    private static class PagingDriver extends DBDatabaseDriverHSql
+    {
+        private final static long serialVersionUID = 1L;
+
+        @Override
+        public DBCommand createCommand(DBDatabase db)
+        {
+            return new DBCommandMySQL(db);
+        }
+
+        @Override
+        public boolean isSupported(DBDriverFeature type)
+        {
+            if (type==DBDriverFeature.QUERY_LIMIT_ROWS || type==DBDriverFeature.QUERY_SKIP_ROWS)
+                return true;
+            return super.isSupported(type);
+        }
+    }
+
+    private static class TestDB extends DBDatabase
+    {
+        private final static long serialVersionUID = 1L;
+
+        public final Items ITEMS = new Items(this);
+    }
+
+    private static class Items extends DBTable
+    {
+        private final static long serialVersionUID = 1L;
+
+        public final DBTableColumn ID;
+        public final DBTableColumn NAME;
+
+        public Items(DBDatabase db)
+        {
+            super("ITEMS", db);
+            ID   = addColumn("ID", DataType.INTEGER, 0, DataMode.NotNull);
+            NAME = addColumn("NAME", DataType.TEXT, 20, DataMode.NotNull);
+            setPrimaryKey(ID);
+        }
+    }
+
+    /**
+     * Action storing its beans in a map instead of the session
+     */
+    private static class TestAction extends ActionBase
+    {
+        private final Connection conn;
+        private final Map<Class<?>, Object> beans = new HashMap<Class<?>, Object>();
+
+        public TestAction(Connection conn)
+        {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object getActionBean(Class<?> objClass, boolean create, String ownerProperty)
+        {
+            Object obj = beans.get(objClass);
+            if (obj==null && create)
+            {   try {
+                    obj = objClass.newInstance();
+                    beans.put(objClass, obj);
+                } catch(Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return obj;
+        }
+
+        @Override
+        protected Connection getConnection()
+        {
+            return conn;
+        }
+
+        @Override
+        public int getListPageSize()
+        {
+            return PAGE_SIZE;
+        }
+
+        @Override
+        public void setActionError(Exception exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+
+        @Override
+        protected void addFieldError(String name, Column column, ErrorInfo error)
+        {
+            // not used
+        }
+
+        public String getItemPropertyName()
+        {
+            return "item";
+        }
+
+        public Map<String, Object> getRequestParameters()
+        {
+            return new HashMap<String, Object>();
+        }
+
+        public boolean hasRequestParam(String param)
+        {
+            return false;
+        }
+
+        public String getRequestParam(String param)
+        {
+            return null;
+        }
+
+        public String[] getRequestArrayParam(String param)
+        {
+            return null;
+        }
+
+        public Locale getLocale()
+        {
+            return Locale.ENGLISH;
+        }
+    }
+}
@@ -125,6 +125,22 @@ public class Attributes extends AbstractSet<Attributes.Attribute> implements Clo
          return clone;
     }
 
+    /**
+     * Returns a copy of this set which contains copies of all attributes.<br>
+     * Unlike clone(), setting the value of an existing attribute of the copy does not affect this set.
+     * @return the copy
+     */
+    public Attributes deepClone()
+    {
+         Attributes clone = new Attributes(size());
+         if (attributes!=null)
+         {
+             for (Attribute a : attributes)
+                 clone.list().add(new Attribute(a.getName(), a.getValue(), a.getNamespace()));
+         }
+         return clone;
+    }
+
     @Override
     public Iterator<Attribute> iterator()
     {
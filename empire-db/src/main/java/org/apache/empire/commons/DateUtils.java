@@ -19,11 +19,18 @@
 package org.apache.empire.commons;
 
 import java.text.DateFormat;
+import java.text.DateFormatSymbols;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +44,123 @@ public class DateUtils
     // Logger
     private static final Logger log = LoggerFactory.getLogger(DateUtils.class);
     
+    /**
+     * The names of days and months for a locale
+     */
+    private static final class LocaleNames
+    {
+        private final String[] weekdays;
+        private final String[] shortWeekdays;
+        private final String[] months;
+        private final String[] shortMonths;
+        
+        private LocaleNames(Locale locale)
+        {
+            DateFormatSymbols symbols = new DateFormatSymbols(locale);
+            this.weekdays = symbols.getWeekdays();
+            this.shortWeekdays = symbols.getShortWeekdays();
+            this.months = symbols.getMonths();
+            this.shortMonths = symbols.getShortMonths();
+        }
+    }
+    
+    /**
+     * A pre-parsed date pattern containing numeric fields only (y, M, d, H, m, s, S).
+     * Such patterns are formatted directly without a SimpleDateFormat.
+     */
+    private static final class DatePattern
+    {
+        private final String[] literals; // literal before each field and one trailing literal
+        private final int[]    fields;   // Calendar field
+        private final int[]    widths;   // minimum number of digits
+        private final boolean  numeric;  // false if pattern cannot be handled
+        
+        private DatePattern(String pattern)
+        {
+            List<String>  literalList = new ArrayList<String>();
+            List<Integer> fieldList = new ArrayList<Integer>();
+            List<Integer> widthList = new ArrayList<Integer>();
+            StringBuilder literal = new StringBuilder();
+            boolean supported = true;
+            int len = pattern.length();
+            for (int i = 0; i < len && supported; i++)
+            {
+                char c = pattern.charAt(i);
+                if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z'))
+                {   // a literal
+                    supported = (c != '\'');
+                    literal.append(c);
+                    continue;
+                }
+                int count = 1;
+                while (i + count < len && pattern.charAt(i + count) == c)
+                    count++;
+                int field;
+                switch (c)
+                {
+                    case 'y': field = Calendar.YEAR; break;
+                    case 'M': field = Calendar.MONTH; supported = (count <= 2); break;
+                    case 'd': field = Calendar.DAY_OF_MONTH; break;
+                    case 'H': field = Calendar.HOUR_OF_DAY; break;
+                    case 'm': field = Calendar.MINUTE; break;
+                    case 's': field = Calendar.SECOND; break;
+                    case 'S': field = Calendar.MILLISECOND; break;
+                    default:  field = -1; supported = false;
+                }
+                literalList.add(literal.toString());
+                literal.setLength(0);
+                fieldList.add(field);
+                widthList.add(count);
+                i += count - 1;
+            }
+            literalList.add(literal.toString());
+            this.numeric = supported;
+            this.literals = literalList.toArray(new String[literalList.size()]);
+            this.fields = new int[fieldList.size()];
+            this.widths = new int[fieldList.size()];
+            for (int i = 0; i < fields.length; i++)
+            {
+                fields[i] = fieldList.get(i);
+                widths[i] = widthList.get(i);
+            }
+        }
+        
+        private void format(Calendar calendar, StringBuilder buf)
+        {
+            for (int i = 0; i < fields.length; i++)
+            {
+                buf.append(literals[i]);
+                int value = calendar.get(fields[i]);
+                int width = widths[i];
+                if (fields[i] == Calendar.MONTH)
+                    value++; // months are zero based
+                else if (fields[i] == Calendar.YEAR && width == 2)
+                    value = value % 100;
+                appendDigits(buf, value, width);
+            }
+            buf.append(literals[fields.length]);
+        }
+    }
+    
+    private static final Map<Locale, LocaleNames> localeNames = new ConcurrentHashMap<Locale, LocaleNames>();
+    private static final Map<String, DatePattern> datePatterns = new ConcurrentHashMap<String, DatePattern>();
+    
+    private static final ThreadLocal<Calendar> threadCalendar = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue()
+        {
+            return new GregorianCalendar();
+        }
+    };
+    
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> threadDateFormats = new ThreadLocal<Map<String, SimpleDateFormat>>() {
+        @Override
+        protected Map<String, SimpleDateFormat> initialValue()
+        {
+            return new HashMap<String, SimpleDateFormat>();
+        }
+    };
+    
     private DateUtils()
     {
         // Static Function only
@@ -197,28 +321,34 @@ public class DateUtils
         return df.format(d);
     }
     
+    private static LocaleNames getLocaleNames(Locale locale)
+    {
+        LocaleNames names = localeNames.get(locale);
+        if (names == null)
+        {   // DateFormatSymbols return copies of their arrays, hence keep our own
+            names = new LocaleNames(locale);
+            localeNames.put(locale, names);
+        }
+        return names;
+    }
+    
     public static String formatDayOfWeek(Date d, Locale locale, boolean longFormat)
     {
-        SimpleDateFormat sdf = new SimpleDateFormat("", getSafeLocale(locale));
         Calendar c = Calendar.getInstance(getSafeLocale(locale));
         c.setTime(d);
         int dayOfWeek = c.get(Calendar.DAY_OF_WEEK);
+        LocaleNames names = getLocaleNames(getSafeLocale(locale));
         if (longFormat)
-            return sdf.getDateFormatSymbols().getWeekdays()[dayOfWeek];
+            return names.weekdays[dayOfWeek];
         else
-            return sdf.getDateFormatSymbols().getShortWeekdays()[dayOfWeek];
+            return names.shortWeekdays[dayOfWeek];
     }
     
     public static String formatMonth(Date d, Locale locale, boolean longFormat)
     {
-        SimpleDateFormat sdf = new SimpleDateFormat("", getSafeLocale(locale));
         Calendar c = Calendar.getInstance(getSafeLocale(locale));
         c.setTime(d);
-        int month = c.get(Calendar.MONTH);
-        if (longFormat)
-            return sdf.getDateFormatSymbols().getMonths()[month];
-        else
-            return sdf.getDateFormatSymbols().getShortMonths()[month];
+        return formatMonth(c.get(Calendar.MONTH), locale, longFormat);
     }
     
     public static int getWeekOfYear(Date d, Locale locale)
@@ -230,18 +360,84 @@ public class DateUtils
     
     public static String formatMonth(int month, Locale locale, boolean longFormat)
     {
-        SimpleDateFormat sdf = new SimpleDateFormat("", getSafeLocale(locale));
+        LocaleNames names = getLocaleNames(getSafeLocale(locale));
         if (longFormat)
-            return sdf.getDateFormatSymbols().getMonths()[month];
+            return names.months[month];
         else
-            return sdf.getDateFormatSymbols().getShortMonths()[month];
+            return names.shortMonths[month];
     }
     
     public static String formatYear(Date d, Locale locale)
     {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy", getSafeLocale(locale));
         Calendar c = Calendar.getInstance(getSafeLocale(locale));
         c.setTime(d);
-        return sdf.format(d);
+        StringBuilder buf = new StringBuilder(4);
+        appendDigits(buf, c.get(Calendar.YEAR), 4);
+        return buf.toString();
+    }
+    
+    // ------- pattern based formatting -------
+    
+    /**
+     * Returns a SimpleDateFormat for the given pattern which is cached for the current thread.<br>
+     * The format must not be passed to other threads.
+     * 
+     * @param pattern the date pattern
+     * @return the date format
+     */
+    public static SimpleDateFormat getThreadDateFormat(String pattern)
+    {
+        Map<String, SimpleDateFormat> formats = threadDateFormats.get();
+        SimpleDateFormat sdf = formats.get(pattern);
+        if (sdf == null)
+        {
+            sdf = new SimpleDateFormat(pattern);
+            formats.put(pattern, sdf);
+        }
+        return sdf;
+    }
+    
+    /**
+     * Appends a date formatted with a SimpleDateFormat pattern to a StringBuilder.<br>
+     * Patterns containing only numeric fields (such as "yyyy-MM-dd HH:mm:ss") are formatted directly,  
+     * other patterns are formatted using a SimpleDateFormat cached for the current thread.
+     * 
+     * @param buf the target buffer
+     * @param date the date to format
+     * @param pattern the date pattern
+     */
+    public static void appendDate(StringBuilder buf, Date date, String pattern)
+    {
+        DatePattern dp = datePatterns.get(pattern);
+        if (dp == null)
+        {   // parse pattern
+            dp = new DatePattern(pattern);
+            datePatterns.put(pattern, dp);
+        }
+        if (dp.numeric)
+        {   // format directly
+            Calendar calendar = threadCalendar.get();
+            calendar.setTime(date);
+            dp.format(calendar, buf);
+        }
+        else
+        {   // use date format
+            buf.append(getThreadDateFormat(pattern).format(date));
+        }
+    }
+    
+    private static void appendDigits(StringBuilder buf, int value, int width)
+    {
+        if (value < 0)
+        {   // not expected for date fields
+            buf.append(value);
+            return;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10)
+            digits++;
+        for (; digits < width; digits++)
+            buf.append('0');
+        buf.append(value);
     }
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.commons;
+
+/**
+ * This class contains common functions for rendering html.
+ * <P>
+ * HTML escaping is performed on character level without creating intermediate strings.
+ * Strings that need no escaping are returned as they are.<br/>
+ * Besides the special html characters (&lt;, &gt;, &amp; and &quot;) all non-ASCII characters are
+ * escaped as numeric character references, so the output does not depend on the response encoding. 
+ */
+public class HtmlUtils
+{
+    // Maximum capacity of a buffer that is kept for reuse
+    private static final int MAX_POOLED_BUFFER_SIZE = 8192;
+
+    // Buffer pool (one buffer per thread)
+    private static final ThreadLocal<StringBuilder> bufferPool = new ThreadLocal<StringBuilder>();
+
+    private HtmlUtils()
+    {
+        // Static Function only
+        // No instance may be created
+    }
+
+    /**
+     * Returns an empty buffer for rendering html.<br/>
+     * The buffer is taken from a per-thread pool and should be returned by calling releaseBuffer() when done.
+     * If the pooled buffer is in use a new buffer is created.
+     * 
+     * @return an empty buffer
+     */
+    public static StringBuilder getBuffer()
+    {
+        StringBuilder buf = bufferPool.get();
+        if (buf == null)
+            return new StringBuilder(256);
+        // take from pool
+        bufferPool.set(null);
+        return buf;
+    }
+
+    /**
+     * Returns a buffer obtained by getBuffer() to the per-thread pool
+     * 
+     * @param buf the buffer to release
+     */
+    public static void releaseBuffer(StringBuilder buf)
+    {
+        if (buf == null || buf.capacity() > MAX_POOLED_BUFFER_SIZE)
+            return; // don't keep
+        buf.setLength(0);
+        bufferPool.set(buf);
+    }
+
+    /**
+     * Checks whether a character must be escaped in html
+     * 
+     * @param c the character
+     * @return true if the character needs to be escaped
+     */
+    public static boolean isEscapeRequired(char c)
+    {
+        return (c == '<' || c == '>' || c == '&' || c == '"' || c > 0x7F);
+    }
+
+    /**
+     * Escapes a String for html.
+     * 
+     * @param text the text to escape
+     * @return the escaped text or the text itself if no escaping is required
+     */
+    public static String escapeHtml(String text)
+    {
+        if (text == null)
+            return null;
+        // Find first character to escape
+        int len = text.length();
+        int i = 0;
+        while (i < len && !isEscapeRequired(text.charAt(i)))
+            i++;
+        if (i == len)
+            return text; // nothing to escape
+        // Escape
+        StringBuilder buf = new StringBuilder(len + 16);
+        buf.append(text, 0, i);
+        appendHtml(buf, text, i, len);
+        return buf.toString();
+    }
+
+    /**
+     * Appends a text escaped for html to a buffer
+     * 
+     * @param buf the buffer
+     * @param text the text to append
+     */
+    public static void appendHtml(StringBuilder buf, CharSequence text)
+    {
+        if (text != null)
+            appendHtml(buf, text, 0, text.length());
+    }
+
+    /**
+     * Appends a part of a text escaped for html to a buffer
+     * 
+     * @param buf the buffer
+     * @param text the text to append
+     * @param start the index of the first character
+     * @param end the index after the last character
+     */
+    public static void appendHtml(StringBuilder buf, CharSequence text, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '<':
+                    buf.append("&lt;");
+                    break;
+                case '>':
+                    buf.append("&gt;");
+                    break;
+                case '&':
+                    buf.append("&amp;");
+                    break;
+                case '"':
+                    buf.append("&quot;");
+                    break;
+                default:
+                    if (c <= 0x7F)
+                    {   // plain ASCII
+                        buf.append(c);
+                        break;
+                    }
+                    // character reference
+                    int codePoint = c;
+                    if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1)))
+                        codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buf.append("&#");
+                    buf.append(codePoint);
+                    buf.append(';');
+            }
+        }
+    }
+}
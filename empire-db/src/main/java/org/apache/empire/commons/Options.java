@@ -21,6 +21,7 @@ package org.apache.empire.commons;
 import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -36,6 +37,9 @@ import org.w3c.dom.Element;
  * The class is implemented as a set of OptionEntry objects 
  * where the entry value is used as the key for the set and thus must be unique.<BR>
  * <P> 
+ * For larger lists a hash index of the values is built on demand in order to speed up lookups by value.<BR>
+ * The index is only used if all values are Strings, Numbers, Booleans, Characters or Enums.
+ * <P> 
  */
 public class Options extends AbstractSet<OptionEntry> implements Cloneable, Serializable
 {
@@ -48,7 +52,16 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
 
     private static final String EMPTY_STRING = "";
 
+    private static final Object NULL_KEY = new Object();
+
+    // Minimum number of entries for building a lookup index
+    private static final int INDEX_MIN_SIZE = 16;
+
     private ArrayList<OptionEntry> list = new ArrayList<OptionEntry>();
+
+    // Lookup index (value key to list index) built on demand
+    private transient volatile HashMap<Object, Integer> lookupIndex = null;
+    private transient boolean indexValid = false;
     
     public Options()
     {
@@ -81,6 +94,15 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             value = ((Entry<?,?>) value).getKey();
         if (value instanceof OptionEntry)
             value = ((OptionEntry) value).getValue();
+        // Use index
+        HashMap<Object, Integer> lookup = getLookupIndex();
+        if (lookup != null && isIndexable(value))
+        {   // Lookup candidates
+            int i = findIndexCandidate(lookup, value);
+            if (i != -2)
+                return i;
+            // candidate does not match: search list
+        }
         // Find it now
         int size = list.size();
         for (int i = 0; i < size; i++)
@@ -92,6 +114,119 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         return -1;
     }
     
+    /**
+     * Returns the lookup index. The index is built if required.
+     * @return the lookup index or null if no index is available
+     */
+    private HashMap<Object, Integer> getLookupIndex()
+    {
+        if (indexValid)
+            return lookupIndex;
+        if (list.size() < INDEX_MIN_SIZE)
+            return null;
+        // Build index
+        HashMap<Object, Integer> map = new HashMap<Object, Integer>(list.size() * 2);
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (!addToIndex(map, list.get(i).getValue(), i))
+            {   // Values cannot be indexed
+                map = null;
+                break;
+            }
+        }
+        lookupIndex = map;
+        indexValid = true;
+        return map;
+    }
+
+    /**
+     * Invalidates the lookup index after the list has been modified
+     */
+    private void invalidateIndex()
+    {
+        indexValid = false;
+        lookupIndex = null;
+    }
+
+    /**
+     * Updates the lookup index after an entry has been appended to the list
+     */
+    private void entryAppended()
+    {
+        if (indexValid && lookupIndex != null)
+        {   // Add to index
+            int i = list.size() - 1;
+            if (!addToIndex(lookupIndex, list.get(i).getValue(), i))
+                lookupIndex = null; // values cannot be indexed
+        }
+    }
+
+    /**
+     * Adds a value to an index. 
+     * A value is stored with its string representation and, for numbers, with its numeric value.
+     * Only the first index of each key is stored.
+     * @return false if the value cannot be indexed
+     */
+    private static boolean addToIndex(HashMap<Object, Integer> map, Object value, int i)
+    {
+        if (!isIndexable(value))
+            return false;
+        Integer pos = Integer.valueOf(i);
+        Object key = getStringKey(value);
+        if (!map.containsKey(key))
+            map.put(key, pos);
+        if (value instanceof Number)
+        {   key = getNumberKey((Number) value);
+            if (!map.containsKey(key))
+                map.put(key, pos);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the index of a value using the lookup index
+     * @return the index of the value, -1 if not found or -2 if the list must be searched
+     */
+    private int findIndexCandidate(HashMap<Object, Integer> lookup, Object value)
+    {
+        int result = -1;
+        // Check String representation
+        Integer pos = lookup.get(getStringKey(value));
+        if (pos != null)
+        {   if (!ObjectUtils.compareEqual(value, list.get(pos).getValue()))
+                return -2;
+            result = pos;
+        }
+        // Check numeric value
+        if (value instanceof Number)
+        {   pos = lookup.get(getNumberKey((Number) value));
+            if (pos != null)
+            {   if (!ObjectUtils.compareEqual(value, list.get(pos).getValue()))
+                    return -2;
+                if (result < 0 || pos < result)
+                    result = pos;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isIndexable(Object value)
+    {
+        return (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum<?>);
+    }
+
+    private static Object getStringKey(Object value)
+    {
+        return (value != null ? value.toString() : NULL_KEY);
+    }
+
+    private static Object getNumberKey(Number value)
+    {
+        double d = value.doubleValue();
+        return Double.valueOf(d == 0 ? 0.0d : d); // treat 0.0 and -0.0 as equal
+    }
+
     protected OptionEntry createOptionEntry(Object value, String text)
     {
         return new OptionEntry(value, text);
@@ -171,6 +306,11 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
                 index = list.size();
             // add entry now
             list.add(index, createOptionEntry(value, text));
+            // update lookup index
+            if (index == list.size() - 1)
+                entryAppended();
+            else
+                invalidateIndex();
         }
     }
 
@@ -198,6 +338,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         if (noCheck)
         { 
             list.add(createOptionEntry(value, text));
+            entryAppended();
         } 
         else
         {
@@ -214,9 +355,13 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         }
         int i = getIndex(option.getValue());
         if (i >= 0)
-            list.set(i, option);
+        {   list.set(i, option);
+            invalidateIndex();
+        }
         else
-            list.add(option);
+        {   list.add(option);
+            entryAppended();
+        }
         return true;
     }
 
@@ -224,6 +369,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     public void clear()
     {
         list.clear();
+        invalidateIndex();
     }
 
     @Override
@@ -242,7 +388,25 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     @Override
     public Iterator<OptionEntry> iterator()
     {
-        return list.iterator();
+        final Iterator<OptionEntry> iterator = list.iterator();
+        return new Iterator<OptionEntry>()
+        {
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            public OptionEntry next()
+            {
+                return iterator.next();
+            }
+
+            public void remove()
+            {
+                iterator.remove();
+                invalidateIndex();
+            }
+        };
     }
 
     @Override
@@ -254,6 +418,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             return false; // Element not found
         // remove
         list.remove(i);
+        invalidateIndex();
         return true;
     }
 
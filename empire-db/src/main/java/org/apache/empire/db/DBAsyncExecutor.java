@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.empire.db.DBDatabase.DBRowHandler;
+import org.apache.empire.exceptions.EmpireException;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+
+/**
+ * DBAsyncExecutor
+ * <p>
+ * Executes queries and data manipulation commands asynchronously on a bounded pool of worker threads.<br>
+ * Each call obtains its own connection from a {@link DBConnectionProvider} and releases it when done.
+ * Queries are executed on read-only connections. Changes are committed if the statement succeeds
+ * and rolled back otherwise.
+ * </p>
+ * <p>
+ * The SQL statements are rendered by the calling thread, hence a command may be modified or reused
+ * as soon as the call has returned.<br>
+ * All calls return a {@link Future}. Cancelling the future cancels the running JDBC statement
+ * by calling {@link Statement#cancel()}.<br>
+ * If the query timeout is set, it is applied to every statement executed unless the command specifies its own timeout 
+ * (see {@link #setQueryTimeout(int)}).
+ * </p>
+ * <p>
+ * If all worker threads are busy and the queue of pending calls is full, further calls are rejected
+ * with a {@link RejectedExecutionException}.<br>
+ * Large query results may be streamed with {@link #stream(DBCommandExpr, int)} which blocks the 
+ * worker thread as long as the buffer of rows has not been consumed.
+ * </p>
+ */
+public class DBAsyncExecutor
+{
+    /**
+     * The task for an asynchronous call that cancels the running statement when cancelled
+     */
+    private static final class AsyncTask<T> extends FutureTask<T>
+    {
+        private final DBDatabase db;
+        private final DBStatementTracker tracker;
+
+        public AsyncTask(Callable<T> callable, DBDatabase db, DBStatementTracker tracker)
+        {
+            super(callable);
+            this.db = db;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (!super.cancel(mayInterruptIfRunning))
+                return false;
+            if (tracker.cancel())
+                db.statementCancelled();
+            return true;
+        }
+    }
+
+    /**
+     * The work performed by an asynchronous call
+     */
+    private interface AsyncWork<T>
+    {
+        T execute(Connection conn);
+    }
+
+    /**
+     * DBRowStream
+     * <p>
+     * Provides the rows of a query that is executed by a worker thread.<br>
+     * The rows are passed through a bounded buffer. If the buffer is full, the worker thread waits until
+     * rows have been consumed.<br>
+     * A stream that is not read to the end must be closed in order to stop the query and release the connection.
+     * </p>
+     */
+    public static final class DBRowStream implements Iterator<Object[]>
+    {
+        private static final Object[] END = new Object[0];
+
+        private final BlockingQueue<Object[]> queue;
+        private volatile boolean closed = false;
+        private Future<Integer> future;
+        private Object[] next = null;
+
+        private DBRowStream(int bufferSize)
+        {
+            this.queue = new ArrayBlockingQueue<Object[]>(bufferSize);
+        }
+
+        /**
+         * returns the future of the query providing the number of rows read
+         * @return the future of the query
+         */
+        public Future<Integer> getFuture()
+        {
+            return future;
+        }
+
+        public boolean hasNext()
+        {
+            while (next==null)
+            {   // wait for next row
+                if (closed)
+                    return false;
+                try {
+                    next = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+                if (next==null && future.isDone())
+                {   // query has been cancelled or has finished
+                    next = queue.poll();
+                    if (next==null)
+                        next = END;
+                }
+            }
+            if (next!=END)
+                return true;
+            // end of stream
+            if (!closed && !future.isCancelled())
+                checkResult();
+            return false;
+        }
+
+        public Object[] next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Object[] row = next;
+            next = null;
+            return row;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops the query and discards all rows not yet read.
+         */
+        public void close()
+        {
+            if (closed)
+                return;
+            closed = true;
+            future.cancel(true);
+            queue.clear();
+        }
+
+        /**
+         * Waits for the query to finish and throws its exception if it has failed
+         */
+        private void checkResult()
+        {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof EmpireException)
+                    throw (EmpireException)cause;
+                throw new InternalException(cause);
+            }
+        }
+
+        private boolean put(Object[] row)
+        {
+            try {
+                while (!queue.offer(row, 100, TimeUnit.MILLISECONDS))
+                {   // buffer is full
+                    if (closed)
+                        return false;
+                }
+                return !closed;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Creates the worker threads
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "DBAsyncExecutor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private final DBConnectionProvider provider;
+    private final ExecutorService executor;
+    private int queryTimeout = 0;
+
+    /**
+     * Creates an asynchronous executor that executes the calls on the given executor.
+     * @param provider the provider for the connections
+     * @param executor the executor for the calls. The executor should be bounded.
+     */
+    public DBAsyncExecutor(DBConnectionProvider provider, ExecutorService executor)
+    {
+        if (provider==null)
+            throw new InvalidArgumentException("provider", provider);
+        if (executor==null)
+            throw new InvalidArgumentException("executor", executor);
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates an asynchronous executor with a fixed number of worker threads and a bounded queue of pending calls.
+     * @param provider the provider for the connections
+     * @param threads the number of worker threads. This should not exceed the number of connections available.
+     * @param queueSize the maximum number of calls waiting for a worker thread
+     */
+    public DBAsyncExecutor(DBConnectionProvider provider, int threads, int queueSize)
+    {
+        this(provider, new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+                                              new ArrayBlockingQueue<Runnable>(queueSize), 
+                                              new WorkerThreadFactory()));
+    }
+
+    /**
+     * returns the query timeout in seconds that is applied to every statement.
+     * @return the query timeout in seconds or 0 if no timeout is set
+     */
+    public int getQueryTimeout()
+    {
+        return queryTimeout;
+    }
+
+    /**
+     * sets the query timeout in seconds that is applied to every statement.
+     * If a statement exceeds the timeout, the call fails with an exception.
+     * @param queryTimeout the query timeout in seconds or 0 for no timeout (default)
+     */
+    public void setQueryTimeout(int queryTimeout)
+    {
+        if (queryTimeout < 0)
+            throw new InvalidArgumentException("queryTimeout", queryTimeout);
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Executes a query and returns the result as a list of Object-Arrays.
+     * @param cmd the query command
+     * @return the future of the result
+     */
+    public Future<List<Object[]>> queryObjectList(DBCommandExpr cmd)
+    {
+        final DBDatabase db = getDatabase(cmd);
+        final String sqlCmd = cmd.getSelect();
+        final Object[] sqlParams = cmd.getParamValues();
+        return submit(db, true, getQueryTimeout(cmd), new AsyncWork<List<Object[]>>() {
+            public List<Object[]> execute(Connection conn)
+            {
+                List<Object[]> result = new ArrayList<Object[]>();
+                db.queryObjectList(sqlCmd, sqlParams, conn, result, -1);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Executes a query and returns the value of the first row and column.
+     * If the query does not return a result, the future fails with a QueryNoResultException.
+     * @param cmd the query command
+     * @return the future of the value
+     */
+    public Future<Object> querySingleValue(DBCommandExpr cmd)
+    {
+        final DBDatabase db = getDatabase(cmd);
+        final String sqlCmd = cmd.getSelect();
+        final Object[] sqlParams = cmd.getParamValues();
+        return submit(db, true, getQueryTimeout(cmd), new AsyncWork<Object>() {
+            public Object execute(Connection conn)
+            {
+                return db.querySingleValue(sqlCmd, sqlParams, conn);
+            }
+        });
+    }
+
+    /**
+     * Executes a query and passes the rows one by one to a row handler.<br>
+     * The handler is called by the worker thread. 
+     * The query stops as soon as the handler returns false.
+     * @param cmd the query command
+     * @param handler the handler that processes the rows
+     * @return the future of the number of rows processed
+     */
+    public Future<Integer> query(DBCommandExpr cmd, final DBRowHandler handler)
+    {
+        if (handler==null)
+            throw new InvalidArgumentException("handler", handler);
+        final DBDatabase db = getDatabase(cmd);
+        final String sqlCmd = cmd.getSelect();
+        final Object[] sqlParams = cmd.getParamValues();
+        final DBColumnExpr[] columns = cmd.getSelectExprList();
+        return submit(db, true, getQueryTimeout(cmd), new AsyncWork<Integer>() {
+            public Integer execute(Connection conn)
+            {
+                DBReader reader = new DBReader();
+                try
+                {   reader.open(db, sqlCmd, sqlParams, columns, false, conn);
+                    int count = 0;
+                    while (reader.moveNext())
+                    {
+                        count++;
+                        if (!handler.handleRow(reader))
+                            break;
+                    }
+                    return count;
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes a query and streams the rows through a bounded buffer.<br>
+     * The worker thread only reads ahead as many rows as fit into the buffer.
+     * @param cmd the query command
+     * @param bufferSize the maximum number of rows read ahead
+     * @return the stream of rows
+     */
+    public DBRowStream stream(DBCommandExpr cmd, int bufferSize)
+    {
+        if (bufferSize < 1)
+            throw new InvalidArgumentException("bufferSize", bufferSize);
+        final DBDatabase db = getDatabase(cmd);
+        final String sqlCmd = cmd.getSelect();
+        final Object[] sqlParams = cmd.getParamValues();
+        final DBColumnExpr[] columns = cmd.getSelectExprList();
+        final DBRowStream stream = new DBRowStream(bufferSize);
+        stream.future = submit(db, true, getQueryTimeout(cmd), new AsyncWork<Integer>() {
+            public Integer execute(Connection conn)
+            {
+                DBReader reader = new DBReader();
+                int count = 0;
+                try
+                {   reader.open(db, sqlCmd, sqlParams, columns, false, conn);
+                    while (reader.moveNext())
+                    {
+                        Object[] row = new Object[columns.length];
+                        for (int i=0; i<row.length; i++)
+                            row[i] = reader.getValue(i);
+                        if (!stream.put(row))
+                            break;
+                        count++;
+                    }
+                    return count;
+                } finally {
+                    reader.close();
+                    stream.put(DBRowStream.END);
+                }
+            }
+        });
+        return stream;
+    }
+
+    /**
+     * Executes an insert command.
+     * @param cmd the command containing the insert values
+     * @return the future of the number of records inserted
+     */
+    public Future<Integer> executeInsert(DBCommand cmd)
+    {
+        DBRowSet table = getSetTable(cmd);
+        return executeSQL(cmd.getInsert(), cmd, table);
+    }
+
+    /**
+     * Executes an update command.
+     * @param cmd the command containing the update values and constraints
+     * @return the future of the number of records updated
+     */
+    public Future<Integer> executeUpdate(DBCommand cmd)
+    {
+        DBRowSet table = getSetTable(cmd);
+        return executeSQL(cmd.getUpdate(), cmd, table);
+    }
+
+    /**
+     * Executes a delete command.
+     * @param from the table from which to delete records
+     * @param cmd the command containing the delete constraints
+     * @return the future of the number of records deleted
+     */
+    public Future<Integer> executeDelete(DBTable from, DBCommand cmd)
+    {
+        return executeSQL(cmd.getDelete(from), cmd, from);
+    }
+
+    /**
+     * Initiates an orderly shutdown of the executor.<br>
+     * Pending calls are executed but no new calls are accepted.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+    
+    /**
+     * returns the query timeout for a command.<br>
+     * The timeout of the command takes precedence over the timeout of this executor 
+     * which takes precedence over the default timeout of the database.
+     * @param cmd the command
+     * @return the query timeout in seconds or 0 for no timeout
+     */
+    protected int getQueryTimeout(DBCommandExpr cmd)
+    {
+        if (cmd.getQueryTimeout() > 0)
+            return cmd.getQueryTimeout();
+        if (queryTimeout > 0)
+            return queryTimeout;
+        return cmd.getDatabase().getQueryTimeout();
+    }
+    
+    private Future<Integer> executeSQL(final String sqlCmd, DBCommand cmd, final DBRowSet rowset)
+    {
+        final DBDatabase db = getDatabase(cmd);
+        final Object[] sqlParams = cmd.getParamValues();
+        return submit(db, false, getQueryTimeout(cmd), new AsyncWork<Integer>() {
+            public Integer execute(Connection conn)
+            {
+                int affected = db.executeSQL(sqlCmd, sqlParams, conn);
+                db.invalidateQueryCache(rowset, conn);
+                return affected;
+            }
+        });
+    }
+
+    private DBRowSet getSetTable(DBCommand cmd)
+    {
+        if (cmd==null)
+            throw new InvalidArgumentException("cmd", cmd);
+        if (cmd.set==null || cmd.set.isEmpty())
+            throw new ObjectNotValidException(cmd);
+        return cmd.set.get(0).getTable();
+    }
+
+    private DBDatabase getDatabase(DBCommandExpr cmd)
+    {
+        if (cmd==null)
+            throw new InvalidArgumentException("cmd", cmd);
+        return cmd.getDatabase();
+    }
+
+    private <T> Future<T> submit(final DBDatabase db, final boolean readOnly, int timeout, final AsyncWork<T> work)
+    {
+        final DBStatementTracker tracker = new DBStatementTracker(timeout);
+        AsyncTask<T> task = new AsyncTask<T>(new Callable<T>() {
+            public T call()
+            {
+                Connection conn = provider.getConnection(db, readOnly);
+                boolean success = false;
+                try {
+                    T result = work.execute(tracker.track(conn));
+                    success = true;
+                    return result;
+                } finally {
+                    provider.releaseConnection(db, conn, success && !readOnly);
+                }
+            }
+        }, db, tracker);
+        executor.execute(task);
+        return task;
+    }
+}
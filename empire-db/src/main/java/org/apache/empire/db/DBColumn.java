@@ -25,6 +25,7 @@ import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
 import java.util.Set;
 
+import org.apache.empire.commons.Attributes;
 import org.apache.empire.commons.Options;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.Column;
@@ -354,6 +355,7 @@ public abstract class DBColumn extends DBColumnExpr
     @Override
     public Object getAttribute(String name)
     {
+        Attributes attributes = this.attributes;
         return (attributes != null ? attributes.get(name) : null);
     }
 
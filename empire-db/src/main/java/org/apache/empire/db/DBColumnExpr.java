@@ -43,6 +43,7 @@ import org.w3c.dom.Element;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 
 /**
@@ -57,10 +58,13 @@ public abstract class DBColumnExpr extends DBExpr
     // Predefined column expression attributes
     public static final String DBCOLATTR_TITLE     = "title";
     public static final String DBCOLATTR_TYPE      = "type";
+    
+    private static final AtomicReferenceFieldUpdater<DBColumnExpr, Attributes> attributesUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(DBColumnExpr.class, Attributes.class, "attributes");
 
-    // Properties
-    protected Attributes  attributes = null;
-    protected Options     options = null;
+    // Properties (attributes are replaced on modification, hence they may be read without locking)
+    protected volatile Attributes attributes = null;
+    protected volatile Options    options = null;
     protected String      beanPropertyName = null;
 
     /**
@@ -111,8 +115,9 @@ public abstract class DBColumnExpr extends DBExpr
      * @param name the attribute name
      * @return value of the attribute if it exists or null otherwise
      */
-    public synchronized Object getAttribute(String name)
+    public Object getAttribute(String name)
     {
+        Attributes attributes = this.attributes;
         if (attributes != null && attributes.contains(name))
             return attributes.get(name);
         // Otherwise ask expression
@@ -128,11 +133,38 @@ public abstract class DBColumnExpr extends DBExpr
      * @param name the attribute name
      * @param value the value of the attribute
      */
-    public synchronized void setAttribute(String name, Object value)
+    public void setAttribute(String name, Object value)
+    {
+        // copy on write
+        while (true)
+        {
+            Attributes current = attributes;
+            // existing attributes are copied, as readers of the current set must not see the change
+            Attributes update = (current==null) ? new Attributes() : current.deepClone();
+            update.set(name, value);
+            if (attributesUpdater.compareAndSet(this, current, update))
+                break;
+        }
+    }
+
+    /**
+     * Removes a column attribute.
+     * 
+     * @param name the attribute name
+     */
+    protected void removeAttribute(String name)
     {
-        if (attributes== null)
-            attributes = new Attributes();
-        attributes.set(name, value);
+        // copy on write
+        while (true)
+        {
+            Attributes current = attributes;
+            if (current==null || !current.contains(name))
+                break;
+            Attributes update = current.clone();
+            update.remove(name);
+            if (attributesUpdater.compareAndSet(this, current, update))
+                break;
+        }
     }
 
     /**
@@ -141,7 +173,7 @@ public abstract class DBColumnExpr extends DBExpr
      * 
      * @return the list of options
      */
-    public synchronized Options getOptions()
+    public Options getOptions()
     {
         if (options != null)
             return options;
@@ -157,7 +189,7 @@ public abstract class DBColumnExpr extends DBExpr
      * 
      * @param options the list of options
      */
-    public synchronized void setOptions(Options options)
+    public void setOptions(Options options)
     {
         this.options = options;
     }
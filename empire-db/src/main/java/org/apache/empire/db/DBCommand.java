@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.expr.compare.DBCompareColExpr;
@@ -33,6 +34,7 @@ import org.apache.empire.db.expr.join.DBJoinExpr;
 import org.apache.empire.db.expr.join.DBJoinExprEx;
 import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.MiscellaneousErrorException;
 import org.apache.empire.exceptions.ObjectNotValidException;
 import org.slf4j.Logger;
@@ -65,6 +67,8 @@ public abstract class DBCommand extends DBCommandExpr
     private int                      paramUsageCount= 0;
     // Database
     private DBDatabase               db;
+    // Guards the parameter usage while a statement is generated
+    protected ReentrantLock          renderLock     = new ReentrantLock();
 
     /**
      * Constructs a new DBCommand object and set the specified DBDatabase object.
@@ -88,19 +92,26 @@ public abstract class DBCommand extends DBCommandExpr
     /**
      * internally used to reorder the command params to match their order of occurance
      */
-    protected synchronized void notifyParamUsage(DBCmdParam param)
+    protected void notifyParamUsage(DBCmdParam param)
     {
-        int index = cmdParams.indexOf(param);
-        if (index < paramUsageCount)
-        {   // Error: parameter probably used twice in statement!
-            throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
-        }
-        if (index > paramUsageCount)
-        {   // Correct parameter order
-            cmdParams.remove(index);
-            cmdParams.insertElementAt(param, paramUsageCount);
+        renderLock.lock();
+        try
+        {
+            int index = cmdParams.indexOf(param);
+            if (index < paramUsageCount)
+            {   // Error: parameter probably used twice in statement!
+                throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
+            }
+            if (index > paramUsageCount)
+            {   // Correct parameter order
+                cmdParams.remove(index);
+                cmdParams.insertElementAt(param, paramUsageCount);
+            }
+            paramUsageCount++;
+        } finally
+        {
+            renderLock.unlock();
         }
-        paramUsageCount++;
     }
 
     /**
@@ -139,6 +150,7 @@ public abstract class DBCommand extends DBCommandExpr
         {
             DBCommand clone = (DBCommand)super.clone();
             clone.db = db;
+            clone.renderLock = new ReentrantLock();
             // Clone lists
             if (select!=null)
                 clone.select = new ArrayList<DBColumnExpr>(select);
@@ -688,21 +700,28 @@ public abstract class DBCommand extends DBCommandExpr
     }
     
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
     {
-        resetParamUsage();
-        if (select == null)
-            throw new ObjectNotValidException(this); // invalid!
-        // Prepares statement
-        addSelect(buf);
-        // From clause
-        addFrom(buf);
-        // Add Where
-        addWhere(buf);
-        // Add Grouping
-        addGrouping(buf);
-        // Add Order
-        addOrder(buf);
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            if (select == null)
+                throw new ObjectNotValidException(this); // invalid!
+            // Prepares statement
+            addSelect(buf);
+            // From clause
+            addFrom(buf);
+            // Add Where
+            addWhere(buf);
+            // Add Grouping
+            addGrouping(buf);
+            // Add Order
+            addOrder(buf);
+        } finally
+        {
+            renderLock.unlock();
+        }
     }
     
     /**
@@ -929,37 +948,44 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the update SQL-Command
      */
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
-        resetParamUsage();
-        if (set == null)
-            return null;
-        StringBuilder buf = new StringBuilder("UPDATE ");
-        DBRowSet table =  set.get(0).getTable();
-        if ( joins!=null )
-        {   // Join Update
-            buf.append( table.getAlias() );
-            long context = CTX_DEFAULT;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // From clause
-            addFrom(buf);
-            // Add Where
-            addWhere(buf, context);
-        }
-        else
-        {   // Simple Statement
-            table.addSQL(buf, CTX_FULLNAME);
-            long context = CTX_NAME | CTX_VALUE;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // Add Where
-            addWhere(buf, context);
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            if (set == null)
+                return null;
+            StringBuilder buf = new StringBuilder("UPDATE ");
+            DBRowSet table =  set.get(0).getTable();
+            if ( joins!=null )
+            {   // Join Update
+                buf.append( table.getAlias() );
+                long context = CTX_DEFAULT;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // From clause
+                addFrom(buf);
+                // Add Where
+                addWhere(buf, context);
+            }
+            else
+            {   // Simple Statement
+                table.addSQL(buf, CTX_FULLNAME);
+                long context = CTX_NAME | CTX_VALUE;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // Add Where
+                addWhere(buf, context);
+            }
+            // done
+            return buf.toString();
+        } finally
+        {
+            renderLock.unlock();
         }
-        // done
-        return buf.toString();
     }
 
     /**
@@ -968,56 +994,221 @@ public abstract class DBCommand extends DBCommandExpr
      * @return the insert SQL-Command
      */
     // get Insert
-    public synchronized String getInsert()
+    public String getInsert()
     {
-        resetParamUsage();
-        if (set==null || set.get(0)==null)
-            return null;
-        StringBuilder buf = new StringBuilder("INSERT INTO ");
-        // addTableExpr(buf, CTX_NAME);
-        DBRowSet table =  set.get(0).getTable();
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        buf.append("( ");
-        // Set Expressions
-        ArrayList<DBCompareColExpr> compexpr = null;
-        if (where != null)
-        {   // Convert ColumnExpression List to Column List
-            compexpr = new ArrayList<DBCompareColExpr>(where.size());
-            for (DBCompareExpr expr : where)
-            {   if (expr instanceof DBCompareColExpr)
-                {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
-                    if (column!=null && hasSetExprOn(column)==false)
-                        compexpr.add((DBCompareColExpr)expr);
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            if (set==null || set.get(0)==null)
+                return null;
+            StringBuilder buf = new StringBuilder("INSERT INTO ");
+            // addTableExpr(buf, CTX_NAME);
+            DBRowSet table =  set.get(0).getTable();
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            buf.append("( ");
+            // Set Expressions
+            ArrayList<DBCompareColExpr> compexpr = null;
+            if (where != null)
+            {   // Convert ColumnExpression List to Column List
+                compexpr = new ArrayList<DBCompareColExpr>(where.size());
+                for (DBCompareExpr expr : where)
+                {   if (expr instanceof DBCompareColExpr)
+                    {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
+                        if (column!=null && hasSetExprOn(column)==false)
+                            compexpr.add((DBCompareColExpr)expr);
+                    }
+                }
+                // Add Column Names from where clause
+                if (compexpr.size()>0)
+                {
+                    // add List
+                    addListExpr(buf, compexpr, CTX_NAME, ", ");
+                    // add separator
+                    if (set != null)
+                        buf.append(", ");
+                }
+                else
+                {   // No columns to set
+                    compexpr = null;
                 }
             }
-            // Add Column Names from where clause
-            if (compexpr.size()>0)
-            {
-                // add List
-                addListExpr(buf, compexpr, CTX_NAME, ", ");
-                // add separator
-                if (set != null)
-                    buf.append(", ");
+            if (set != null)
+                addListExpr(buf, set, CTX_NAME, ", ");
+            // Values
+            buf.append(") VALUES ( ");
+            if (compexpr != null)
+                addListExpr(buf, compexpr, CTX_VALUE, ", ");
+            if (compexpr != null && set != null)
+                buf.append(", ");
+            if (set != null)
+                addListExpr(buf, set, CTX_VALUE, ", ");
+            // End
+            buf.append(")");
+            return buf.toString();
+        } finally
+        {
+            renderLock.unlock();
+        }
+    }
+
+    /**
+     * Creates an upsert SQL-Command that inserts a record or updates the existing record with the same key.<BR>
+     * The values are taken from the set expressions of this command which must all refer to the given table
+     * and must include the key columns. The values should be literals or command parameters.<BR>
+     * The default implementation creates a standard SQL MERGE statement. 
+     * Drivers may override {@link #addUpsert(StringBuilder, DBTable, DBColumn[])} in order to provide their native syntax.
+     * 
+     * @param table the table into which to insert or update the record
+     * @param keyColumns the columns that identify an existing record
+     * @return the upsert SQL-Command or null if no values have been set
+     */
+    public String getUpsert(DBTable table, DBColumn[] keyColumns)
+    {
+        if (table==null)
+            throw new InvalidArgumentException("table", table);
+        if (keyColumns==null || keyColumns.length==0)
+            throw new InvalidArgumentException("keyColumns", keyColumns);
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            if (set==null || set.isEmpty())
+                return null;
+            // Check columns
+            for (DBSetExpr expr : set)
+            {   if (expr.getTable()!=table)
+                    throw new InvalidArgumentException("set", expr.getColumn().getName());
             }
-            else
-            {   // No columns to set
-                compexpr = null;
+            for (DBColumn key : keyColumns)
+            {   if (hasSetExprOn(key)==false)
+                    throw new InvalidArgumentException("keyColumns", key.getName());
             }
+            // Build statement
+            StringBuilder buf = new StringBuilder();
+            addUpsert(buf, table, keyColumns);
+            return buf.toString();
+        } finally
+        {
+            renderLock.unlock();
+        }
+    }
+
+    /**
+     * Creates an upsert SQL-Command that identifies an existing record by the primary key of the table.<BR>
+     * see {@link #getUpsert(DBTable, DBColumn[])}
+     * @param table the table into which to insert or update the record
+     * @return the upsert SQL-Command or null if no values have been set
+     */
+    public final String getUpsert(DBTable table)
+    {
+        return getUpsert(table, table.getKeyColumns());
+    }
+
+    /**
+     * Adds the upsert statement for the set expressions of this command.<BR>
+     * The default implementation adds a standard SQL MERGE statement.
+     * @param buf the string buffer
+     * @param table the table into which to insert or update the record
+     * @param keyColumns the columns that identify an existing record
+     */
+    protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+    {
+        String source = "S";
+        buf.append("MERGE INTO ");
+        table.addSQL(buf, CTX_FULLNAME|CTX_ALIAS);
+        buf.append(" USING ");
+        addMergeSource(buf, source);
+        // Join condition
+        buf.append(" ON (");
+        for (int i=0; i<keyColumns.length; i++)
+        {
+            if (i>0)
+                buf.append(" AND ");
+            keyColumns[i].addSQL(buf, CTX_FULLNAME);
+            buf.append("=");
+            buf.append(source);
+            buf.append(".");
+            keyColumns[i].addSQL(buf, CTX_NAME);
+        }
+        buf.append(")");
+        // Update
+        boolean first = true;
+        for (DBSetExpr expr : set)
+        {
+            if (isKeyColumn(expr.getColumn(), keyColumns))
+                continue;
+            buf.append(first ? " WHEN MATCHED THEN UPDATE SET " : ", ");
+            expr.getColumn().addSQL(buf, CTX_NAME);
+            buf.append("=");
+            buf.append(source);
+            buf.append(".");
+            expr.getColumn().addSQL(buf, CTX_NAME);
+            first = false;
+        }
+        // Insert
+        buf.append(" WHEN NOT MATCHED THEN INSERT (");
+        addListExpr(buf, set, CTX_NAME, ", ");
+        buf.append(") VALUES (");
+        for (int i=0; i<set.size(); i++)
+        {
+            if (i>0)
+                buf.append(", ");
+            buf.append(source);
+            buf.append(".");
+            set.get(i).getColumn().addSQL(buf, CTX_NAME);
         }
-        if (set != null)
-            addListExpr(buf, set, CTX_NAME, ", ");
-        // Values
-        buf.append(") VALUES ( ");
-        if (compexpr != null)
-            addListExpr(buf, compexpr, CTX_VALUE, ", ");
-        if (compexpr != null && set != null)
-            buf.append(", ");
-        if (set != null)
-            addListExpr(buf, set, CTX_VALUE, ", ");
-        // End
         buf.append(")");
-        return buf.toString();
+    }
+
+    /**
+     * Adds the source of a MERGE statement providing the values of the set expressions.<BR>
+     * The default implementation adds a VALUES table constructor.
+     * @param buf the string buffer
+     * @param alias the alias of the source
+     */
+    protected void addMergeSource(StringBuilder buf, String alias)
+    {
+        buf.append("(VALUES (");
+        addListExpr(buf, set, CTX_VALUE, ", ");
+        buf.append(")) AS ");
+        buf.append(alias);
+        buf.append(" (");
+        addListExpr(buf, set, CTX_NAME, ", ");
+        buf.append(")");
+    }
+
+    /**
+     * Adds an insert statement for the set expressions of this command without checking for existing records.<BR>
+     * This is used by drivers that provide an upsert as an extension of the insert statement.
+     * @param buf the string buffer
+     * @param table the table into which to insert the record
+     */
+    protected void addInsertValues(StringBuilder buf, DBTable table)
+    {
+        buf.append("INSERT INTO ");
+        table.addSQL(buf, CTX_FULLNAME);
+        buf.append(" (");
+        addListExpr(buf, set, CTX_NAME, ", ");
+        buf.append(") VALUES (");
+        addListExpr(buf, set, CTX_VALUE, ", ");
+        buf.append(")");
+    }
+
+    /**
+     * returns whether a column is one of the key columns of an upsert
+     * @param column the column
+     * @param keyColumns the key columns
+     * @return true if the column is a key column or false otherwise
+     */
+    protected boolean isKeyColumn(DBColumn column, DBColumn[] keyColumns)
+    {
+        for (DBColumn key : keyColumns)
+        {   if (key.equals(column))
+                return true;
+        }
+        return false;
     }
     
     /**
@@ -1027,19 +1218,26 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the delete SQL-Command
      */
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where != null)
-        { // add where condition
-            buf.append("\r\nWHERE ");
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            StringBuilder buf = new StringBuilder("DELETE FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
             if (where != null)
-                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                if (where != null)
+                    addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally
+        {
+            renderLock.unlock();
         }
-        return buf.toString();
     }
     
     // ------- Select Statement Parts -------
@@ -304,6 +304,7 @@ public abstract class DBCommandExpr extends DBExpr
     // Members
     protected DBCmdQuery          cmdQuery = null;
     protected List<DBOrderByExpr> orderBy  = null;
+    protected int                 queryTimeout = 0;
 
     /** Constructs an empty DBCommandExpr object */
     public DBCommandExpr()
@@ -311,6 +312,27 @@ public abstract class DBCommandExpr extends DBExpr
         // Default Constructor
     }
 
+    /**
+     * returns the query timeout in seconds for statements executed from this command.
+     * @return the query timeout in seconds or 0 if the default timeout of the database applies
+     */
+    public int getQueryTimeout()
+    {
+        return queryTimeout;
+    }
+
+    /**
+     * sets the query timeout in seconds for statements executed from this command.<br>
+     * If the timeout is exceeded, the JDBC driver cancels the statement and the execution fails.
+     * @param queryTimeout the query timeout in seconds or 0 to use the default timeout of the database (see {@link DBDatabase#setQueryTimeout(int)})
+     */
+    public void setQueryTimeout(int queryTimeout)
+    {
+        if (queryTimeout < 0)
+            throw new InvalidArgumentException("queryTimeout", queryTimeout);
+        this.queryTimeout = queryTimeout;
+    }
+
     // get Select SQL
     public abstract boolean isValid();
 
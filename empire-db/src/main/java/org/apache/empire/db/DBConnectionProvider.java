@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+
+/**
+ * DBConnectionProvider
+ * <p>
+ * This interface is used to obtain and release JDBC connections, e.g. from a connection pool.<br>
+ * Web applications provide an implementation in order to let the framework manage the connections of a request
+ * through a {@link DBConnectionScope}.<br>
+ * For a simple implementation based on a javax.sql.DataSource see {@link DBDataSourceConnectionProvider}.
+ * </p>
+ */
+public interface DBConnectionProvider
+{
+    /**
+     * Obtains a connection for the given database.
+     * 
+     * @param db the database for which to obtain a connection
+     * @param readOnly true if the connection will only be used for queries.
+     *        The provider may route such connections to a read-only replica.
+     * @return the connection
+     */
+    Connection getConnection(DBDatabase db, boolean readOnly);
+
+    /**
+     * Commits or rolls back all changes and releases a connection.
+     * 
+     * @param db the database
+     * @param conn the connection obtained by getConnection()
+     * @param commit true to commit or false to roll back all changes
+     */
+    void releaseConnection(DBDatabase db, Connection conn, boolean commit);
+}
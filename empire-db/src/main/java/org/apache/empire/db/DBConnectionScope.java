@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBConnectionScope
+ * <p>
+ * Manages the connections used during a unit of work such as a web request.<br>
+ * A connection for a database is obtained from the {@link DBConnectionProvider} when it is requested for the first time 
+ * and all connections are released by calling {@link #releaseAll(boolean)} at the end of the request.<br>
+ * If the scope is read-only the connections are requested as read-only connections from the provider.
+ * </p>
+ * <p>
+ * The time needed to acquire a connection and the time connections are held are recorded for all scopes.<br>
+ * A scope is not thread-safe and must only be used by a single thread at a time.
+ * </p>
+ */
+public class DBConnectionScope
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBConnectionScope.class);
+    
+    /**
+     * A connection held by the scope 
+     */
+    private static final class Lease
+    {
+        private final Connection conn;
+        private final long acquired;
+        
+        private Lease(Connection conn, long acquired)
+        {
+            this.conn = conn;
+            this.acquired = acquired;
+        }
+    }
+
+    // Statistics
+    private static final AtomicInteger openCount    = new AtomicInteger();
+    private static final AtomicLong    acquireCount = new AtomicLong();
+    private static final AtomicLong    acquireTime  = new AtomicLong();
+    private static final AtomicLong    releaseCount = new AtomicLong();
+    private static final AtomicLong    holdTime     = new AtomicLong();
+    private static final AtomicLong    maxHoldTime  = new AtomicLong();
+    
+    private final DBConnectionProvider provider;
+    private boolean readOnly;
+    private Map<DBDatabase, Lease> leases = null;
+    
+    /**
+     * Creates a new connection scope
+     * @param provider the provider from which to obtain connections
+     * @param readOnly true if the scope will only execute queries
+     */
+    public DBConnectionScope(DBConnectionProvider provider, boolean readOnly)
+    {
+        if (provider==null)
+            throw new InvalidArgumentException("provider", provider);
+        this.provider = provider;
+        this.readOnly = readOnly;
+    }
+
+    public DBConnectionProvider getProvider()
+    {
+        return provider;
+    }
+
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /**
+     * Sets the read-only state for connections that are obtained afterwards.
+     * Connections already held by the scope are not affected.
+     * @param readOnly true if only queries will be executed
+     */
+    public void setReadOnly(boolean readOnly)
+    {
+        this.readOnly = readOnly;
+    }
+    
+    /**
+     * Returns whether the scope currently holds a connection for the given database
+     */
+    public boolean hasConnection(DBDatabase db)
+    {
+        return (leases!=null && leases.containsKey(db));
+    }
+
+    /**
+     * Returns the connection for a database.
+     * The connection is obtained from the provider on first access. 
+     * @param db the database
+     * @return the connection
+     */
+    public Connection getConnection(DBDatabase db)
+    {
+        if (db==null)
+            throw new InvalidArgumentException("db", db);
+        if (leases!=null)
+        {   // find connection
+            Lease lease = leases.get(db);
+            if (lease!=null)
+                return lease.conn;
+        }
+        else
+        {   // usually there is only one database
+            leases = new LinkedHashMap<DBDatabase, Lease>(2);
+        }
+        // Acquire a new connection
+        long start = System.nanoTime();
+        Connection conn = provider.getConnection(db, readOnly);
+        if (conn==null)
+            return null;
+        long now = System.nanoTime();
+        acquireCount.incrementAndGet();
+        acquireTime.addAndGet(now - start);
+        openCount.incrementAndGet();
+        leases.put(db, new Lease(conn, now));
+        if (log.isDebugEnabled())
+            log.debug("Connection for database {} acquired in {} ms.", db.getClass().getSimpleName(), (now - start) / 1000000L);
+        return conn;
+    }
+    
+    /**
+     * Releases the connection for a database
+     * @param db the database
+     * @param commit true to commit or false to roll back all changes
+     */
+    public void release(DBDatabase db, boolean commit)
+    {
+        if (leases==null)
+            return;
+        Lease lease = leases.remove(db);
+        if (lease!=null)
+            release(db, lease, commit);
+    }
+    
+    /**
+     * Releases all connections of this scope.<br>
+     * If releasing a connection fails (e.g. because the commit fails) the remaining connections are released nevertheless
+     * and the first exception is rethrown afterwards.
+     * @param commit true to commit or false to roll back all changes
+     */
+    public void releaseAll(boolean commit)
+    {
+        if (leases==null)
+            return;
+        RuntimeException error = null;
+        try
+        {   // release all
+            for (Map.Entry<DBDatabase, Lease> e : leases.entrySet())
+            {
+                try {
+                    release(e.getKey(), e.getValue(), commit);
+                } catch(RuntimeException ex) {
+                    // continue with the next connection
+                    log.error("Failed to release connection", ex);
+                    if (error==null)
+                        error = ex;
+                }
+            }
+        } finally {
+            leases = null;
+        }
+        // report the first error
+        if (error!=null)
+            throw error;
+    }
+
+    private void release(DBDatabase db, Lease lease, boolean commit)
+    {
+        try
+        {   // release
+            provider.releaseConnection(db, lease.conn, commit);
+        } 
+        finally
+        {   // statistics
+            long time = System.nanoTime() - lease.acquired;
+            openCount.decrementAndGet();
+            releaseCount.incrementAndGet();
+            holdTime.addAndGet(time);
+            long max = maxHoldTime.get();
+            while (time > max && !maxHoldTime.compareAndSet(max, time))
+                max = maxHoldTime.get();
+            if (log.isDebugEnabled())
+                log.debug("Connection for database {} {} after {} ms.", new Object[] { db.getClass().getSimpleName(), (commit ? "committed" : "rolled back"), time / 1000000L });
+        }
+    }
+
+    /**
+     * Returns the number of connections currently held by all scopes
+     */
+    public static int getOpenConnectionCount()
+    {
+        return openCount.get();
+    }
+
+    /**
+     * Returns the total number of connections acquired
+     */
+    public static long getAcquireCount()
+    {
+        return acquireCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds needed to acquire a connection 
+     */
+    public static long getAverageAcquireTime()
+    {
+        long count = acquireCount.get();
+        return (count > 0) ? (acquireTime.get() / count / 1000000L) : 0;
+    }
+
+    /**
+     * Returns the average time in milliseconds connections are held
+     */
+    public static long getAverageHoldTime()
+    {
+        long count = releaseCount.get();
+        return (count > 0) ? (holdTime.get() / count / 1000000L) : 0;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a connection was held
+     */
+    public static long getMaxHoldTime()
+    {
+        return maxHoldTime.get() / 1000000L;
+    }
+    
+    /**
+     * Resets the connection statistics
+     */
+    public static void resetStatistics()
+    {
+        acquireCount.set(0);
+        acquireTime.set(0);
+        releaseCount.set(0);
+        holdTime.set(0);
+        maxHoldTime.set(0);
+    }
+}
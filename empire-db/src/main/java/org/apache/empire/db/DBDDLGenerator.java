@@ -18,7 +18,9 @@
  */
 package org.apache.empire.db;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.exceptions.InvalidArgumentException;
@@ -52,6 +54,9 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
     // Options
     protected boolean namePrimaryKeyConstraint = false; // Add name for primary key constraint
     protected String  alterColumnPhrase  = " ALTER ";   // Phrase for altering a column
+    protected String  createIndexOnlinePrefix = null;   // Phrase inserted after CREATE INDEX for building an index online (null if not supported)
+    protected String  createIndexOnlineSuffix = null;   // Phrase appended to CREATE INDEX for building an index online (null if not supported)
+    protected boolean createIndexOnlineNonTransactional = false; // Building an index online must not be executed inside a transaction
     
     protected DBDDLGenerator(T driver)
     {
@@ -293,6 +298,132 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
         }
     }
 
+    /**
+     * Appends the DDL-Script required to migrate an existing database to the given data model.<br/>
+     * The existing database is described by a second data model (e.g. one that has been read from 
+     * the database metadata), hence the script can be generated without a database connection.<br/>
+     * The statements are added in the following order:
+     * <ol>
+     *   <li>relations and indexes which have been changed (or which are obsolete) are dropped</li>
+     *   <li>missing tables and columns are added and changed columns are altered</li>
+     *   <li>missing indexes are created (using an online index build where supported)</li>
+     *   <li>missing relations and views are created</li>
+     *   <li>obsolete columns, views and tables are dropped (only if dropObsolete is true)</li>
+     * </ol>
+     * @param db the data model which describes the desired state of the database
+     * @param liveDb the data model which describes the current state of the database
+     * @param dropObsolete true if objects which are not part of the data model should be dropped or false otherwise
+     * @param script the sql script to which to append the dll command(s)
+     */
+    public void getMigrationScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        // The target database must be attached to this driver
+        if (db==null || db.getDriver()!=driver)
+            throw new InvalidArgumentException("db", db);
+        if (liveDb==null || liveDb==db)
+            throw new InvalidArgumentException("liveDb", liveDb);
+        // Drop relations which have been changed or are obsolete
+        for (DBRelation liveRel : liveDb.getRelations())
+        {
+            DBTable t = db.getTable(liveRel.getForeignKeyTable().getName());
+            if (t==null || findRelation(db, liveRel)!=null)
+                continue; // table will be dropped or relation is unchanged
+            if (dropObsolete || db.getRelation(liveRel.getName())!=null)
+                dropRelation(t, liveRel.getName(), script);
+        }
+        // Drop indexes which have been changed or are obsolete
+        List<DBIndex> newIndexes = new ArrayList<DBIndex>();
+        for (DBTable t : db.getTables())
+        {
+            DBTable liveTable = liveDb.getTable(t.getName());
+            if (liveTable==null)
+                continue; // indexes will be created with the table
+            for (DBIndex liveIdx : liveTable.getIndexes())
+            {
+                if (liveIdx.getType()==DBIndex.PRIMARYKEY || liveIdx==liveTable.getPrimaryKey())
+                    continue;
+                DBIndex idx = findIndex(t, liveIdx.getName());
+                if (idx==null && !dropObsolete)
+                    continue;
+                if (idx==null || !isIndexEqual(idx, liveIdx))
+                    dropIndex(t, liveIdx.getName(), script);
+            }
+            for (DBIndex idx : t.getIndexes())
+            {
+                if (idx.getType()==DBIndex.PRIMARYKEY || idx==t.getPrimaryKey())
+                    continue;
+                DBIndex liveIdx = findIndex(liveTable, idx.getName());
+                if (liveIdx==null || !isIndexEqual(idx, liveIdx))
+                    newIndexes.add(idx);
+            }
+        }
+        // Create missing tables and add or alter columns of existing tables 
+        for (DBTable t : db.getTables())
+        {
+            DBTable liveTable = liveDb.getTable(t.getName());
+            if (liveTable==null)
+            {   // create the table including its indexes
+                createTable(t, script);
+                continue;
+            }
+            for (DBColumn c : t.getColumns())
+            {
+                if (!(c instanceof DBTableColumn) || c.getDataType()==DataType.UNKNOWN)
+                    continue;
+                DBColumn liveCol = liveTable.getColumn(c.getName());
+                if (liveCol==null)
+                    alterTable((DBTableColumn)c, DBCmdType.CREATE, script);
+                else if (isColumnChanged((DBTableColumn)c, liveCol))
+                    alterTable((DBTableColumn)c, DBCmdType.ALTER, script);
+            }
+        }
+        // Create missing indexes
+        for (DBIndex idx : newIndexes)
+        {
+            createIndex(idx.getTable(), idx, true, script);
+        }
+        // Create missing relations
+        for (DBRelation r : db.getRelations())
+        {
+            if (findRelation(liveDb, r)==null)
+                createRelation(r, script);
+        }
+        // Create missing views
+        for (DBView v : db.getViews())
+        {
+            if (liveDb.getView(v.getName())!=null)
+                continue;
+            try {
+                createView(v, script);
+            } catch(NotSupportedException e) {
+                log.warn("Unable to create view {}. The view must be created manually.", v.getName());
+            }
+        }
+        // Drop obsolete objects
+        if (dropObsolete)
+        {
+            for (DBView liveView : liveDb.getViews())
+            {
+                if (db.getView(liveView.getName())==null)
+                    dropObject(liveView.getName(), "VIEW", script);
+            }
+            for (DBTable liveTable : liveDb.getTables())
+            {
+                DBTable t = db.getTable(liveTable.getName());
+                if (t==null)
+                {   // drop the table
+                    dropObject(liveTable.getName(), "TABLE", script);
+                    continue;
+                }
+                for (DBColumn liveCol : liveTable.getColumns())
+                {
+                    if (t.getColumn(liveCol.getName())==null)
+                        dropColumn(t, liveCol.getName(), script);
+                }
+            }
+        }
+    }
+
     /**
      * Appends the DDL-Script for creating the given database to an SQL-Script<br/>
      * This includes the generation of all tables, views and relations.
@@ -420,11 +551,26 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
      * @param script the sql script to which to append the dll command(s)
      */
     protected void createIndex(DBTable t, DBIndex idx, DBSQLScript script)
+    {
+        createIndex(t, idx, false, script);
+    }
+
+    /**
+     * Appends the DDL-Script for creating a single index to an SQL-Script<br/>
+     * If online is true and the database supports it, the index is built without locking the table. 
+     * @param t the table
+     * @param index the index to create
+     * @param online true if the index should be created without blocking concurrent access to the table 
+     * @param script the sql script to which to append the dll command(s)
+     */
+    protected void createIndex(DBTable t, DBIndex idx, boolean online, DBSQLScript script)
     {
         StringBuilder sql = new StringBuilder();
 
         // Create Index
         sql.append((idx.getType() == DBIndex.UNIQUE) ? "CREATE UNIQUE INDEX " : "CREATE INDEX ");
+        if (online && createIndexOnlinePrefix!=null)
+            sql.append(createIndexOnlinePrefix);
         appendElementName(sql, idx.getName());
         sql.append(" ON ");
         t.addSQL(sql, DBExpr.CTX_FULLNAME);
@@ -441,8 +587,16 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
             addSeparator = true;
         }
         sql.append(")");
+        if (online && createIndexOnlineSuffix!=null)
+            sql.append(createIndexOnlineSuffix);
         // Create Index
-        addCreateIndexStmt(idx, sql, script);
+        if (online && createIndexOnlineNonTransactional)
+        {   // must be executed outside of a transaction
+            log.info("Adding non-transactional create statmement for index {}.", idx.getName());
+            script.addNonTransactionalStmt(sql);
+        }
+        else
+            addCreateIndexStmt(idx, sql, script);
     }
     
     /**
@@ -587,6 +741,177 @@ public abstract class DBDDLGenerator<T extends DBDatabaseDriver>
         script.addStmt(sql);
     }
     
+    /**
+     * Appends the DDL-Script for dropping an index to an SQL-Script 
+     * @param t the table to which the index belongs
+     * @param name the name of the index
+     * @param script the sql script to which to append the dll command(s)
+     */
+    protected void dropIndex(DBTable t, String name, DBSQLScript script)
+    {
+        dropObject(name, "INDEX", script);
+    }
+    
+    /**
+     * Appends the DDL-Script for dropping a foreign-key relation to an SQL-Script 
+     * @param t the table on which the foreign key constraint is defined
+     * @param name the name of the relation
+     * @param script the sql script to which to append the dll command(s)
+     */
+    protected void dropRelation(DBTable t, String name, DBSQLScript script)
+    {
+        StringBuilder sql = new StringBuilder();
+        sql.append("ALTER TABLE ");
+        t.addSQL(sql, DBExpr.CTX_FULLNAME);
+        sql.append(" DROP CONSTRAINT ");
+        appendElementName(sql, name);
+        script.addStmt(sql);
+    }
+    
+    /**
+     * Appends the DDL-Script for dropping a table column to an SQL-Script 
+     * @param t the table to which the column belongs
+     * @param name the name of the column
+     * @param script the sql script to which to append the dll command(s)
+     */
+    protected void dropColumn(DBTable t, String name, DBSQLScript script)
+    {
+        StringBuilder sql = new StringBuilder();
+        sql.append("ALTER TABLE ");
+        t.addSQL(sql, DBExpr.CTX_FULLNAME);
+        sql.append(" DROP COLUMN ");
+        appendElementName(sql, name);
+        script.addStmt(sql);
+    }
+
+    /**
+     * Checks whether the definition of a table column differs from the existing column 
+     * @param col the column of the data model
+     * @param liveCol the column of the existing database
+     * @return true if the column needs to be altered or false otherwise
+     */
+    protected boolean isColumnChanged(DBTableColumn col, DBColumn liveCol)
+    {
+        // Data type
+        DataType liveType = liveCol.getDataType(); 
+        if (liveType==DataType.UNKNOWN)
+            return false; // unable to compare
+        DataType type = getBaseDataType(col.getDataType());
+        if (type!=getBaseDataType(liveType))
+            return true;
+        // Size
+        double size = col.getSize();
+        switch (col.getDataType())
+        {
+            case TEXT:
+            case CHAR:
+                if (size!=0 && Math.abs((int)size)!=Math.abs((int)liveCol.getSize()))
+                    return true;
+                break;
+            case DECIMAL:
+            {   int prec = (int) size;
+                if (prec>0)
+                {   // compare precision and scale
+                    int scale = (int) ((size - prec) * 10 + 0.5);
+                    double liveSize = liveCol.getSize();
+                    int livePrec  = (int) liveSize;
+                    int liveScale = (int) ((liveSize - livePrec) * 10 + 0.5);
+                    if (prec!=livePrec || scale!=liveScale)
+                        return true;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        // Nullable
+        boolean required = (col.isRequired() || col.isAutoGenerated());
+        return (required!=(liveCol.isRequired() || liveCol.isAutoGenerated()));
+    }
+    
+    /**
+     * Returns the data type that is used to compare a model column with an existing column.<br/>
+     * Override this to map data types which are stored with the same database type.  
+     * @param type the column data type
+     * @return the base data type
+     */
+    protected DataType getBaseDataType(DataType type)
+    {
+        switch (type)
+        {
+            case AUTOINC:
+                return DataType.INTEGER;
+            case UNIQUEID:
+                return DataType.CHAR;
+            default:
+                return type;
+        }
+    }
+    
+    /**
+     * Checks whether two indexes have the same type and columns
+     * @param idx the index of the data model
+     * @param liveIdx the index of the existing database
+     * @return true if the indexes are equal or false otherwise
+     */
+    protected boolean isIndexEqual(DBIndex idx, DBIndex liveIdx)
+    {
+        if ((idx.getType()==DBIndex.UNIQUE)!=(liveIdx.getType()==DBIndex.UNIQUE))
+            return false;
+        DBColumn[] cols = idx.getColumns();
+        DBColumn[] liveCols = liveIdx.getColumns();
+        if (cols.length!=liveCols.length)
+            return false;
+        for (int i=0; i<cols.length; i++)
+        {
+            if (!cols[i].getName().equalsIgnoreCase(liveCols[i].getName()))
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Finds a relation with the same references in another database model 
+     * @param db the database in which to look for the relation
+     * @param rel the relation to find
+     * @return the matching relation or null if no relation was found
+     */
+    protected DBRelation findRelation(DBDatabase db, DBRelation rel)
+    {
+        DBRelation.DBReference[] refs = rel.getReferences();
+        for (DBRelation r : db.getRelations())
+        {
+            DBRelation.DBReference[] other = r.getReferences();
+            if (other.length!=refs.length)
+                continue;
+            boolean equal = true;
+            for (int i=0; i<refs.length && equal; i++)
+            {
+                equal = isColumnNameEqual(refs[i].getSourceColumn(), other[i].getSourceColumn()) 
+                     && isColumnNameEqual(refs[i].getTargetColumn(), other[i].getTargetColumn());
+            }
+            if (equal)
+                return r;
+        }
+        return null;
+    }
+    
+    private boolean isColumnNameEqual(DBColumn col, DBColumn other)
+    {
+        return col.getName().equalsIgnoreCase(other.getName()) 
+            && col.getRowSet().getName().equalsIgnoreCase(other.getRowSet().getName());
+    }
+    
+    private DBIndex findIndex(DBTable t, String name)
+    {
+        for (DBIndex idx : t.getIndexes())
+        {
+            if (idx.getName().equalsIgnoreCase(name))
+                return idx;
+        }
+        return null;
+    }
+
     // Internal helpers 
     protected boolean detectQuoteName(String name)
     {
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBDataSourceConnectionProvider
+ * <p>
+ * A connection provider that obtains connections from a javax.sql.DataSource.<br>
+ * Connections are returned with auto commit disabled.<br>
+ * If a read-only DataSource is supplied (e.g. a replica of the database) read-only connections are obtained from there.
+ * Otherwise read-only connections are obtained from the default DataSource and set to read-only mode.
+ * </p>
+ */
+public class DBDataSourceConnectionProvider implements DBConnectionProvider
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBDataSourceConnectionProvider.class);
+    
+    private final DataSource dataSource;
+    private final DataSource readOnlyDataSource;
+
+    /**
+     * Creates a connection provider for a DataSource and an optional read-only DataSource
+     * @param dataSource the default data source
+     * @param readOnlyDataSource the data source for read-only connections (may be null)
+     */
+    public DBDataSourceConnectionProvider(DataSource dataSource, DataSource readOnlyDataSource)
+    {
+        this.dataSource = dataSource;
+        this.readOnlyDataSource = readOnlyDataSource;
+    }
+
+    /**
+     * Creates a connection provider for a DataSource
+     * @param dataSource the data source
+     */
+    public DBDataSourceConnectionProvider(DataSource dataSource)
+    {
+        this(dataSource, null);
+    }
+    
+    /**
+     * Returns the data source from which to obtain a connection.
+     * Override this to select a data source per database.
+     * 
+     * @param db the database
+     * @param readOnly true if a read-only connection is requested
+     * @return the data source
+     */
+    protected DataSource getDataSource(DBDatabase db, boolean readOnly)
+    {
+        if (readOnly && readOnlyDataSource!=null)
+            return readOnlyDataSource;
+        return dataSource;
+    }
+
+    public Connection getConnection(DBDatabase db, boolean readOnly)
+    {
+        DataSource ds = getDataSource(db, readOnly);
+        if (ds==null)
+            throw new ObjectNotValidException(this);
+        try
+        {   // Obtain a connection
+            Connection conn = ds.getConnection();
+            conn.setAutoCommit(false);
+            if (readOnly)
+                conn.setReadOnly(true);
+            return conn;
+        }
+        catch (SQLException e)
+        {
+            log.error("Failed to get connection from pool.", e);
+            throw new EmpireSQLException(db, e);
+        }
+    }
+
+    public void releaseConnection(DBDatabase db, Connection conn, boolean commit)
+    {
+        if (conn == null)
+            return;
+        try
+        {   // Commit or rollback connection depending on the exit code
+            if (commit)
+                db.commit(conn);
+            else
+                db.rollback(conn);
+        } 
+        finally
+        {   // Release Connection
+            try
+            {   // reset before returning to pool
+                if (conn.isReadOnly())
+                    conn.setReadOnly(false);
+                conn.close();
+            }
+            catch (SQLException e)
+            {
+                log.error("Error releasing connection", e);
+            }
+        }
+    }
+}
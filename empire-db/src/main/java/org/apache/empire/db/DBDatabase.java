@@ -28,9 +28,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.Options;
+import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBRelation.DBCascadeAction;
 import org.apache.empire.db.exceptions.DatabaseNotOpenException;
@@ -62,6 +65,29 @@ public abstract class DBDatabase extends DBObject
 {
     private final static long serialVersionUID = 1L;
   
+    /**
+     * This interface is used to process the rows of a query one by one.
+     * <P>
+     * see {@link DBDatabase#query(DBCommandExpr, Connection, DBRowHandler)}
+     */
+    public interface DBRowHandler
+    {
+        /**
+         * Processes the current row of a query
+         * @param record the data of the current row. The object is only valid during the call.
+         * @return true to continue with the next row or false to stop reading 
+         */
+        boolean handleRow(DBRecordData record);
+    }
+
+    /**
+     * Internal handler for processing the rows of a JDBC ResultSet
+     */
+    private interface ResultSetRowHandler
+    {
+        boolean handleRow(ResultSet rs) throws SQLException;
+    }
+  
     /**
      * This class represents the database systems current date and time.
      * <P>
@@ -137,6 +163,23 @@ public abstract class DBDatabase extends DBObject
      * For custom SQL commands parameters must be explicitly declared using cmd.addCmdParam();   
      */
     private boolean preparedStatementsEnabled = false;
+    
+    /**
+     * Optional cache for query results (Default is null)
+     */
+    private transient DBQueryCache queryCache = null;
+
+    /**
+     * Default query timeout in seconds for all statements (Default is 0 = no timeout)
+     */
+    private int queryTimeout = 0;
+    
+    // Statement metrics
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong cancelCount  = new AtomicLong();
+    
+    // Guards the temporary driver while creating DDL scripts
+    private final ReentrantLock ddlLock = new ReentrantLock();
 
     /**
      * Constructs a new DBDatabase object and sets the specified schema object.
@@ -241,6 +284,89 @@ public abstract class DBDatabase extends DBObject
         log.info("PreparedStatementsEnabled is " + preparedStatementsEnabled);
     }
 
+    /**
+     * returns the cache used for query results or null if query results are not cached (Default)
+     * @return the query cache
+     */
+    public DBQueryCache getQueryCache()
+    {
+        return queryCache;
+    }
+
+    /**
+     * sets a cache for the results of queryObjectList(DBCommandExpr, ...) and querySingleValue(DBCommandExpr, ...)
+     * @param queryCache the query cache or null to disable caching
+     */
+    public void setQueryCache(DBQueryCache queryCache)
+    {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * returns the default query timeout in seconds that is applied to all statements.
+     * @return the query timeout in seconds or 0 if no timeout is set (Default)
+     */
+    public int getQueryTimeout()
+    {
+        return queryTimeout;
+    }
+
+    /**
+     * sets the default query timeout in seconds that is applied to all statements.<br>
+     * Commands may override the timeout (see {@link DBCommandExpr#setQueryTimeout(int)}).
+     * If the timeout is exceeded, the JDBC driver cancels the statement and the execution fails.
+     * @param queryTimeout the query timeout in seconds or 0 for no timeout
+     */
+    public void setQueryTimeout(int queryTimeout)
+    {
+        if (queryTimeout < 0)
+            throw new InvalidArgumentException("queryTimeout", queryTimeout);
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * returns the number of statements that have failed after exceeding their query timeout.
+     * @return the number of timed out statements
+     */
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    /**
+     * returns the number of statements that have been cancelled (see {@link DBReader#cancel()}).
+     * @return the number of cancelled statements
+     */
+    public long getCancelCount()
+    {
+        return cancelCount.get();
+    }
+
+    /**
+     * removes all cached query results that reference the given table or view.<br>
+     * Applications executing plain SQL statements must call this function or {@link #invalidateQueryCache(DBRowSet, Connection)} themselves.
+     * @param rowset the table or view that has been modified
+     */
+    public void invalidateQueryCache(DBRowSet rowset)
+    {
+        if (queryCache!=null)
+            queryCache.invalidate(rowset);
+    }
+
+    /**
+     * removes all cached query results that reference the given table or view.<br>
+     * If the connection is not in auto commit mode, the results are removed again when the transaction 
+     * is committed or rolled back using {@link #commit(Connection)} or {@link #rollback(Connection)}.<br>
+     * This is called whenever a record or a table is modified through this database object.
+     * @param rowset the table or view that has been modified
+     * @param conn the connection on which the table or view has been modified
+     */
+    public void invalidateQueryCache(DBRowSet rowset, Connection conn)
+    {
+        if (queryCache!=null)
+            queryCache.invalidate(rowset, conn);
+    }
+
     /**
      * Sets the database driver for this database. This will
      * set up the connection for use.<br>
@@ -284,8 +410,9 @@ public abstract class DBDatabase extends DBObject
      * @param driver The driver for which to create a DDL Script
      * @param script the script object that will be completed
      */
-    public synchronized void getCreateDDLScript(DBDatabaseDriver driver, DBSQLScript script)
+    public void getCreateDDLScript(DBDatabaseDriver driver, DBSQLScript script)
     {
+        ddlLock.lock();
         DBDatabaseDriver prevDriver = this.driver;
         try {
             // Set driver
@@ -301,6 +428,39 @@ public abstract class DBDatabase extends DBObject
             
         } finally {
             this.driver = prevDriver; 
+            ddlLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a DDL Script for migrating an existing database to this data model.<BR>
+     * The existing database is described by another data model, e.g. one that has been read from the database metadata.<BR>
+     * Like getCreateDDLScript() this function may be called even if the database has not been previously opened.<BR>
+     * <P>
+     * @param driver The driver for which to create a DDL Script
+     * @param liveDb the data model describing the current state of the database
+     * @param dropObsolete true if tables and columns which are not part of this data model should be dropped
+     * @param script the script object that will be completed
+     */
+    public void getMigrationDDLScript(DBDatabaseDriver driver, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        ddlLock.lock();
+        DBDatabaseDriver prevDriver = this.driver;
+        try {
+            // Set driver
+            if (this.driver!=null && this.driver!=driver && driver!=null)
+            {   // The database belongs to a different driver
+                throw new MiscellaneousErrorException("The database is attached to a different driver.");
+            }
+            // Temporarily change driver
+            if (this.driver== null)
+                this.driver = driver;
+            // Get DDL Commands
+            driver.getMigrationDDLScript(this, liveDb, dropObsolete, script);
+            
+        } finally {
+            this.driver = prevDriver; 
+            ddlLock.unlock();
         }
     }
     
@@ -709,6 +869,56 @@ public abstract class DBDatabase extends DBObject
         if (isOpen()==false)
             throw new DatabaseNotOpenException(this);
     }
+
+    /**
+     * returns the query timeout for the statements executed from a command
+     * @param cmd the command or null
+     * @return the query timeout of the command if set or the default query timeout otherwise
+     */
+    protected int getQueryTimeout(DBCommandExpr cmd)
+    {
+        if (cmd!=null && cmd.getQueryTimeout()>0)
+            return cmd.getQueryTimeout();
+        return queryTimeout;
+    }
+    
+    /**
+     * applies a query timeout to all statements created for a connection.<br>
+     * If the connection is already tracked, it is returned unchanged.
+     * @param conn the connection
+     * @param cmd the command that is executed or null to apply the default timeout
+     * @return the connection to use for the execution
+     */
+    Connection applyQueryTimeout(Connection conn, DBCommandExpr cmd)
+    {
+        int timeout = getQueryTimeout(cmd);
+        if (timeout<=0 || conn==null || DBStatementTracker.get(conn)!=null)
+            return conn;
+        return new DBStatementTracker(timeout).track(conn);
+    }
+    
+    /**
+     * counts a failed statement as timed out if it has been running at least as long as its query timeout.  
+     * @param conn the connection on which the statement was executed (as returned by applyQueryTimeout)
+     * @param start the start time of the execution
+     */
+    private void checkQueryTimeout(Connection conn, long start)
+    {
+        DBStatementTracker tracker = DBStatementTracker.get(conn);
+        int timeout = (tracker!=null ? tracker.getQueryTimeout() : queryTimeout);
+        if (timeout<=0 || System.currentTimeMillis()-start < timeout*1000L)
+            return;
+        timeoutCount.incrementAndGet();
+        log.warn("Statement exceeded the query timeout of {} seconds.", timeout);
+    }
+
+    /**
+     * counts a cancelled statement
+     */
+    void statementCancelled()
+    {
+        cancelCount.incrementAndGet();
+    }
     
     /**
      * Creates a new Command object for this database
@@ -753,42 +963,23 @@ public abstract class DBDatabase extends DBObject
      * 
      * @return the value of the first column in the first row of the query 
      */
-    public Object querySingleValue(String sqlCmd, Object[] sqlParams, DataType dataType, Connection conn)
+    public Object querySingleValue(String sqlCmd, Object[] sqlParams, final DataType dataType, Connection conn)
     {
-        checkOpen(); 
-        ResultSet rs = null;
-        try
-        {   // Debug
-            long start = System.currentTimeMillis();
-            if (log.isDebugEnabled())
-                log.debug("Executing: " + sqlCmd);
-            // Get the next Value
-            rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
-            if (rs == null)
-                throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
-            // Check Result
-            if (rs.next() == false)
-            {   // no result
-                log.debug("querySingleValue returned no result");
-                throw new QueryNoResultException(sqlCmd);
+        final Object[] result = new Object[1];
+        int count = queryRows("querySingleValue", sqlCmd, sqlParams, conn, 1, new ResultSetRowHandler() {
+            public boolean handleRow(ResultSet rs) throws SQLException
+            {   // Read value
+                result[0] = driver.getResultValue(rs, 1, dataType);
+                return false;
             }
-            // Read value
-            Object result = driver.getResultValue(rs, 1, dataType);
-            // Debug
-            long queryTime = (System.currentTimeMillis() - start);
-            if (log.isDebugEnabled())
-                log.debug("querySingleValue successful in {} ms. Result value={}.", queryTime, result);
-            else if (queryTime>=longRunndingStmtThreshold)
-                log.warn("Long running query took {} seconds for statement {}.", queryTime / 1000, sqlCmd);
-            // done
-            return result;
-        } catch (SQLException sqle) 
-        {   // Error
-            throw new QueryFailedException(this, sqlCmd, sqle);
-        } finally
-        { // Cleanup
-            closeResultSet(rs);
+        });
+        // Check Result
+        if (count==0)
+        {   // no result
+            log.debug("querySingleValue returned no result");
+            throw new QueryNoResultException(sqlCmd);
         }
+        return result[0];
     }
 
     /**
@@ -971,44 +1162,21 @@ public abstract class DBDatabase extends DBObject
      * 
      * @return the number of elements that have been added to the collection 
      */
-    public <T> int querySimpleList(Class<T> c, String sqlCmd, Object[] sqlParams, DataType dataType, Connection conn, Collection<T> result, int maxRows)
+    public <T> int querySimpleList(final Class<T> c, String sqlCmd, Object[] sqlParams, final DataType dataType, Connection conn, final Collection<T> result, int maxRows)
     {   // Start query
-        checkOpen();
-        ResultSet rs = null;
         try
-        {   // Log performance
-            long start = System.currentTimeMillis();
-            if (log.isDebugEnabled())
-                log.debug("Executing: " + sqlCmd);
-            // Get the next Value
-            rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
-            if (rs == null)
-                throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
-            // Check Result
-            int count=0;
-            while (rs.next() && (maxRows<0 || count<maxRows))
-            {   
-                T item = ObjectUtils.convert(c, driver.getResultValue(rs, 1, dataType));
-                result.add(item);
-                count++;
-            }
-            // Debug
-            long queryTime = (System.currentTimeMillis() - start);
-            if (log.isDebugEnabled())
-                log.debug("querySimpleList retured {} items in {} ms.", count, queryTime);
-            else if (queryTime>=longRunndingStmtThreshold)
-                log.warn("Long running query took {} seconds for statement {}.", queryTime / 1000, sqlCmd);
-            // done
-            return count;
+        {   // Read the first column
+            return queryRows("querySimpleList", sqlCmd, sqlParams, conn, maxRows, new ResultSetRowHandler() {
+                public boolean handleRow(ResultSet rs) throws SQLException
+                {
+                    T item = ObjectUtils.convert(c, driver.getResultValue(rs, 1, dataType));
+                    result.add(item);
+                    return true;
+                }
+            });
         } catch (ClassCastException e) 
         {   log.error("querySingleValue cast exception: ", e);
             throw new InternalException(e);
-        } catch (SQLException sqle) 
-        {   // Error
-            throw new QueryFailedException(this, sqlCmd, sqle);
-        } finally
-        { // Cleanup
-            closeResultSet(rs);
         }
     }
     
@@ -1068,45 +1236,21 @@ public abstract class DBDatabase extends DBObject
      * @param conn a valid connection to the database.
      * @return an Options object containing a set a of values and their corresponding names 
      */
-    public int queryOptionList(String sqlCmd, Object[] sqlParams, Connection conn, Options result)
+    public int queryOptionList(final String sqlCmd, Object[] sqlParams, Connection conn, final Options result)
     {   // Execute the  Statement
-        checkOpen();
-        ResultSet rs = null;
-        try
-        {   // Debug
-            long start = System.currentTimeMillis();
-            if (log.isDebugEnabled())
-                log.debug("Executing: " + sqlCmd);
-            // Get the next Value
-            rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
-            if (rs == null)
-                throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
-            if (rs.getMetaData().getColumnCount()<2)
-                throw new InvalidArgumentException("sqlCmd", sqlCmd);
-            // Check Result
-            int count = 0;
-            while (rs.next())
+        return queryRows("queryOptionList", sqlCmd, sqlParams, conn, -1, new ResultSetRowHandler() {
+            private boolean checked = false;
+            public boolean handleRow(ResultSet rs) throws SQLException
             {
+                if (!checked && rs.getMetaData().getColumnCount()<2)
+                    throw new InvalidArgumentException("sqlCmd", sqlCmd);
+                checked = true;
                 Object value = rs.getObject(1);
                 String text  = rs.getString(2);
                 result.add(value, text, true);
-                count++;
+                return true;
             }
-            // Debug
-            long queryTime = (System.currentTimeMillis() - start);
-            if (log.isDebugEnabled())
-                log.debug("queryOptionList retured {} items in {} ms.", count, queryTime);
-            else if (queryTime>=longRunndingStmtThreshold)
-                log.warn("Long running query took {} seconds for statement {}.", queryTime / 1000, sqlCmd);
-            // done
-            return count;
-        } catch (SQLException sqle) 
-        {   // Error
-            throw new QueryFailedException(this, sqlCmd, sqle);
-        } finally
-        { // Cleanup
-            closeResultSet(rs);
-        }
+        });
     }
     
     /**
@@ -1147,47 +1291,23 @@ public abstract class DBDatabase extends DBObject
      * @param conn a valid connection to the database.
      * @return a list of object arrays 
      */
-    public int queryObjectList(String sqlCmd, Object[] sqlParams, Connection conn, Collection<Object[]> result, int maxRows)
+    public int queryObjectList(String sqlCmd, Object[] sqlParams, Connection conn, final Collection<Object[]> result, int maxRows)
     {   // Perform query
-        checkOpen();
-        ResultSet rs = null;
-        try
-        {   // Log performance
-            long start = System.currentTimeMillis();
-            if (log.isDebugEnabled())
-                log.debug("Executing: " + sqlCmd);
-            // Get the next Value
-            rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
-            if (rs == null)
-                throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
-            // Read List
-            int colCount = rs.getMetaData().getColumnCount();
-            int count = 0;
-            while (rs.next() && (maxRows<0 || count<maxRows))
+        return queryRows("queryObjectList", sqlCmd, sqlParams, conn, maxRows, new ResultSetRowHandler() {
+            private int colCount = -1;
+            public boolean handleRow(ResultSet rs) throws SQLException
             {   // Read row
+                if (colCount<0)
+                    colCount = rs.getMetaData().getColumnCount();
                 Object[] item = new Object[colCount];
                 for (int i=0; i<colCount; i++)
                 {   // Read from Resultset
                     item[i] = driver.getResultValue(rs, i+1, DataType.UNKNOWN);
                 }
                 result.add(item);
-                count++;
+                return true;
             }
-            // Debug
-            long queryTime = (System.currentTimeMillis() - start);
-            if (log.isDebugEnabled())
-                log.debug("queryObjectList retured {} items in {} ms.", count, queryTime);
-            else if (queryTime>=longRunndingStmtThreshold)
-                log.warn("Long running query took {} seconds for statement {}.", queryTime / 1000, sqlCmd);
-            // done
-            return count;
-        } catch (SQLException sqle) 
-        {   // Error
-            throw new QueryFailedException(this, sqlCmd, sqle);
-        } finally
-        { // Cleanup
-            closeResultSet(rs);
-        }
+        });
     } 
 
     /**
@@ -1252,6 +1372,142 @@ public abstract class DBDatabase extends DBObject
     {
         return querySingleRow(sqlCmd, null, conn); 
     }
+
+    /**
+     * Returns the result of a query command as a list Object-Arrays.<br>
+     * If a query cache has been set (see {@link #setQueryCache(DBQueryCache)}) the result is taken from the cache if available.
+     * This function should only be used for small lists.
+     * 
+     * @param cmd the query command
+     * @param conn a valid connection to the database.
+     * @return a list of object arrays 
+     */
+    public List<Object[]> queryObjectList(DBCommandExpr cmd, Connection conn)
+    {
+        String sqlCmd = cmd.getSelect();
+        Object[] sqlParams = cmd.getParamValues();
+        // Check cache
+        DBQueryCache cache = queryCache;
+        if (cache!=null && cache.hasPendingChanges(conn))
+            cache = null; // uncommitted changes may be visible
+        long generation = 0;
+        if (cache!=null)
+        {   List<Object[]> result = cache.get(sqlCmd, sqlParams);
+            if (result!=null)
+                return result;
+            generation = cache.getGeneration();
+        }
+        // Execute the Statement
+        List<Object[]> result = new ArrayList<Object[]>();
+        queryObjectList(sqlCmd, sqlParams, applyQueryTimeout(conn, cmd), result, -1);
+        if (cache!=null)
+            cache.put(sqlCmd, sqlParams, result, DBQueryCache.getReferencedRowSets(cmd), generation);
+        return result;
+    }
+
+    /**
+     * Returns the value of the first row/column of a query command as an object.<br>
+     * If a query cache has been set (see {@link #setQueryCache(DBQueryCache)}) the result is taken from the cache if available.
+     * If the query does not return a result a QueryNoResultException is thrown
+     * 
+     * @param cmd the query command
+     * @param conn a valid connection to the database.
+     * 
+     * @return the value of the first column in the first row of the query 
+     */
+    public Object querySingleValue(DBCommandExpr cmd, Connection conn)
+    {
+        if (queryCache==null)
+            return querySingleValue(cmd.getSelect(), cmd.getParamValues(), applyQueryTimeout(conn, cmd));
+        // Use cache
+        List<Object[]> result = queryObjectList(cmd, conn);
+        if (result.isEmpty() || result.get(0).length==0)
+            throw new QueryNoResultException(cmd.getSelect());
+        return result.get(0)[0];
+    }
+    
+    /**
+     * Executes a query and passes the rows one by one to a row handler.<BR>
+     * The reader is closed as soon as the handler returns false or the last row has been processed.<BR>
+     * <P>
+     * @param cmd the query command
+     * @param conn a valid connection to the database.
+     * @param handler the handler that processes the rows
+     * @return the number of rows processed
+     */
+    public int query(DBCommandExpr cmd, Connection conn, DBRowHandler handler)
+    {
+        if (handler==null)
+            throw new InvalidArgumentException("handler", handler);
+        DBReader reader = new DBReader();
+        try
+        {   // Open the reader
+            reader.open(cmd, conn);
+            int count = 0;
+            while (reader.moveNext())
+            {
+                count++;
+                if (!handler.handleRow(reader))
+                    break;
+            }
+            return count;
+        } finally
+        {   // Cleanup
+            reader.close();
+        }
+    }
+
+    /**
+     * Executes a query and passes the rows of the JDBC ResultSet to a handler.<BR>
+     * The ResultSet and Statement are closed before the function returns.
+     * <P>
+     * @param name the name of the calling function for logging
+     * @param maxRows maximum number of rows or -1 for all rows
+     * @return the number of rows processed
+     */
+    private int queryRows(String name, String sqlCmd, Object[] sqlParams, Connection conn, int maxRows, ResultSetRowHandler handler)
+    {
+        checkOpen();
+        ResultSet rs = null;
+        long start = System.currentTimeMillis();
+        try
+        {   // Log performance
+            if (log.isDebugEnabled())
+                log.debug("Executing: " + sqlCmd);
+            // Get the next Value
+            conn = applyQueryTimeout(conn, null);
+            rs = driver.executeQuery(sqlCmd, sqlParams, false, conn);
+            if (rs == null)
+                throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
+            // Read rows
+            int count = 0;
+            while ((maxRows<0 || count<maxRows) && rs.next())
+            {
+                count++;
+                if (!handler.handleRow(rs))
+                    break;
+            }
+            // release the cursor as early as possible
+            closeResultSet(rs);
+            rs = null;
+            // Debug
+            long queryTime = (System.currentTimeMillis() - start);
+            if (log.isDebugEnabled())
+                log.debug("{} returned {} items in {} ms.", new Object[] { name, count, queryTime });
+            else if (queryTime>=longRunndingStmtThreshold)
+                log.warn("Long running query took {} seconds for statement {}.", queryTime / 1000, sqlCmd);
+            // done
+            return count;
+        } catch (SQLException sqle) 
+        {   // Error
+            checkQueryTimeout(conn, start);
+            throw new QueryFailedException(this, sqlCmd, sqle);
+        } finally
+        { // Cleanup
+            if (rs!=null)
+                closeResultSet(rs);
+        }
+    }
     
     /**
      * Executes an update, insert or delete SQL-Statement.<BR>
@@ -1266,6 +1522,7 @@ public abstract class DBDatabase extends DBObject
     public int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBDatabaseDriver.DBSetGenKeys setGenKeys)
     {
         checkOpen();
+        long start = System.currentTimeMillis();
         try 
         {   // Check argument
             if (conn==null)
@@ -1274,7 +1531,7 @@ public abstract class DBDatabase extends DBObject
             if (log.isInfoEnabled())
                 log.info("Executing: " + sqlCmd);
             // execute SQL
-            long start = System.currentTimeMillis();
+            conn = applyQueryTimeout(conn, null);
             int affected = driver.executeSQL(sqlCmd, sqlParams, conn, setGenKeys);
             // number of affected records
             if (affected < 0)
@@ -1290,6 +1547,7 @@ public abstract class DBDatabase extends DBObject
             
 	    } catch (SQLException sqle) 
         { 	// Error
+            checkQueryTimeout(conn, start);
             throw new StatementFailedException(this, sqlCmd, sqle);
 	    }    
     }
@@ -1298,6 +1556,52 @@ public abstract class DBDatabase extends DBObject
     {
         return executeSQL(sqlCmd, sqlParams, conn, null); 
     }
+
+    /**
+     * Executes several Update, Insert or Delete SQL-Statements in a single batch.<BR>
+     * Please note that drivers may return Statement.SUCCESS_NO_INFO instead of the number of affected records.
+     *
+     * @param sqlCmd the SQL-Commands
+     * @param sqlCmdParams the parameters for each command (Optional)
+     * @param conn a valid connection to the database.
+     *
+     * @return the number of affected records for each statement
+     */
+    public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
+    {
+        checkOpen();
+        long start = System.currentTimeMillis();
+        try
+        {   // Check argument
+            if (conn==null)
+                throw new InvalidArgumentException("conn", conn);
+            if (sqlCmd==null || sqlCmd.length==0)
+                throw new InvalidArgumentException("sqlCmd", sqlCmd);
+            if (sqlCmdParams!=null && sqlCmdParams.length!=sqlCmd.length)
+                throw new InvalidArgumentException("sqlCmdParams", sqlCmdParams);
+            // Debug
+            if (log.isInfoEnabled())
+            {   for (int i=0; i<sqlCmd.length; i++)
+                    log.info("Executing batch statement: " + sqlCmd[i]);
+            }
+            // execute SQL
+            conn = applyQueryTimeout(conn, null);
+            int[] affected = driver.executeBatch(sqlCmd, sqlCmdParams, conn);
+            // Log
+            long execTime = (System.currentTimeMillis() - start);
+            if (log.isInfoEnabled())
+                log.info("executeBatch executed {} statements in {} ms ", sqlCmd.length, execTime);
+            else if (execTime>=longRunndingStmtThreshold)
+                log.warn("Long running batch took {} seconds for statement {}.", execTime / 1000, sqlCmd[0]);
+            // Return number of affected records
+            return affected;
+
+        } catch (SQLException sqle)
+        {   // Error
+            checkQueryTimeout(conn, start);
+            throw new StatementFailedException(this, StringUtils.arrayToString(sqlCmd, ";\n"), sqle);
+        }
+    }
     
     /**
      * @deprecated This method has be deprecated in order to avoid missing command parameters for prepared statements  
@@ -1329,7 +1633,9 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeInsert(DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getInsert(), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getInsert(), cmd.getParamValues(), applyQueryTimeout(conn, cmd));
+        invalidateQueryCache(cmd.set.get(0).getTable(), conn);
+        return affected; 
     }
 
     /**
@@ -1340,7 +1646,9 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeUpdate(DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getUpdate(), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getUpdate(), cmd.getParamValues(), applyQueryTimeout(conn, cmd));
+        invalidateQueryCache(cmd.set.get(0).getTable(), conn);
+        return affected; 
     }
 
     /**
@@ -1352,7 +1660,26 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeDelete(DBTable from, DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getDelete(from), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getDelete(from), cmd.getParamValues(), applyQueryTimeout(conn, cmd));
+        invalidateQueryCache(from, conn);
+        return affected; 
+    }
+
+    /**
+     * Executes an upsert statement from a command object that inserts a record or updates the existing record with the same key.<br>
+     * In order to write many records with a single JDBC batch, the statements may be rendered by {@link DBCommand#getUpsert(DBTable, DBColumn[])}
+     * and executed by {@link #executeBatch(String[], Object[][], Connection)}.
+     * @param table the table into which to insert or update the record
+     * @param keyColumns the columns that identify an existing record
+     * @param cmd the command object containing the column values
+     * @param conn a valid connection to the database.
+     * @return the number of records affected as reported by the driver
+     */
+    public final int executeUpsert(DBTable table, DBColumn[] keyColumns, DBCommand cmd, Connection conn)
+    {
+        int affected = executeSQL(cmd.getUpsert(table, keyColumns), cmd.getParamValues(), applyQueryTimeout(conn, cmd));
+        invalidateQueryCache(table, conn);
+        return affected; 
     }
     
     /**
@@ -1369,6 +1696,7 @@ public abstract class DBDatabase extends DBObject
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
     {
         checkOpen();
+        long start = System.currentTimeMillis();
         try
         {   // Check argument
             if (conn==null)
@@ -1377,7 +1705,7 @@ public abstract class DBDatabase extends DBObject
             if (log.isDebugEnabled())
     	        log.debug("Executing: " + sqlCmd);
             // Execute the Statement
-            long start = System.currentTimeMillis();
+            conn = applyQueryTimeout(conn, null);
             ResultSet rs = driver.executeQuery(sqlCmd, sqlParams, scrollable, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
@@ -1392,6 +1720,7 @@ public abstract class DBDatabase extends DBObject
 
         } catch (SQLException sqle) 
         {   // Error
+            checkQueryTimeout(conn, start);
             throw new QueryFailedException(this, sqlCmd, sqle);
         } 
     }
@@ -1412,6 +1741,9 @@ public abstract class DBDatabase extends DBObject
             // Commit
             if (conn.getAutoCommit()==false)
                 conn.commit();
+            // Remove cached results of modified tables
+            if (queryCache!=null)
+                queryCache.transactionCompleted(conn);
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -1436,6 +1768,9 @@ public abstract class DBDatabase extends DBObject
             // rollback
             log.info("Database rollback issued!");
             conn.rollback();
+            // Remove cached results of modified tables
+            if (queryCache!=null)
+                queryCache.transactionCompleted(conn);
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -27,9 +27,12 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -52,6 +55,9 @@ public abstract class DBDatabaseDriver implements Serializable
 {
     private final static long serialVersionUID = 1L;
     private static final Logger log = LoggerFactory.getLogger(DBDatabaseDriver.class);
+
+    // Date format for parsing date strings (see getSQLDateTimeString)
+    private static final ThreadLocal<DateFormat> sourceDateFormat = new ThreadLocal<DateFormat>();
   
     // sql-phrases
     public static final int SQL_NULL_VALUE       = 1;   // Oracle: null
@@ -572,6 +578,87 @@ public abstract class DBDatabaseDriver implements Serializable
         }
     }
 
+    /**
+     * Executes several update, insert or delete statements as a single JDBC batch.
+     * <P>
+     * Statements without parameters are sent with one Statement batch.
+     * Otherwise the statements are grouped by their SQL and each group is sent as one PreparedStatement batch.
+     * The groups are executed in the order of their first statement, hence statements with different SQL
+     * may be executed in a different order than supplied. The row counts are returned in the order supplied.
+     *
+     * @param sqlCmd the SQL-Commands
+     * @param sqlCmdParams the parameters for each command (Optional). An element may be null if a command has no parameters.
+     * @param conn a valid connection to the database.
+     *
+     * @return the row count for each statement. Some drivers return Statement.SUCCESS_NO_INFO for batched statements.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
+        throws SQLException
+    {
+        // Check how to execute
+        int paramCount = 0;
+        for (int i=0; i<sqlCmd.length; i++)
+        {
+            if (sqlCmdParams!=null && sqlCmdParams[i]!=null)
+                paramCount++;
+        }
+        if (paramCount==0)
+        {   // Execute a simple statement batch
+            Statement stmt = null;
+            try
+            {   stmt = conn.createStatement();
+                for (int i=0; i<sqlCmd.length; i++)
+                    stmt.addBatch(sqlCmd[i]);
+                return stmt.executeBatch();
+            } finally
+            {
+                close(stmt);
+            }
+        }
+        // Group statements by command
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i=0; i<sqlCmd.length; i++)
+        {
+            List<Integer> group = groups.get(sqlCmd[i]);
+            if (group==null)
+            {   group = new ArrayList<Integer>();
+                groups.put(sqlCmd[i], group);
+            }
+            group.add(i);
+        }
+        // Execute a prepared statement batch for each command
+        int[] counts = new int[sqlCmd.length];
+        for (Map.Entry<String, List<Integer>> entry : groups.entrySet())
+        {
+            List<Integer> group = entry.getValue();
+            if (group.size()==1)
+            {   // single statement
+                int i = group.get(0);
+                counts[i] = executeSQL(sqlCmd[i], sqlCmdParams[i], conn, null);
+                continue;
+            }
+            PreparedStatement pstmt = null;
+            try
+            {   pstmt = conn.prepareStatement(entry.getKey());
+                for (Integer i : group)
+                {
+                    if (sqlCmdParams[i]!=null)
+                        prepareStatement(pstmt, sqlCmdParams[i], conn);
+                    pstmt.addBatch();
+                }
+                int[] result = pstmt.executeBatch();
+                for (int i=0; i<result.length && i<group.size(); i++)
+                    counts[group.get(i)] = result[i];
+            } finally
+            {
+                close(pstmt);
+            }
+        }
+        return counts;
+    }
+
     // executeQuery
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
         throws SQLException
@@ -720,28 +807,54 @@ public abstract class DBDatabaseDriver implements Serializable
         // is it a sysdate expression
         if (DBDatabase.SYSDATE.equals(value))
             return getSQLPhrase(sqlCurrentDate);
-        // Format the date (ymd)
-        String datetime = value.toString(); 
-        SimpleDateFormat sqlFormat = new SimpleDateFormat(getSQLPhrase(sqlPattern));
+        // Get the date
+        Date date = null;
         if ((value instanceof Date)==false)
         {   // Convert String to Date
             try
             {
-                DateFormat source = DateFormat.getDateInstance(DateFormat.SHORT);
-                Date dt = source.parse(value.toString());
-               datetime = sqlFormat.format(dt);
+                date = getSourceDateFormat().parse(value.toString());
             } catch (ParseException e)
             {
                 log.error("Date parsing error ", e);
             }
         }
         else
-        {   // Format the date as string
-            datetime = sqlFormat.format((Date)value);
+        {   // a date
+            date = (Date)value;
         }
         // Now Build String
         String template = getSQLPhrase(sqlTemplate);
-        return StringUtils.replace(template, "{0}", datetime);
+        String pattern  = getSQLPhrase(sqlPattern);
+        StringBuilder buf = new StringBuilder(template.length() + pattern.length());
+        int start = 0;
+        int index;
+        while ((index = template.indexOf("{0}", start))>=0)
+        {   // Format the date (ymd)
+            buf.append(template, start, index);
+            if (date!=null)
+                DateUtils.appendDate(buf, date, pattern);
+            else
+                buf.append(value.toString());
+            start = index + 3;
+        }
+        buf.append(template, start, template.length());
+        return buf.toString();
+    }
+    
+    /**
+     * returns the date format used to parse date values given as strings.
+     * The format is cached for the current thread.
+     */
+    private DateFormat getSourceDateFormat()
+    {
+        DateFormat df = sourceDateFormat.get();
+        if (df==null)
+        {
+            df = DateFormat.getDateInstance(DateFormat.SHORT);
+            sourceDateFormat.set(df);
+        }
+        return df;
     }
 
     /**
@@ -835,6 +948,20 @@ public abstract class DBDatabaseDriver implements Serializable
     {
         throw new NotImplementedException(this, "getDDLScript");
     }
+
+    /**
+     * Gets the SQL commands required for migrating an existing database to the given data model.<br/>
+     * The existing database is described by a second data model, e.g. one that has been read from the database metadata.
+     * 
+     * @param db the data model describing the desired state of the database
+     * @param liveDb the data model describing the current state of the database
+     * @param dropObsolete true if tables and columns which are not part of the data model should be dropped
+     * @param script the script to complete
+     */
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        throw new NotImplementedException(this, "getMigrationDDLScript");
+    }
     
     /**
      * @return <code>true</code> if column default values are created with dll statements or <code>false</code> if not
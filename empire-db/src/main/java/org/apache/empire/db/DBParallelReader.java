@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBDatabase.DBRowHandler;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBParallelReader
+ * <p>
+ * Reads the result of a query in several partitions concurrently, each on its own connection.<br>
+ * Every partition is defined by a constraint that is added to the query command.
+ * The partitions must not overlap and should together cover all rows.
+ * Partitions may be created by primary key ranges (see {@link #getKeyRangePartitions(DBCommand, DBColumn, int, Connection)}),
+ * by the remainder of a numeric expression (see {@link #getModuloPartitions(DBColumnExpr, int)})
+ * or by any other constraints.
+ * </p>
+ * <p>
+ * By default the rows are passed to the row handler by the worker threads as they are read.
+ * Hence the handler must be thread-safe.<br>
+ * If ordered is set, each partition is buffered in memory and the rows are passed to the handler 
+ * by the calling thread partition by partition (see {@link #setOrdered(boolean)}).
+ * </p>
+ * <p>
+ * The connections are obtained from a {@link DBConnectionProvider} as read-only connections
+ * and are released as soon as the partition has been read.
+ * </p>
+ */
+public class DBParallelReader
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBParallelReader.class);
+
+    /**
+     * A single partition of the query
+     */
+    private static final class Partition
+    {
+        private final int            index;
+        private final String         sqlCmd;
+        private final Object[]       sqlParams;
+        private final DBColumnExpr[] columns;
+        private final DBCommand      cmd;
+        
+        public Partition(int index, DBCommand cmd)
+        {
+            this.index = index;
+            this.sqlCmd = cmd.getSelect();
+            this.sqlParams = cmd.getParamValues();
+            this.columns = cmd.getSelectExprList();
+            this.cmd = cmd;
+        }
+    }
+
+    /**
+     * Stops all partitions as soon as the handler returns false
+     */
+    private static final class StoppableRowHandler implements DBRowHandler
+    {
+        private final DBRowHandler  handler;
+        private final AtomicBoolean stopped;
+
+        public StoppableRowHandler(DBRowHandler handler, AtomicBoolean stopped)
+        {
+            this.handler = handler;
+            this.stopped = stopped;
+        }
+
+        public boolean handleRow(DBRecordData record)
+        {
+            if (stopped.get())
+                return false;
+            if (handler.handleRow(record))
+                return true;
+            stopped.set(true);
+            return false;
+        }
+    }
+    
+    private final DBConnectionProvider provider;
+    private final ExecutorService executor;
+    private boolean ordered = false;
+
+    /**
+     * Creates a parallel reader that executes the partitions on the given executor.
+     * @param provider the provider for the connections
+     * @param executor the executor for reading the partitions or null to create a new thread for each partition
+     */
+    public DBParallelReader(DBConnectionProvider provider, ExecutorService executor)
+    {
+        if (provider==null)
+            throw new InvalidArgumentException("provider", provider);
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a parallel reader that creates a new thread for each partition.
+     * @param provider the provider for the connections
+     */
+    public DBParallelReader(DBConnectionProvider provider)
+    {
+        this(provider, null);
+    }
+
+    /**
+     * returns whether the rows are passed to the handler in partition order
+     * @return true if rows are passed in partition order 
+     */
+    public boolean isOrdered()
+    {
+        return ordered;
+    }
+
+    /**
+     * sets whether the rows are passed to the handler in partition order.<br>
+     * If true, each partition is held in memory until all previous partitions have been passed to the handler.<br>
+     * In order to obtain the rows sorted the command must be ordered by the same criteria as the partitions.
+     * @param ordered true to pass the rows in partition order or false to pass them as they are read (default)
+     */
+    public void setOrdered(boolean ordered)
+    {
+        this.ordered = ordered;
+    }
+    
+    /**
+     * Reads all partitions of a query concurrently and passes the rows to a row handler.<br>
+     * If the handler returns false, all partitions are stopped.<br>
+     * If a partition fails, the remaining partitions are cancelled and the error is rethrown.
+     * 
+     * @param cmd the query command
+     * @param partitions the partition constraints. A null constraint reads the command without an additional constraint.
+     * @param handler the handler that processes the rows 
+     * @return the number of rows processed
+     */
+    public int read(DBCommand cmd, DBCompareExpr[] partitions, DBRowHandler handler)
+    {
+        if (cmd==null)
+            throw new InvalidArgumentException("cmd", cmd);
+        if (partitions==null || partitions.length==0)
+            throw new InvalidArgumentException("partitions", partitions);
+        if (handler==null)
+            throw new InvalidArgumentException("handler", handler);
+        // Render the partition statements in the calling thread
+        final DBDatabase db = cmd.getDatabase();
+        List<Partition> list = new ArrayList<Partition>(partitions.length);
+        for (int i=0; i<partitions.length; i++)
+        {
+            DBCommand part = cmd.clone();
+            if (partitions[i]!=null)
+                part.where(partitions[i]);
+            cmd.resetParamUsage();
+            list.add(new Partition(i, part));
+        }
+        // Execute
+        long start = System.currentTimeMillis();
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final DBRowHandler rowHandler = new StoppableRowHandler(handler, stopped);
+        ExecutorService exec = (executor!=null) ? executor : Executors.newFixedThreadPool(partitions.length);
+        List<Future<?>> futures = new ArrayList<Future<?>>(list.size());
+        try
+        {   // Submit partitions
+            for (final Partition p : list)
+            {
+                if (ordered)
+                {   // buffer rows
+                    futures.add(exec.submit(new Callable<DBResultBuffer>() {
+                        public DBResultBuffer call()
+                        {
+                            return readBuffer(db, p, stopped);
+                        }
+                    }));
+                }
+                else
+                {   // pass rows to handler
+                    futures.add(exec.submit(new Callable<Integer>() {
+                        public Integer call()
+                        {
+                            return readPartition(db, p, rowHandler);
+                        }
+                    }));
+                }
+            }
+            // Collect results
+            int count = 0;
+            for (Future<?> future : futures)
+            {
+                Object result = future.get();
+                if (result instanceof DBResultBuffer)
+                {   // pass buffered rows in partition order
+                    DBResultBuffer buffer = (DBResultBuffer)result;
+                    while (buffer.moveNext() && rowHandler.handleRow(buffer))
+                        count++;
+                    buffer.close();
+                }
+                else
+                {   // rows already processed
+                    count += ((Integer)result).intValue();
+                }
+            }
+            if (log.isDebugEnabled())
+                log.debug("{} rows read in {} partitions in {} ms.", new Object[] { count, list.size(), System.currentTimeMillis()-start });
+            return count;
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            log.error("Reading partition failed: " + cause.getMessage());
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            throw new InternalException(cause);
+        } finally {
+            // Cancel remaining partitions
+            stopped.set(true);
+            for (Future<?> future : futures)
+                future.cancel(false);
+            if (exec!=executor)
+                exec.shutdown();
+        }
+    }
+
+    /**
+     * Reads a partition and passes the rows to the handler
+     */
+    private int readPartition(DBDatabase db, Partition p, DBRowHandler handler)
+    {
+        Connection conn = provider.getConnection(db, true);
+        DBReader reader = new DBReader();
+        try
+        {   // Open the reader
+            reader.open(db, p.sqlCmd, p.sqlParams, p.columns, false, db.applyQueryTimeout(conn, p.cmd));
+            int count = 0;
+            while (reader.moveNext())
+            {
+                count++;
+                if (!handler.handleRow(reader))
+                    break;
+            }
+            log.debug("Partition {} processed {} rows.", p.index, count);
+            return count;
+        } finally
+        {
+            reader.close();
+            provider.releaseConnection(db, conn, true);
+        }
+    }
+
+    /**
+     * Reads a partition into a result buffer
+     */
+    private DBResultBuffer readBuffer(DBDatabase db, Partition p, AtomicBoolean stopped)
+    {
+        DBResultBuffer buffer = new DBResultBuffer();
+        if (stopped.get())
+            return buffer; // processing has been stopped
+        Connection conn = provider.getConnection(db, true);
+        DBReader reader = new DBReader();
+        try
+        {   // Open the reader
+            reader.open(db, p.sqlCmd, p.sqlParams, p.columns, false, db.applyQueryTimeout(conn, p.cmd));
+            buffer.load(reader, -1);
+            log.debug("Partition {} buffered {} rows.", p.index, buffer.getRowCount());
+            return buffer;
+        } finally
+        {
+            reader.close();
+            provider.releaseConnection(db, conn, true);
+        }
+    }
+    
+    /**
+     * Creates partitions by splitting the range of a numeric key column into intervals of equal size.<br>
+     * The minimum and maximum key values are obtained by a query with the constraints of the command. 
+     * The first and the last partition are open ended, so that rows added in the meantime are not missed.
+     * 
+     * @param cmd the query command
+     * @param keyColumn an integer key column
+     * @param count the number of partitions
+     * @param conn a valid connection to the database
+     * @return the partition constraints
+     */
+    public static DBCompareExpr[] getKeyRangePartitions(DBCommand cmd, DBColumn keyColumn, int count, Connection conn)
+    {
+        if (keyColumn==null || (keyColumn.getDataType()!=DataType.INTEGER && keyColumn.getDataType()!=DataType.AUTOINC))
+            throw new InvalidArgumentException("keyColumn", keyColumn);
+        if (count<1)
+            throw new InvalidArgumentException("count", count);
+        // Query the key range
+        DBCommand rangeCmd = cmd.clone();
+        rangeCmd.clearSelect();
+        rangeCmd.clearOrderBy();
+        rangeCmd.select(keyColumn.min(), keyColumn.max());
+        Object[] range = cmd.getDatabase().querySingleRow(rangeCmd.getSelect(), rangeCmd.getParamValues(), conn);
+        if (ObjectUtils.isEmpty(range[0]) || ObjectUtils.isEmpty(range[1]))
+        {   // No rows
+            return new DBCompareExpr[] { null };
+        }
+        long min = ObjectUtils.getLong(range[0]);
+        long max = ObjectUtils.getLong(range[1]);
+        // Calculate partition size
+        if (max - min + 1 < count)
+            count = (int)(max - min + 1);
+        long size = (max - min + count) / count;
+        DBCompareExpr[] partitions = new DBCompareExpr[count];
+        for (int i=0; i<count; i++)
+        {
+            long lower = min + i * size;
+            long upper = lower + size;
+            if (count==1)
+                partitions[i] = null;
+            else if (i==0)
+                partitions[i] = keyColumn.isSmallerThan(upper);
+            else if (i==count-1)
+                partitions[i] = keyColumn.isMoreOrEqual(lower);
+            else
+                partitions[i] = keyColumn.isMoreOrEqual(lower).and(keyColumn.isSmallerThan(upper));
+        }
+        return partitions;
+    }
+    
+    /**
+     * Creates partitions by the remainder of an integer expression divided by the number of partitions.<br>
+     * The remainder is calculated as abs(expr) - trunc(abs(expr) / count) * count.
+     * Rows for which the expression is null are added to the first partition.
+     * 
+     * @param expr an integer expression e.g. the primary key column
+     * @param count the number of partitions
+     * @return the partition constraints
+     */
+    public static DBCompareExpr[] getModuloPartitions(DBColumnExpr expr, int count)
+    {
+        if (expr==null)
+            throw new InvalidArgumentException("expr", expr);
+        if (count<1)
+            throw new InvalidArgumentException("count", count);
+        if (count==1)
+            return new DBCompareExpr[] { null };
+        // Calculate remainder
+        DBColumnExpr value = expr.abs();
+        DBColumnExpr remainder = value.minus(value.divideBy(count).trunc(0).multiplyWith(count));
+        DBCompareExpr[] partitions = new DBCompareExpr[count];
+        for (int i=0; i<count; i++)
+        {
+            partitions[i] = remainder.is(i);
+            if (i==0)
+                partitions[i] = partitions[i].or(expr.is(null));
+        }
+        return partitions;
+    }
+}
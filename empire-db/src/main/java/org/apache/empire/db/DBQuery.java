@@ -19,7 +19,11 @@
 package org.apache.empire.db;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -472,6 +476,12 @@ public class DBQuery extends DBRowSet
         Object[] keys = (Object[]) rec.getRowSetData();
         DBRowSet table= null;
         DBCommand upd = null;
+        // the statements
+        List<DBRowSet> updTables = new ArrayList<DBRowSet>(updCmds.size());
+        List<String> updSQL = new ArrayList<String>(updCmds.size());
+        List<Object[]> updParams = new ArrayList<Object[]>(updCmds.size());
+        int[] timestampIndexes = new int[updCmds.size()];
+        Object timestampValue = null;
         for(Entry<DBRowSet,DBCommand> entry:updCmds.entrySet())
         {
             int i = 0;
@@ -533,14 +543,14 @@ public class DBQuery extends DBRowSet
 
             // Set Update Timestamp
             int timestampIndex = -1;
-            Object timestampValue = null;
             if (table.getTimestampColumn() != null)
             {
                 DBColumn tsColumn = table.getTimestampColumn();
                 timestampIndex = this.getColumnIndex(tsColumn);
                 if (timestampIndex>=0)
                 {   // The timestamp is availabe in the record
-                    timestampValue = db.getUpdateTimestamp(conn); 
+                    if (timestampValue==null)
+                        timestampValue = db.getUpdateTimestamp(conn); 
                     Object lastTS = fields[timestampIndex];
                     if (ObjectUtils.isEmpty(lastTS)==false)
                     {   // set timestamp constraint
@@ -556,12 +566,40 @@ public class DBQuery extends DBRowSet
                     upd.set(tsColumn.to(DBDatabase.SYSDATE));
                 }
             }
-            
-            // Execute SQL
-            int affected = db.executeSQL(upd.getUpdate(), upd.getParamValues(), conn);
-            if (affected <= 0)
+            // Add the statement
+            timestampIndexes[updTables.size()] = timestampIndex;
+            updTables.add(table);
+            updSQL.add(upd.getUpdate());
+            updParams.add(upd.getParamValues());
+        }
+        
+        // Execute SQL
+        int count = updTables.size();
+        int[] affected;
+        if (count > 1 && isBatchUpdateSupported(conn))
+        {   // Execute all statements in a single batch
+            affected = db.executeBatch(updSQL.toArray(new String[count]), updParams.toArray(new Object[count][]), conn);
+        }
+        else
+        {   // Execute statements one by one
+            affected = new int[count];
+            for (int i = 0; i < count; i++)
+                affected[i] = db.executeSQL(updSQL.get(i), updParams.get(i), conn);
+        }
+        // Remove cached results
+        for (int i = 0; i < count; i++)
+            db.invalidateQueryCache(updTables.get(i), conn);
+        // Check results
+        for (int i = 0; i < count; i++)
+        {
+            table = updTables.get(i);
+            if (affected[i] == Statement.SUCCESS_NO_INFO)
+            {   // The driver does not report the number of affected rows
+                log.warn("Unable to verify update for table '" + table.getName() + "'. No row count available.");
+            }
+            else if (affected[i] <= 0)
             {   // Error
-                if (affected == 0)
+                if (affected[i] == 0)
                 { // Record not found
                     throw new RecordUpdateFailedException(this, keys);
                 }
@@ -569,7 +607,7 @@ public class DBQuery extends DBRowSet
                 db.rollback(conn);
                 return;
             } 
-            else if (affected > 1)
+            else if (affected[i] > 1)
             { // More than one record
                 throw new RecordUpdateInvalidException(this, keys);
             } 
@@ -578,15 +616,30 @@ public class DBQuery extends DBRowSet
                 log.info("Record for table '" + table.getName() + " sucessfully updated!");
             }
             // Correct Timestamp
-            if (timestampIndex >= 0)
+            if (timestampIndexes[i] >= 0)
             {   // Set the correct Timestamp
-                fields[timestampIndex] = timestampValue;
+                fields[timestampIndexes[i]] = timestampValue;
             }
         }
         // success
         rec.changeState(DBRecord.REC_VALID, keys);
     }
 
+    /**
+     * Returns true if the connection supports sending several update statements in a single batch.
+     */
+    protected boolean isBatchUpdateSupported(Connection conn)
+    {
+        try
+        {   // Ask the JDBC driver
+            return conn.getMetaData().supportsBatchUpdates();
+        } catch (SQLException e)
+        {   // Assume not supported
+            log.warn("Unable to detect batch update support: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Adds join restrictions to the supplied command object.
      */
@@ -0,0 +1,499 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBQueryCache
+ * <p>
+ * Caches the results of select commands for a limited time.<br>
+ * Results are identified by their SQL statement and parameter values and stored column by column.
+ * An entry is removed as soon as one of the tables or views referenced by its command is modified
+ * through the database (see {@link DBDatabase#invalidateQueryCache(DBRowSet, Connection)}).<br>
+ * Changes made with plain SQL statements or by other applications are not detected. 
+ * Hence the time to live should be chosen according to the accepted staleness of the data.
+ * </p>
+ * <p>
+ * If a table is modified on a connection that is not in auto commit mode, the results referencing the table
+ * are removed again when the transaction is committed or rolled back through {@link DBDatabase#commit(Connection)}
+ * or {@link DBDatabase#rollback(Connection)}. Until then queries on this connection bypass the cache, 
+ * as they may see uncommitted changes.<br>
+ * A result is only added if none of its tables has been modified since the query was started (see {@link #getGeneration()}).
+ * </p>
+ * <p>
+ * The cache is disabled by default and must be set on the database using {@link DBDatabase#setQueryCache(DBQueryCache)}.
+ * </p>
+ */
+public class DBQueryCache
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBQueryCache.class);
+    
+    private static final int  DEFAULT_MAX_ENTRIES  = 100;
+    private static final int  DEFAULT_MAX_ROWS     = 1000;
+    private static final long DEFAULT_TIME_TO_LIVE = 60000;
+    
+    /**
+     * The key of a cached result 
+     */
+    private static final class Key
+    {
+        private final String   sql;
+        private final Object[] params;
+        private final int      hash;
+        
+        public Key(String sql, Object[] params)
+        {
+            this.sql = sql;
+            this.params = params;
+            this.hash = sql.hashCode() * 31 + Arrays.deepHashCode(params);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key)other;
+            return (hash==key.hash && sql.equals(key.sql) && Arrays.deepEquals(params, key.params));
+        }
+    }
+    
+    /**
+     * A cached result stored column by column 
+     */
+    private static final class Entry
+    {
+        private final Object[][]    columns;
+        private final int           rowCount;
+        private final Set<DBRowSet> rowsets;
+        private final long          expires;
+        
+        public Entry(List<Object[]> rows, Set<DBRowSet> rowsets, long expires)
+        {
+            int colCount = (rows.isEmpty() ? 0 : rows.get(0).length);
+            this.rowCount = rows.size();
+            this.columns = new Object[colCount][rowCount];
+            for (int r=0; r<rowCount; r++)
+            {   Object[] row = rows.get(r);
+                for (int c=0; c<colCount; c++)
+                    columns[c][r] = row[c];
+            }
+            this.rowsets = rowsets;
+            this.expires = expires;
+        }
+        
+        public List<Object[]> getRows()
+        {
+            List<Object[]> rows = new ArrayList<Object[]>(rowCount);
+            for (int r=0; r<rowCount; r++)
+            {   Object[] row = new Object[columns.length];
+                for (int c=0; c<columns.length; c++)
+                    row[c] = columns[c][r];
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+    
+    private final int  maxEntries;
+    private final int  maxRows;
+    private final long timeToLive;
+    
+    private final LinkedHashMap<Key, Entry> entries;
+    
+    // The generation of the last modification of each rowset (guarded by entries)
+    private final Map<DBRowSet, Long> modified = new HashMap<DBRowSet, Long>();
+    private long generation = 0;
+    
+    // The rowsets modified by the open transaction of a connection
+    private final Map<Connection, Set<DBRowSet>> pending = new WeakHashMap<Connection, Set<DBRowSet>>();
+    
+    // Statistics
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a query cache
+     * @param maxEntries the maximum number of results kept in the cache. If exceeded the least recently used result is removed.
+     * @param maxRows the maximum number of rows of a result. Larger results are not cached.
+     * @param timeToLive the time in milliseconds a result is kept in the cache
+     */
+    public DBQueryCache(int maxEntries, int maxRows, long timeToLive)
+    {
+        if (maxEntries<=0)
+            throw new InvalidArgumentException("maxEntries", maxEntries);
+        if (timeToLive<=0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates a query cache holding up to 100 results of 1000 rows each for one minute.
+     */
+    public DBQueryCache()
+    {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ROWS, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public int getMaxRows()
+    {
+        return maxRows;
+    }
+
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+    
+    /**
+     * Returns the cached rows for a query.
+     * @param sql the select statement
+     * @param params the statement parameters (may be null)
+     * @return a copy of the cached rows or null if the result is not in the cache 
+     */
+    public List<Object[]> get(String sql, Object[] params)
+    {
+        Key key = new Key(sql, params);
+        Entry entry;
+        synchronized(entries)
+        {
+            entry = entries.get(key);
+            if (entry!=null && entry.expires<System.currentTimeMillis())
+            {   // expired
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry==null)
+        {   missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.getRows();
+    }
+
+    /**
+     * Returns the current generation of the cache.<br>
+     * The generation is incremented whenever a table or view is invalidated. 
+     * It must be obtained before a query is executed and passed to {@link #put(String, Object[], List, Collection, long)}.
+     * @return the current generation
+     */
+    public long getGeneration()
+    {
+        synchronized(entries)
+        {
+            return generation;
+        }
+    }
+
+    /**
+     * Adds the result of a query that has just been executed to the cache.<br>
+     * see {@link #put(String, Object[], List, Collection, long)}
+     * @param sql the select statement
+     * @param params the statement parameters (may be null)
+     * @param rows the rows returned by the query
+     * @param rowsets the tables and views referenced by the query
+     */
+    public void put(String sql, Object[] params, List<Object[]> rows, Collection<DBRowSet> rowsets)
+    {
+        put(sql, params, rows, rowsets, getGeneration());
+    }
+
+    /**
+     * Adds the result of a query to the cache.<br>
+     * Results with more rows than the maximum number of rows are ignored.<br>
+     * The result is ignored as well if one of the rowsets has been invalidated after the given generation,
+     * since the query might have read data that is no longer valid.
+     * @param sql the select statement
+     * @param params the statement parameters (may be null)
+     * @param rows the rows returned by the query
+     * @param rowsets the tables and views referenced by the query
+     * @param generation the generation obtained by {@link #getGeneration()} before the query was executed
+     * @return true if the result has been added or false otherwise
+     */
+    public boolean put(String sql, Object[] params, List<Object[]> rows, Collection<DBRowSet> rowsets, long generation)
+    {
+        if (maxRows>=0 && rows.size()>maxRows)
+        {   log.debug("Query result of {} rows exceeds the maximum cache size.", rows.size());
+            return false;
+        }
+        Key key = new Key(sql, (params!=null ? params.clone() : null));
+        Entry entry = new Entry(rows, new HashSet<DBRowSet>(rowsets), System.currentTimeMillis() + timeToLive);
+        synchronized(entries)
+        {
+            for (DBRowSet rowset : entry.rowsets)
+            {   // check if modified
+                Long changed = modified.get(rowset);
+                if (changed!=null && changed.longValue()>generation)
+                {   log.debug("Query result not cached since {} has been modified.", rowset.getName());
+                    return false;
+                }
+            }
+            entries.put(key, entry);
+            // evict least recently used results
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size()>maxEntries && iterator.hasNext())
+            {   iterator.next();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Removes all results that reference the given table or view.<br>
+     * If a view or a query is given, all results referencing its underlying tables are removed as well.
+     * @param rowset the table or view that has been modified
+     * @return the number of results removed
+     */
+    public int invalidate(DBRowSet rowset)
+    {
+        Set<DBRowSet> rowsets = new HashSet<DBRowSet>();
+        addRowSet(rowsets, rowset);
+        int count = 0;
+        synchronized(entries)
+        {
+            // new generation
+            Long changed = Long.valueOf(++generation);
+            for (DBRowSet rs : rowsets)
+                modified.put(rs, changed);
+            // remove results
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext())
+            {   Set<DBRowSet> refs = iterator.next().rowsets;
+                for (DBRowSet rs : rowsets)
+                {   // check if referenced
+                    if (refs.contains(rs))
+                    {   iterator.remove();
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        if (count>0)
+        {   log.debug("{} cached query results removed for {}.", count, rowset.getName());
+            invalidationCount.addAndGet(count);
+        }
+        return count;
+    }
+    
+    /**
+     * Removes all results that reference the given table or view, which has been modified on a connection.<br>
+     * If the connection is not in auto commit mode, the results are removed again 
+     * when the transaction is completed (see {@link #transactionCompleted(Connection)}).
+     * @param rowset the table or view that has been modified
+     * @param conn the connection on which the rowset has been modified
+     * @return the number of results removed
+     */
+    public int invalidate(DBRowSet rowset, Connection conn)
+    {
+        if (!isAutoCommit(conn))
+        {   // remember until the transaction is completed
+            synchronized(pending)
+            {
+                Set<DBRowSet> rowsets = pending.get(conn);
+                if (rowsets==null)
+                {   rowsets = new HashSet<DBRowSet>();
+                    pending.put(conn, rowsets);
+                }
+                rowsets.add(rowset);
+            }
+        }
+        return invalidate(rowset);
+    }
+
+    /**
+     * Returns whether tables or views have been modified by the open transaction of a connection.<br>
+     * Queries on such a connection must not use the cache, as they may see uncommitted changes.
+     * @param conn the connection
+     * @return true if the connection has uncommitted changes or false otherwise
+     */
+    public boolean hasPendingChanges(Connection conn)
+    {
+        synchronized(pending)
+        {
+            return (!pending.isEmpty() && pending.containsKey(conn));
+        }
+    }
+
+    /**
+     * Removes all results that reference the tables and views modified by the transaction of a connection.<br>
+     * This must be called after the transaction has been committed or rolled back.
+     * @param conn the connection
+     */
+    public void transactionCompleted(Connection conn)
+    {
+        Set<DBRowSet> rowsets;
+        synchronized(pending)
+        {
+            rowsets = (pending.isEmpty() ? null : pending.remove(conn));
+        }
+        if (rowsets!=null)
+        {   // invalidate again
+            for (DBRowSet rowset : rowsets)
+                invalidate(rowset);
+        }
+    }
+
+    /**
+     * Removes all results from the cache.
+     */
+    public void clear()
+    {
+        synchronized(entries)
+        {
+            entries.clear();
+        }
+    }
+    
+    /**
+     * Returns the number of results in the cache (including expired ones).
+     */
+    public int size()
+    {
+        synchronized(entries)
+        {
+            return entries.size();
+        }
+    }
+    
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+    
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+    
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+    
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+    
+    /**
+     * Returns the percentage of queries answered from the cache.
+     */
+    public int getHitRatio()
+    {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return (total>0 ? (int)(hits * 100 / total) : 0);
+    }
+    
+    public void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+        invalidationCount.set(0);
+    }
+    
+    /**
+     * Returns all tables and views referenced by a command including the tables underlying views and queries.
+     * @param cmd the command
+     * @return the set of referenced rowsets
+     */
+    public static Set<DBRowSet> getReferencedRowSets(DBCommandExpr cmd)
+    {
+        Set<DBRowSet> rowsets = new HashSet<DBRowSet>();
+        addCommandRowSets(rowsets, cmd);
+        return rowsets;
+    }
+    
+    private static boolean isAutoCommit(Connection conn)
+    {
+        try {
+            return (conn==null || conn.getAutoCommit());
+        } catch(SQLException e) {
+            log.warn("Unable to determine the auto commit mode: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void addCommandRowSets(Set<DBRowSet> rowsets, DBCommandExpr cmd)
+    {
+        if (cmd instanceof DBCommand)
+        {   // add tables
+            for (DBRowSet rowset : ((DBCommand)cmd).getTableList())
+                addRowSet(rowsets, rowset);
+        }
+        else if (cmd instanceof DBCombinedCmd)
+        {   // add both sides
+            addCommandRowSets(rowsets, ((DBCombinedCmd)cmd).left);
+            addCommandRowSets(rowsets, ((DBCombinedCmd)cmd).right);
+        }
+    }
+    
+    private static void addRowSet(Set<DBRowSet> rowsets, DBRowSet rowset)
+    {
+        if (rowset==null || rowsets.add(rowset)==false)
+            return; // already added
+        // add underlying tables
+        if (rowset instanceof DBQuery)
+            addCommandRowSets(rowsets, ((DBQuery)rowset).getCommandExpr());
+        else if (rowset instanceof DBView)
+            addCommandRowSets(rowsets, ((DBView)rowset).createCommand());
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.empire.db;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
@@ -26,11 +27,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 
 import org.apache.commons.beanutils.ConstructorUtils;
 import org.apache.empire.commons.ObjectUtils;
@@ -57,6 +57,9 @@ import org.w3c.dom.Element;
  * However take care: A reader must always be explicitly closed using the close() method!<BR>
  * Otherwise you may lock the JDBC connection and run out of resources.<BR>
  * Use <PRE>try { ... } finally { reader.close(); } </PRE> to make sure the reader is closed.<BR>
+ * Since the reader is Closeable it may also be used in a try-with-resources statement.<BR>
+ * For simple row processing consider {@link DBDatabase#query(DBCommandExpr, Connection, DBDatabase.DBRowHandler)}
+ * which closes the reader automatically.<BR>
  * <P>
  * To access and work with the query result you can do one of the following:<BR>
  * <ul>
@@ -66,11 +69,12 @@ import org.w3c.dom.Element;
  *  <li>initialize a DBRecord with the current row data using {@link DBReader#initRecord(DBRowSet, DBRecord)}<br/>
  *      This will allow you to modify and update the data. 
  *  </li> 
+ *  <li>copy the rows into a {@link DBResultBuffer} which keeps the data after the reader has been closed</li> 
  * </ul>
  *
  *
  */
-public class DBReader extends DBRecordData
+public class DBReader extends DBRecordData implements Closeable
 {
     private final static long serialVersionUID = 1L;
   
@@ -225,12 +229,6 @@ public class DBReader extends DBRecordData
     // Logger
     protected static final Logger    log               = LoggerFactory.getLogger(DBReader.class);
     
-    /**
-     * Support for finding code errors where a DBRecordSet is opened but not closed
-     * @author bond
-     */
-    private static ThreadLocal<Map<DBReader, Exception>> threadLocalOpenResultSets = new ThreadLocal<Map<DBReader, Exception>>();
-    
     // Object references
     private DBDatabase     db                = null;
     private DBColumnExpr[] colList           = null;
@@ -238,6 +236,15 @@ public class DBReader extends DBRecordData
     // Direct column access
     protected ResultSet    rset              = null;
 
+    // Leak detection and metrics (see DBReaderTracker)
+    private transient DBReaderTracker.Lease lease = null;
+    private transient long openTime          = 0;
+
+    // Tracks the statement in order to cancel it
+    private boolean cancellable = false;
+    private transient volatile DBStatementTracker tracker = null;
+    private transient volatile Statement statement = null;
+
     /**
      * Constructs an empty DBRecordSet object.
      */
@@ -408,14 +415,40 @@ public class DBReader extends DBRecordData
             close();
         // SQL Command
         String sqlCmd = cmd.getSelect();
+        DBDatabase db = cmd.getDatabase();
+        open(db, sqlCmd, cmd.getParamValues(), cmd.getSelectExprList(), scrollable, db.applyQueryTimeout(conn, cmd));
+    }
+
+    /**
+     * Opens the reader for a statement that has already been rendered from a command.
+     */
+    void open(DBDatabase db, String sqlCmd, Object[] sqlParams, DBColumnExpr[] columns, boolean scrollable, Connection conn)
+    {
+        if (isOpen())
+            close();
+        // Track the statement
+        this.db = db;
+        this.tracker = DBStatementTracker.get(conn);
+        if (tracker==null && (cancellable || db.getQueryTimeout()>0))
+        {   tracker = new DBStatementTracker(db.getQueryTimeout());
+            conn = tracker.track(conn);
+        }
         // Create Statement
-        db = cmd.getDatabase();
-        rset = db.executeQuery(sqlCmd, cmd.getParamValues(), scrollable, conn);
+        rset = db.executeQuery(sqlCmd, sqlParams, scrollable, conn);
         if (rset==null)
             throw new QueryNoResultException(sqlCmd);
+        if (tracker==null)
+        {   // record the statement in order to cancel reading
+            try {
+                statement = rset.getStatement();
+            } catch (SQLException e) {
+                log.warn("Unable to obtain the statement of the reader: {}", e.getMessage());
+            }
+        }
         // successfully opened
-        colList = cmd.getSelectExprList();
-        addOpenResultSet();
+        colList = columns;
+        openTime = System.nanoTime();
+        lease = DBReaderTracker.opened(this, db, rset);
     }
 
     /**
@@ -454,6 +487,45 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * returns whether the query of this reader may be cancelled while it is executed.
+     * @return true if the query may be cancelled while it is executed or false otherwise
+     */
+    public boolean isCancellable()
+    {
+        return cancellable;
+    }
+
+    /**
+     * Sets whether the query of this reader may be cancelled while it is executed.<BR>
+     * If set, the statement is tracked from the time it is created, which requires the connection to be wrapped.<BR>
+     * Otherwise the query can only be cancelled while the rows are read, unless a query timeout is set.<BR>
+     * This must be set before the reader is opened.
+     * @param cancellable true if the query may be cancelled while it is executed
+     */
+    public void setCancellable(boolean cancellable)
+    {
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Cancels the query of this reader by calling Statement.cancel().<BR>
+     * This function may be called from another thread while the rows are read
+     * or, if the reader is cancellable (see {@link #setCancellable(boolean)}), while the query is executed.<BR>
+     * The reader must still be closed by the thread that has opened it.
+     * 
+     * @return true if the statement has been cancelled or false if the reader is not open or the driver does not support cancelling
+     */
+    public boolean cancel()
+    {
+        DBStatementTracker t = tracker;
+        boolean cancelled = (t!=null ? t.cancel() : DBStatementTracker.cancel(statement));
+        if (!cancelled)
+            return false;
+        db.statementCancelled();
+        return true;
+    }
+
     /**
      * Closes the DBRecordSet object, the Statement object and detach the columns.<BR>
      * A reader must always be closed immediately after using it.
@@ -472,11 +544,14 @@ public class DBReader extends DBRecordData
             if (rset != null)
             {
                 getDatabase().closeResultSet(rset);
-                removeOpenResultSet();
+                DBReaderTracker.closed(lease, openTime);
+                lease = null;
             }
             // Detach columns
             colList = null;
             rset = null;
+            tracker = null;
+            statement = null;
             // Done
         } catch (Exception e)
         { // What's wrong here?
@@ -623,7 +698,6 @@ public class DBReader extends DBRecordData
      * 
      * @return the list of <T>
      */
-    @SuppressWarnings("unchecked")
     public <C extends Collection<T>, T> C getBeanList(C c, Class<T> t, int maxCount)
     {
         // Check Recordset
@@ -631,47 +705,18 @@ public class DBReader extends DBRecordData
         {   // Resultset not available
             throw new ObjectNotValidException(this);
         }
-        // Query List
-        try
-        {
-            // Check whether we can use a constructor
-            Class[] paramTypes = new Class[getFieldCount()];
-            for (int i = 0; i < colList.length; i++)
-                paramTypes[i] = DBExpr.getValueClass(colList[i].getDataType()); 
-            // Find Constructor
-            Constructor ctor = findMatchingAccessibleConstructor(t, paramTypes);
-            Object[] args = (ctor!=null) ? new Object[getFieldCount()] : null; 
-            
-            // Create a list of beans
-            while (moveNext() && maxCount != 0)
-            { // Create bean an init
-                if (ctor!=null)
-                {   // Use Constructor
-                    Class<?>[] ctorParamTypes = ctor.getParameterTypes();
-                    for (int i = 0; i < getFieldCount(); i++)
-                        args[i] = ObjectUtils.convert(ctorParamTypes[i], getValue(i));
-                    T bean = (T)ctor.newInstance(args);
-                    c.add(bean);
-                }
-                else
-                {   // Use Property Setters
-                    T bean = t.newInstance();
-                    getBeanProperties(bean);
-                    c.add(bean);
-                }
-                // Decrease count
-                if (maxCount > 0)
-                    maxCount--;
-            }
-            // done
-            return c;
-        } catch (InvocationTargetException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (IllegalAccessException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (InstantiationException e) {
-            throw new BeanInstantiationException(t, e);
+        // Check whether we can use a constructor
+        Constructor<?> ctor = findBeanConstructor(t, colList);
+        // Create a list of beans
+        while (moveNext() && maxCount != 0)
+        {   // Create bean an init
+            c.add(createBean(this, t, ctor));
+            // Decrease count
+            if (maxCount > 0)
+                maxCount--;
         }
+        // done
+        return c;
     }
     
     /**
@@ -804,59 +849,56 @@ public class DBReader extends DBRecordData
         return (colList != null) ? colList.length : 0;
     }
 
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        if (rset != null) {
+            throw new NotSerializableException(DBReader.class.getName() + " (due to attached ResultSet)");
+        }
+    }
+
     /**
-     * Support for finding code errors where a DBRecordSet is opened but not closed.
-     * 
-     * @author bond
+     * Returns a constructor of the bean class whose parameters match the given columns
+     * or null if the bean must be initialized using its property setters.
+     * @param t the bean class
+     * @param columns the columns providing the constructor arguments
+     * @return the constructor or null
      */
-    private synchronized void addOpenResultSet()
+    static Constructor<?> findBeanConstructor(Class<?> t, DBColumnExpr[] columns)
     {
-        // add this to the vector of open resultsets on this thread
-        Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
-        if (openResultSets == null)
-        {
-            // Lazy initialization of the
-            openResultSets = new HashMap<DBReader, Exception>(2);
-            threadLocalOpenResultSets.set(openResultSets);
-        }
-
-        Exception stackException = openResultSets.get(this);
-        if (stackException != null)
-        {
-            log
-               .error(
-                      "DBRecordSet.addOpenResultSet called for an object which is already in the open list. This is the stack of the method opening the object which was not previously closed.",
-                      stackException);
-            // the code continues and overwrites the logged object with the new one
-        }
-        // get the current stack trace
-        openResultSets.put(this, new Exception());
+        Class<?>[] paramTypes = new Class<?>[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            paramTypes[i] = DBExpr.getValueClass(columns[i].getDataType()); 
+        return findMatchingAccessibleConstructor(t, paramTypes);
     }
-
+    
     /**
-     * Support for finding code errors where a DBRecordSet is opened but not closed.
-     * 
-     * @author bond
+     * Creates a bean for the current row of a reader or a result buffer.
+     * @param data the record data providing the current row
+     * @param t the bean class
+     * @param ctor the constructor to use (see findBeanConstructor) or null to use the property setters
+     * @return the bean
      */
-    private synchronized void removeOpenResultSet()
+    static <T> T createBean(DBRecordData data, Class<T> t, Constructor<?> ctor)
     {
-        Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
-        if (openResultSets.containsKey(this) == false)
-        {
-            log
-               .error(
-                      "DBRecordSet.removeOpenResultSet called for an object which is not in the open list. Here is the current stack.",
-                      new Exception());
-        } 
-        else
+        try
         {
-            openResultSets.remove(this);
-        }
-    }
-
-    private void writeObject(ObjectOutputStream stream) throws IOException {
-        if (rset != null) {
-            throw new NotSerializableException(DBReader.class.getName() + " (due to attached ResultSet)");
+            if (ctor==null)
+            {   // Use Property Setters
+                T bean = t.newInstance();
+                data.getBeanProperties(bean);
+                return bean;
+            }
+            // Use Constructor
+            Class<?>[] ctorParamTypes = ctor.getParameterTypes();
+            Object[] args = new Object[ctorParamTypes.length];
+            for (int i = 0; i < args.length; i++)
+                args[i] = ObjectUtils.convert(ctorParamTypes[i], data.getValue(i));
+            return t.cast(ctor.newInstance(args));
+        } catch (InvocationTargetException e) {
+            throw new BeanInstantiationException(t, e);
+        } catch (IllegalAccessException e) {
+            throw new BeanInstantiationException(t, e);
+        } catch (InstantiationException e) {
+            throw new BeanInstantiationException(t, e);
         }
     }
 
@@ -864,7 +906,7 @@ public class DBReader extends DBRecordData
      * copied from org.apache.commons.beanutils.ConstructorUtils since it's private there
      */
     @SuppressWarnings("unchecked")
-    private static Constructor findMatchingAccessibleConstructor(Class clazz, Class[] parameterTypes)
+    static Constructor findMatchingAccessibleConstructor(Class clazz, Class[] parameterTypes)
     {
         // See if we can find the method directly
         // probably faster if it works
@@ -916,21 +958,11 @@ public class DBReader extends DBRecordData
      * Call this if you want to check whether there are any unclosed resultsets
      * It logs stack traces to help find piece of code 
      * where a DBReader was opened but not closed.
+     * All open readers are reported unless sampling has been enabled (see {@link DBReaderTracker#setSamplingRate(int)}).
      * </PRE>
      */
-    public static synchronized void checkOpenResultSets()
+    public static void checkOpenResultSets()
     {
-        Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
-        if (openResultSets != null && openResultSets.isEmpty() == false)
-        {
-            // we have found a(n) open result set(s). Now show the stack trace(s)
-            Object keySet[] = openResultSets.keySet().toArray();
-            for (int i = 0; i < keySet.length; i++)
-            {
-                Exception stackException = openResultSets.get(keySet[i]);
-                log.error("A DBReader was not closed. Stack of opening code is ", stackException);
-            }
-            openResultSets.clear();
-        }
+        DBReaderTracker.logOpenReaders();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBReaderTracker
+ * <p>
+ * Keeps track of open DBReader objects in order to detect readers that are not closed.<br>
+ * Every reader is watched by a phantom reference. If a reader is garbage collected without being closed,
+ * the leak is counted and the attached result set and statement are closed.<br>
+ * By default the stack of the opening code is captured and logged for every reader.
+ * In order to reduce the overhead, reporting may be sampled (see {@link #setSamplingRate(int)}): then the stack
+ * is only captured for every n-th reader opened. Leaks of other readers are logged without a stack.<br>
+ * Additionally the number of open readers and the time readers are held open are recorded for all readers.
+ * </p>
+ */
+public final class DBReaderTracker
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBReaderTracker.class);
+    
+    /**
+     * A reader that has not yet been closed.<br>
+     * The stack of the opening code is only captured for sampled readers.
+     */
+    static final class Lease extends PhantomReference<DBReader>
+    {
+        private final Exception  stack;
+        private final long       threadId;
+        private final DBDatabase db;
+        private final ResultSet  rset;
+        private volatile boolean reported;
+
+        private Lease(DBReader reader, DBDatabase db, ResultSet rset, boolean sampled, ReferenceQueue<DBReader> queue)
+        {
+            super(reader, queue);
+            this.stack = (sampled ? new Exception("DBReader opened") : null);
+            this.threadId = Thread.currentThread().getId();
+            this.db = db;
+            this.rset = rset;
+        }
+        
+        boolean isSampled()
+        {
+            return (stack!=null);
+        }
+    }
+    
+    private static volatile int samplingRate = 1;
+    
+    private static final ReferenceQueue<DBReader> queue = new ReferenceQueue<DBReader>();
+    private static final Map<Lease, Boolean> leases = new ConcurrentHashMap<Lease, Boolean>();
+
+    // Metrics
+    private static final AtomicLong openCount  = new AtomicLong();
+    private static final AtomicLong totalCount = new AtomicLong();
+    private static final AtomicLong leakCount  = new AtomicLong();
+    private static final AtomicLong holdTime   = new AtomicLong();
+    private static final AtomicLong maxHoldTime= new AtomicLong();
+    
+    private DBReaderTracker()
+    {
+        // Static functions only
+    }
+
+    /**
+     * Returns the sampling rate
+     * @return the stack is captured for every n-th reader. 0 means no stack is captured.
+     */
+    public static int getSamplingRate()
+    {
+        return samplingRate;
+    }
+
+    /**
+     * Sets the sampling rate for leak reporting.<br>
+     * A value of 1 (the default) captures the stack for every reader.
+     * Higher values reduce the overhead of opening readers but only sampled readers are reported by {@link DBReader#checkOpenResultSets()}.<br>
+     * A value of 0 disables capturing stacks. Leaks are still detected and counted.
+     * @param samplingRate capture the stack for every n-th reader
+     */
+    public static void setSamplingRate(int samplingRate)
+    {
+        DBReaderTracker.samplingRate = (samplingRate < 0 ? 0 : samplingRate);
+    }
+    
+    /**
+     * Returns the number of readers currently open
+     */
+    public static long getOpenReaderCount()
+    {
+        return openCount.get();
+    }
+    
+    /**
+     * Returns the total number of readers opened
+     */
+    public static long getTotalReaderCount()
+    {
+        return totalCount.get();
+    }
+    
+    /**
+     * Returns the number of readers that have been garbage collected without being closed
+     */
+    public static long getLeakCount()
+    {
+        return leakCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds a reader has been held open
+     */
+    public static long getAverageHoldTime()
+    {
+        long closed = totalCount.get() - openCount.get();
+        return (closed > 0) ? (holdTime.get() / closed / 1000000L) : 0;
+    }
+    
+    /**
+     * Returns the maximum time in milliseconds a reader has been held open
+     */
+    public static long getMaxHoldTime()
+    {
+        return maxHoldTime.get() / 1000000L;
+    }
+    
+    /**
+     * Resets the reader metrics
+     */
+    public static void resetMetrics()
+    {
+        totalCount.set(openCount.get());
+        leakCount.set(0);
+        holdTime.set(0);
+        maxHoldTime.set(0);
+    }
+    
+    /**
+     * Called by the reader when it has been opened
+     * @return the lease which must be passed to {@link #closed(Lease, long)}
+     */
+    static Lease opened(DBReader reader, DBDatabase db, ResultSet rset)
+    {
+        long count = totalCount.incrementAndGet();
+        openCount.incrementAndGet();
+        // detect leaks
+        expungeLeaks();
+        // sample this reader?
+        int rate = samplingRate;
+        boolean sampled = (rate > 0 && (count % rate) == 0);
+        // track
+        Lease lease = new Lease(reader, db, rset, sampled, queue);
+        leases.put(lease, Boolean.TRUE);
+        return lease;
+    }
+    
+    /**
+     * Called by the reader when it has been closed
+     * @param lease the lease returned when the reader was opened
+     * @param openTime the System.nanoTime() when the reader was opened
+     */
+    static void closed(Lease lease, long openTime)
+    {
+        openCount.decrementAndGet();
+        // hold time
+        long time = System.nanoTime() - openTime;
+        holdTime.addAndGet(time);
+        long max = maxHoldTime.get();
+        while (time > max && !maxHoldTime.compareAndSet(max, time))
+            max = maxHoldTime.get();
+        // release lease
+        if (lease != null)
+        {
+            leases.remove(lease);
+            lease.clear();
+        }
+    }
+    
+    /**
+     * Checks for readers that have been garbage collected without being closed
+     */
+    public static void expungeLeaks()
+    {
+        Reference<? extends DBReader> ref;
+        while ((ref = queue.poll()) != null)
+        {
+            Lease lease = (Lease) ref;
+            if (leases.remove(lease) == null)
+                continue; // closed
+            // A leak
+            leakCount.incrementAndGet();
+            openCount.decrementAndGet();
+            if (lease.isSampled())
+                log.error("A DBReader was not closed before it was garbage collected. Stack of opening code is ", lease.stack);
+            else
+                log.error("A DBReader was not closed before it was garbage collected. Set a sampling rate of 1 to log the stack of the opening code.");
+            try
+            {   // release the statement
+                lease.db.closeResultSet(lease.rset);
+            } catch (Exception e) {
+                log.warn("Failed to close the ResultSet of an abandoned DBReader: " + e.toString());
+            }
+        }
+    }
+    
+    /**
+     * Logs the stack of all sampled readers that have been opened by the current thread and are still open.<br>
+     * Each reader is reported only once. Readers that are not sampled are not reported.
+     * @return the number of open readers reported
+     */
+    public static int logOpenReaders()
+    {
+        expungeLeaks();
+        int count = 0;
+        long threadId = Thread.currentThread().getId();
+        for (Iterator<Lease> i = leases.keySet().iterator(); i.hasNext(); )
+        {
+            Lease lease = i.next();
+            if (lease.threadId != threadId || !lease.isSampled() || lease.reported)
+                continue;
+            lease.reported = true;
+            log.error("A DBReader was not closed. Stack of opening code is ", lease.stack);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,977 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.data.ColumnExpr;
+import org.apache.empire.data.DataType;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.apache.empire.xml.XMLUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+
+/**
+ * <P>
+ * This class holds the result of a query in memory after the reader and its connection have been released.<BR>
+ * The values are stored column by column. Integer, decimal, float, boolean and date columns are kept in primitive arrays
+ * and text columns store every distinct value only once. Values of any other type are kept as objects.<BR>
+ * <P>
+ * Like a DBReader the buffer has a current row that is accessed through the functions of {@link DBRecordData}.
+ * Use {@link #moveNext()}, {@link #moveTo(int)} or an iterator to navigate through the rows.<BR>
+ * <PRE>
+ *   DBResultBuffer buffer = new DBResultBuffer();
+ *   buffer.load(cmd, conn);
+ *   // release the connection here
+ *   while (buffer.moveNext())
+ *       ...
+ * </PRE>
+ */
+public class DBResultBuffer extends DBRecordData implements Iterable<DBRecordData>
+{
+    private final static long serialVersionUID = 1L;
+
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBResultBuffer.class);
+    
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Stores the values of a single column.
+     */
+    private static abstract class Column implements Serializable
+    {
+        private final static long serialVersionUID = 1L;
+        protected final BitSet nulls = new BitSet();
+        protected Class<?> valueClass = null;
+        
+        /**
+         * Stores a value. Returns false if the value cannot be stored by this column type.
+         */
+        public boolean set(int row, Object value)
+        {
+            if (value==null)
+            {   nulls.set(row);
+                return true;
+            }
+            if (valueClass==null)
+                valueClass = value.getClass();
+            else if (valueClass!=value.getClass())
+                return false; // mixed types
+            return setValue(row, value);
+        }
+        
+        public final Object get(int row)
+        {
+            return (nulls.get(row) ? null : getValue(row));
+        }
+
+        public final boolean isNull(int row)
+        {
+            return nulls.get(row);
+        }
+        
+        public long getLong(int row)
+        {
+            return ObjectUtils.getLong(get(row));
+        }
+        
+        public double getDouble(int row)
+        {
+            return ObjectUtils.getDouble(get(row));
+        }
+        
+        public boolean getBoolean(int row)
+        {
+            return ObjectUtils.getBoolean(get(row));
+        }
+        
+        protected abstract boolean setValue(int row, Object value);
+        protected abstract Object getValue(int row);
+        protected abstract void ensureCapacity(int capacity);
+    }
+    
+    /**
+     * Integer values (including integral decimal values as returned by some drivers)
+     */
+    private static final class LongColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private long[] values = new long[INITIAL_CAPACITY];
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (value instanceof BigDecimal)
+            {   // must be integral without a scale
+                BigDecimal decimal = (BigDecimal)value;
+                if (decimal.scale()!=0 || decimal.unscaledValue().bitLength()>63)
+                    return false;
+                values[row] = decimal.longValue();
+                return true;
+            }
+            if (!(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte))
+                return false;
+            values[row] = ((Number)value).longValue();
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            long value = values[row];
+            if (valueClass==BigDecimal.class)
+                return BigDecimal.valueOf(value);
+            if (valueClass==Integer.class)
+                return Integer.valueOf((int)value);
+            if (valueClass==Short.class)
+                return Short.valueOf((short)value);
+            if (valueClass==Byte.class)
+                return Byte.valueOf((byte)value);
+            return Long.valueOf(value);
+        }
+        
+        @Override
+        public long getLong(int row)
+        {
+            return (nulls.get(row) ? 0 : values[row]);
+        }
+        
+        @Override
+        public double getDouble(int row)
+        {
+            return (nulls.get(row) ? 0 : values[row]);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   long[] newValues = new long[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+    }
+    
+    /**
+     * Decimal values stored as unscaled values with a common scale
+     */
+    private static final class DecimalColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private long[] values = new long[INITIAL_CAPACITY];
+        private int scale = 0;
+        private boolean scaleSet = false;
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof BigDecimal))
+                return false;
+            BigDecimal decimal = (BigDecimal)value;
+            if (!scaleSet)
+            {   // the scale may be negative 
+                scale = decimal.scale();
+                scaleSet = true;
+            }
+            if (decimal.scale()!=scale)
+            {   // use the common scale
+                try {
+                    decimal = decimal.setScale(scale);
+                } catch(ArithmeticException e) {
+                    // the value requires a larger scale
+                    if (!rescale(row, decimal.scale()))
+                        return false;
+                }
+            }
+            BigInteger unscaled = decimal.unscaledValue();
+            if (unscaled.bitLength()>63)
+                return false; // too large
+            values[row] = unscaled.longValue();
+            return true;
+        }
+        
+        /**
+         * Increases the common scale of all values stored so far.
+         * Returns false if a value would no longer fit.
+         */
+        private boolean rescale(int rowCount, int newScale)
+        {
+            BigInteger factor = BigInteger.TEN.pow(newScale - scale);
+            long[] newValues = new long[values.length];
+            for (int i=0; i<rowCount; i++)
+            {
+                if (values[i]==0)
+                    continue;
+                BigInteger unscaled = BigInteger.valueOf(values[i]).multiply(factor);
+                if (unscaled.bitLength()>63)
+                    return false; // too large
+                newValues[i] = unscaled.longValue();
+            }
+            values = newValues;
+            scale = newScale;
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            return BigDecimal.valueOf(values[row], scale);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   long[] newValues = new long[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+    }
+    
+    /**
+     * Floating point values
+     */
+    private static final class DoubleColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private double[] values = new double[INITIAL_CAPACITY];
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Double || value instanceof Float))
+                return false;
+            values[row] = ((Number)value).doubleValue();
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            if (valueClass==Float.class)
+                return Float.valueOf((float)values[row]);
+            return Double.valueOf(values[row]);
+        }
+        
+        @Override
+        public double getDouble(int row)
+        {
+            return (nulls.get(row) ? 0 : values[row]);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   double[] newValues = new double[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+    }
+    
+    /**
+     * Boolean values
+     */
+    private static final class BooleanColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private final BitSet values = new BitSet();
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof Boolean))
+                return false;
+            values.set(row, ((Boolean)value).booleanValue());
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            return Boolean.valueOf(values.get(row));
+        }
+        
+        @Override
+        public boolean getBoolean(int row)
+        {
+            return values.get(row);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            // BitSet grows automatically
+        }
+    }
+    
+    /**
+     * Date values stored as milliseconds
+     */
+    private static final class DateColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private long[] values = new long[INITIAL_CAPACITY];
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (value instanceof Timestamp && (((Timestamp)value).getNanos() % 1000000)!=0)
+                return false; // precision would be lost
+            if (value.getClass()!=Timestamp.class && value.getClass()!=java.sql.Date.class && value.getClass()!=Date.class)
+                return false;
+            values[row] = ((Date)value).getTime();
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            if (valueClass==Timestamp.class)
+                return new Timestamp(values[row]);
+            if (valueClass==java.sql.Date.class)
+                return new java.sql.Date(values[row]);
+            return new Date(values[row]);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   long[] newValues = new long[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+    }
+    
+    /**
+     * Text values stored as references into a dictionary of distinct values
+     */
+    private static final class TextColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private int[] values = new int[INITIAL_CAPACITY];
+        private final List<String> dictionary = new ArrayList<String>();
+        private transient Map<String, Integer> lookup = new HashMap<String, Integer>();
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            if (!(value instanceof String))
+                return false;
+            if (lookup==null)
+                throw new ObjectNotValidException(this);
+            Integer index = lookup.get(value);
+            if (index==null)
+            {   // add to dictionary
+                index = dictionary.size();
+                dictionary.add((String)value);
+                lookup.put((String)value, index);
+            }
+            values[row] = index.intValue();
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            return dictionary.get(values[row]);
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   int[] newValues = new int[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+        
+        public void releaseLookup()
+        {
+            lookup = null;
+        }
+    }
+    
+    /**
+     * Values of any type
+     */
+    private static final class ObjectColumn extends Column
+    {
+        private final static long serialVersionUID = 1L;
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        
+        public ObjectColumn()
+        {
+            // nothing
+        }
+        
+        public ObjectColumn(Column source, int rowCount)
+        {
+            ensureCapacity(rowCount);
+            for (int i=0; i<rowCount; i++)
+                set(i, source.get(i));
+        }
+        
+        @Override
+        public boolean set(int row, Object value)
+        {
+            // values of any type are accepted
+            if (value==null)
+                nulls.set(row);
+            values[row] = value;
+            return true;
+        }
+        
+        @Override
+        protected boolean setValue(int row, Object value)
+        {
+            values[row] = value;
+            return true;
+        }
+        
+        @Override
+        protected Object getValue(int row)
+        {
+            return values[row];
+        }
+        
+        @Override
+        protected void ensureCapacity(int capacity)
+        {
+            if (capacity>values.length)
+            {   Object[] newValues = new Object[Math.max(capacity, values.length * 2)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+    }
+
+    /**
+     * Iterator over all rows of the buffer
+     */
+    private class DBResultBufferIterator implements Iterator<DBRecordData>
+    {
+        public DBResultBufferIterator()
+        {
+            rowIndex = -1;
+        }
+        
+        public boolean hasNext()
+        {
+            return (rowIndex+1 < rowCount);
+        }
+
+        public DBRecordData next()
+        {
+            if (!moveNext())
+                throw new NoSuchElementException();
+            return DBResultBuffer.this;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+    
+    protected DBDatabase     db       = null;
+    protected DBColumnExpr[] colList  = null;
+    private Column[]         columns  = null;
+    private int              rowCount = 0;
+    private int              rowIndex = -1;
+
+    /**
+     * Constructs an empty DBResultBuffer object.
+     */
+    public DBResultBuffer()
+    {
+        // Default Constructor
+    }
+
+    @Override
+    public DBDatabase getDatabase()
+    {
+        return db;
+    }
+
+    /**
+     * Executes a query and loads all rows into the buffer.<BR>
+     * The reader used for the query is closed before this function returns.
+     * 
+     * @param cmd the query command
+     * @param conn a valid connection to the database.
+     * @return the number of rows loaded
+     */
+    public int load(DBCommandExpr cmd, Connection conn)
+    {
+        DBReader reader = new DBReader();
+        try
+        {   reader.open(cmd, conn);
+            return load(reader, -1);
+        } finally
+        {   reader.close();
+        }
+    }
+
+    /**
+     * Loads the remaining rows of a reader into the buffer.<BR>
+     * Any rows loaded before are discarded. The reader is not closed.
+     * 
+     * @param reader an open reader
+     * @param maxRows the maximum number of rows to load or -1 to load all rows
+     * @return the number of rows loaded
+     */
+    public int load(DBReader reader, int maxRows)
+    {
+        if (reader==null || !reader.isOpen())
+            throw new ObjectNotValidException(reader);
+        // init columns
+        this.db = reader.getDatabase();
+        this.colList = new DBColumnExpr[reader.getFieldCount()];
+        this.columns = new Column[colList.length];
+        for (int i=0; i<colList.length; i++)
+        {   colList[i] = reader.getColumnExpr(i);
+            columns[i] = createColumn(colList[i].getDataType());
+        }
+        this.rowCount = 0;
+        this.rowIndex = -1;
+        // read rows
+        long start = System.currentTimeMillis();
+        while ((maxRows<0 || rowCount<maxRows) && reader.moveNext())
+        {   // add row
+            for (int i=0; i<columns.length; i++)
+            {   columns[i].ensureCapacity(rowCount+1);
+                Object value = reader.getValue(i);
+                if (!columns[i].set(rowCount, value))
+                {   // the column type cannot store this value  
+                    log.debug("Column {} cannot be stored compactly. Using object storage.", colList[i].getName());
+                    columns[i] = new ObjectColumn(columns[i], rowCount);
+                    columns[i].ensureCapacity(rowCount+1);
+                    columns[i].set(rowCount, value);
+                }
+            }
+            rowCount++;
+        }
+        // release lookup tables
+        for (int i=0; i<columns.length; i++)
+            if (columns[i] instanceof TextColumn)
+                ((TextColumn)columns[i]).releaseLookup();
+        if (log.isDebugEnabled())
+            log.debug("{} rows loaded into result buffer in {} ms.", rowCount, System.currentTimeMillis()-start);
+        return rowCount;
+    }
+    
+    /**
+     * Creates the storage for a column of the given data type
+     */
+    private Column createColumn(DataType dataType)
+    {
+        switch(dataType)
+        {
+            case INTEGER:
+            case AUTOINC:
+                return new LongColumn();
+            case DECIMAL:
+                return new DecimalColumn();
+            case FLOAT:
+                return new DoubleColumn();
+            case BOOL:
+                return new BooleanColumn();
+            case DATE:
+            case DATETIME:
+                return new DateColumn();
+            case TEXT:
+            case CHAR:
+                return new TextColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    /**
+     * Returns the number of rows in the buffer
+     * @return the number of rows
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the index of the current row or -1 if the buffer is positioned before the first row
+     * @return the index of the current row
+     */
+    public int getRowIndex()
+    {
+        return rowIndex;
+    }
+
+    /**
+     * Moves to the next row.
+     * @return true if the buffer is positioned on a valid row or false if there are no more rows
+     */
+    public boolean moveNext()
+    {
+        if (rowIndex+1 >= rowCount)
+        {   rowIndex = rowCount;
+            return false;
+        }
+        rowIndex++;
+        return true;
+    }
+
+    /**
+     * Moves to the given row.
+     * @param row the row index or -1 to move before the first row
+     * @return true if the buffer is positioned on a valid row
+     */
+    public boolean moveTo(int row)
+    {
+        if (row<-1 || row>=rowCount)
+            throw new InvalidArgumentException("row", row);
+        rowIndex = row;
+        return (row>=0);
+    }
+
+    /**
+     * Returns an iterator over all rows.<BR>
+     * The iterator moves the current row of this buffer and returns the buffer itself for each row.
+     */
+    public Iterator<DBRecordData> iterator()
+    {
+        return new DBResultBufferIterator();
+    }
+    
+    /**
+     * Returns the index value by a specified DBColumnExpr object.
+     * 
+     * @return the index value
+     */
+    @Override
+    public int getFieldIndex(ColumnExpr column)
+    {
+        if (colList != null)
+        {
+            // First chance: Try to find an exact match
+            for (int i = 0; i < colList.length; i++)
+            {
+                if (colList[i].equals(column))
+                    return i;
+            }
+            // Second chance: Try Update Column
+            if (column instanceof DBColumn)
+            {
+                for (int i = 0; i < colList.length; i++)
+                {
+                    DBColumn updColumn = colList[i].getUpdateColumn();
+                    if (updColumn!=null && updColumn.equals(column))
+                        return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index value by a specified column name.
+     * 
+     * @param column the column name
+     * @return the index value
+     */
+    @Override
+    public int getFieldIndex(String column)
+    {
+        if (colList != null)
+        {
+            for (int i = 0; i < colList.length; i++)
+                if (colList[i].getName().equalsIgnoreCase(column))
+                    return i;
+        }
+        // not found
+        return -1;
+    }
+
+    /** Get the column Expression at position */
+    @Override
+    public DBColumnExpr getColumnExpr(int iColumn)
+    {
+        if (colList == null || iColumn < 0 || iColumn >= colList.length)
+            return null; // Index out of range
+        // return column Expression
+        return colList[iColumn];
+    }
+
+    /** returns the number of the elements of the colList array */
+    @Override
+    public int getFieldCount()
+    {
+        return (colList != null) ? colList.length : 0;
+    }
+
+    /**
+     * Returns the column storage for a value access on the current row
+     */
+    private Column getColumn(int index)
+    {
+        if (rowIndex < 0 || rowIndex >= rowCount)
+            throw new ObjectNotValidException(this);
+        if (index < 0 || index >= columns.length)
+            throw new InvalidArgumentException("index", index);
+        return columns[index];
+    }
+
+    /**
+     * Returns a data value of the current row identified by the column index.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public Object getValue(int index)
+    {
+        return getColumn(index).get(rowIndex);
+    }
+
+    @Override
+    public boolean isNull(int index)
+    {
+        return getColumn(index).isNull(rowIndex);
+    }
+
+    @Override
+    public int getInt(int index)
+    {
+        return (int)getColumn(index).getLong(rowIndex);
+    }
+
+    @Override
+    public long getLong(int index)
+    {
+        return getColumn(index).getLong(rowIndex);
+    }
+
+    @Override
+    public double getDouble(int index)
+    {
+        return getColumn(index).getDouble(rowIndex);
+    }
+
+    @Override
+    public boolean getBoolean(int index)
+    {
+        return getColumn(index).getBoolean(rowIndex);
+    }
+
+    /**
+     * initializes a DBRecord object with the values of the current row.
+     * At least all primary key columns of the target rowset must be provided by this buffer.
+     * 
+     * @param rowset the rowset to which to attach
+     * @param rec the record which to initialize
+     */
+    public void initRecord(DBRowSet rowset, DBRecord rec)
+    {
+        if (rowset==null)
+            throw new InvalidArgumentException("rowset", rowset);
+        // init Record
+        rowset.initRecord(rec, this);
+    }
+
+    /**
+     * Returns all rows of the buffer as a list of objects restricted
+     * to a maximum number of objects (unless maxCount is -1).
+     * The current row of the buffer is not changed.
+     * 
+     * @param c the collection to add the objects to
+     * @param t the class type of the objects in the list
+     * @param maxCount the maximum number of objects
+     * 
+     * @return the list of <T>
+     */
+    public <C extends Collection<T>, T> C getBeanList(C c, Class<T> t, int maxCount)
+    {
+        if (colList == null)
+            throw new ObjectNotValidException(this);
+        // Check whether we can use a constructor
+        Constructor<?> ctor = DBReader.findBeanConstructor(t, colList);
+        // Create a list of beans
+        int current = rowIndex;
+        try
+        {
+            for (rowIndex = 0; rowIndex < rowCount && maxCount != 0; rowIndex++)
+            {   // Create bean an init
+                c.add(DBReader.createBean(this, t, ctor));
+                // Decrease count
+                if (maxCount > 0)
+                    maxCount--;
+            }
+            // done
+            return c;
+        } finally {
+            rowIndex = current;
+        }
+    }
+    
+    /**
+     * Returns all rows of the buffer as a list of objects.
+     * 
+     * @param t the class type of the objects in the list
+     * 
+     * @return the list of <T>
+     */
+    public final <T> ArrayList<T> getBeanList(Class<T> t) {
+        return getBeanList(new ArrayList<T>(), t, -1);
+    }
+
+    /**
+     * Adds the column descriptions to an XML element.
+     * 
+     * @return the number of column descriptions added to the Element
+     */
+    @Override
+    public int addColumnDesc(Element parent)
+    {
+        if (colList == null)
+            throw new ObjectNotValidException(this);
+        // Add Field Description
+        for (int i = 0; i < colList.length; i++)
+            colList[i].addXml(parent, 0);
+        // return count
+        return colList.length; 
+    }
+
+    /**
+     * Adds the values of the current row to an XML element.
+     * 
+     * @param parent the parent element
+     * @return the number of row values added to the element
+     */
+    @Override
+    public int addRowValues(Element parent)
+    {
+        if (colList == null)
+            throw new ObjectNotValidException(this);
+        // Add all children
+        String idColumnAttr = getXmlDictionary().getRowIdColumnAttribute();
+        for (int i = 0; i < colList.length; i++)
+        { // Read all
+            String name = colList[i].getName();
+            if (name.equalsIgnoreCase("id"))
+            { // Add Attribute
+                parent.setAttribute(idColumnAttr, getString(i));
+            } 
+            else
+            { // Add Element
+                String value = getString(i);
+                Element elem = XMLUtil.addElement(parent, name, value);
+                if (value == null)
+                    elem.setAttribute("null", "yes"); // Null-Value
+            }
+        }
+        // return count
+        return colList.length; 
+    }
+
+    /**
+     * Adds all rows to an XML element.
+     * 
+     * @param parent the parent element
+     * @return the number of rows added to the element
+     */
+    public int addRows(Element parent)
+    {
+        if (colList == null)
+            return 0;
+        // Add all rows
+        String rowElementName = getXmlDictionary().getRowElementName();
+        int current = rowIndex;
+        for (rowIndex = 0; rowIndex < rowCount; rowIndex++)
+            addRowValues(XMLUtil.addElement(parent, rowElementName));
+        rowIndex = current;
+        return rowCount;
+    }
+    
+    /**
+     * returns the DBXmlDictionary that should used to generate XMLDocuments<BR>
+     * @return the DBXmlDictionary
+     */
+    protected DBXmlDictionary getXmlDictionary()
+    {
+        return DBXmlDictionary.getInstance();
+    }
+
+    /**
+     * Returns a XML document with the field description and the values of all rows.
+     * 
+     * @return the new XML Document object
+     */
+    @Override
+    public Document getXmlDocument()
+    {
+        if (colList == null)
+            return null;
+        // Create Document
+        String rowsetElementName = getXmlDictionary().getRowSetElementName();
+        Element root = XMLUtil.createDocument(rowsetElementName);
+        // Add Field Description
+        addColumnDesc(root);
+        // Add rows
+        addRows(root);
+        // return Document
+        return root.getOwnerDocument();
+    }
+
+    /**
+     * Releases all buffered rows.
+     */
+    @Override
+    public void close()
+    {
+        colList = null;
+        columns = null;
+        rowCount = 0;
+        rowIndex = -1;
+    }
+}
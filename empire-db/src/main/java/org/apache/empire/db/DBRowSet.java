@@ -814,6 +814,7 @@ public abstract class DBRowSet extends DBExpr
         }
         // Perform action
         int affected = db.executeSQL(sql, cmd.getParamValues(), conn, setGenKey);
+        db.invalidateQueryCache(this, conn);
         if (affected < 0)
         {   // Update Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -903,6 +904,7 @@ public abstract class DBRowSet extends DBExpr
                 cmd.where(refs[i].getSourceColumn().is(parentKey[i]));
             if (db.executeSQL(cmd.getDelete((DBTable)this), conn)<0)
                 throw new UnexpectedReturnValueException(-1, "db.executeSQL()");
+            db.invalidateQueryCache(this, conn);
         }
         else
         {   // Query all keys
@@ -18,9 +18,13 @@
  */
 package org.apache.empire.db;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 
 import org.apache.empire.db.exceptions.EmpireSQLException;
@@ -39,11 +43,17 @@ public class DBSQLScript implements Iterable<String>
     // Logger
     private static final Logger log = LoggerFactory.getLogger(DBSQLScript.class);
     private static final String DEFAULT_COMMAND_SEPARATOR = ";\r\n\r\n";
+    private static final int    DEFAULT_BATCH_SIZE = 100;
 
     // Properties
     protected String commandSeparator = DEFAULT_COMMAND_SEPARATOR; 
+    protected int    batchSize = DEFAULT_BATCH_SIZE;
 
     protected ArrayList<String> sqlCmdList = new ArrayList<String>();
+    protected BitSet nonTransactionalCmds = new BitSet();
+    
+    // Execution times of the last run (in milliseconds)
+    private long[] executionTimes = null;
     
     public DBSQLScript()
     {
@@ -76,6 +86,40 @@ public class DBSQLScript implements Iterable<String>
         sql.setLength(0);
     }
     
+    /**
+     * Adds a statement that must not be executed inside a transaction (e.g. CREATE INDEX CONCURRENTLY on PostgreSQL).<br>
+     * If the connection is not in auto-commit mode when the script is run, all pending changes are committed
+     * and the statement is executed in auto-commit mode.
+     * @param sql the statement
+     */
+    public void addNonTransactionalStmt(String sql)
+    {
+        nonTransactionalCmds.set(sqlCmdList.size());
+        sqlCmdList.add(sql);
+    }
+    
+    /**
+     * Adds a statement that must not be executed inside a transaction.<br>
+     * The supplied StringBuilder will be reset to a length of 0
+     * @param sql the statement
+     */
+    public final void addNonTransactionalStmt(StringBuilder sql)
+    {
+        addNonTransactionalStmt(sql.toString());
+        // Clear Builder
+        sql.setLength(0);
+    }
+    
+    /**
+     * Returns whether the statement at the given index must be executed outside of a transaction
+     * @param i index of the statement
+     * @return true if the statement must not be executed inside a transaction
+     */
+    public boolean isNonTransactional(int i)
+    {
+        return nonTransactionalCmds.get(i);
+    }
+    
     /**
      * Returns the number of statements in this script
      * @return number of statements in this script
@@ -101,10 +145,44 @@ public class DBSQLScript implements Iterable<String>
     public void clear()
     {
         sqlCmdList.clear();
+        nonTransactionalCmds.clear();
+        executionTimes = null;
     }
     
     /**
-     * Runs all SQL Statements using the supplied driver and connection.
+     * Returns the maximum number of statements executed in a single JDBC batch by runBatch()
+     * @return the batch size
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of statements executed in a single JDBC batch by runBatch()
+     * @param batchSize the batch size (a value of 1 disables batching)
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = (batchSize>0 ? batchSize : 1);
+    }
+    
+    /**
+     * Returns the time it took to execute a statement during the last run.<br>
+     * For statements executed as part of a JDBC batch the time of the batch is divided among its statements.
+     * @param i index of the statement
+     * @return the execution time in milliseconds or -1 if the statement has not been executed
+     */
+    public long getExecutionTime(int i)
+    {
+        if (executionTimes==null || i>=executionTimes.length)
+            return -1;
+        return executionTimes[i];
+    }
+    
+    /**
+     * Runs all SQL Statements using the supplied driver and connection.<br>
+     * All statements are executed one by one using a single JDBC Statement.
      * @param driver the driver used for statement execution
      * @param conn the connection
      * @param ignoreErrors true if errors should be ignored
@@ -112,22 +190,40 @@ public class DBSQLScript implements Iterable<String>
     public void run(DBDatabaseDriver driver, Connection conn, boolean ignoreErrors)
     {
         log.debug("Running script containing " + String.valueOf(getCount()) + " statements.");
-        for(String stmt : sqlCmdList)
-        {
-            try {
-                // Execute Statement
-                log.debug("Executing: " + stmt);
-                driver.executeSQL(stmt, null, conn, null);
-            } catch(SQLException e) {
-                // SQLException
-                log.error(e.toString(), e);
-                if (ignoreErrors==false)
-                {   // forward exception
-                    throw new EmpireSQLException(driver, e);
-                }    
-                // continue
-                log.debug("Ignoring error. Continuing with script...");
+        executionTimes = new long[getCount()];
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            for (int i=0; i<executionTimes.length; i++)
+            {
+                String sql = sqlCmdList.get(i);
+                executionTimes[i] = -1;
+                try {
+                    // Execute Statement
+                    log.debug("Executing: {}", sql);
+                    long start = System.currentTimeMillis();
+                    if (isNonTransactional(i))
+                        executeNonTransactional(stmt, sql, conn);
+                    else
+                        stmt.executeUpdate(sql);
+                    executionTimes[i] = System.currentTimeMillis() - start;
+                } catch(SQLException e) {
+                    // SQLException
+                    log.error(e.toString(), e);
+                    if (ignoreErrors==false)
+                    {   // forward exception
+                        throw new EmpireSQLException(driver, e);
+                    }    
+                    // continue
+                    log.debug("Ignoring error. Continuing with script...");
+                }
             }
+        } catch(SQLException e) {
+            // SQLException
+            log.error(e.toString(), e);
+            throw new EmpireSQLException(driver, e);
+        } finally {
+            driver.close(stmt);
         }
         log.debug("Script completed.");
     }
@@ -142,6 +238,198 @@ public class DBSQLScript implements Iterable<String>
         run(driver, conn, false);
     }
     
+    /**
+     * Runs all SQL Statements using JDBC batches.<br>
+     * Consecutive statements of the same kind (DML or DDL) are grouped and executed as JDBC batches
+     * of up to getBatchSize() statements, provided that the connection supports batch updates.
+     * All statements and batches are executed using a single JDBC Statement.<br>
+     * If skipErrors is true, failing statements are skipped instead of aborting the script.
+     * If the connection is not in auto-commit mode and supports savepoints, each batch is protected 
+     * by a savepoint. If a batch fails, the changes of the batch are rolled back to the savepoint
+     * and the statements of the batch are executed again one by one, skipping those that fail.
+     * Otherwise execution resumes after the failed statement as reported by the driver's BatchUpdateException.<br>
+     * Non-transactional statements (see {@link #addNonTransactionalStmt(String)}) are executed individually in auto-commit mode.<br>
+     * Transaction handling (commit or rollback) is left to the caller.<br>
+     * The execution time of each statement is available after the run from getExecutionTime().
+     * @param driver the driver used for statement execution
+     * @param conn the connection
+     * @param skipErrors true if failing statements should be skipped
+     */
+    public void runBatch(DBDatabaseDriver driver, Connection conn, boolean skipErrors)
+    {
+        int count = getCount();
+        log.debug("Running script containing {} statements in batch mode.", count);
+        executionTimes = new long[count];
+        long scriptStart = System.currentTimeMillis();
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            boolean useBatch = (batchSize>1 && conn.getMetaData().supportsBatchUpdates());
+            boolean useSavepoints = (skipErrors && !conn.getAutoCommit() && conn.getMetaData().supportsSavepoints());
+            // Execute all statements
+            int i = 0;
+            while (i<count)
+            {   // find end of group
+                boolean dml = isDMLStatement(sqlCmdList.get(i));
+                int end = i + 1;
+                while (useBatch && !isNonTransactional(i) && end<count && end-i<batchSize 
+                       && !isNonTransactional(end) && isDMLStatement(sqlCmdList.get(end))==dml)
+                    end++;
+                // Execute group
+                if (end-i>1)
+                    executeBatch(stmt, conn, i, end, skipErrors, useSavepoints);
+                else
+                    executeSingle(stmt, conn, i, skipErrors, useSavepoints);
+                i = end;
+            }
+        } catch(SQLException e) {
+            // SQLException
+            log.error(e.toString(), e);
+            throw new EmpireSQLException(driver, e);
+        } finally {
+            driver.close(stmt);
+        }
+        log.debug("Script completed in {} ms.", System.currentTimeMillis() - scriptStart);
+    }
+    
+    /**
+     * Executes a group of statements as a single JDBC batch.
+     * If the batch fails and errors should be skipped, the statements that have not been executed are executed one by one.
+     */
+    private void executeBatch(Statement stmt, Connection conn, int from, int to, boolean skipErrors, boolean useSavepoints)
+        throws SQLException
+    {
+        if (log.isDebugEnabled())
+            log.debug("Executing batch of {} statements beginning with: {}", to-from, sqlCmdList.get(from));
+        Savepoint savepoint = (useSavepoints ? conn.setSavepoint() : null);
+        long start = System.currentTimeMillis();
+        try {
+            stmt.clearBatch();
+            for (int i=from; i<to; i++)
+                stmt.addBatch(sqlCmdList.get(i));
+            stmt.executeBatch();
+            // done
+            long time = (System.currentTimeMillis() - start) / (to-from);
+            for (int i=from; i<to; i++)
+                executionTimes[i] = time;
+            if (savepoint!=null)
+                conn.releaseSavepoint(savepoint);
+        } catch(SQLException e) {
+            if (!skipErrors)
+                throw e;
+            // Batch failed
+            log.warn("Batch execution failed ({}). Executing statements individually.", e.getMessage());
+            int next = from;
+            if (savepoint!=null)
+            {   // execute all statements again
+                conn.rollback(savepoint);
+            }
+            else if (e instanceof BatchUpdateException && ((BatchUpdateException)e).getUpdateCounts()!=null)
+            {   // resume after the failed statement
+                int[] counts = ((BatchUpdateException)e).getUpdateCounts();
+                next = Math.min(from + counts.length, to);
+                for (int i=from; i<next; i++)
+                    executionTimes[i] = (counts[i-from]==Statement.EXECUTE_FAILED ? -1 : 0);
+                if (next<to)
+                {   // the driver stopped at the failed statement
+                    log.error("Skipping statement {} due to error: {}", next, e.getMessage());
+                    executionTimes[next++] = -1;
+                }
+            }
+            else
+            {   // unknown which statements have been executed
+                log.error("Batch failed without savepoint or update counts. Unable to determine which statements have been executed.");
+                throw e;
+            }
+            for (int i=next; i<to; i++)
+                executeSingle(stmt, conn, i, skipErrors, useSavepoints);
+        }
+    }
+    
+    /**
+     * Executes a single statement.
+     * If the statement fails and errors should be skipped, the changes of the statement are rolled back to a savepoint.
+     */
+    private void executeSingle(Statement stmt, Connection conn, int index, boolean skipErrors, boolean useSavepoints)
+        throws SQLException
+    {
+        String sql = sqlCmdList.get(index);
+        log.debug("Executing: {}", sql);
+        boolean nonTransactional = isNonTransactional(index);
+        Savepoint savepoint = (useSavepoints && !nonTransactional ? conn.setSavepoint() : null);
+        long start = System.currentTimeMillis();
+        try {
+            if (nonTransactional)
+                executeNonTransactional(stmt, sql, conn);
+            else
+                stmt.executeUpdate(sql);
+            executionTimes[index] = System.currentTimeMillis() - start;
+            if (savepoint!=null)
+                conn.releaseSavepoint(savepoint);
+        } catch(SQLException e) {
+            executionTimes[index] = -1;
+            if (!skipErrors)
+                throw e;
+            // skip statement
+            log.error("Skipping statement {} due to error: {}", index, e.getMessage());
+            if (savepoint!=null)
+                conn.rollback(savepoint);
+        }
+    }
+    
+    /**
+     * Executes a statement that must not be executed inside a transaction.
+     * If the connection is not in auto-commit mode, all pending changes are committed first
+     * and auto-commit is enabled while the statement is executed.
+     */
+    protected void executeNonTransactional(Statement stmt, String sql, Connection conn)
+        throws SQLException
+    {
+        if (conn.getAutoCommit())
+        {   // not in a transaction
+            stmt.executeUpdate(sql);
+            return;
+        }
+        log.info("Committing pending changes in order to execute a statement outside of a transaction: {}", sql);
+        conn.commit();
+        conn.setAutoCommit(true);
+        try {
+            stmt.executeUpdate(sql);
+        } finally {
+            conn.setAutoCommit(false);
+        }
+    }
+    
+    /**
+     * Returns true if the statement manipulates data (INSERT, UPDATE, DELETE or MERGE) 
+     * or false if it is a DDL (or any other) statement.<br>
+     * Only statements of the same kind are executed in the same batch. 
+     * @param sql the sql statement
+     * @return true if the statement is a DML statement
+     */
+    protected boolean isDMLStatement(String sql)
+    {
+        // skip whitespace and comments
+        int i = 0;
+        int len = sql.length();
+        while (i<len)
+        {
+            if (Character.isWhitespace(sql.charAt(i)))
+                i++;
+            else if (sql.startsWith("--", i))
+            {   // skip to end of line
+                int eol = sql.indexOf('\n', i);
+                i = (eol<0 ? len : eol + 1);
+            }
+            else
+                break;
+        }
+        return sql.regionMatches(true, i, "INSERT", 0, 6)
+            || sql.regionMatches(true, i, "UPDATE", 0, 6)
+            || sql.regionMatches(true, i, "DELETE", 0, 6)
+            || sql.regionMatches(true, i, "MERGE",  0, 5);
+    }
+    
     /**
      * Returns an iterator
      */
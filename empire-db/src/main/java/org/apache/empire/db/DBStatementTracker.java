@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DBStatementTracker
+ * <p>
+ * Wraps a JDBC connection in order to apply a query timeout to every statement created through it
+ * and to be able to cancel the statement that is currently executed from another thread.<br>
+ * The statements themselves are not wrapped, hence reading results is not affected.
+ * </p>
+ */
+final class DBStatementTracker implements InvocationHandler
+{
+    // Logger
+    private static final Logger log = LoggerFactory.getLogger(DBStatementTracker.class);
+
+    private final int queryTimeout;
+    private Connection conn;
+    private volatile Statement statement;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a tracker
+     * @param queryTimeout the query timeout in seconds or 0 for no timeout
+     */
+    public DBStatementTracker(int queryTimeout)
+    {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * returns the tracker of a connection
+     * @param conn the connection
+     * @return the tracker or null if the connection is not tracked
+     */
+    public static DBStatementTracker get(Connection conn)
+    {
+        if (conn==null || !Proxy.isProxyClass(conn.getClass()))
+            return null;
+        InvocationHandler handler = Proxy.getInvocationHandler(conn);
+        return (handler instanceof DBStatementTracker) ? (DBStatementTracker)handler : null;
+    }
+
+    /**
+     * returns the query timeout applied to the statements
+     * @return the query timeout in seconds or 0 for no timeout
+     */
+    public int getQueryTimeout()
+    {
+        return queryTimeout;
+    }
+
+    /**
+     * Wraps a connection for tracking
+     * @param conn the connection
+     * @return the wrapped connection
+     */
+    public Connection track(Connection conn)
+    {
+        this.conn = conn;
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, this);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+    {
+        // Object methods of the proxy itself
+        if (method.getDeclaringClass()==Object.class)
+        {
+            String name = method.getName();
+            if (name.equals("equals"))
+                return Boolean.valueOf(proxy==args[0]);
+            if (name.equals("hashCode"))
+                return Integer.valueOf(System.identityHashCode(proxy));
+            if (name.equals("toString"))
+                return "DBStatementTracker[" + conn + "]";
+        }
+        // Connection methods
+        if (cancelled && Statement.class.isAssignableFrom(method.getReturnType()))
+            throw new SQLException("Statement has been cancelled.");
+        Object result;
+        try {
+            result = method.invoke(conn, args);
+        } catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+        if (result instanceof Statement)
+        {   // new statement
+            Statement stmt = (Statement)result;
+            if (queryTimeout > 0)
+                stmt.setQueryTimeout(queryTimeout);
+            statement = stmt;
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the statement currently executed and prevents further statements from being created.
+     * @return true if a statement has been cancelled or false if no statement has been created yet 
+     */
+    public boolean cancel()
+    {
+        cancelled = true;
+        return cancel(statement);
+    }
+
+    /**
+     * Cancels a statement
+     * @param stmt the statement (may be null)
+     * @return true if the statement has been cancelled or false otherwise 
+     */
+    public static boolean cancel(Statement stmt)
+    {
+        if (stmt==null)
+            return false;
+        try {
+            stmt.cancel();
+            return true;
+        } catch(SQLException e) {
+            // Not supported or already closed
+            log.warn("Failed to cancel statement: {}", e.getMessage());
+            return false;
+        }
+    }
+}
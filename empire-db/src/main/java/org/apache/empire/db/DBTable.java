@@ -498,6 +498,7 @@ public class DBTable extends DBRowSet implements Cloneable
         // Perform delete
         String sqlCmd = cmd.getDelete(this);
         int affected  = db.executeSQL(sqlCmd, cmd.getParamValues(), conn);
+        db.invalidateQueryCache(this, conn);
         if (affected < 0)
         { // Delete Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -199,9 +199,9 @@ public class DBTableColumn extends DBColumn
             // Remove sign
             size = Math.abs(size);
         }
-        else if (attributes!=null && attributes.contains(DBCOLATTR_SINGLEBYTECHARS))
+        else
         {   // Remove single by chars attribute
-            attributes.remove(DBCOLATTR_SINGLEBYTECHARS);
+            removeAttribute(DBCOLATTR_SINGLEBYTECHARS);
         }
         // set now
         this.size = size;
@@ -298,8 +298,7 @@ public class DBTableColumn extends DBColumn
         }
         else  
         {   // Remove Attribute
-            if (attributes!=null)
-                attributes.remove(DBCOLATTR_READONLY);
+            removeAttribute(DBCOLATTR_READONLY);
         }
     }
 
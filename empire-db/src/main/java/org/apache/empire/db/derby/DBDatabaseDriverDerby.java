@@ -23,6 +23,7 @@ import java.util.GregorianCalendar;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
@@ -31,6 +32,7 @@ import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
+import org.apache.empire.exceptions.NotSupportedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +58,12 @@ public class DBDatabaseDriverDerby extends DBDatabaseDriver
         {
             super(db);
         }
+        
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {   // Derby's MERGE requires a table as source
+            throw new NotSupportedException(this, "getUpsert");
+        }
     }
     
     // Properties
@@ -301,5 +309,17 @@ public class DBDatabaseDriverDerby extends DBDatabaseDriver
         // forward request
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
+    
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new DerbyDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
 
 }
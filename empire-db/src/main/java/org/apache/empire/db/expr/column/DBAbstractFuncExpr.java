@@ -19,9 +19,12 @@
 package org.apache.empire.db.expr.column;
 
 // Java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
@@ -141,11 +144,85 @@ public abstract class DBAbstractFuncExpr extends DBColumnExpr
         expr.addReferencedColumns(list);
     }
 
+    /**
+     * A pre-parsed function template.
+     * The template is split into literal segments and slots for the column expression and the function parameters.
+     */
+    private static final class FuncTemplate
+    {
+        private static final int EXPR_SLOT = -1;
+        
+        private final String[] literals; // one more than slots
+        private final int[]    slots;
+        
+        private FuncTemplate(String template)
+        {
+            List<String>  literalList = new ArrayList<String>();
+            List<Integer> slotList = new ArrayList<Integer>();
+            boolean hasExpr = false;
+            int start = 0;
+            int len = template.length();
+            for (int i = 0; i < len; i++)
+            {
+                char c = template.charAt(i);
+                if (c == '?' && !hasExpr)
+                {   // column expression
+                    literalList.add(template.substring(start, i));
+                    slotList.add(EXPR_SLOT);
+                    hasExpr = true;
+                    start = i + 1;
+                }
+                else if (c == '{')
+                {   // parameter
+                    int end = i + 1;
+                    while (end < len && Character.isDigit(template.charAt(end)))
+                        end++;
+                    if (end > i + 1 && end < len && template.charAt(end) == '}')
+                    {
+                        literalList.add(template.substring(start, i));
+                        slotList.add(Integer.parseInt(template.substring(i + 1, end)));
+                        start = end + 1;
+                        i = end;
+                    }
+                }
+            }
+            if (!hasExpr)
+            {   // column expression is appended to the end
+                literalList.add(template.substring(start));
+                slotList.add(EXPR_SLOT);
+                start = len;
+            }
+            literalList.add(template.substring(start));
+            // store
+            this.literals = literalList.toArray(new String[literalList.size()]);
+            this.slots = new int[slotList.size()];
+            for (int i = 0; i < slots.length; i++)
+                slots[i] = slotList.get(i);
+        }
+    }
+    
+    private static final int MAX_CACHED_TEMPLATES = 500;
+    private static final Map<String, FuncTemplate> templateCache = new ConcurrentHashMap<String, FuncTemplate>();
+    
+    private static FuncTemplate getFuncTemplate(String template)
+    {
+        FuncTemplate ft = templateCache.get(template);
+        if (ft == null)
+        {   // Parse and cache (templates are usually driver phrases, hence the number is limited)
+            ft = new FuncTemplate(template);
+            if (templateCache.size() < MAX_CACHED_TEMPLATES)
+                templateCache.put(template, ft);
+        }
+        return ft;
+    }
+
     /**
      * Creates the SQL-Command adds a function to the SQL-Command.
      * 
      * The sql function string is built from a string template.
      * The template string must contain a ? which is a placeholder for the column expression.
+     * Function parameters are referenced by {0}, {1}, etc.
+     * Templates are parsed once and cached.
      * 
      * @param sql the SQL-Command
      * @param template the function template string. 
@@ -154,30 +231,26 @@ public abstract class DBAbstractFuncExpr extends DBColumnExpr
      */
     public final void addSQL(StringBuilder sql, String template, Object[] params, long context)
     {
-        // Get Template
-        if (params != null)
-        {   // Replace Params
-            DataType dataType = expr.getDataType();
-            for (int i = 0; i < params.length; i++)
-            {   // String test  =(params[i] != null) ? params[i].toString() : "";
-                String value = getObjectValue(dataType, params[i], CTX_DEFAULT, ",");
-                // template = template.replaceAll("\\{" + String.valueOf(i) + "\\}", value);
-                template = StringUtils.replaceAll(template, "{"+ String.valueOf(i) + "}", value);
+        FuncTemplate ft = getFuncTemplate(template);
+        DataType dataType = expr.getDataType();
+        for (int i = 0; i < ft.slots.length; i++)
+        {
+            sql.append(ft.literals[i]);
+            int slot = ft.slots[i];
+            if (slot == FuncTemplate.EXPR_SLOT)
+            {   // the column expression
+                expr.addSQL(sql, (context & ~CTX_ALIAS));
+            }
+            else if (params != null && slot < params.length)
+            {   // a parameter
+                sql.append(getObjectValue(dataType, params[slot], CTX_DEFAULT, ","));
+            }
+            else
+            {   // no such parameter
+                sql.append('{').append(slot).append('}');
             }
         }
-        // Get Prefix and Postfix
-        String prefix  = template;
-        String postfix = "";
-        int sep = template.indexOf("?");
-        if (sep >= 0)
-        {
-            prefix  = template.substring(0, sep);
-            postfix = template.substring(sep + 1);
-        } 
-        // append
-        sql.append(prefix);
-        expr.addSQL(sql, (context & ~CTX_ALIAS));
-        sql.append(postfix);
+        sql.append(ft.literals[ft.slots.length]);
     }
 
     @Override
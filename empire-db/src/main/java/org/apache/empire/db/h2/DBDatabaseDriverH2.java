@@ -23,6 +23,7 @@ import java.util.GregorianCalendar;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
@@ -56,6 +57,25 @@ public class DBDatabaseDriverH2 extends DBDatabaseDriver
         {
             super(db);
         }
+        
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {   // MERGE INTO ... KEY
+            buf.append("MERGE INTO ");
+            table.addSQL(buf, CTX_FULLNAME);
+            buf.append(" (");
+            addListExpr(buf, set, CTX_NAME, ", ");
+            buf.append(") KEY (");
+            for (int i=0; i<keyColumns.length; i++)
+            {
+                if (i>0)
+                    buf.append(", ");
+                keyColumns[i].addSQL(buf, CTX_NAME);
+            }
+            buf.append(") VALUES (");
+            addListExpr(buf, set, CTX_VALUE, ", ");
+            buf.append(")");
+        }
     }
     
     // Properties
@@ -303,5 +323,17 @@ public class DBDatabaseDriverH2 extends DBDatabaseDriver
         // forward request
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
+    
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new H2DDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
 
 }
@@ -24,12 +24,13 @@ import java.util.GregorianCalendar;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
 import org.apache.empire.db.DBCommand;
-import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBDatabaseDriver;
 import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBTableColumn;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,9 +61,42 @@ public class DBDatabaseDriverHSql extends DBDatabaseDriver
 	    {
 	        super(db);
 	    }
+
+        /**
+         * Adds the source of a MERGE statement.<br>
+         * HSQLDB is unable to derive the type of a parameter in a VALUES table constructor,
+         * hence all values are cast to the type of their column.
+         */
+        @Override
+        protected void addMergeSource(StringBuilder buf, String alias)
+        {
+            HSqlDDLGenerator ddlGenerator = ((DBDatabaseDriverHSql)getDatabase().getDriver()).getDDLGenerator();
+            buf.append("(VALUES (");
+            for (int i=0; i<set.size(); i++)
+            {
+                if (i>0)
+                    buf.append(", ");
+                DBSetExpr expr = set.get(i);
+                if (expr.getColumn() instanceof DBTableColumn)
+                {   // cast to column type
+                    buf.append("CAST(");
+                    expr.addSQL(buf, CTX_VALUE);
+                    buf.append(" AS ");
+                    ddlGenerator.appendCastType((DBTableColumn)expr.getColumn(), buf);
+                    buf.append(")");
+                }
+                else
+                    expr.addSQL(buf, CTX_VALUE);
+            }
+            buf.append(")) AS ");
+            buf.append(alias);
+            buf.append(" (");
+            addListExpr(buf, set, CTX_NAME, ", ");
+            buf.append(")");
+        }
 	}
     
-    private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
+    private HSqlDDLGenerator ddlGenerator = null; // lazy creation
 	
     /**
      * Constructor for the HSQLDB database driver.
@@ -263,11 +297,29 @@ public class DBDatabaseDriverHSql extends DBDatabaseDriver
      */
     @Override
     public void getDDLScript(DBCmdType type, DBObject dbo, DBSQLScript script)
+    {
+        // forward request
+        getDDLGenerator().getDDLScript(type, dbo, script); 
+    }
+    
+    /**
+     * returns the DDL generator
+     */
+    HSqlDDLGenerator getDDLGenerator()
     {
         if (ddlGenerator==null)
             ddlGenerator = new HSqlDDLGenerator(this);
+        return ddlGenerator;
+    }
+    
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
         // forward request
-        ddlGenerator.getDDLScript(type, dbo, script); 
+        getDDLGenerator().getMigrationScript(db, liveDb, dropObsolete, script); 
     }
     
 }
@@ -61,6 +61,16 @@ public class HSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverHSql>
     }
     */
  
+    /**
+     * Appends the data type of a column for use in a CAST expression
+     * @param c the column
+     * @param sql the sql builder object
+     */
+    void appendCastType(DBTableColumn c, StringBuilder sql)
+    {
+        appendColumnDataType(c.getDataType(), c.getSize(), c, sql);
+    }
+
     @Override
     protected void createDatabase(DBDatabase db, DBSQLScript script)
     {
@@ -105,4 +115,4 @@ public class HSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverHSql>
         script.addStmt(sql);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
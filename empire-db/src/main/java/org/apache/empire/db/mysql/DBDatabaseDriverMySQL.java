@@ -25,6 +25,7 @@ import java.util.GregorianCalendar;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCombinedCmd;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBCommandExpr;
@@ -35,6 +36,7 @@ import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,6 +101,37 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
                 }    
             }
         }
+        
+        /**
+         * Adds an INSERT ... ON DUPLICATE KEY UPDATE statement.<br>
+         * Please note that MySQL detects an existing record by any primary key or unique index
+         * and not only by the key columns given.
+         */
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {
+            addInsertValues(buf, table);
+            buf.append(" ON DUPLICATE KEY UPDATE ");
+            boolean first = true;
+            for (DBSetExpr expr : set)
+            {
+                if (isKeyColumn(expr.getColumn(), keyColumns))
+                    continue;
+                if (!first)
+                    buf.append(", ");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                buf.append("=VALUES(");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                buf.append(")");
+                first = false;
+            }
+            if (first)
+            {   // nothing to update
+                keyColumns[0].addSQL(buf, CTX_NAME);
+                buf.append("=");
+                keyColumns[0].addSQL(buf, CTX_NAME);
+            }
+        }
     }
     
     // Properties
@@ -453,5 +486,17 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         // forward request
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
+    
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new MySQLDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
 
 }
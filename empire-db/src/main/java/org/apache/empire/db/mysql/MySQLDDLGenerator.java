@@ -39,6 +39,8 @@ public class MySQLDDLGenerator extends DBDDLGenerator<DBDatabaseDriverMySQL>
         super(driver);
         // Alter Column Phrase
         alterColumnPhrase  = " MODIFY ";
+        // Online index creation
+        createIndexOnlineSuffix = " ALGORITHM=INPLACE LOCK=NONE";
         // set Oracle specific data types
         initDataTypes();
     }
@@ -155,5 +157,33 @@ public class MySQLDDLGenerator extends DBDDLGenerator<DBDatabaseDriverMySQL>
         // Create all Indexes
         createTableIndexes(t, pk, script);        
     }
+
+    /**
+     * MySQL requires the table name for dropping an index
+     */
+    @Override
+    protected void dropIndex(DBTable t, String name, DBSQLScript script)
+    {
+        StringBuilder sql = new StringBuilder();
+        sql.append("DROP INDEX ");
+        appendElementName(sql, name);
+        sql.append(" ON ");
+        t.addSQL(sql, DBExpr.CTX_FULLNAME);
+        script.addStmt(sql);
+    }
+
+    /**
+     * MySQL uses DROP FOREIGN KEY instead of DROP CONSTRAINT
+     */
+    @Override
+    protected void dropRelation(DBTable t, String name, DBSQLScript script)
+    {
+        StringBuilder sql = new StringBuilder();
+        sql.append("ALTER TABLE ");
+        t.addSQL(sql, DBExpr.CTX_FULLNAME);
+        sql.append(" DROP FOREIGN KEY ");
+        appendElementName(sql, name);
+        script.addStmt(sql);
+    }
     
 }
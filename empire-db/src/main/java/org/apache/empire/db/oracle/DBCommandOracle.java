@@ -143,48 +143,55 @@ public class DBCommandOracle extends DBCommand
      * @param buf the SQL statement
      */
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
     {
-        resetParamUsage();
-        if (select == null)
-            throw new ObjectNotValidException(this);
-        // Prepares statement
-        buf.append("SELECT ");
-        if (StringUtils.isNotEmpty(optimizerHint))
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
-        }
-        if (selectDistinct)
-            buf.append("DISTINCT ");
-        // Add Select Expressions
-        addListExpr(buf, select, CTX_ALL, ", ");
-        // Join
-        addFrom(buf);
-        // Where
-        addWhere(buf);
-        // Connect By
-        if (connectBy != null)
-        {   // Add 'Connect By Prior' Expression
-        	buf.append("\r\nCONNECT BY PRIOR ");
-            connectBy.addSQL(buf, CTX_DEFAULT | CTX_NOPARENTHESES);
-            // Start With
-            if (startWith != null)
-            {	// Add 'Start With' Expression
-            	buf.append("\r\nSTART WITH ");
-                startWith.addSQL(buf, CTX_DEFAULT);
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            if (select == null)
+                throw new ObjectNotValidException(this);
+            // Prepares statement
+            buf.append("SELECT ");
+            if (StringUtils.isNotEmpty(optimizerHint))
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
             }
-        }
-        // Grouping
-        addGrouping(buf);
-        // Order
-        if (orderBy != null)
-        { // Having
+            if (selectDistinct)
+                buf.append("DISTINCT ");
+            // Add Select Expressions
+            addListExpr(buf, select, CTX_ALL, ", ");
+            // Join
+            addFrom(buf);
+            // Where
+            addWhere(buf);
+            // Connect By
             if (connectBy != null)
-                buf.append("\r\nORDER SIBLINGS BY ");
-            else
-                buf.append("\r\nORDER BY ");
-            // Add List of Order By Expressions
-            addListExpr(buf, orderBy, CTX_DEFAULT, ", ");
+            {   // Add 'Connect By Prior' Expression
+            	buf.append("\r\nCONNECT BY PRIOR ");
+                connectBy.addSQL(buf, CTX_DEFAULT | CTX_NOPARENTHESES);
+                // Start With
+                if (startWith != null)
+                {	// Add 'Start With' Expression
+                	buf.append("\r\nSTART WITH ");
+                    startWith.addSQL(buf, CTX_DEFAULT);
+                }
+            }
+            // Grouping
+            addGrouping(buf);
+            // Order
+            if (orderBy != null)
+            { // Having
+                if (connectBy != null)
+                    buf.append("\r\nORDER SIBLINGS BY ");
+                else
+                    buf.append("\r\nORDER BY ");
+                // Add List of Order By Expressions
+                addListExpr(buf, orderBy, CTX_DEFAULT, ", ");
+            }
+        } finally
+        {
+            renderLock.unlock();
         }
     }
 
@@ -193,13 +200,20 @@ public class DBCommandOracle extends DBCommand
      * If a join is required, this method creates a "MERGE INTO" expression 
      */
     @Override
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
-        // No Joins: Use Default
-        if (joins==null || set==null)
-            return getSimpleUpdate();
-        else
-            return getUpdateWithJoins();
+        renderLock.lock();
+        try
+        {
+            // No Joins: Use Default
+            if (joins==null || set==null)
+                return getSimpleUpdate();
+            else
+                return getUpdateWithJoins();
+        } finally
+        {
+            renderLock.unlock();
+        }
     }
 
     protected String getSimpleUpdate()
@@ -301,24 +315,51 @@ public class DBCommandOracle extends DBCommand
      * @return the delete SQL-Command
      */
     @Override
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE ");
-        if (optimizerHint != null)
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
+        renderLock.lock();
+        try
+        {
+            resetParamUsage();
+            StringBuilder buf = new StringBuilder("DELETE ");
+            if (optimizerHint != null)
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
+            }
+            buf.append("FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            if (where != null || having != null)
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                if (where != null)
+                    addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally
+        {
+            renderLock.unlock();
         }
-        buf.append("FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where != null || having != null)
-        { // add where condition
-            buf.append("\r\nWHERE ");
-            if (where != null)
-                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+    }
+
+    /**
+     * Adds the source of a MERGE statement as a select from dual.
+     */
+    @Override
+    protected void addMergeSource(StringBuilder buf, String alias)
+    {
+        buf.append("(SELECT ");
+        for (int i=0; i<set.size(); i++)
+        {
+            if (i>0)
+                buf.append(", ");
+            DBSetExpr expr = set.get(i);
+            expr.addSQL(buf, CTX_VALUE);
+            buf.append(" ");
+            expr.getColumn().addSQL(buf, CTX_NAME);
         }
-        return buf.toString();
+        buf.append(" FROM DUAL) ");
+        buf.append(alias);
     }
 
 }
\ No newline at end of file
@@ -109,6 +109,7 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
             case SEQUENCES:     	return true;
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return false;
+            case QUERY_WINDOW_FUNCTIONS: return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -356,6 +357,18 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
     
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new OracleDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
+    
     /**
      * Checks whether the database definition matches the real database structure.
      */
@@ -39,6 +39,8 @@ public class OracleDDLGenerator extends DBDDLGenerator<DBDatabaseDriverOracle>
         alterColumnPhrase  = " MODIFY ";
         // Name Primary Keys
         namePrimaryKeyConstraint = true;
+        // Online index creation
+        createIndexOnlineSuffix = " ONLINE";
         // set Oracle specific data types
         initDataTypes(driver);
     }
@@ -179,5 +181,25 @@ public class OracleDDLGenerator extends DBDDLGenerator<DBDatabaseDriverOracle>
         // Create Index
         script.addStmt(sql);
     }
-    
+
+    /**
+     * Integers and decimals are both stored as NUMBER and dates include the time 
+     */
+    @Override
+    protected DataType getBaseDataType(DataType type)
+    {
+        switch (type)
+        {
+            case INTEGER:
+            case AUTOINC:
+                return DataType.DECIMAL;
+            case DATE:
+                return DataType.DATETIME;
+            case BOOL:
+                return (driver.getBooleanType()==BooleanType.CHAR) ? DataType.CHAR : DataType.DECIMAL;
+            default:
+                return super.getBaseDataType(type);
+        }
+    }
+
 }
@@ -25,6 +25,7 @@ import java.util.GregorianCalendar;
 
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
@@ -32,6 +33,8 @@ import org.apache.empire.db.DBDatabaseDriver;
 import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBTable;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +119,34 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
                 }    
             }
         }
+        
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {   // INSERT ... ON CONFLICT
+            addInsertValues(buf, table);
+            buf.append(" ON CONFLICT (");
+            for (int i=0; i<keyColumns.length; i++)
+            {
+                if (i>0)
+                    buf.append(", ");
+                keyColumns[i].addSQL(buf, CTX_NAME);
+            }
+            buf.append(")");
+            // update
+            boolean first = true;
+            for (DBSetExpr expr : set)
+            {
+                if (isKeyColumn(expr.getColumn(), keyColumns))
+                    continue;
+                buf.append(first ? " DO UPDATE SET " : ", ");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                buf.append("=EXCLUDED.");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                first = false;
+            }
+            if (first)
+                buf.append(" DO NOTHING");
+        }
     }
     
     private String databaseName;
@@ -305,6 +336,7 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
             case SEQUENCES:     	return true;    
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return true;
+            case QUERY_WINDOW_FUNCTIONS: return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -451,6 +483,18 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
     
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new PostgreDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
+    
     /**
      * Postgre needs special handling for CLOBs and BLOB's
      */
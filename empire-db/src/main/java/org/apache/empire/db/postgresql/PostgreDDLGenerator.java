@@ -34,6 +34,9 @@ public class PostgreDDLGenerator extends DBDDLGenerator<DBDatabaseDriverPostgreS
     public PostgreDDLGenerator(DBDatabaseDriverPostgreSQL driver)
     {
         super(driver);
+        // Online index creation (must not be executed inside a transaction block)
+        createIndexOnlinePrefix = "CONCURRENTLY ";
+        createIndexOnlineNonTransactional = true;
         // set Oracle specific data types
         initDataTypes();
     }
@@ -148,6 +151,16 @@ public class PostgreDDLGenerator extends DBDDLGenerator<DBDatabaseDriverPostgreS
         if (c.isRequired() ||  c.isAutoGenerated())
             sql.append(" NOT NULL");
     }
-    
-}
 
+    /**
+     * TEXT columns are used for both CLOB and unlimited TEXT columns 
+     */
+    @Override
+    protected DataType getBaseDataType(DataType type)
+    {
+        if (type==DataType.CLOB)
+            return DataType.TEXT;
+        return super.getBaseDataType(type);
+    }
+
+}
@@ -25,11 +25,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
 
+import org.apache.empire.commons.DateUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
 import org.apache.empire.db.DBColumn;
@@ -42,7 +42,9 @@ import org.apache.empire.db.DBDriverFeature;
 import org.apache.empire.db.DBJoinType;
 import org.apache.empire.db.DBObject;
 import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBTable;
 import org.apache.empire.db.expr.join.DBJoinExpr;
+import org.apache.empire.db.expr.set.DBSetExpr;
 import org.apache.empire.exceptions.NotImplementedException;
 import org.apache.empire.exceptions.UnexpectedReturnValueException;
 import org.slf4j.Logger;
@@ -101,6 +103,38 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
             
         }
         
+        /**
+         * Adds an INSERT ... ON CONFLICT statement (requires SQLite 3.24 or later).<br>
+         * Unlike INSERT OR REPLACE this keeps the values of all columns that are not set.
+         */
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {
+            addInsertValues(buf, table);
+            buf.append(" ON CONFLICT (");
+            for (int i=0; i<keyColumns.length; i++)
+            {
+                if (i>0)
+                    buf.append(", ");
+                keyColumns[i].addSQL(buf, CTX_NAME);
+            }
+            buf.append(")");
+            // update
+            boolean first = true;
+            for (DBSetExpr expr : set)
+            {
+                if (isKeyColumn(expr.getColumn(), keyColumns))
+                    continue;
+                buf.append(first ? " DO UPDATE SET " : ", ");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                buf.append("=excluded.");
+                expr.getColumn().addSQL(buf, CTX_NAME);
+                first = false;
+            }
+            if (first)
+                buf.append(" DO NOTHING");
+        }
+        
     }
     
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
@@ -457,7 +491,7 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
         {
             // SQLite does not have a Date type, or any kind of type :(
             String datePattern = getSQLPhrase(SQL_DATETIME_PATTERN);
-            DateFormat dateFormat = new SimpleDateFormat(datePattern);
+            DateFormat dateFormat = DateUtils.getThreadDateFormat(datePattern);
             try
             {
                 Date timestamp = dateFormat.parse(rset.getString(columnIndex));
@@ -553,6 +587,18 @@ public class DBDatabaseDriverSQLite extends DBDatabaseDriver
         ddlGenerator.getDDLScript(type, dbo, script);
     }
     
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator == null)
+            ddlGenerator = new SQLiteDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script);
+    }
+    
     @Override
     public Object getNextSequenceValue(DBDatabase db, String SeqName, int minValue, Connection conn)
     {
@@ -25,6 +25,7 @@ import java.util.GregorianCalendar;
 import org.apache.empire.commons.StringUtils;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
@@ -91,6 +92,13 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
             // Add Select Expressions
             addListExpr(buf, select, CTX_ALL, ", ");
         }
+        
+        @Override
+        protected void addUpsert(StringBuilder buf, DBTable table, DBColumn[] keyColumns)
+        {   // MERGE statements must be terminated
+            super.addUpsert(buf, table, keyColumns);
+            buf.append(";");
+        }
     }
     
     // Properties
@@ -101,6 +109,7 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
     // When set to 'false' (default) MySQL's auto-increment feature is used.
     private boolean useSequenceTable = false;
     private boolean useUnicodePrefix = true;
+    private boolean useOnlineIndexBuild = false;
     
     private DBDDLGenerator<?> ddlGenerator = null; // lazy creation
 
@@ -193,6 +202,25 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
         this.useUnicodePrefix = useUnicodePrefix;
     }
 
+    /**
+     * Indicates whether migration scripts build new indexes online (WITH (ONLINE = ON))
+     */
+    public boolean isUseOnlineIndexBuild()
+    {
+        return useOnlineIndexBuild;
+    }
+
+    /**
+     * Sets whether migration scripts build new indexes online (WITH (ONLINE = ON)).<br>
+     * Online index operations are only available in the Enterprise (and Developer) edition of SQL Server.
+     * Default is false 
+     * @param useOnlineIndexBuild true if new indexes should be built online
+     */
+    public void setUseOnlineIndexBuild(boolean useOnlineIndexBuild)
+    {
+        this.useOnlineIndexBuild = useOnlineIndexBuild;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void attachDatabase(DBDatabase db, Connection conn)
@@ -250,6 +278,7 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
             case SEQUENCES:         return useSequenceTable;    
             case QUERY_LIMIT_ROWS:  return true;
             case QUERY_SKIP_ROWS:   return false;
+            case QUERY_WINDOW_FUNCTIONS: return true;
             default:
                 // All other features are not supported by default
                 return false;
@@ -432,5 +461,17 @@ public class DBDatabaseDriverMSSQL extends DBDatabaseDriver
         // forward request
         ddlGenerator.getDDLScript(type, dbo, script); 
     }
+    
+    /**
+     * @see DBDatabaseDriver#getMigrationDDLScript(DBDatabase, DBDatabase, boolean, DBSQLScript)  
+     */
+    @Override
+    public void getMigrationDDLScript(DBDatabase db, DBDatabase liveDb, boolean dropObsolete, DBSQLScript script)
+    {
+        if (ddlGenerator==null)
+            ddlGenerator = new MSSqlDDLGenerator(this);
+        // forward request
+        ddlGenerator.getMigrationScript(db, liveDb, dropObsolete, script); 
+    }
 
 }
@@ -24,7 +24,10 @@ import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBDDLGenerator;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBExpr;
+import org.apache.empire.db.DBIndex;
 import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.DBDatabaseDriver.DBSeqTable;
 
@@ -33,6 +36,8 @@ public class MSSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverMSSQL>
     public MSSqlDDLGenerator(DBDatabaseDriverMSSQL driver)
     {
         super(driver);
+        // Online index creation (see DBDatabaseDriverMSSQL.setUseOnlineIndexBuild)
+        createIndexOnlineSuffix = " WITH (ONLINE = ON)";
         // set Oracle specific data types
         initDataTypes();
     }
@@ -117,5 +122,39 @@ public class MSSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverMSSQL>
         // default processing
         super.createDatabase(db, script);
     }
+
+    /**
+     * Online index operations are only used if enabled on the driver, since not all editions support them
+     */
+    @Override
+    protected void createIndex(DBTable t, DBIndex idx, boolean online, DBSQLScript script)
+    {
+        super.createIndex(t, idx, online && driver.isUseOnlineIndexBuild(), script);
+    }
+
+    /**
+     * SQL Server requires the table name for dropping an index
+     */
+    @Override
+    protected void dropIndex(DBTable t, String name, DBSQLScript script)
+    {
+        StringBuilder sql = new StringBuilder();
+        sql.append("DROP INDEX ");
+        appendElementName(sql, name);
+        sql.append(" ON ");
+        t.addSQL(sql, DBExpr.CTX_FULLNAME);
+        script.addStmt(sql);
+    }
+
+    /**
+     * Dates are stored as DATETIME 
+     */
+    @Override
+    protected DataType getBaseDataType(DataType type)
+    {
+        if (type==DataType.DATE)
+            return DataType.DATETIME;
+        return super.getBaseDataType(type);
+    }
     
 }
@@ -64,6 +64,24 @@ public class DBResource extends ExternalResource
         return connection;
     }
     
+    /**
+     * Opens an additional connection to the same database.
+     * The caller is responsible for closing it.
+     */
+    public Connection newConnection()
+    {
+        try
+        {
+            String user = db.username != null ? db.username:"sa";
+            String password = db.password != null ? db.password:"";
+            return DriverManager.getConnection(db.jdbcURL, user, password);
+        } 
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+    
     @Override
     protected void before()
         throws Throwable
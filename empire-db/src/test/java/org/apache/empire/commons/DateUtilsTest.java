@@ -21,6 +21,7 @@ package org.apache.empire.commons;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
@@ -288,6 +289,23 @@ public class DateUtilsTest
 		assertEquals("0001", formatted);
 	}
 	
+	/**
+	 * Test method for {@link org.apache.empire.commons.DateUtils#appendDate(StringBuilder, java.util.Date, String)}.
+	 */
+	@Test
+	public void testAppendDate()
+	{
+		Calendar cal = simpleCalendar();
+		cal.set(Calendar.YEAR, 2012);
+		String[] patterns = { "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm:ss.S", "yyyy-MM-dd HH:mm:ss.SSS", "dd.MM.yy", "yyyy-MMM-dd", "'d'yyyyMMdd" };
+		for (String pattern : patterns)
+		{
+			StringBuilder buf = new StringBuilder("x");
+			DateUtils.appendDate(buf, cal.getTime(), pattern);
+			assertEquals(pattern, "x" + new SimpleDateFormat(pattern).format(cal.getTime()), buf.toString());
+		}
+	}
+
 	/**
 	 * Returns a test calendar
 	 * @return the calendar
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class HtmlUtilsTest
+{
+    @Test
+    public void testEscapeHtml()
+    {
+        assertNull(HtmlUtils.escapeHtml(null));
+        assertEquals("", HtmlUtils.escapeHtml(""));
+        assertEquals("a &lt;b&gt; &amp; &quot;c&quot; 'd'", HtmlUtils.escapeHtml("a <b> & \"c\" 'd'"));
+        assertEquals("M&#252;ller &#8364;", HtmlUtils.escapeHtml("M\u00fcller \u20ac"));
+        // supplementary character
+        assertEquals("&#128512;", HtmlUtils.escapeHtml("\ud83d\ude00"));
+    }
+
+    @Test
+    public void testEscapeHtmlNotRequired()
+    {
+        String text = "nothing to escape";
+        assertSame(text, HtmlUtils.escapeHtml(text));
+    }
+
+    @Test
+    public void testAppendHtml()
+    {
+        StringBuilder buf = new StringBuilder("<td>");
+        HtmlUtils.appendHtml(buf, "1 < 2");
+        HtmlUtils.appendHtml(buf, null);
+        assertEquals("<td>1 &lt; 2", buf.toString());
+    }
+
+    @Test
+    public void testBufferPool()
+    {
+        StringBuilder buf = HtmlUtils.getBuffer();
+        buf.append("test");
+        // buffer in use: new buffer
+        StringBuilder other = HtmlUtils.getBuffer();
+        assertNotSame(buf, other);
+        // reuse
+        HtmlUtils.releaseBuffer(buf);
+        StringBuilder reused = HtmlUtils.getBuffer();
+        assertSame(buf, reused);
+        assertEquals(0, reused.length());
+    }
+}
@@ -23,6 +23,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -356,4 +360,70 @@ public class OptionsTest
         assertEquals("txt2", node.getTextContent());
     }
 
+
+    /**
+     * Test lookups in large option lists (using the lookup index)
+     */
+    @Test
+    public void testLargeOptions()
+    {
+        Options options = new Options();
+        for (int i=0; i<100; i++)
+            options.set(Integer.valueOf(i), "Text"+i);
+        // lookups with different value types
+        assertEquals(42, options.getIndex(Integer.valueOf(42)));
+        assertEquals(42, options.getIndex(Long.valueOf(42)));
+        assertEquals(42, options.getIndex(Double.valueOf(42.0)));
+        assertEquals(42, options.getIndex("42"));
+        assertEquals(-1, options.getIndex("42.0"));
+        assertEquals(-1, options.getIndex(Integer.valueOf(100)));
+        assertEquals(-1, options.getIndex(null));
+        assertEquals("Text99", options.get(Integer.valueOf(99)));
+        // update existing
+        options.set(Long.valueOf(10), "Ten");
+        assertEquals(100, options.size());
+        assertEquals("Ten", options.get(Integer.valueOf(10)));
+        // insert on top
+        options.set(Integer.valueOf(-1), "Minus one", InsertPos.Top);
+        assertEquals(0, options.getIndex(Integer.valueOf(-1)));
+        assertEquals(43, options.getIndex(Integer.valueOf(42)));
+        // remove
+        assertTrue(options.remove(Integer.valueOf(0)));
+        assertEquals(42, options.getIndex(Integer.valueOf(42)));
+        Iterator<OptionEntry> it = options.iterator();
+        it.next();
+        it.remove();
+        assertEquals(41, options.getIndex(Integer.valueOf(42)));
+        assertFalse(options.contains(Integer.valueOf(-1)));
+        // append
+        options.add(null, "null", true);
+        assertEquals(options.size()-1, options.getIndex(null));
+        // non indexable values
+        Object obj = new Object();
+        options.add(obj, "object", false);
+        assertEquals(options.size()-1, options.getIndex(obj));
+        assertEquals(41, options.getIndex(Integer.valueOf(42)));
+    }
+
+    /**
+     * Test serialization of large option lists
+     */
+    @Test
+    public void testSerialization() throws Exception
+    {
+        Options options = new Options();
+        for (int i=0; i<50; i++)
+            options.set("K"+i, "Text"+i);
+        assertEquals(10, options.getIndex("K10"));
+        // serialize
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(options);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        Options copy = (Options) ois.readObject();
+        assertEquals(50, copy.size());
+        assertEquals(10, copy.getIndex("K10"));
+        assertEquals("Text49", copy.get("K49"));
+    }
 }
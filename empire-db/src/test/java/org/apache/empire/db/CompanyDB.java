@@ -18,6 +18,10 @@
  */
 package org.apache.empire.db;
 
+import java.math.BigDecimal;
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
 import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataMode;
 import org.apache.empire.data.DataType;
@@ -154,4 +158,76 @@ public class CompanyDB extends DBDatabase
         addRelation( EMPLOYEE.DEPARTMENT_ID.referenceOn( DEPARTMENT.ID ));
     }
 
+    /**
+     * Opens a new database with the given driver.
+     */
+    public static CompanyDB openDatabase(DBDatabaseDriver driver, Connection conn)
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        return db;
+    }
+
+    /**
+     * Opens a new database on the connection of a test resource and creates all tables.
+     */
+    public static CompanyDB createDatabase(DBResource dbResource)
+    {
+        return createDatabase(dbResource, 0);
+    }
+
+    /**
+     * Opens a new database on the connection of a test resource, creates all tables
+     * and adds the departments "Dep0" to "Dep<i>n-1</i>".
+     */
+    public static CompanyDB createDatabase(DBResource dbResource, int departments)
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = openDatabase(dbResource.newDriver(), conn);
+        db.createTables(conn);
+        for (int i=0; i<departments; i++)
+            db.addDepartment("Dep" + i, conn);
+        return db;
+    }
+
+    /**
+     * Creates all tables. The database must be open.
+     */
+    public void createTables(Connection conn)
+    {
+        DBSQLScript script = new DBSQLScript();
+        getCreateDDLScript(getDriver(), script);
+        script.run(getDriver(), conn, false);
+    }
+
+    /**
+     * Adds a department
+     * @return the department id
+     */
+    public int addDepartment(String name, Connection conn)
+    {
+        DBRecord dep = new DBRecord();
+        dep.create(DEPARTMENT);
+        dep.setValue(DEPARTMENT.NAME, name);
+        dep.setValue(DEPARTMENT.BUSINESS_UNIT, "TEST");
+        dep.update(conn);
+        return dep.getInt(DEPARTMENT.ID);
+    }
+
+    /**
+     * Adds an employee to a department
+     * @return the employee id
+     */
+    public int addEmployee(int departmentId, String lastName, BigDecimal salary, Connection conn)
+    {
+        DBRecord emp = new DBRecord();
+        emp.create(EMPLOYEE);
+        emp.setValue(EMPLOYEE.FIRSTNAME, "Test");
+        emp.setValue(EMPLOYEE.LASTNAME, lastName);
+        emp.setValue(EMPLOYEE.DEPARTMENT_ID, departmentId);
+        emp.setValue(EMPLOYEE.SALARY, salary);
+        emp.update(conn);
+        return emp.getInt(EMPLOYEE.ID);
+    }
+
 }
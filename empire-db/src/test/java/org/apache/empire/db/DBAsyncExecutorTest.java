@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBAsyncExecutor.DBRowStream;
+import org.apache.empire.exceptions.InternalException;
+import org.apache.empire.exceptions.ObjectNotValidException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBAsyncExecutorTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testQueryObjectList() throws Exception
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 3);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource, "setQueryTimeout");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        DBAsyncExecutor executor = new DBAsyncExecutor(provider, 2, 10);
+        executor.setQueryTimeout(30);
+        try {
+            List<Object[]> result = executor.queryObjectList(cmd).get(10, TimeUnit.SECONDS);
+            assertEquals(3, result.size());
+            assertEquals("Dep2", result.get(2)[0]);
+            // timeout is applied and the connection is released
+            assertEquals("[setQueryTimeout:30]", provider.getCalls().toString());
+            assertEquals(1, provider.getReleaseCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 1);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource, "cancel");
+        provider.blockOn("executeQuery");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        DBAsyncExecutor executor = new DBAsyncExecutor(provider, 1, 1);
+        try {
+            Future<Object> future = executor.querySingleValue(cmd);
+            assertTrue(provider.awaitBlocked(10000));
+            assertTrue(future.cancel(true));
+            assertTrue(future.isCancelled());
+            assertTrue(provider.getCalls().contains("cancel"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 5);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        DBAsyncExecutor executor = new DBAsyncExecutor(provider, 1, 1);
+        try {
+            DBRowStream stream = executor.stream(cmd, 1);
+            List<Object> values = new ArrayList<Object>();
+            while (stream.hasNext())
+                values.add(stream.next()[0]);
+            assertEquals("[Dep0, Dep1, Dep2, Dep3, Dep4]", values.toString());
+            assertEquals(5, stream.getFuture().get(10, TimeUnit.SECONDS).intValue());
+            assertFalse(stream.hasNext());
+            assertEquals(1, provider.getReleaseCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamError() throws Exception
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 1);
+        final IllegalStateException error = new IllegalStateException("no connection");
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource) {
+            @Override
+            public Connection getConnection(DBDatabase db, boolean readOnly)
+            {
+                throw error;
+            }
+        };
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        DBAsyncExecutor executor = new DBAsyncExecutor(provider, 1, 1);
+        try {
+            DBRowStream stream = executor.stream(cmd, 1);
+            try {
+                stream.hasNext();
+                fail("stream failure not reported");
+            } catch(InternalException e) {
+                assertEquals(error.getMessage(), e.getErrorParams()[1]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecuteWithoutValues() throws Exception
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 0);
+        DBAsyncExecutor executor = new DBAsyncExecutor(new RecordingConnectionProvider(dbResource), 1, 1);
+        try {
+            executor.executeInsert(db.createCommand());
+            fail("insert without values accepted");
+        } catch(ObjectNotValidException e) {
+            // expected
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.derby.DBDatabaseDriverDerby;
+import org.apache.empire.db.h2.DBDatabaseDriverH2;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.apache.empire.db.mysql.DBDatabaseDriverMySQL;
+import org.apache.empire.db.oracle.DBDatabaseDriverOracle;
+import org.apache.empire.db.postgresql.DBDatabaseDriverPostgreSQL;
+import org.apache.empire.db.sqlite.DBDatabaseDriverSQLite;
+import org.apache.empire.db.sqlserver.DBDatabaseDriverMSSQL;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.NotSupportedException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBCommandUpsertTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testMerge()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverHSql(), dbResource.getConnection());
+        String t = db.DEPARTMENT.getAlias();
+        assertEquals("MERGE INTO DEPARTMENTS " + t + " USING (VALUES (CAST(1 AS INT), CAST('Sales' AS VARCHAR(80)))) AS S (DEPARTMENT_ID, NAME)"
+                   + " ON (" + t + ".DEPARTMENT_ID=S.DEPARTMENT_ID) WHEN MATCHED THEN UPDATE SET NAME=S.NAME"
+                   + " WHEN NOT MATCHED THEN INSERT (DEPARTMENT_ID, NAME) VALUES (S.DEPARTMENT_ID, S.NAME)", 
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+        // MSSQL requires the statement to be terminated
+        db = CompanyDB.openDatabase(new DBDatabaseDriverMSSQL() {
+            private final static long serialVersionUID = 1L;
+            @Override
+            public void attachDatabase(DBDatabase db, Connection conn)
+            {   // rendering only
+            }
+        }, dbResource.getConnection());
+        String sql = createCommand(db).getUpsert(db.DEPARTMENT);
+        assertTrue(sql, sql.startsWith("MERGE INTO ") && sql.endsWith("VALUES (S.DEPARTMENT_ID, S.NAME);"));
+    }
+
+    @Test
+    public void testMergeOracle()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverOracle(), dbResource.getConnection());
+        String t = db.DEPARTMENT.getAlias();
+        assertEquals("MERGE INTO DEPARTMENTS " + t + " USING (SELECT 1 DEPARTMENT_ID, 'Sales' NAME FROM DUAL) S"
+                   + " ON (" + t + ".DEPARTMENT_ID=S.DEPARTMENT_ID) WHEN MATCHED THEN UPDATE SET NAME=S.NAME"
+                   + " WHEN NOT MATCHED THEN INSERT (DEPARTMENT_ID, NAME) VALUES (S.DEPARTMENT_ID, S.NAME)", 
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+    }
+
+    @Test
+    public void testInsertOnConflict()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverPostgreSQL(), dbResource.getConnection());
+        assertEquals("INSERT INTO DEPARTMENTS (DEPARTMENT_ID, NAME) VALUES (1, 'Sales')"
+                   + " ON CONFLICT (DEPARTMENT_ID) DO UPDATE SET NAME=EXCLUDED.NAME",
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+        db = CompanyDB.openDatabase(new DBDatabaseDriverSQLite(), dbResource.getConnection());
+        assertEquals("INSERT INTO DEPARTMENTS (DEPARTMENT_ID, NAME) VALUES (1, 'Sales')"
+                   + " ON CONFLICT (DEPARTMENT_ID) DO UPDATE SET NAME=excluded.NAME",
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+        db = CompanyDB.openDatabase(new DBDatabaseDriverMySQL(), dbResource.getConnection());
+        assertEquals("INSERT INTO DEPARTMENTS (DEPARTMENT_ID, NAME) VALUES (1, 'Sales')"
+                   + " ON DUPLICATE KEY UPDATE NAME=VALUES(NAME)",
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+        db = CompanyDB.openDatabase(new DBDatabaseDriverH2(), dbResource.getConnection());
+        assertEquals("MERGE INTO DEPARTMENTS (DEPARTMENT_ID, NAME) KEY (DEPARTMENT_ID) VALUES (1, 'Sales')",
+                     createCommand(db).getUpsert(db.DEPARTMENT));
+    }
+
+    @Test
+    public void testKeysOnly()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverPostgreSQL(), dbResource.getConnection());
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.ID.to(1));
+        assertEquals("INSERT INTO DEPARTMENTS (DEPARTMENT_ID) VALUES (1) ON CONFLICT (DEPARTMENT_ID) DO NOTHING",
+                     cmd.getUpsert(db.DEPARTMENT));
+    }
+
+    @Test(expected=InvalidArgumentException.class)
+    public void testMissingKey()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverHSql(), dbResource.getConnection());
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.NAME.to("Sales"));
+        cmd.getUpsert(db.DEPARTMENT);
+    }
+
+    @Test(expected=NotSupportedException.class)
+    public void testNotSupported()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverDerby(), dbResource.getConnection());
+        createCommand(db).getUpsert(db.DEPARTMENT);
+    }
+
+    @Test
+    public void testExecuteUpsert()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverHSql(), dbResource.getConnection());
+        Connection conn = dbResource.getConnection();
+        db.createTables(conn);
+        // insert
+        db.executeUpsert(db.DEPARTMENT, db.DEPARTMENT.getKeyColumns(), createCommand(db, 1, "Sales"), conn);
+        assertEquals("Sales", db.querySingleString("SELECT NAME FROM DEPARTMENTS WHERE DEPARTMENT_ID=1", conn));
+        // update
+        db.executeUpsert(db.DEPARTMENT, db.DEPARTMENT.getKeyColumns(), createCommand(db, 1, "Marketing"), conn);
+        assertEquals("Marketing", db.querySingleString("SELECT NAME FROM DEPARTMENTS WHERE DEPARTMENT_ID=1", conn));
+        assertEquals(1, db.querySingleInt("SELECT COUNT(*) FROM DEPARTMENTS", conn));
+    }
+
+    @Test
+    public void testBatch()
+    {
+        CompanyDB db = CompanyDB.openDatabase(new DBDatabaseDriverHSql(), dbResource.getConnection());
+        db.createTables(dbResource.getConnection());
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "addBatch", "executeBatch");
+        executeBatch(db, 1, "Dep", jdbc.getConnection());
+        // all statements share the same SQL and are executed as a prepared statement batch
+        assertEquals("[addBatch, addBatch, addBatch, executeBatch]", jdbc.getCalls().toString());
+        // update two and insert one
+        executeBatch(db, 2, "New", jdbc.getConnection());
+        Connection conn = dbResource.getConnection();
+        assertEquals(4, db.querySingleInt("SELECT COUNT(*) FROM DEPARTMENTS", conn));
+        assertEquals("Dep1", db.querySingleString("SELECT NAME FROM DEPARTMENTS WHERE DEPARTMENT_ID=1", conn));
+        assertEquals("New3", db.querySingleString("SELECT NAME FROM DEPARTMENTS WHERE DEPARTMENT_ID=3", conn));
+    }
+
+    private void executeBatch(CompanyDB db, int firstId, String prefix, Connection conn)
+    {
+        String[] sql = new String[3];
+        Object[][] params = new Object[3][];
+        for (int i=0; i<sql.length; i++)
+        {   DBCommand cmd = createCommand(db, firstId + i, prefix + (firstId + i));
+            sql[i] = cmd.getUpsert(db.DEPARTMENT);
+            params[i] = cmd.getParamValues();
+        }
+        db.executeBatch(sql, params, conn);
+    }
+
+    private DBCommand createCommand(CompanyDB db)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.ID.to(1));
+        cmd.set(db.DEPARTMENT.NAME.to("Sales"));
+        return cmd;
+    }
+
+    private DBCommand createCommand(CompanyDB db, int id, String name)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.ID.to(cmd.addParam(id)));
+        cmd.set(db.DEPARTMENT.NAME.to(cmd.addParam(name)));
+        cmd.set(db.DEPARTMENT.BUSINESS_UNIT.to(cmd.addParam("TEST")));
+        cmd.set(db.DEPARTMENT.UPDATE_TIMESTAMP.to(cmd.addParam(new Timestamp(System.currentTimeMillis()))));
+        return cmd;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.Attributes;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBConcurrencyTest
+{
+    private static final int THREADS = 16;
+    private static final int TASKS   = 200;
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testConcurrentRendering() throws Exception
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new DBDatabaseDriverHSql(), null);
+        final DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.FIRSTNAME, db.EMPLOYEE.LASTNAME);
+        cmd.where(db.EMPLOYEE.LASTNAME.is(cmd.addParam("Doe")));
+        cmd.where(db.EMPLOYEE.DEPARTMENT_ID.is(cmd.addParam(Integer.valueOf(1))));
+        final String expected = cmd.getSelect();
+
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        for (int i=0; i<TASKS; i++)
+        {
+            tasks.add(new Callable<String>() {
+                public String call()
+                {
+                    return cmd.getSelect();
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<String> result : executor.invokeAll(tasks))
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, cmd.getParamValues().length);
+    }
+
+    @Test
+    public void testConcurrentAttributes() throws Exception
+    {
+        CompanyDB db = new CompanyDB();
+        final DBColumn column = db.EMPLOYEE.EMAIL;
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i=0; i<TASKS; i++)
+        {
+            final String name = "attr" + i;
+            tasks.add(new Callable<Object>() {
+                public Object call()
+                {
+                    column.setAttribute(name, name);
+                    return column.getAttribute(name);
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks))
+                assertNotNull(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        // no update must be lost
+        for (int i=0; i<TASKS; i++)
+            assertEquals("attr" + i, column.getAttribute("attr" + i));
+    }
+
+    @Test
+    public void testAttributeUpdate() throws Exception
+    {
+        CompanyDB db = new CompanyDB();
+        final DBColumn column = db.EMPLOYEE.PHONE_NUMBER;
+        column.setAttribute("version", 0);
+        // updating an existing attribute must not change the set seen by readers
+        Attributes snapshot = column.attributes;
+        column.setAttribute("version", 1);
+        assertEquals(0, snapshot.get("version"));
+        assertEquals(1, column.getAttribute("version"));
+        // update while other threads read
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (int i=0; i<TASKS; i++)
+        {
+            final int version = i;
+            final boolean update = (i % 4 == 0);
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call()
+                {
+                    if (update)
+                    {   column.setAttribute("version", version);
+                        return true;
+                    }
+                    // the value of a snapshot must be stable
+                    Attributes attributes = column.attributes;
+                    Object value = attributes.get("version");
+                    for (int n=0; n<100; n++)
+                    {
+                        Thread.yield();
+                        if (!value.equals(attributes.get("version")))
+                            return false;
+                    }
+                    return true;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks))
+                assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentRecords() throws Exception
+    {
+        Connection conn = dbResource.getConnection();
+        final CompanyDB db = CompanyDB.createDatabase(dbResource);
+        int dep = db.addDepartment("Development", conn);
+        final int count = TASKS / 4;
+        final int[] ids = new int[count];
+        for (int i=0; i<count; i++)
+            ids[i] = db.addEmployee(dep, "Employee" + i, new BigDecimal(1000), conn);
+        // every employee is read by several tasks and updated by one
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i=0; i<TASKS; i++)
+        {
+            final int id = ids[i % count];
+            final boolean update = (i < count);
+            final String name = "Updated" + i;
+            tasks.add(new Callable<Object>() {
+                public Object call() throws Exception
+                {
+                    Connection taskConn = dbResource.newConnection();
+                    try {
+                        DBRecord rec = new DBRecord();
+                        rec.read(db.EMPLOYEE, id, taskConn);
+                        if (update)
+                        {   rec.setValue(db.EMPLOYEE.LASTNAME, name);
+                            rec.update(taskConn);
+                        }
+                        return rec.getValue(db.EMPLOYEE.LASTNAME);
+                    } finally {
+                        taskConn.close();
+                    }
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks))
+                assertNotNull(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        // all updates are stored
+        for (int i=0; i<count; i++)
+        {
+            DBRecord rec = new DBRecord();
+            rec.read(db.EMPLOYEE, ids[i], conn);
+            assertEquals("Updated" + i, rec.getString(db.EMPLOYEE.LASTNAME));
+        }
+    }
+}
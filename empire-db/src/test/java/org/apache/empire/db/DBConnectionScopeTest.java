@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBConnectionScopeTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testLazyAcquire()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        RecordingProvider provider = new RecordingProvider();
+        DBConnectionScope scope = new DBConnectionScope(provider, false);
+        assertFalse(scope.hasConnection(db));
+        assertEquals("[]", provider.calls.toString());
+        // acquired once on first access
+        Connection conn = scope.getConnection(db);
+        assertSame(conn, scope.getConnection(db));
+        assertTrue(scope.hasConnection(db));
+        db.addDepartment("Development", conn);
+        scope.releaseAll(true);
+        assertFalse(scope.hasConnection(db));
+        assertEquals("[get:false, release:true]", provider.calls.toString());
+        // committed
+        assertEquals(1, countDepartments(db));
+    }
+
+    @Test
+    public void testRollback()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBConnectionScope scope = new DBConnectionScope(new RecordingProvider(), false);
+        db.addDepartment("Development", scope.getConnection(db));
+        scope.releaseAll(false);
+        assertEquals(0, countDepartments(db));
+    }
+
+    @Test
+    public void testReleaseError()
+    {
+        final CompanyDB db = CompanyDB.createDatabase(dbResource);
+        CompanyDB other = new CompanyDB();
+        other.open(dbResource.newDriver(), dbResource.getConnection());
+        RecordingProvider provider = new RecordingProvider() {
+            @Override
+            public void releaseConnection(DBDatabase rdb, Connection conn, boolean commit)
+            {
+                super.releaseConnection(rdb, conn, commit);
+                if (rdb==db)
+                    throw new IllegalStateException("commit failed");
+            }
+        };
+        DBConnectionScope scope = new DBConnectionScope(provider, false);
+        scope.getConnection(db);
+        scope.getConnection(other);
+        try {
+            scope.releaseAll(true);
+            fail("release error not reported");
+        } catch(IllegalStateException e) {
+            assertEquals("commit failed", e.getMessage());
+        }
+        // all connections have been released
+        assertEquals("[get:false, get:false, release:true, release:true]", provider.calls.toString());
+        assertFalse(scope.hasConnection(other));
+    }
+
+    @Test
+    public void testReadOnly() throws SQLException
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        RecordingProvider provider = new RecordingProvider();
+        DBConnectionScope scope = new DBConnectionScope(provider, true);
+        assertTrue(scope.getConnection(db).isReadOnly());
+        scope.release(db, false);
+        // nothing left to release
+        scope.releaseAll(true);
+        assertEquals("[get:true, release:false]", provider.calls.toString());
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        long count = DBConnectionScope.getAcquireCount();
+        int open = DBConnectionScope.getOpenConnectionCount();
+        DBConnectionScope scope = new DBConnectionScope(new RecordingProvider(), false);
+        scope.getConnection(db);
+        assertEquals(open + 1, DBConnectionScope.getOpenConnectionCount());
+        scope.releaseAll(false);
+        assertEquals(open, DBConnectionScope.getOpenConnectionCount());
+        assertEquals(count + 1, DBConnectionScope.getAcquireCount());
+    }
+
+    private int countDepartments(CompanyDB db)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.count());
+        return ((Number)db.querySingleValue(cmd, dbResource.getConnection())).intValue();
+    }
+
+    /**
+     * Opens a new connection to the test database for each request
+     */
+    private class RecordingProvider extends DBDataSourceConnectionProvider
+    {
+        private final List<String> calls = new ArrayList<String>();
+
+        public RecordingProvider()
+        {
+            super(null);
+        }
+
+        @Override
+        public Connection getConnection(DBDatabase db, boolean readOnly)
+        {
+            calls.add("get:" + readOnly);
+            try
+            {
+                Connection conn = dbResource.newConnection();
+                conn.setAutoCommit(false);
+                conn.setReadOnly(readOnly);
+                return conn;
+            }
+            catch (SQLException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void releaseConnection(DBDatabase db, Connection conn, boolean commit)
+        {
+            calls.add("release:" + commit);
+            super.releaseConnection(db, conn, commit);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.empire.data.DataMode;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.apache.empire.db.postgresql.DBDatabaseDriverPostgreSQL;
+import org.apache.empire.db.sqlserver.DBDatabaseDriverMSSQL;
+import org.junit.Test;
+
+public class DBDDLGeneratorTest
+{
+    @Test
+    public void testMigrationScript()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        db.getMigrationDDLScript(new DBDatabaseDriverHSql(), new LiveDB(), false, script);
+        String ddl = script.toString();
+
+        // missing column
+        assertTrue(ddl, ddl.contains("ALTER TABLE DEPARTMENTS ADD HEAD"));
+        // changed column
+        assertTrue(ddl, ddl.contains("ALTER TABLE DEPARTMENTS ALTER NAME"));
+        // unchanged column
+        assertFalse(ddl, ddl.contains("BUSINESS_UNIT"));
+        // missing index
+        assertTrue(ddl, ddl.contains("CREATE UNIQUE INDEX DEARTMENT_NAME_IDX ON DEPARTMENTS"));
+        // missing tables
+        assertTrue(ddl, ddl.contains("CREATE TABLE EMPLOYEES"));
+        assertTrue(ddl, ddl.contains("CREATE TABLE DATA"));
+        // missing relation
+        assertTrue(ddl, ddl.contains("FOREIGN KEY (ID) REFERENCES DEPARTMENTS"));
+        // obsolete objects are kept
+        assertFalse(ddl, ddl.contains("DROP"));
+    }
+
+    @Test
+    public void testMigrationScriptDropObsolete()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        db.getMigrationDDLScript(new DBDatabaseDriverHSql(), new LiveDB(), true, script);
+        String ddl = script.toString();
+
+        assertTrue(ddl, ddl.contains("DROP INDEX DEPARTMENT_OLD_IDX"));
+        assertTrue(ddl, ddl.contains("ALTER TABLE DEPARTMENTS DROP COLUMN OBSOLETE"));
+        assertTrue(ddl, ddl.contains("DROP TABLE OBSOLETE_TABLE"));
+        // the obsolete index must be dropped before the new one is created
+        assertTrue(ddl, ddl.indexOf("DROP INDEX") < ddl.indexOf("CREATE UNIQUE INDEX"));
+    }
+
+    @Test
+    public void testOnlineIndexPostgreSQL()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        db.getMigrationDDLScript(new DBDatabaseDriverPostgreSQL(), new LiveDB(), false, script);
+        int found = 0;
+        for (int i=0; i<script.getCount(); i++)
+        {   // the index must be created outside of a transaction
+            String stmt = script.getStmt(i);
+            assertEquals(stmt, stmt.contains("CONCURRENTLY"), script.isNonTransactional(i));
+            if (script.isNonTransactional(i))
+                found++;
+        }
+        assertEquals(script.toString(), 1, found);
+    }
+
+    @Test
+    public void testOnlineIndexMSSQL()
+    {
+        CompanyDB db = new CompanyDB();
+        DBDatabaseDriverMSSQL driver = new DBDatabaseDriverMSSQL();
+        DBSQLScript script = new DBSQLScript();
+        db.getMigrationDDLScript(driver, new LiveDB(), false, script);
+        assertFalse(script.toString(), script.toString().contains("ONLINE"));
+        // enabled for editions supporting online index operations
+        driver.setUseOnlineIndexBuild(true);
+        script.clear();
+        db.getMigrationDDLScript(driver, new LiveDB(), false, script);
+        assertTrue(script.toString(), script.toString().contains("(NAME) WITH (ONLINE = ON)"));
+    }
+
+    @Test
+    public void testNoChanges()
+    {
+        CompanyDB db = new CompanyDB();
+        DBSQLScript script = new DBSQLScript();
+        db.getMigrationDDLScript(new DBDatabaseDriverHSql(), new CompanyDB(), true, script);
+        assertEquals(script.toString(), 0, script.getCount());
+    }
+
+    /**
+     * An outdated version of the company database
+     */
+    private static class LiveDB extends DBDatabase
+    {
+        private final static long serialVersionUID = 1L;
+
+        public LiveDB()
+        {
+            DBTable dep = new DBTable("DEPARTMENTS", this);
+            DBTableColumn id = dep.addColumn("DEPARTMENT_ID", DataType.AUTOINC, 0, DataMode.AutoGenerated);
+            DBTableColumn name = dep.addColumn("NAME", DataType.TEXT, 40, DataMode.NotNull);
+            dep.addColumn("BUSINESS_UNIT", DataType.TEXT, 4, DataMode.NotNull);
+            dep.addColumn("UPDATE_TIMESTAMP", DataType.DATETIME, 0, DataMode.NotNull);
+            dep.addColumn("OBSOLETE", DataType.INTEGER, 0, DataMode.Nullable);
+            dep.setPrimaryKey(id);
+            dep.addIndex("DEPARTMENT_OLD_IDX", false, new DBColumn[] { name });
+
+            DBTable obsolete = new DBTable("OBSOLETE_TABLE", this);
+            obsolete.addColumn("ID", DataType.INTEGER, 0, DataMode.NotNull);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBDatabaseBatchTest
+{
+    private static final String[] RECORDED = { "prepareStatement", "addBatch", "executeBatch", "executeUpdate" };
+
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testStatementBatch()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 2);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), RECORDED);
+        String[] sql = new String[] { "UPDATE DEPARTMENTS SET HEAD='A' WHERE NAME='Dep0'", "UPDATE DEPARTMENTS SET HEAD='B' WHERE NAME='Dep1'" };
+        int[] counts = db.executeBatch(sql, null, jdbc.getConnection());
+        assertEquals(2, counts.length);
+        assertEquals("[addBatch:" + sql[0] + ", addBatch:" + sql[1] + ", executeBatch]", jdbc.getCalls().toString());
+        assertEquals("A", getHead(db, "Dep0"));
+        assertEquals("B", getHead(db, "Dep1"));
+    }
+
+    @Test
+    public void testPreparedStatementBatch()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 2);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), RECORDED);
+        String update = "UPDATE DEPARTMENTS SET HEAD=? WHERE NAME=?";
+        String[] sql = new String[] { update, update };
+        Object[][] params = new Object[][] { new Object[] { "A", "Dep0" }, new Object[] { "B", "Dep1" } };
+        int[] counts = db.executeBatch(sql, params, jdbc.getConnection());
+        assertEquals(2, counts.length);
+        // a single statement is prepared
+        assertEquals("[prepareStatement:" + update + ", addBatch, addBatch, executeBatch]", jdbc.getCalls().toString());
+        assertEquals("A", getHead(db, "Dep0"));
+        assertEquals("B", getHead(db, "Dep1"));
+    }
+
+    @Test
+    public void testDifferentPreparedStatements()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 2);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), RECORDED);
+        String[] sql = new String[] { "UPDATE DEPARTMENTS SET HEAD=? WHERE NAME='Dep0'", "UPDATE DEPARTMENTS SET HEAD=? WHERE NAME='Dep1'" };
+        Object[][] params = new Object[][] { new Object[] { "A" }, new Object[] { "B" } };
+        int[] counts = db.executeBatch(sql, params, jdbc.getConnection());
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        // single statements are executed without a batch
+        assertEquals("[prepareStatement:" + sql[0] + ", executeUpdate, prepareStatement:" + sql[1] + ", executeUpdate]", jdbc.getCalls().toString());
+        assertEquals("A", getHead(db, "Dep0"));
+        assertEquals("B", getHead(db, "Dep1"));
+    }
+
+    @Test
+    public void testGroupedPreparedStatements()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 2);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), RECORDED);
+        String updateHead = "UPDATE DEPARTMENTS SET HEAD=? WHERE NAME=?";
+        String updateUnit = "UPDATE DEPARTMENTS SET BUSINESS_UNIT=? WHERE NAME=?";
+        String[] sql = new String[] { updateHead, updateUnit, updateHead };
+        Object[][] params = new Object[][] { new Object[] { "A", "Dep0" }, new Object[] { "U", "Dep1" }, new Object[] { "C", "Dep9" } };
+        int[] counts = db.executeBatch(sql, params, jdbc.getConnection());
+        // counts are returned in the order supplied
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(0, counts[2]);
+        // statements with the same command are executed in one batch
+        assertEquals("[prepareStatement:" + updateHead + ", addBatch, addBatch, executeBatch, prepareStatement:" + updateUnit + ", executeUpdate]", jdbc.getCalls().toString());
+        assertEquals("A", getHead(db, "Dep0"));
+    }
+
+    private String getHead(CompanyDB db, String name)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.HEAD);
+        cmd.where(db.DEPARTMENT.NAME.is(name));
+        return db.querySingleString(cmd.getSelect(), cmd.getParamValues(), null, dbResource.getConnection());
+    }
+}
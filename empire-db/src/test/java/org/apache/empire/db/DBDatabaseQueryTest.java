@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBDatabase.DBRowHandler;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBDatabaseQueryTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testQueryObjectList()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 5);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "next", "close");
+        List<Object[]> rows = db.queryObjectList("SELECT NAME FROM DEPARTMENTS ORDER BY NAME", jdbc.getConnection());
+        assertEquals(5, rows.size());
+        assertEquals("Dep4", rows.get(4)[0]);
+        // result set and statement are closed
+        assertEquals("[next, next, next, next, next, next, close, close]", jdbc.getCalls().toString());
+    }
+
+    @Test
+    public void testQuerySingleValue()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 5);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "next", "close");
+        assertEquals("Dep0", db.querySingleString("SELECT NAME FROM DEPARTMENTS ORDER BY NAME", jdbc.getConnection()));
+        // only the first row is read
+        assertEquals("[next, close, close]", jdbc.getCalls().toString());
+    }
+
+    @Test
+    public void testQueryRowHandler()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource, 5);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "next", "close");
+        final List<Object> values = new ArrayList<Object>();
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        int count = db.query(cmd, jdbc.getConnection(), new DBRowHandler() {
+            public boolean handleRow(DBRecordData record)
+            {
+                values.add(record.getValue(0));
+                return (values.size() < 2);
+            }
+        });
+        assertEquals(2, count);
+        assertEquals("[Dep0, Dep1]", values.toString());
+        // the cursor is released when the handler stops
+        assertEquals("[next, next, close, close]", jdbc.getCalls().toString());
+    }
+}
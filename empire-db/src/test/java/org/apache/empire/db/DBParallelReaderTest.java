@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBDatabase.DBRowHandler;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBParallelReaderTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRead()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        List<Integer> ids = addEmployees(db, 12);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource, "executeQuery");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        int split = ids.get(5);
+        DBCompareExpr[] partitions = new DBCompareExpr[] { 
+            db.EMPLOYEE.ID.isSmallerThan(split), db.EMPLOYEE.ID.isMoreOrEqual(split) 
+        };
+        final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+        DBParallelReader reader = new DBParallelReader(provider);
+        int count = reader.read(cmd, partitions, new DBRowHandler() {
+            public boolean handleRow(DBRecordData record)
+            {
+                values.add(record.getInt(0));
+                return true;
+            }
+        });
+        assertEquals(12, count);
+        Collections.sort(values);
+        assertEquals(ids.toString(), values.toString());
+        // each partition uses its own connection
+        assertEquals(2, provider.getReleaseCount());
+        String sql = provider.getCalls().toString();
+        assertEquals(sql, 2, provider.getCalls().size());
+        assertTrue(sql, sql.contains("WHERE " + db.EMPLOYEE.getAlias() + ".EMPLOYEE_ID<" + split));
+        assertTrue(sql, sql.contains("WHERE " + db.EMPLOYEE.getAlias() + ".EMPLOYEE_ID>=" + split));
+    }
+
+    @Test
+    public void testReadOrdered()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        List<Integer> ids = addEmployees(db, 2);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource, "executeQuery");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        cmd.orderBy(db.EMPLOYEE.ID);
+        DBCompareExpr[] partitions = new DBCompareExpr[] { null, null, null }; 
+        final List<Integer> values = new ArrayList<Integer>();
+        DBParallelReader reader = new DBParallelReader(provider);
+        reader.setOrdered(true);
+        int count = reader.read(cmd, partitions, new DBRowHandler() {
+            public boolean handleRow(DBRecordData record)
+            {
+                values.add(record.getInt(0));
+                // stop after the fifth row
+                return (values.size() < 5);
+            }
+        });
+        assertEquals(4, count);
+        Integer first = ids.get(0);
+        Integer second = ids.get(1);
+        assertEquals("[" + first + ", " + second + ", " + first + ", " + second + ", " + first + "]", values.toString());
+        assertEquals(3, provider.getReleaseCount());
+    }
+
+    @Test
+    public void testKeyRangePartitions()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        List<Integer> ids = addEmployees(db, 10);
+        RecordingConnectionProvider provider = new RecordingConnectionProvider(dbResource, "executeQuery");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        Connection conn = provider.getConnection(db, true);
+        DBCompareExpr[] partitions = DBParallelReader.getKeyRangePartitions(cmd, db.EMPLOYEE.ID, 3, conn);
+        provider.releaseConnection(db, conn, false);
+        assertEquals(3, partitions.length);
+        String id = db.EMPLOYEE.getAlias() + ".EMPLOYEE_ID";
+        String sql = provider.getCalls().get(0);
+        assertTrue(sql, sql.startsWith("executeQuery:SELECT min(" + id + "), max(" + id + ")"));
+        int min = ids.get(0);
+        assertEquals(id + "<" + (min + 4), render(partitions[0]));
+        assertEquals(id + ">=" + (min + 4) + " AND " + id + "<" + (min + 8), render(partitions[1]));
+        assertEquals(id + ">=" + (min + 8), render(partitions[2]));
+        // the partitions cover all rows
+        int count = new DBParallelReader(provider).read(cmd, partitions, new DBRowHandler() {
+            public boolean handleRow(DBRecordData record)
+            {
+                return true;
+            }
+        });
+        assertEquals(10, count);
+    }
+
+    private static String render(DBCompareExpr expr)
+    {
+        StringBuilder buf = new StringBuilder();
+        expr.addSQL(buf, DBExpr.CTX_DEFAULT);
+        return buf.toString();
+    }
+
+    private List<Integer> addEmployees(CompanyDB db, int count)
+    {
+        Connection conn = dbResource.getConnection();
+        int dep = db.addDepartment("Development", conn);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i=0; i<count; i++)
+            ids.add(db.addEmployee(dep, "Employee" + i, new BigDecimal(1000), conn));
+        return ids;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBQueryCacheTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testGetAndPut()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBQueryCache cache = new DBQueryCache(10, 100, 60000);
+        assertNull(cache.get("SELECT A", new Object[] { 1 }));
+        cache.put("SELECT A", new Object[] { 1 }, createRows(3), toList(db.DEPARTMENT));
+        List<Object[]> rows = cache.get("SELECT A", new Object[] { 1 });
+        assertNotNull(rows);
+        assertEquals(3, rows.size());
+        assertEquals("row2", rows.get(2)[1]);
+        // different parameters
+        assertNull(cache.get("SELECT A", new Object[] { 2 }));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        // results larger than maxRows are not cached
+        cache.put("SELECT B", null, createRows(101), toList(db.DEPARTMENT));
+        assertNull(cache.get("SELECT B", null));
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBQueryCache cache = new DBQueryCache(2, 100, 50);
+        cache.put("SELECT A", null, createRows(1), toList(db.DEPARTMENT));
+        cache.put("SELECT B", null, createRows(1), toList(db.DEPARTMENT));
+        assertNotNull(cache.get("SELECT A", null));
+        // B is the least recently used
+        cache.put("SELECT C", null, createRows(1), toList(db.DEPARTMENT));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("SELECT B", null));
+        // expired
+        Thread.sleep(100);
+        assertNull(cache.get("SELECT A", null));
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.LASTNAME, db.DEPARTMENT.NAME);
+        cmd.join(db.EMPLOYEE.DEPARTMENT_ID, db.DEPARTMENT.ID);
+        DBQuery query = new DBQuery(cmd);
+        // the tables of a query are resolved
+        DBCommand queryCmd = db.createCommand();
+        queryCmd.select(query.findQueryColumn(db.EMPLOYEE.LASTNAME));
+        Set<DBRowSet> rowsets = DBQueryCache.getReferencedRowSets(queryCmd);
+        assertTrue(rowsets.contains(query));
+        assertTrue(rowsets.contains(db.EMPLOYEE));
+        assertTrue(rowsets.contains(db.DEPARTMENT));
+
+        DBQueryCache cache = new DBQueryCache();
+        cache.put("SELECT A", null, createRows(1), rowsets);
+        cache.put("SELECT B", null, createRows(1), toList(db.EMPLOYEE));
+        cache.put("SELECT C", null, createRows(1), toList(db.DATA));
+        assertEquals(2, cache.invalidate(db.DEPARTMENT) + cache.invalidate(db.EMPLOYEE));
+        assertNotNull(cache.get("SELECT C", null));
+        assertEquals(2, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testGeneration()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBQueryCache cache = new DBQueryCache();
+        long generation = cache.getGeneration();
+        // modified while the query was executed
+        cache.invalidate(db.EMPLOYEE);
+        assertFalse(cache.put("SELECT A", null, createRows(1), toList(db.EMPLOYEE), generation));
+        assertNull(cache.get("SELECT A", null));
+        // other tables are not affected
+        assertTrue(cache.put("SELECT B", null, createRows(1), toList(db.DEPARTMENT), generation));
+        assertTrue(cache.put("SELECT A", null, createRows(1), toList(db.EMPLOYEE), cache.getGeneration()));
+    }
+
+    @Test
+    public void testCommit() throws SQLException
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        Connection conn = dbResource.getConnection();
+        DBQueryCache cache = new DBQueryCache();
+        db.setQueryCache(cache);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.count());
+        int dep = db.addDepartment("Development", conn);
+        assertEquals(0, count(db, cmd, conn));
+        // modify in a transaction
+        conn.setAutoCommit(false);
+        db.addEmployee(dep, "Miller", new BigDecimal("1000"), conn);
+        assertTrue(cache.hasPendingChanges(conn));
+        // uncommitted changes are not cached
+        assertEquals(1, count(db, cmd, conn));
+        assertEquals(0, cache.size());
+        db.commit(conn);
+        assertFalse(cache.hasPendingChanges(conn));
+        assertEquals(1, count(db, cmd, conn));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRollback() throws SQLException
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        Connection conn = dbResource.getConnection();
+        DBQueryCache cache = new DBQueryCache();
+        db.setQueryCache(cache);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.count());
+        int dep = db.addDepartment("Development", conn);
+        conn.setAutoCommit(false);
+        db.addEmployee(dep, "Miller", new BigDecimal("1000"), conn);
+        assertEquals(1, count(db, cmd, conn));
+        db.rollback(conn);
+        // no phantom rows
+        assertEquals(0, count(db, cmd, conn));
+        assertEquals(1, cache.size());
+    }
+
+    private static int count(CompanyDB db, DBCommand cmd, Connection conn)
+    {
+        return ((Number)db.querySingleValue(cmd, conn)).intValue();
+    }
+
+    private static List<Object[]> createRows(int count)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i=0; i<count; i++)
+            rows.add(new Object[] { i, "row" + i });
+        return rows;
+    }
+
+    private static List<DBRowSet> toList(DBRowSet rowset)
+    {
+        List<DBRowSet> list = new ArrayList<DBRowSet>();
+        list.add(rowset);
+        return list;
+    }
+}
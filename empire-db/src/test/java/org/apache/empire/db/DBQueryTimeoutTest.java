@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.exceptions.QueryFailedException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBQueryTimeoutTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testQueryTimeout()
+    {
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "setQueryTimeout");
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.count());
+        // no timeout
+        db.querySingleValue(cmd, jdbc.getConnection());
+        assertEquals("[]", jdbc.getCalls().toString());
+        // database default
+        db.setQueryTimeout(10);
+        db.querySingleValue(cmd, jdbc.getConnection());
+        assertEquals("[setQueryTimeout:10]", jdbc.getCalls().toString());
+        // command timeout
+        cmd.setQueryTimeout(3);
+        DBReader reader = new DBReader();
+        try {
+            reader.open(cmd, jdbc.getConnection());
+        } finally {
+            reader.close();
+        }
+        assertEquals("[setQueryTimeout:10, setQueryTimeout:3]", jdbc.getCalls().toString());
+    }
+
+    @Test(expected=InvalidArgumentException.class)
+    public void testNegativeQueryTimeout()
+    {
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        db.createCommand().setQueryTimeout(-1);
+    }
+
+    @Test
+    public void testTimeoutCount()
+    {
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection());
+        jdbc.failOn("executeQuery", 1100);
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        cmd.setQueryTimeout(1);
+        try {
+            db.queryObjectList(cmd, jdbc.getConnection());
+            fail("query should have timed out");
+        } catch(QueryFailedException e) {
+            // expected
+        }
+        assertEquals(1, db.getTimeoutCount());
+    }
+
+    @Test
+    public void testReaderCancel()
+    {
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "cancel");
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        DBReader reader = new DBReader();
+        assertFalse(reader.cancel());
+        try {
+            reader.open(cmd, jdbc.getConnection());
+            assertTrue(reader.cancel());
+        } finally {
+            reader.close();
+        }
+        assertEquals("[cancel]", jdbc.getCalls().toString());
+        assertEquals(1, db.getCancelCount());
+    }
+
+    @Test
+    public void testCancelExecution() throws Exception
+    {
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "cancel");
+        jdbc.blockOn("executeQuery");
+        final Connection conn = jdbc.getConnection();
+        final CompanyDB db = CompanyDB.createDatabase(dbResource);
+        final DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID);
+        final DBReader reader = new DBReader();
+        reader.setCancellable(true);
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        Thread thread = new Thread() {
+            @Override
+            public void run()
+            {
+                try {
+                    reader.open(cmd, conn);
+                } catch(Exception e) {
+                    error.set(e);
+                } finally {
+                    reader.close();
+                }
+            }
+        };
+        thread.start();
+        assertTrue(jdbc.awaitBlocked(10000));
+        assertTrue(reader.cancel());
+        thread.join(10000);
+        assertTrue(error.get() instanceof QueryFailedException);
+        assertEquals("[cancel]", jdbc.getCalls().toString());
+    }
+
+    @Test
+    public void testTrackedConnection()
+    {
+        Connection conn = dbResource.getConnection();
+        Connection tracked = new DBStatementTracker(0).track(conn);
+        assertTrue(tracked.equals(tracked));
+        assertFalse(tracked.equals(conn));
+        assertEquals(System.identityHashCode(tracked), tracked.hashCode());
+    }
+}
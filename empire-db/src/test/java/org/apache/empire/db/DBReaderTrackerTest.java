@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DBReaderTrackerTest
+{
+    @After
+    public void resetSamplingRate()
+    {
+        DBReaderTracker.setSamplingRate(1);
+    }
+
+    @Test
+    public void testTrackAllByDefault()
+    {
+        assertEquals(1, DBReaderTracker.getSamplingRate());
+        DBReaderTracker.Lease lease = DBReaderTracker.opened(new DBReader(), null, null);
+        assertTrue(lease.isSampled());
+        assertEquals(1, DBReaderTracker.logOpenReaders());
+        DBReaderTracker.closed(lease, System.nanoTime());
+    }
+
+    @Test
+    public void testSampling()
+    {
+        DBReaderTracker.setSamplingRate(0);
+        DBReader unsampled = new DBReader();
+        DBReaderTracker.Lease lease = DBReaderTracker.opened(unsampled, null, null);
+        assertFalse(lease.isSampled());
+        assertEquals(0, DBReaderTracker.logOpenReaders());
+        DBReaderTracker.closed(lease, System.nanoTime());
+
+        DBReaderTracker.setSamplingRate(1);
+        DBReader reader = new DBReader();
+        lease = DBReaderTracker.opened(reader, null, null);
+        assertTrue(lease.isSampled());
+        assertEquals(1, DBReaderTracker.logOpenReaders());
+        // reported only once
+        assertEquals(0, DBReaderTracker.logOpenReaders());
+        DBReaderTracker.closed(lease, System.nanoTime());
+        assertEquals(0, DBReaderTracker.logOpenReaders());
+    }
+
+    @Test
+    public void testMetrics()
+    {
+        DBReaderTracker.setSamplingRate(0);
+        long open = DBReaderTracker.getOpenReaderCount();
+        long total = DBReaderTracker.getTotalReaderCount();
+        DBReaderTracker.Lease lease = DBReaderTracker.opened(new DBReader(), null, null);
+        assertEquals(open + 1, DBReaderTracker.getOpenReaderCount());
+        DBReaderTracker.closed(lease, System.nanoTime() - 5000000L);
+        assertEquals(open, DBReaderTracker.getOpenReaderCount());
+        assertEquals(total + 1, DBReaderTracker.getTotalReaderCount());
+        assertTrue(DBReaderTracker.getMaxHoldTime() >= 5);
+    }
+
+    @Test
+    public void testLeakDetection() throws InterruptedException
+    {
+        DBReaderTracker.setSamplingRate(1);
+        assertLeakDetected();
+    }
+
+    @Test
+    public void testUnsampledLeakDetection() throws InterruptedException
+    {
+        DBReaderTracker.setSamplingRate(0);
+        assertLeakDetected();
+    }
+
+    private void assertLeakDetected() throws InterruptedException
+    {
+        long leaks = DBReaderTracker.getLeakCount();
+        long open = DBReaderTracker.getOpenReaderCount();
+        DBReaderTracker.opened(new DBReader(), new CompanyDB(), null);
+        // wait for the reader to be collected
+        for (int i = 0; i < 50 && DBReaderTracker.getLeakCount() == leaks; i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+            DBReaderTracker.expungeLeaks();
+        }
+        assertEquals(leaks + 1, DBReaderTracker.getLeakCount());
+        assertEquals(open, DBReaderTracker.getOpenReaderCount());
+    }
+}
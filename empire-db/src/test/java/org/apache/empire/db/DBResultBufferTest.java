@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.ColumnExpr;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBResultBufferTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testLoad()
+    {
+        CompanyDB db = openDatabase();
+        Connection conn = dbResource.getConnection();
+        DBCommand cmd = createCommand(db);
+        DBResultBuffer buffer = new DBResultBuffer();
+        assertEquals(3, buffer.load(cmd, conn));
+        // compare with the values of a reader
+        DBReader reader = new DBReader();
+        try {
+            reader.open(cmd, conn);
+            while (reader.moveNext())
+            {
+                assertTrue(buffer.moveNext());
+                for (int c=0; c<reader.getFieldCount(); c++)
+                    assertEquals(reader.getValue(c), buffer.getValue(c));
+            }
+        } finally {
+            reader.close();
+        }
+        assertFalse(buffer.moveNext());
+        // primitive access
+        buffer.moveTo(1);
+        assertEquals("Smith", buffer.getString(db.EMPLOYEE.LASTNAME));
+        assertTrue(buffer.isNull(db.EMPLOYEE.SALARY));
+        assertFalse(buffer.getBoolean(db.EMPLOYEE.RETIRED));
+        buffer.moveTo(2);
+        assertEquals(0, new BigDecimal("12.5").compareTo((BigDecimal)buffer.getValue(db.EMPLOYEE.SALARY)));
+    }
+
+    @Test
+    public void testNegativeScale()
+    {
+        CompanyDB db = openDatabase();
+        DBReader reader = new DBReader() {
+            private final static long serialVersionUID = 1L;
+            @Override
+            public Object getValue(int index)
+            {   // Some drivers return decimals with a negative scale
+                Object value = super.getValue(index);
+                return (value instanceof BigDecimal) ? ((BigDecimal)value).stripTrailingZeros() : value;
+            }
+        };
+        DBResultBuffer buffer = new DBResultBuffer();
+        try {
+            reader.open(createCommand(db), dbResource.getConnection());
+            buffer.load(reader, -1);
+        } finally {
+            reader.close();
+        }
+        // values are stored with a common scale
+        buffer.moveTo(0);
+        assertEquals(new BigDecimal("1000.0"), buffer.getValue(db.EMPLOYEE.SALARY));
+        buffer.moveTo(2);
+        assertEquals(new BigDecimal("12.5"), buffer.getValue(db.EMPLOYEE.SALARY));
+    }
+
+    @Test
+    public void testIntegralDecimals()
+    {
+        CompanyDB db = openDatabase();
+        DBReader reader = new DBReader() {
+            private final static long serialVersionUID = 1L;
+            @Override
+            public Object getValue(int index)
+            {   // Some drivers return integers as decimals
+                Object value = super.getValue(index);
+                return (value instanceof Integer) ? new BigDecimal(((Integer)value).intValue()) : value;
+            }
+        };
+        DBResultBuffer buffer = new DBResultBuffer();
+        try {
+            reader.open(createCommand(db), dbResource.getConnection());
+            buffer.load(reader, -1);
+        } finally {
+            reader.close();
+        }
+        buffer.moveTo(2);
+        assertEquals(BigDecimal.valueOf(3), buffer.getValue(db.EMPLOYEE.ID));
+        assertEquals(3, buffer.getInt(db.EMPLOYEE.ID));
+    }
+
+    @Test
+    public void testGetBeanList()
+    {
+        CompanyDB db = openDatabase();
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.LASTNAME);
+        cmd.orderBy(db.EMPLOYEE.ID);
+        DBResultBuffer buffer = new DBResultBuffer();
+        buffer.load(cmd, dbResource.getConnection());
+        buffer.moveTo(1);
+        List<Name> names = buffer.getBeanList(Name.class);
+        assertEquals(3, names.size());
+        assertEquals("Smith", names.get(1).name);
+        // the current row is kept
+        assertEquals(1, buffer.getRowIndex());
+        assertEquals("Smith", buffer.getString(db.EMPLOYEE.LASTNAME));
+    }
+
+    @Test
+    public void testIterator()
+    {
+        CompanyDB db = openDatabase();
+        DBResultBuffer buffer = new DBResultBuffer();
+        buffer.load(createCommand(db), dbResource.getConnection());
+        int count = 0;
+        for (DBRecordData data : buffer)
+        {
+            ColumnExpr column = db.EMPLOYEE.LASTNAME;
+            assertTrue(data.getString(column).length() > 0);
+            count++;
+        }
+        assertEquals(3, count);
+        assertEquals(3, buffer.getXmlDocument().getDocumentElement().getElementsByTagName("row").getLength());
+    }
+
+    public static class Name
+    {
+        private final String name;
+
+        public Name(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private CompanyDB openDatabase()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = CompanyDB.createDatabase(dbResource);
+        int dep = db.addDepartment("Development", conn);
+        db.addEmployee(dep, "Miller", new BigDecimal("1000"), conn);
+        db.addEmployee(dep, "Smith", null, conn);
+        db.addEmployee(dep, "Miller", new BigDecimal("12.5"), conn);
+        return db;
+    }
+
+    private DBCommand createCommand(CompanyDB db)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID, db.EMPLOYEE.LASTNAME, db.EMPLOYEE.SALARY, db.EMPLOYEE.RETIRED, db.EMPLOYEE.UPDATE_TIMESTAMP, db.EMPLOYEE.DATE_OF_BIRTH);
+        cmd.orderBy(db.EMPLOYEE.ID);
+        return cmd;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.exceptions.EmpireSQLException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBSQLScriptTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+
+    @Test
+    public void testRunBatch()
+    {
+        DBSQLScript script = createScript("INSERT INTO A VALUES (2)");
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "addBatch", "executeBatch", "executeUpdate");
+        script.runBatch(dbResource.newDriver(), jdbc.getConnection(), false);
+        // DDL, DML and DDL are executed in separate batches
+        assertEquals("[addBatch:CREATE TABLE A (ID INT PRIMARY KEY), addBatch:-- comment\r\nCREATE TABLE B (ID INT), executeBatch, "
+                   + "addBatch:INSERT INTO A VALUES (1), addBatch:INSERT INTO A VALUES (2), addBatch:insert into A values (3), executeBatch, "
+                   + "executeUpdate:DROP TABLE B]", jdbc.getCalls().toString());
+        for (int i=0; i<script.getCount(); i++)
+            assertTrue(script.getExecutionTime(i)>=0);
+        assertEquals(3, countRows());
+    }
+
+    @Test
+    public void testRunBatchSize()
+    {
+        DBSQLScript script = createScript("INSERT INTO A VALUES (2)");
+        script.setBatchSize(2);
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "executeBatch", "executeUpdate");
+        script.runBatch(dbResource.newDriver(), jdbc.getConnection(), false);
+        assertEquals("[executeBatch, executeBatch, executeUpdate:insert into A values (3), executeUpdate:DROP TABLE B]", jdbc.getCalls().toString());
+        assertEquals(3, countRows());
+    }
+
+    @Test
+    public void testRunBatchSkipErrors()
+    {
+        // the second insert fails
+        DBSQLScript script = createScript("INSERT INTO A VALUES (1)");
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "createStatement", "executeBatch", "executeUpdate", "close");
+        script.runBatch(dbResource.newDriver(), jdbc.getConnection(), true);
+        // in auto commit mode execution resumes after the failed statement without executing the first insert again
+        // all statements are executed with a single Statement
+        assertEquals("[createStatement, executeBatch, executeBatch, executeUpdate:insert into A values (3), executeUpdate:DROP TABLE B, close]", jdbc.getCalls().toString());
+        assertEquals(-1, script.getExecutionTime(3));
+        assertTrue(script.getExecutionTime(4)>=0);
+        assertEquals(2, countRows());
+    }
+
+    @Test(expected=EmpireSQLException.class)
+    public void testRunBatchError()
+    {
+        DBSQLScript script = createScript("INSERT INTO A VALUES (1)");
+        script.runBatch(dbResource.newDriver(), dbResource.getConnection(), false);
+    }
+
+    @Test
+    public void testRunNonTransactional() throws Exception
+    {
+        DBSQLScript script = new DBSQLScript();
+        script.addStmt("CREATE TABLE A (ID INT PRIMARY KEY)");
+        script.addStmt("INSERT INTO A VALUES (1)");
+        script.addNonTransactionalStmt("CREATE INDEX A_IDX ON A (ID)");
+        script.addStmt("INSERT INTO A VALUES (2)");
+        JdbcRecorder jdbc = new JdbcRecorder(dbResource.getConnection(), "commit", "setAutoCommit", "executeUpdate");
+        Connection conn = jdbc.getConnection();
+        conn.setAutoCommit(false);
+        try {
+            script.runBatch(dbResource.newDriver(), conn, false);
+            // pending changes are committed before the statement is executed in auto-commit mode
+            assertEquals("[setAutoCommit:false, executeUpdate:CREATE TABLE A (ID INT PRIMARY KEY), executeUpdate:INSERT INTO A VALUES (1), commit, setAutoCommit:true, executeUpdate:CREATE INDEX A_IDX ON A (ID), "
+                       + "setAutoCommit:false, executeUpdate:INSERT INTO A VALUES (2)]", jdbc.getCalls().toString());
+            assertTrue(script.isNonTransactional(2));
+            assertFalse(script.isNonTransactional(3));
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private DBSQLScript createScript(String secondInsert)
+    {
+        DBSQLScript script = new DBSQLScript();
+        script.addStmt("CREATE TABLE A (ID INT PRIMARY KEY)");
+        script.addStmt("-- comment\r\nCREATE TABLE B (ID INT)");
+        script.addStmt("INSERT INTO A VALUES (1)");
+        script.addStmt(secondInsert);
+        script.addStmt("insert into A values (3)");
+        script.addStmt("DROP TABLE B");
+        return script;
+    }
+
+    private int countRows()
+    {
+        Connection conn = dbResource.getConnection();
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        return db.querySingleInt("SELECT COUNT(*) FROM A", conn);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a JDBC connection in order to record calls on the connection and on its statements.<br>
+ * Additionally the execution of a statement may be delayed and failed or blocked until the statement is cancelled.
+ */
+public class JdbcRecorder
+{
+    private final Connection conn;
+    private final Set<String> recorded;
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    
+    private volatile String failMethod;
+    private volatile long failDelay;
+    private volatile String blockMethod;
+    private final CountDownLatch executing = new CountDownLatch(1);
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    /**
+     * Creates a recorder
+     * @param conn the connection to wrap
+     * @param recordedMethods the names of the methods to record
+     */
+    public JdbcRecorder(Connection conn, String... recordedMethods)
+    {
+        this.conn = conn;
+        this.recorded = new HashSet<String>(Arrays.asList(recordedMethods));
+    }
+
+    /**
+     * returns the wrapped connection
+     */
+    public Connection getConnection()
+    {
+        return (Connection) wrap(conn, Connection.class, null);
+    }
+
+    /**
+     * returns the recorded calls as "method" or "method:argument" for calls with a single argument
+     */
+    public List<String> getCalls()
+    {
+        synchronized(calls)
+        {
+            return new ArrayList<String>(calls);
+        }
+    }
+
+    /**
+     * clears the recorded calls
+     */
+    public void clear()
+    {
+        calls.clear();
+    }
+
+    /**
+     * lets all calls of a method fail after the given delay
+     */
+    public void failOn(String method, long delay)
+    {
+        this.failDelay = delay;
+        this.failMethod = method;
+    }
+
+    /**
+     * lets all calls of a method block until a statement is cancelled
+     */
+    public void blockOn(String method)
+    {
+        this.blockMethod = method;
+    }
+
+    /**
+     * waits until a blocking call has been entered
+     */
+    public boolean awaitBlocked(long timeout)
+        throws InterruptedException
+    {
+        return executing.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private Object wrap(Object target, Class<?> iface, Object owner)
+    {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { iface }, new Handler(target, owner));
+    }
+
+    /**
+     * Forwards the calls to the wrapped object
+     */
+    private class Handler implements InvocationHandler
+    {
+        private final Object target;
+        private final Object owner;
+
+        public Handler(Object target, Object owner)
+        {
+            this.target = target;
+            this.owner = owner;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable
+        {
+            String name = method.getName();
+            if (method.getDeclaringClass()==Object.class)
+            {   // identity of the proxy
+                if (name.equals("equals"))
+                    return (proxy==args[0]);
+                if (name.equals("hashCode"))
+                    return System.identityHashCode(proxy);
+            }
+            if (recorded.contains(name))
+                calls.add((args!=null && args.length==1) ? name + ":" + args[0] : name);
+            if (name.equals(failMethod))
+            {   Thread.sleep(failDelay);
+                throw new SQLException(name + " failed");
+            }
+            if (name.equals(blockMethod))
+            {   executing.countDown();
+                cancelled.await(10, TimeUnit.SECONDS);
+                throw new SQLException("Statement cancelled");
+            }
+            if (owner!=null && (name.equals("getStatement") || name.equals("getConnection")))
+                return owner;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch(InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                // release a blocked call only once the statement has been cancelled 
+                if (name.equals("cancel"))
+                    cancelled.countDown();
+            }
+            if ((result instanceof Statement || result instanceof ResultSet) && method.getReturnType().isInterface())
+                return wrap(result, method.getReturnType(), proxy);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.empire.DBResource;
+
+/**
+ * A connection provider opening a new connection to the test database for every request.<br>
+ * The calls on the connections are recorded by a {@link JdbcRecorder} per connection.
+ */
+public class RecordingConnectionProvider implements DBConnectionProvider
+{
+    private final DBResource dbResource;
+    private final String[] recordedMethods;
+    private final List<JdbcRecorder> recorders = Collections.synchronizedList(new ArrayList<JdbcRecorder>());
+    private final AtomicInteger released = new AtomicInteger();
+    private final CountDownLatch acquired = new CountDownLatch(1);
+    private volatile String blockMethod;
+
+    /**
+     * Creates a provider
+     * @param dbResource the test database
+     * @param recordedMethods the names of the methods to record
+     */
+    public RecordingConnectionProvider(DBResource dbResource, String... recordedMethods)
+    {
+        this.dbResource = dbResource;
+        this.recordedMethods = recordedMethods;
+    }
+
+    public Connection getConnection(DBDatabase db, boolean readOnly)
+    {
+        JdbcRecorder recorder = new JdbcRecorder(dbResource.newConnection(), recordedMethods);
+        if (blockMethod!=null)
+            recorder.blockOn(blockMethod);
+        recorders.add(recorder);
+        acquired.countDown();
+        return recorder.getConnection();
+    }
+
+    public void releaseConnection(DBDatabase db, Connection conn, boolean commit)
+    {
+        released.incrementAndGet();
+        try
+        {
+            conn.close();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * lets all calls of a method on subsequently obtained connections block until the statement is cancelled
+     */
+    public void blockOn(String method)
+    {
+        this.blockMethod = method;
+    }
+
+    /**
+     * waits until a blocking call has been entered on the first connection
+     */
+    public boolean awaitBlocked(long timeout)
+        throws InterruptedException
+    {
+        if (!acquired.await(timeout, TimeUnit.MILLISECONDS))
+            return false;
+        return recorders.get(0).awaitBlocked(timeout);
+    }
+
+    /**
+     * returns the recorded calls of all connections
+     */
+    public List<String> getCalls()
+    {
+        List<String> calls = new ArrayList<String>();
+        synchronized(recorders)
+        {
+            for (JdbcRecorder recorder : recorders)
+                calls.addAll(recorder.getCalls());
+        }
+        return calls;
+    }
+
+    /**
+     * returns the number of released connections
+     */
+    public int getReleaseCount()
+    {
+        return released.get();
+    }
+}
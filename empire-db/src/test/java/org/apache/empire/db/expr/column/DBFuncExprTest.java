@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.expr.column;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBExpr;
+import org.apache.empire.db.MockDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DBFuncExprTest
+{
+    private CompanyDB testDB;
+
+    @Before
+    public void setup()
+    {
+        testDB = new CompanyDB();
+        testDB.open(new MockDriver(), null);
+    }
+
+    @Test
+    public void testParams()
+    {
+        assertEquals("substring(FIRSTNAME, '1', '2')", render("substring(?, {0}, {1})", 1, 2));
+        // render again from the cached template
+        assertEquals("substring(FIRSTNAME, '3', '4')", render("substring(?, {0}, {1})", 3, 4));
+        assertEquals("coalesce(FIRSTNAME, 'x?')", render("coalesce(?, {0})", "x?"));
+    }
+
+    @Test
+    public void testNoPlaceholder()
+    {
+        // the column expression is appended
+        assertEquals("distinct FIRSTNAME", render("distinct "));
+        // missing parameters are kept
+        assertEquals("f(FIRSTNAME, {1})", render("f(?, {1})", 5));
+    }
+
+    private String render(String template, Object... params)
+    {
+        DBFuncExpr func = new DBFuncExpr(testDB.EMPLOYEE.FIRSTNAME, template, params, null, false, DataType.TEXT);
+        StringBuilder sql = new StringBuilder();
+        func.addSQL(sql, DBExpr.CTX_NAME);
+        return sql.toString();
+    }
+}